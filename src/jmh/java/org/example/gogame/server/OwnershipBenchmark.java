@@ -0,0 +1,66 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.PlayoutBoard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dead stone estimate {@link Game} makes when a game is passed out, on all cores.
+ * The position is the end of a random game played until both players passed, so it is as full of
+ * settled and dead groups as a real final position.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OwnershipBenchmark {
+
+    @Param({"9", "19"})
+    public int size;
+
+    private OwnershipEstimator estimator;
+    private PlayoutBoard position;
+
+    /**
+     * Plays a random game to the end and starts an estimator with a thread per core.
+     */
+    @Setup
+    public void setup() {
+        position = new PlayoutBoard(size);
+        SplittableRandom random = new SplittableRandom(42);
+        byte color = Board.BLACK;
+        for (int passes = 0, moves = 0; passes < 2 && moves < 3 * size * size; moves++) {
+            passes = position.playRandom(color, random) == PlayoutBoard.PASS ? passes + 1 : 0;
+            color = Board.opponent(color);
+        }
+        estimator = new OwnershipEstimator(Runtime.getRuntime().availableProcessors(), OwnershipEstimator.DEFAULT_PLAYOUTS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        estimator.shutdown();
+    }
+
+    @Benchmark
+    public OwnershipEstimator.Estimate estimate() {
+        return estimator.estimate(position);
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.PlayoutBoard;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures random playouts on a {@link PlayoutBoard} the way {@link MonteCarloSearch} runs them: the board is
+ * reset to the starting position with {@code copyFrom}, then both players play random moves until they pass.
+ * The score is playouts per second on one core; the {@code moves} counter gives the random moves per second.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayoutBenchmark {
+
+    @Param({"9", "19"})
+    public int size;
+
+    private PlayoutBoard start;
+    private PlayoutBoard board;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    /**
+     * Counts the moves played, reported per second next to the playouts.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Moves {
+        public long moves;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            moves = 0;
+        }
+    }
+
+    /**
+     * Starts from the empty board.
+     */
+    @Setup
+    public void setup() {
+        start = new PlayoutBoard(size);
+        board = new PlayoutBoard(size);
+    }
+
+    @Benchmark
+    public double playout(Moves counter) {
+        board.copyFrom(start);
+        byte color = Board.BLACK;
+        int passes = 0;
+        for (int moves = 3 * size * size; passes < 2 && moves > 0; moves--) {
+            if (board.playRandom(color, random) == PlayoutBoard.PASS) {
+                passes++;
+            } else {
+                passes = 0;
+                counter.moves++;
+            }
+            color = Board.opponent(color);
+        }
+        return board.score(0);
+    }
+}
@@ -0,0 +1,226 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.StoneColor;
+
+import java.util.Random;
+
+/**
+ * Deterministic board positions for the benchmarks. Public only because JMH generated code names {@link Kind}.
+ * Every position comes with a move to test captures and suicide on, and a stone of the largest chain.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class PositionCorpus {
+
+    /**
+     * Kinds of positions in the corpus.
+     */
+    public enum Kind {
+        /** A random game played until about half of the board is covered, without filling own eyes. */
+        MIDGAME,
+        /** One black chain snaking over a quarter of the board in atari inside white stones; the move captures it. */
+        LARGE_CHAIN,
+        /** Two walls splitting the board into big empty regions, with a few stones inside. */
+        SPARSE,
+    }
+
+    final Board board;
+    final int moveX;
+    final int moveY;
+    final StoneColor moveColor;
+    final int chainX;
+    final int chainY;
+
+    private PositionCorpus(Board board, int moveX, int moveY, StoneColor moveColor, int chainX, int chainY) {
+        this.board = board;
+        this.moveX = moveX;
+        this.moveY = moveY;
+        this.moveColor = moveColor;
+        this.chainX = chainX;
+        this.chainY = chainY;
+    }
+
+    /**
+     * Builds a position.
+     *
+     * @param kind The kind of position.
+     * @param size The board size.
+     * @return The position, always the same for the same arguments.
+     */
+    static PositionCorpus create(Kind kind, int size) {
+        switch (kind) {
+            case LARGE_CHAIN: return largeChain(size);
+            case SPARSE: return sparse(size);
+            default: return midgame(size);
+        }
+    }
+
+    /**
+     * Plays random moves until half of the board is covered.
+     *
+     * @param size The board size.
+     * @return The position.
+     */
+    private static PositionCorpus midgame(int size) {
+        Board board = new Board(size);
+        GameLogic logic = new GameLogic();
+        Random random = new Random(size);
+        int[] captured = new int[board.getCapacity()];
+        byte color = Board.BLACK;
+        int stones = 0;
+        for (int attempt = 0; stones < size * size / 2 && attempt < 100 * size * size; attempt++) {
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            if (play(board, logic, x, y, color, captured)) {
+                color = Board.opponent(color);
+                stones = countStones(board);
+            }
+        }
+
+        //Szukamy ruchu, który coś zbija; w razie braku wystarczy dowolny legalny ruch
+        int move = findMove(board, logic, color, captured, true);
+        if (move < 0) {
+            move = findMove(board, logic, color, captured, false);
+        }
+
+        int chain = largestChain(board);
+        return new PositionCorpus(board, board.getX(move), board.getY(move), Board.color(color), board.getX(chain), board.getY(chain));
+    }
+
+    /**
+     * Builds black rows every fourth line joined at alternating ends, with white filling the bands between
+     * them except for two eyes per band and one last black liberty.
+     *
+     * @param size The board size.
+     * @return The position.
+     */
+    private static PositionCorpus largeChain(int size) {
+        Board board = new Board(size);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                board.setStone(x, y, x % 4 == 0 ? StoneColor.BLACK : StoneColor.WHITE);
+            }
+        }
+        for (int r = 0; r + 4 < size; r += 4) {
+            int column = (r / 4) % 2 == 0 ? size - 1 : 0;
+            for (int x = r + 1; x < r + 4; x++) {
+                board.setStone(x, column, StoneColor.BLACK);
+            }
+        }
+        for (int r = 0; r + 2 < size; r += 4) {
+            board.setStone(r + 2, size / 2 - 2, StoneColor.EMPTY);
+            board.setStone(r + 2, size / 2 + 2, StoneColor.EMPTY);
+        }
+        int libertyX = 1;
+        int libertyY = size / 2;
+        board.setStone(libertyX, libertyY, StoneColor.EMPTY);
+        return new PositionCorpus(board, libertyX, libertyY, StoneColor.WHITE, 0, 0);
+    }
+
+    /**
+     * Builds a black wall at one third and a white wall at two thirds of the board with a few stones in between.
+     *
+     * @param size The board size.
+     * @return The position.
+     */
+    private static PositionCorpus sparse(int size) {
+        Board board = new Board(size);
+        int blackWall = size / 3;
+        int whiteWall = 2 * size / 3;
+        for (int y = 0; y < size; y++) {
+            board.setStone(blackWall, y, StoneColor.BLACK);
+            board.setStone(whiteWall, y, StoneColor.WHITE);
+        }
+        board.setStone(1, 1, StoneColor.WHITE);
+        board.setStone(size - 2, size - 2, StoneColor.BLACK);
+        board.setStone((blackWall + whiteWall) / 2, size / 2, StoneColor.BLACK);
+        return new PositionCorpus(board, size / 2, size / 2 - 1, StoneColor.WHITE, blackWall, 0);
+    }
+
+    /**
+     * Plays a stone following the rules, except that a player never fills its own single-point eye.
+     *
+     * @return true if the stone was played.
+     */
+    private static boolean play(Board board, GameLogic logic, int x, int y, byte color, int[] captured) {
+        if (!logic.validateMove(board, x, y) || isEye(board, board.point(x, y), color)) {
+            return false;
+        }
+        int point = board.point(x, y);
+        board.set(point, color);
+        int count = logic.collectCaptures(board, point, color, captured);
+        for (int i = 0; i < count; i++) {
+            if (board.get(captured[i]) != Board.EMPTY) {
+                board.removeChain(captured[i]);
+            }
+        }
+        if (!board.hasLiberties(point)) {
+            board.set(point, Board.EMPTY);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first legal move, or the first capturing one, for a color.
+     *
+     * @return The point index, or -1 if there is none.
+     */
+    private static int findMove(Board board, GameLogic logic, byte color, int[] captured, boolean capturing) {
+        for (int p = 0; p < board.getCapacity(); p++) {
+            if (board.get(p) != Board.EMPTY) continue;
+            board.set(p, color);
+            int count = logic.collectCaptures(board, p, color, captured);
+            boolean legal = count > 0 || board.hasLiberties(p);
+            board.set(p, Board.EMPTY);
+            if (capturing ? count > 0 : legal) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether all neighbours of a point are stones of one color or the border.
+     */
+    private static boolean isEye(Board board, int point, byte color) {
+        int stride = board.getStride();
+        int[] neighbours = {point + 1, point - 1, point + stride, point - stride};
+        for (int n : neighbours) {
+            byte code = board.get(n);
+            if (code != color && code != Board.OFF_BOARD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts the stones on the board.
+     */
+    private static int countStones(Board board) {
+        int count = 0;
+        for (int p = 0; p < board.getCapacity(); p++) {
+            byte code = board.get(p);
+            if (code == Board.BLACK || code == Board.WHITE) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Finds a stone of the largest chain on the board.
+     */
+    private static int largestChain(Board board) {
+        int best = -1;
+        int bestSize = 0;
+        for (int p = 0; p < board.getCapacity(); p++) {
+            byte code = board.get(p);
+            if ((code == Board.BLACK || code == Board.WHITE) && board.getChainSize(p) > bestSize) {
+                best = p;
+                bestSize = board.getChainSize(p);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.StoneColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the whole {@link Game#processMove} path, from the turn check to the encoded broadcasts,
+ * by replaying a recorded game of {@link #MOVES} accepted moves, captures included, on a fresh game.
+ * Scores are per move. With {@code -prof gc} the allocation figure also counts the fresh game built
+ * before every replay (its board, chain tracker, scorer and position history, spread over the moves);
+ * {@code GameTest} checks that the move path itself allocates nothing.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessMoveBenchmark {
+    /** Number of moves of every recorded game. */
+    static final int MOVES = 60;
+
+    @Param({"9", "13", "19"})
+    public int size;
+
+    private int[] moves;
+    private Game game;
+    private SilentPlayer black;
+    private SilentPlayer white;
+
+    /**
+     * Player that drops all messages but counts the accepted moves.
+     */
+    static final class SilentPlayer extends PlayerHandler {
+        int turns = 0;
+
+        SilentPlayer(StoneColor color) {
+            super((Socket) null, color);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+        }
+
+        @Override
+        public void sendMove(int x, int y, StoneColor color, int version) {
+        }
+
+        @Override
+        public void sendCaptures(Board board, int[] points, int count) {
+        }
+
+        @Override
+        public void sendTurn(StoneColor color) {
+            turns++;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
+    /**
+     * Records a random game in which both players avoid filling their own eyes.
+     */
+    @Setup(Level.Trial)
+    public void record() {
+        Random random = new Random(size);
+        moves = new int[MOVES];
+        newGame();
+        int played = 0;
+        for (int attempt = 0; played < MOVES; attempt++) {
+            if (attempt > 1000 * MOVES) {
+                throw new IllegalStateException("No legal moves left on " + size + "x" + size);
+            }
+            SilentPlayer player = played % 2 == 0 ? black : white;
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            if (isOwnEye(x, y, player.getColor())) {
+                continue;
+            }
+            int before = player.turns;
+            game.processMove(x, y, player);
+            if (player.turns != before) {
+                moves[played++] = x << 8 | y;
+            }
+        }
+    }
+
+    /**
+     * Starts a new game for the next replay.
+     */
+    @Setup(Level.Invocation)
+    public void newGame() {
+        black = new SilentPlayer(StoneColor.BLACK);
+        white = new SilentPlayer(StoneColor.WHITE);
+        game = new Game(black, white, size);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOVES)
+    public void processMove() {
+        for (int i = 0; i < MOVES; i++) {
+            game.processMove(moves[i] >>> 8, moves[i] & 0xFF, i % 2 == 0 ? black : white);
+        }
+    }
+
+    /**
+     * Checks whether a point is surrounded only by stones of the given color and the border.
+     */
+    private boolean isOwnEye(int x, int y, StoneColor color) {
+        int[][] neighbours = {{x + 1, y}, {x - 1, y}, {x, y + 1}, {x, y - 1}};
+        for (int[] n : neighbours) {
+            if (n[0] >= 0 && n[0] < size && n[1] >= 0 && n[1] < size && game.getBoard().getStone(n[0], n[1]) != color) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
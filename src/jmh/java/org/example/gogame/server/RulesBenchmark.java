@@ -0,0 +1,84 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.StoneColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rule checks of {@link GameLogic} on every position of the {@link PositionCorpus}.
+ * The tested move is already on the board, as it is when {@link Game#processMove} runs the checks.
+ * Run with {@code -prof gc} to see the allocation per call.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RulesBenchmark {
+
+    @Param({"9", "13", "19"})
+    public int size;
+
+    @Param({"MIDGAME", "LARGE_CHAIN", "SPARSE"})
+    public PositionCorpus.Kind kind;
+
+    private final GameLogic logic = new GameLogic();
+    private PositionCorpus position;
+    private Board board;
+    private Board played;
+    private int[] captured;
+
+    /**
+     * Builds the position and a copy with the tested move played.
+     */
+    @Setup
+    public void setup() {
+        position = PositionCorpus.create(kind, size);
+        board = position.board;
+        played = PositionCorpus.create(kind, size).board;
+        played.setStone(position.moveX, position.moveY, position.moveColor);
+        captured = new int[played.getCapacity()];
+    }
+
+    @Benchmark
+    public ArrayList<int[]> checkCaptures() {
+        return logic.checkCaptures(played, position.moveX, position.moveY, position.moveColor);
+    }
+
+    @Benchmark
+    public int collectCaptures() {
+        return logic.collectCaptures(played, played.point(position.moveX, position.moveY),
+                Board.code(position.moveColor), captured);
+    }
+
+    @Benchmark
+    public int countChainLiberties() {
+        return logic.countChainLiberties(board, position.chainX, position.chainY, board.getStone(position.chainX, position.chainY));
+    }
+
+    @Benchmark
+    public StoneColor finalCheck() {
+        return logic.finalCheck(played, position.moveX, position.moveY, position.moveColor);
+    }
+
+    @Benchmark
+    public int[] countTerritory() {
+        return logic.countTerritory(board);
+    }
+}
@@ -1,14 +1,40 @@
 package org.example.gogame;
 
+import java.util.Arrays;
+
 /**
  * Represents the Go game board.
  * Manages the grid of stones and provides methods to access and modify the board state.
+ * <p>
+ * The grid is stored as a flat {@code byte[]} with a one point wide {@link #OFF_BOARD} border,
+ * so every intersection has four neighbours at {@code point ± 1} and {@code point ± stride}
+ * and neighbour scans never need bounds checks.
+ * <p>
+ * Chains of connected stones and their liberties are tracked incrementally by a {@link ChainTracker}
+ * which is created on the first chain query, so boards that are only read and written stay compact.
+ * <p>
+ * A 64-bit Zobrist hash of the position is updated on every write and can be used to detect
+ * repeated positions or as a key for position caches. The empty board hashes to 0.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
 public class Board {
-    private int size;
-    private StoneColor[][] grid;
+    /** Cell code of an empty intersection. */
+    public static final byte EMPTY = 0;
+    /** Cell code of a black stone. */
+    public static final byte BLACK = 1;
+    /** Cell code of a white stone. */
+    public static final byte WHITE = 2;
+    /** Cell code of the sentinel border around the playable area. */
+    public static final byte OFF_BOARD = 3;
+
+    private static final StoneColor[] COLORS = {StoneColor.EMPTY, StoneColor.BLACK, StoneColor.WHITE};
+
+    private final int size;
+    private final int stride;
+    private final byte[] grid;
+    private ChainTracker chains;
+    private long hash = 0;
 
     /**
      * Constructs a new Board with the specified size.
@@ -18,12 +44,10 @@ public class Board {
      */
     public Board(int size){
         this.size = size;
-        this.grid = new StoneColor[size][size];
-        for (int i = 0; i<size; i +=1){
-            for (int j = 0; j<size; j+=1){
-                grid[i][j] = StoneColor.EMPTY;
-            }
-        }
+        this.stride = size + 2;
+        this.grid = new byte[stride * stride];
+        Arrays.fill(grid, OFF_BOARD);
+        clear();
     }
 
     /**
@@ -32,10 +56,11 @@ public class Board {
      * @param x The x-coordinate (row).
      * @param y The y-coordinate (column).
      * @return The {@link StoneColor} at the specified position.
+     * @throws ArrayIndexOutOfBoundsException If the coordinates are outside the board.
      */
     public StoneColor getStone(int x, int y){
-        StoneColor color = grid[x][y];
-        return color;
+        checkBounds(x, y);
+        return COLORS[grid[point(x, y)]];
     }
 
     /**
@@ -44,9 +69,11 @@ public class Board {
      * @param x The x-coordinate.
      * @param y The y-coordinate.
      * @param color The color of the stone to place.
+     * @throws ArrayIndexOutOfBoundsException If the coordinates are outside the board.
      */
     public void setStone(int x, int y, StoneColor color){
-        grid[x][y] = color;
+        checkBounds(x, y);
+        put(point(x, y), code(color));
     }
 
     /**
@@ -54,9 +81,11 @@ public class Board {
      *
      * @param x The x-coordinate.
      * @param y The y-coordinate.
+     * @throws ArrayIndexOutOfBoundsException If the coordinates are outside the board.
      */
     public void removeStone(int x, int y){
-        grid[x][y] = StoneColor.EMPTY;
+        checkBounds(x, y);
+        put(point(x, y), EMPTY);
     }
 
     /**
@@ -70,12 +99,328 @@ public class Board {
 
     /**
      * Clears the board by setting all intersections to EMPTY.
+     * The sentinel border is left untouched.
      */
     public void clear(){
-        for (int i = 0; i<size; i +=1){
-            for (int j = 0; j<size; j+=1){
-                grid[i][j] = StoneColor.EMPTY;
+        for (int x = 0; x < size; x++) {
+            int row = point(x, 0);
+            Arrays.fill(grid, row, row + size, EMPTY);
+        }
+        hash = 0;
+        chains = null; //Łańcuchy zostaną odbudowane przy następnym zapytaniu
+    }
+
+    /**
+     * Replaces the whole position at once, e.g. with a received snapshot.
+     * Cheaper than setting every point, as chains are rebuilt only when next queried.
+     *
+     * @param cells Cell codes at index {@code x * size + y}.
+     */
+    public void load(byte[] cells){
+        chains = null;
+        hash = 0;
+        for (int x = 0; x < size; x++) {
+            int row = point(x, 0);
+            for (int y = 0; y < size; y++) {
+                byte code = cells[x * size + y];
+                grid[row + y] = code;
+                if (code != EMPTY) {
+                    hash ^= zobrist(row + y, code);
+                }
             }
         }
     }
+
+    /**
+     * Makes this board a copy of another board of the same size, chains included.
+     * Allocates nothing once this board has built its own chain structure, so a search can reset
+     * a scratch board to the position it starts from before every simulation.
+     *
+     * @param other The board to copy.
+     * @throws IllegalArgumentException If the boards differ in size.
+     */
+    public void copyFrom(Board other){
+        if (other.size != size) {
+            throw new IllegalArgumentException("Cannot copy a " + other.size + "x" + other.size + " board");
+        }
+        System.arraycopy(other.grid, 0, grid, 0, grid.length);
+        hash = other.hash;
+        if (chains == null) {
+            chains = other.chains == null ? null : new ChainTracker(grid, stride);
+        } else if (other.chains != null) {
+            chains.copyFrom(other.chains);
+        } else {
+            chains.reset();
+        }
+    }
+
+    /**
+     * Returns the Zobrist hash of the current position.
+     * Equal positions on boards of the same size always have equal hashes.
+     *
+     * @return The 64-bit position hash.
+     */
+    public long getHash(){
+        return hash;
+    }
+
+    /**
+     * Converts board coordinates to an index into the padded grid.
+     * No bounds checking is performed.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return The point index.
+     */
+    public int point(int x, int y){
+        return (x + 1) * stride + y + 1;
+    }
+
+    /**
+     * Returns the x-coordinate of a point index.
+     *
+     * @param point The point index.
+     * @return The x-coordinate.
+     */
+    public int getX(int point){
+        return point / stride - 1;
+    }
+
+    /**
+     * Returns the y-coordinate of a point index.
+     *
+     * @param point The point index.
+     * @return The y-coordinate.
+     */
+    public int getY(int point){
+        return point % stride - 1;
+    }
+
+    /**
+     * Returns the distance between vertically adjacent points.
+     * The four neighbours of a point are {@code point ± 1} and {@code point ± stride}.
+     *
+     * @return The row stride of the padded grid.
+     */
+    public int getStride(){
+        return stride;
+    }
+
+    /**
+     * Returns the number of cells in the padded grid, border included.
+     * Every point index is smaller than this value, so it can be used to size scratch arrays.
+     *
+     * @return The length of the padded grid.
+     */
+    public int getCapacity(){
+        return grid.length;
+    }
+
+    /**
+     * Returns the cell code at a point index.
+     *
+     * @param point The point index.
+     * @return One of {@link #EMPTY}, {@link #BLACK}, {@link #WHITE} or {@link #OFF_BOARD}.
+     */
+    public byte get(int point){
+        return grid[point];
+    }
+
+    /**
+     * Sets the cell code at a point index.
+     *
+     * @param point The point index; must lie inside the playable area.
+     * @param code One of {@link #EMPTY}, {@link #BLACK} or {@link #WHITE}.
+     */
+    public void set(int point, byte code){
+        put(point, code);
+    }
+
+    /**
+     * Returns the head of the chain containing a stone.
+     * Two stones belong to the same chain exactly when their heads are equal.
+     *
+     * @param point The point index of a stone.
+     * @return The point index identifying the chain.
+     */
+    public int getChainHead(int point){
+        return chains().head(point);
+    }
+
+    /**
+     * Returns the next stone of the chain containing a stone.
+     * Following this link from any stone visits every stone of the chain once and returns to the start.
+     *
+     * @param point The point index of a stone.
+     * @return The point index of the next stone of the chain.
+     */
+    public int getNextInChain(int point){
+        return chains().next(point);
+    }
+
+    /**
+     * Returns the number of stones in the chain containing a stone.
+     *
+     * @param point The point index of a stone.
+     * @return The chain size.
+     */
+    public int getChainSize(int point){
+        return chains().size(point);
+    }
+
+    /**
+     * Checks in constant time whether the chain containing a stone has at least one liberty.
+     *
+     * @param point The point index of a stone.
+     * @return true if the chain has a liberty, false if it is captured.
+     */
+    public boolean hasLiberties(int point){
+        return chains().hasLiberties(point);
+    }
+
+    /**
+     * Counts the distinct liberties of the chain containing a stone.
+     *
+     * @param point The point index of a stone.
+     * @return The number of empty points adjacent to the chain.
+     */
+    public int countLiberties(int point){
+        return chains().countLiberties(point);
+    }
+
+    /**
+     * Removes every stone of the chain containing a stone.
+     *
+     * @param point The point index of a stone.
+     * @return The number of stones removed.
+     */
+    public int removeChain(int point){
+        ChainTracker tracker = chains();
+        int p = point;
+        do {
+            hash ^= zobrist(p, grid[p]);
+            p = tracker.next(p);
+        } while (p != point);
+        return tracker.removeChain(point);
+    }
+
+    /**
+     * Converts a stone color to its cell code.
+     *
+     * @param color The stone color.
+     * @return The matching cell code.
+     */
+    public static byte code(StoneColor color){
+        switch (color) {
+            case BLACK: return BLACK;
+            case WHITE: return WHITE;
+            default: return EMPTY;
+        }
+    }
+
+    /**
+     * Converts a cell code back to a stone color.
+     *
+     * @param code One of {@link #EMPTY}, {@link #BLACK} or {@link #WHITE}.
+     * @return The matching stone color.
+     */
+    public static StoneColor color(byte code){
+        return COLORS[code];
+    }
+
+    /**
+     * Returns the cell code of the opposing color.
+     *
+     * @param code {@link #BLACK} or {@link #WHITE}.
+     * @return The other color's code.
+     */
+    public static byte opponent(byte code){
+        return (byte) (BLACK + WHITE - code);
+    }
+
+    /**
+     * Writes a cell code and keeps the chain structure, if present, up to date.
+     *
+     * @param point The point index.
+     * @param code The new cell code.
+     */
+    private void put(int point, byte code){
+        byte old = grid[point];
+        if (old == code) {
+            return;
+        }
+        if (old != EMPTY) {
+            hash ^= zobrist(point, old);
+            grid[point] = EMPTY;
+            if (chains != null) {
+                chains.stoneRemoved(point);
+            }
+        }
+        if (code != EMPTY) {
+            hash ^= zobrist(point, code);
+            grid[point] = code;
+            if (chains != null) {
+                chains.stoneAdded(point);
+            }
+        }
+    }
+
+    /**
+     * Returns the chain structure, building it from the current grid on first use.
+     *
+     * @return The chain tracker of this board.
+     */
+    private ChainTracker chains(){
+        if (chains == null) {
+            chains = new ChainTracker(grid, stride);
+        }
+        return chains;
+    }
+
+    /**
+     * Returns the Zobrist key of a stone.
+     * Keys are derived with the SplitMix64 finalizer instead of a random table, so they are the same
+     * in every JVM (hashes may be persisted) and there is no limit on the board size.
+     *
+     * @param point The point index.
+     * @param code {@link #BLACK} or {@link #WHITE}.
+     * @return The 64-bit key.
+     */
+    public static long zobrist(int point, byte code){
+        return mix(0x9E3779B97F4A7C15L * (2L * point + code));
+    }
+
+    /**
+     * Returns the key that marks which color is to move, for situational position hashes.
+     *
+     * @param code {@link #BLACK} or {@link #WHITE}.
+     * @return The 64-bit key.
+     */
+    public static long sideKey(byte code){
+        return mix(0xD1B54A32D192ED03L * code);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     *
+     * @param z The value to scramble.
+     * @return The scrambled value.
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Throws if the coordinates lie outside the playable area.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     */
+    private void checkBounds(int x, int y){
+        if (x < 0 || x >= size || y < 0 || y >= size) {
+            throw new ArrayIndexOutOfBoundsException("Point (" + x + ", " + y + ") is outside the board");
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package org.example.gogame;
+
+/**
+ * Run-length encoding of a whole board, used by the {@code BOARD} message shared by the server and the client.
+ * <p>
+ * The message is {@code BOARD <version> <size> <runs>}. The points are listed column by column, in the order
+ * {@code x * size + y}, as runs of {@code .} (empty), {@code B} (black) or {@code W} (white), each preceded
+ * by its length unless the length is 1. The empty 19x19 board is {@code 361.}, and a typical game in
+ * progress takes a few hundred characters instead of one {@code MOVE} line per stone.
+ * The version is the number of board changes so far; the same number ends every {@code MOVE} line
+ * and {@link WireProtocol#MOVE} frame, so a client can notice a missed change and ask for a new snapshot.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class BoardSnapshot {
+    private static final char[] SYMBOLS = {'.', 'B', 'W'};
+
+    private BoardSnapshot() {
+    }
+
+    /**
+     * Appends the {@code BOARD} message of a board.
+     *
+     * @param out The destination.
+     * @param version The board version.
+     * @param board The board.
+     */
+    public static void encode(StringBuilder out, int version, Board board) {
+        int size = board.getSize();
+        out.append("BOARD ").append(version).append(' ').append(size).append(' ');
+        byte run = -1;
+        int length = 0;
+        for (int x = 0; x < size; x++) {
+            int row = board.point(x, 0);
+            for (int y = 0; y < size; y++) {
+                byte code = board.get(row + y);
+                if (code != run && length > 0) {
+                    appendRun(out, run, length);
+                    length = 0;
+                }
+                run = code;
+                length++;
+            }
+        }
+        appendRun(out, run, length);
+    }
+
+    /**
+     * Decodes the runs of a {@code BOARD} message.
+     *
+     * @param runs The runs.
+     * @param size The board size.
+     * @return The cell codes of {@link Board}, at index {@code x * size + y}.
+     * @throws IllegalArgumentException If the runs are malformed or do not cover the board exactly.
+     */
+    public static byte[] decode(String runs, int size) {
+        byte[] cells = new byte[size * size];
+        int at = 0;
+        int length = 0;
+        for (int i = 0; i < runs.length(); i++) {
+            char c = runs.charAt(i);
+            if (c >= '0' && c <= '9') {
+                length = 10 * length + (c - '0');
+                if (length > cells.length) {
+                    throw new IllegalArgumentException("Run too long");
+                }
+                continue;
+            }
+            byte code = c == '.' ? Board.EMPTY : c == 'B' ? Board.BLACK : c == 'W' ? Board.WHITE : -1;
+            if (code < 0) {
+                throw new IllegalArgumentException("Unknown point " + c);
+            }
+            int count = length == 0 ? 1 : length;
+            if (at + count > cells.length) {
+                throw new IllegalArgumentException("Too many points");
+            }
+            for (int end = at + count; at < end; at++) {
+                cells[at] = code;
+            }
+            length = 0;
+        }
+        if (at != cells.length || length != 0) {
+            throw new IllegalArgumentException("Too few points");
+        }
+        return cells;
+    }
+
+    /**
+     * Appends one run.
+     */
+    private static void appendRun(StringBuilder out, byte code, int length) {
+        if (length > 1) {
+            out.append(length);
+        }
+        out.append(SYMBOLS[code]);
+    }
+}
@@ -0,0 +1,324 @@
+package org.example.gogame;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally maintained chain (group) structure for a {@link Board}.
+ * Every stone belongs to a circular linked list of the stones of its chain,
+ * and each chain head keeps the chain size and its pseudo-liberty count
+ * (the number of stone/empty adjacencies, which is zero exactly when the chain has no liberties).
+ * <p>
+ * Placing a stone and capturing a chain cost time proportional to the chains touched;
+ * removing a single stone from the middle of a chain rebuilds only that chain.
+ * Nothing is allocated after construction.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+final class ChainTracker {
+    private final byte[] grid;
+    private final int stride;
+    private final int[] head;
+    private final int[] next;
+    private final int[] size;
+    private final int[] libs;
+    private final int[] mark;
+    private final int[] scratch;
+    private int stamp = 0;
+
+    /**
+     * Builds the chain structure for the current contents of a grid.
+     *
+     * @param grid The padded grid of the board, shared with the board.
+     * @param stride The row stride of the grid.
+     */
+    ChainTracker(byte[] grid, int stride) {
+        this.grid = grid;
+        this.stride = stride;
+        this.head = new int[grid.length];
+        this.next = new int[grid.length];
+        this.size = new int[grid.length];
+        this.libs = new int[grid.length];
+        this.mark = new int[grid.length];
+        this.scratch = new int[grid.length];
+
+        int count = 0;
+        for (int p = 0; p < grid.length; p++) {
+            if (isStone(grid[p])) {
+                scratch[count++] = p;
+            }
+        }
+        rebuild(count);
+    }
+
+    /**
+     * Registers a stone that has just been written to an empty point of the grid.
+     *
+     * @param p The point index of the new stone.
+     */
+    void stoneAdded(int p) {
+        byte color = grid[p];
+        head[p] = p;
+        next[p] = p;
+        size[p] = 1;
+        libs[p] = 0;
+
+        for (int i = 0; i < 4; i++) {
+            int n = neighbour(p, i);
+            byte c = grid[n];
+            if (c == Board.EMPTY) {
+                libs[p]++;
+            } else if (isStone(c)) {
+                libs[head[n]]--;
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            int n = neighbour(p, i);
+            if (grid[n] == color && head[n] != head[p]) {
+                merge(head[p], head[n]);
+            }
+        }
+    }
+
+    /**
+     * Unregisters a single stone that has just been cleared from the grid.
+     * If the stone was part of a larger chain, the rest of that chain is rebuilt
+     * since it may have been split in two or more pieces.
+     *
+     * @param p The point index of the removed stone.
+     */
+    void stoneRemoved(int p) {
+        int h = head[p];
+        for (int i = 0; i < 4; i++) {
+            int n = neighbour(p, i);
+            if (isStone(grid[n]) && head[n] != h) {
+                libs[head[n]]++;
+            }
+        }
+        if (size[h] == 1) {
+            return;
+        }
+
+        int count = 0;
+        int q = next[p];
+        while (q != p) {
+            scratch[count++] = q;
+            q = next[q];
+        }
+        rebuild(count);
+    }
+
+    /**
+     * Clears every stone of the chain containing {@code p} from the grid
+     * and gives the freed liberties back to the neighbouring chains.
+     *
+     * @param p The point index of any stone of the chain.
+     * @return The number of stones removed.
+     */
+    int removeChain(int p) {
+        int removed = 0;
+        int q = p;
+        do {
+            grid[q] = Board.EMPTY;
+            removed++;
+            q = next[q];
+        } while (q != p);
+
+        q = p;
+        do {
+            for (int i = 0; i < 4; i++) {
+                int n = neighbour(q, i);
+                if (isStone(grid[n])) {
+                    libs[head[n]]++;
+                }
+            }
+            q = next[q];
+        } while (q != p);
+        return removed;
+    }
+
+    /**
+     * Takes over the chains of another tracker, whose grid must hold the same stones as this one's.
+     *
+     * @param other The tracker to copy, of a grid of the same size.
+     */
+    void copyFrom(ChainTracker other) {
+        System.arraycopy(other.head, 0, head, 0, head.length);
+        System.arraycopy(other.next, 0, next, 0, next.length);
+        System.arraycopy(other.size, 0, size, 0, size.length);
+        System.arraycopy(other.libs, 0, libs, 0, libs.length);
+    }
+
+    /**
+     * Rebuilds every chain from the current contents of the grid, e.g. after the whole grid was replaced.
+     */
+    void reset() {
+        int count = 0;
+        for (int p = 0; p < grid.length; p++) {
+            if (isStone(grid[p])) {
+                scratch[count++] = p;
+            }
+        }
+        rebuild(count);
+    }
+
+    /**
+     * Returns the head (representative point) of the chain containing a stone.
+     *
+     * @param p The point index of a stone.
+     * @return The chain head.
+     */
+    int head(int p) {
+        return head[p];
+    }
+
+    /**
+     * Returns the next stone of the chain; following it from any stone visits the whole chain once.
+     *
+     * @param p The point index of a stone.
+     * @return The point index of the next stone in the same chain.
+     */
+    int next(int p) {
+        return next[p];
+    }
+
+    /**
+     * Returns the number of stones in the chain containing a stone.
+     *
+     * @param p The point index of a stone.
+     * @return The chain size.
+     */
+    int size(int p) {
+        return size[head[p]];
+    }
+
+    /**
+     * Checks in constant time whether the chain containing a stone has any liberty.
+     *
+     * @param p The point index of a stone.
+     * @return true if the chain has at least one liberty.
+     */
+    boolean hasLiberties(int p) {
+        return libs[head[p]] > 0;
+    }
+
+    /**
+     * Counts the distinct liberties of the chain containing a stone.
+     * Runs in time proportional to the chain size.
+     *
+     * @param p The point index of a stone.
+     * @return The number of distinct empty points adjacent to the chain.
+     */
+    int countLiberties(int p) {
+        int s = nextStamp();
+        int count = 0;
+        int q = p;
+        do {
+            for (int i = 0; i < 4; i++) {
+                int n = neighbour(q, i);
+                if (grid[n] == Board.EMPTY && mark[n] != s) {
+                    mark[n] = s;
+                    count++;
+                }
+            }
+            q = next[q];
+        } while (q != p);
+        return count;
+    }
+
+    /**
+     * Returns a fresh marker value for the {@code mark} array, resetting the array on overflow.
+     *
+     * @return A value that no entry of {@code mark} currently holds.
+     */
+    private int nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Rebuilds chains from scratch for the stones listed in {@code scratch[0..count)}.
+     * Stones outside the list are untouched; the listed stones must not be adjacent to
+     * stones of the same color outside the list.
+     *
+     * @param count Number of stones in the scratch buffer.
+     */
+    private void rebuild(int count) {
+        for (int i = 0; i < count; i++) {
+            int p = scratch[i];
+            head[p] = p;
+            next[p] = p;
+            size[p] = 1;
+            int free = 0;
+            for (int d = 0; d < 4; d++) {
+                if (grid[neighbour(p, d)] == Board.EMPTY) {
+                    free++;
+                }
+            }
+            libs[p] = free;
+        }
+        for (int i = 0; i < count; i++) {
+            int p = scratch[i];
+            byte color = grid[p];
+            for (int d = 0; d < 4; d++) {
+                int n = neighbour(p, d);
+                if (grid[n] == color && head[n] != head[p]) {
+                    merge(head[p], head[n]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins two chains, relabelling the smaller one.
+     *
+     * @param a Head of the first chain.
+     * @param b Head of the second chain.
+     */
+    private void merge(int a, int b) {
+        if (size[a] < size[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int q = b;
+        do {
+            head[q] = a;
+            q = next[q];
+        } while (q != b);
+
+        int t = next[a];
+        next[a] = next[b];
+        next[b] = t;
+        size[a] += size[b];
+        libs[a] += libs[b];
+    }
+
+    /**
+     * Returns one of the four neighbours of a point.
+     *
+     * @param p The point index.
+     * @param direction 0 to 3.
+     * @return The neighbouring point index.
+     */
+    private int neighbour(int p, int direction) {
+        switch (direction) {
+            case 0: return p + 1;
+            case 1: return p - 1;
+            case 2: return p + stride;
+            default: return p - stride;
+        }
+    }
+
+    /**
+     * Checks whether a cell code is a stone.
+     *
+     * @param c The cell code.
+     * @return true for black or white stones.
+     */
+    private static boolean isStone(byte c) {
+        return c == Board.BLACK || c == Board.WHITE;
+    }
+}
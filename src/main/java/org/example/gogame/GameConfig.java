@@ -0,0 +1,197 @@
+package org.example.gogame;
+
+import java.util.Locale;
+
+/**
+ * Settings of one game, agreed on at matchmaking: board size, komi, ruleset and time control.
+ * <p>
+ * Players ask for a configuration with {@code JOIN} and the server announces it with {@code GAME_START},
+ * both in the text form of {@link #format()}: the board size followed by the settings that differ from
+ * the defaults, e.g. {@code 9 komi=6.5 rules=chinese time=300+5}. A bare size, as older clients send and
+ * expect, means no komi, Japanese rules and no clock.
+ *
+ * @param size The board size.
+ * @param komi The points given to White, a multiple of 0.5 between -{@link #MAX_KOMI} and {@link #MAX_KOMI}.
+ * @param rules How the final position is counted.
+ * @param mainTime The time each player has for the whole game in seconds, 0 for an untimed game.
+ * @param increment The seconds added to a player's time after each of its moves (Fischer increment).
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public record GameConfig(int size, double komi, Rules rules, int mainTime, int increment) {
+    /** Largest komi, in either direction. */
+    public static final double MAX_KOMI = 63.5;
+    /** Longest main time in seconds. */
+    public static final int MAX_MAIN_TIME = 65535;
+    /** Largest increment in seconds. */
+    public static final int MAX_INCREMENT = 255;
+
+    /**
+     * Ways of counting the final position.
+     */
+    public enum Rules {
+        /** Territory and prisoners count. */
+        JAPANESE,
+        /** Territory and the stones on the board count; prisoners do not. */
+        CHINESE;
+
+        /**
+         * Returns the name of the ruleset as written in the {@code RU} property of SGF.
+         *
+         * @return The name, e.g. {@code Japanese}.
+         */
+        public String sgfName() {
+            return this == JAPANESE ? "Japanese" : "Chinese";
+        }
+    }
+
+    /**
+     * Checks the settings.
+     *
+     * @throws IllegalArgumentException If a setting is out of range.
+     */
+    public GameConfig {
+        if (size < 2 || size > 52) {
+            throw new IllegalArgumentException("Wrong board size " + size);
+        }
+        if (Math.abs(komi) > MAX_KOMI || komi * 2 != Math.rint(komi * 2)) {
+            throw new IllegalArgumentException("Wrong komi " + komi);
+        }
+        if (rules == null) {
+            throw new IllegalArgumentException("No rules");
+        }
+        if (mainTime < 0 || mainTime > MAX_MAIN_TIME || increment < 0 || increment > MAX_INCREMENT) {
+            throw new IllegalArgumentException("Wrong time control " + mainTime + "+" + increment);
+        }
+    }
+
+    /**
+     * Returns the default settings for a board size: no komi, Japanese rules and no clock.
+     *
+     * @param size The board size.
+     * @return The settings.
+     */
+    public static GameConfig of(int size) {
+        return new GameConfig(size, 0, Rules.JAPANESE, 0, 0);
+    }
+
+    /**
+     * Parses the text form written by {@link #format()}.
+     *
+     * @param text The board size, optionally followed by {@code komi=K}, {@code rules=japanese|chinese}
+     *             and {@code time=MAIN+INCREMENT} in any order, separated by spaces.
+     * @return The settings.
+     * @throws IllegalArgumentException If the text is malformed or a setting is out of range.
+     */
+    public static GameConfig parse(String text) {
+        String[] parts = text.trim().split("\\s+");
+        int size = parseNumber(parts[0], "board size");
+        double komi = 0;
+        Rules rules = Rules.JAPANESE;
+        int mainTime = 0;
+        int increment = 0;
+        for (int i = 1; i < parts.length; i++) {
+            int equals = parts[i].indexOf('=');
+            String key = equals < 0 ? parts[i] : parts[i].substring(0, equals);
+            String value = parts[i].substring(equals + 1);
+            switch (key.toLowerCase(Locale.ROOT)) {
+                case "komi" -> {
+                    try {
+                        komi = Double.parseDouble(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Wrong komi " + value);
+                    }
+                }
+                case "rules" -> {
+                    try {
+                        rules = Rules.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown rules " + value);
+                    }
+                }
+                case "time" -> {
+                    int plus = value.indexOf('+');
+                    mainTime = parseNumber(plus < 0 ? value : value.substring(0, plus), "time control");
+                    increment = plus < 0 ? 0 : parseNumber(value.substring(plus + 1), "time control");
+                }
+                default -> throw new IllegalArgumentException("Unknown setting " + parts[i]);
+            }
+        }
+        return new GameConfig(size, komi, rules, mainTime, increment);
+    }
+
+    /**
+     * Parses a whole number of a setting.
+     */
+    private static int parseNumber(String value, String setting) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Wrong " + setting + " " + value);
+        }
+    }
+
+    /**
+     * Writes the settings in the form {@link #parse} reads: the size, then only the settings that differ from the defaults.
+     *
+     * @return The text form, e.g. {@code 19} or {@code 9 komi=6.5 rules=chinese time=300+5}.
+     */
+    public String format() {
+        StringBuilder text = new StringBuilder().append(size);
+        if (komi != 0) {
+            text.append(" komi=").append(formatPoints(komi));
+        }
+        if (rules != Rules.JAPANESE) {
+            text.append(" rules=").append(rules.name().toLowerCase(Locale.ROOT));
+        }
+        if (isTimed()) {
+            text.append(" time=").append(mainTime).append('+').append(increment);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Describes the settings for players.
+     *
+     * @return The description, e.g. {@code 9x9, komi 6.5, Chinese rules, 5:00 + 5 s}.
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder().append(size).append('x').append(size);
+        text.append(", komi ").append(formatPoints(komi)).append(", ").append(rules.sgfName()).append(" rules, ");
+        if (isTimed()) {
+            text.append(formatClock(mainTime * 1000L)).append(" + ").append(increment).append(" s");
+        } else {
+            text.append("no time limit");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Checks whether the game is played on a clock.
+     *
+     * @return true if there is a main time.
+     */
+    public boolean isTimed() {
+        return mainTime > 0;
+    }
+
+    /**
+     * Writes a score or komi without a fraction when it is a whole number.
+     *
+     * @param points The points, a multiple of 0.5.
+     * @return The text, e.g. {@code 7} or {@code 6.5}.
+     */
+    public static String formatPoints(double points) {
+        return points == Math.rint(points) ? String.valueOf((long) points) : String.valueOf(points);
+    }
+
+    /**
+     * Writes a time left on a clock.
+     *
+     * @param millis The time in milliseconds, rounded down to seconds.
+     * @return The text, e.g. {@code 4:05}.
+     */
+    public static String formatClock(long millis) {
+        long seconds = Math.max(0, millis / 1000);
+        return seconds / 60 + ":" + (seconds % 60 < 10 ? "0" : "") + seconds % 60;
+    }
+}
@@ -0,0 +1,354 @@
+package org.example.gogame;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger shared by the server and the client.
+ * <p>
+ * The level is checked before anything else, so a disabled call costs one volatile read.
+ * An enabled call claims a slot of a preallocated ring buffer, stores its fields there without formatting
+ * them and returns; a single background thread takes the entries in order, formats them and passes them
+ * to the {@link Sink}. Callers therefore never wait on the console, and a call with the structured fields
+ * of a game command allocates nothing. When the ring is full, new entries are dropped and counted
+ * rather than making the caller wait.
+ * <p>
+ * The initial level is read from the {@code gogame.log.level} system property, {@code INFO} by default.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class Log {
+    /** Severity of an entry, from the most verbose. */
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    /**
+     * One log entry, as handed to the sink.
+     *
+     * @param time The time it was logged, in milliseconds since the epoch.
+     * @param level The severity.
+     * @param game The game ID, 0 if the entry is not about a game.
+     * @param color The player's color, or null.
+     * @param command The command being handled, or null.
+     * @param message The message.
+     * @param detail Additional value, e.g. an address or an exception, or null.
+     */
+    public record Entry(long time, Level level, long game, StoneColor color, String command, String message, Object detail) {
+        /**
+         * Formats the entry as one logfmt line, followed by the stack trace if the detail is an exception.
+         *
+         * @return The formatted entry.
+         */
+        public String format() {
+            StringBuilder out = new StringBuilder(128);
+            out.append(Instant.ofEpochMilli(time)).append(' ').append(level).append(' ').append(message);
+            if (game != 0) {
+                out.append(" game=").append(game);
+            }
+            if (color != null) {
+                out.append(" color=").append(color);
+            }
+            if (command != null) {
+                out.append(" command=\"").append(command).append('"');
+            }
+            if (detail instanceof Throwable error) {
+                StringWriter trace = new StringWriter();
+                error.printStackTrace(new PrintWriter(trace));
+                out.append(" error=\"").append(error).append("\"\n").append(trace.toString().stripTrailing());
+            } else if (detail != null) {
+                out.append(" detail=\"").append(detail).append('"');
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Destination of the log entries. Called on the logging thread only, one entry at a time.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Writes an entry.
+         *
+         * @param entry The entry.
+         */
+        void write(Entry entry);
+    }
+
+    /** Sink writing warnings and errors to standard error and everything else to standard output. */
+    public static final Sink CONSOLE = entry -> {
+        PrintStream out = entry.level().compareTo(Level.WARN) >= 0 ? System.err : System.out;
+        out.println(entry.format());
+    };
+
+    /** Number of entries the ring holds; a power of two. */
+    static final int CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final Slot[] RING = new Slot[CAPACITY];
+    private static final AtomicLong claimed = new AtomicLong();
+    private static final AtomicLong consumed = new AtomicLong();
+    private static final LongAdder dropped = new LongAdder();
+    private static volatile Level level;
+    private static volatile Sink sink = CONSOLE;
+    private static volatile boolean sleeping = false;
+    private static final Thread drainer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            RING[i] = new Slot();
+        }
+        level = parseLevel(System.getProperty("gogame.log.level"), Level.INFO);
+        drainer = Thread.ofPlatform().daemon().name("log-drain").start(Log::drain);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+    }
+
+    /**
+     * A reusable ring entry. Its fields are written by the producer that claimed it and read by the
+     * logging thread once {@link #sequence} says it has been published.
+     */
+    private static final class Slot {
+        volatile long sequence = -1;
+        long time;
+        Level level;
+        long game;
+        StoneColor color;
+        String command;
+        String message;
+        Object detail;
+    }
+
+    private Log() {
+    }
+
+    /**
+     * Sets the lowest level that is logged.
+     *
+     * @param threshold The level, {@link Level#OFF} to log nothing.
+     */
+    public static void setLevel(Level threshold) {
+        level = threshold;
+    }
+
+    /**
+     * Parses a level name, ignoring case.
+     *
+     * @param name The name, e.g. {@code debug}, or null.
+     * @param fallback The level returned if the name is null or unknown.
+     * @return The level.
+     */
+    public static Level parseLevel(String name, Level fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Replaces the destination of the entries.
+     *
+     * @param destination The sink, e.g. {@link #CONSOLE}.
+     */
+    public static void setSink(Sink destination) {
+        sink = destination;
+    }
+
+    /**
+     * Checks whether entries of a level are logged. Callers that would build a message only for logging
+     * should check this first.
+     *
+     * @param severity The level.
+     * @return true if the level is enabled.
+     */
+    public static boolean isEnabled(Level severity) {
+        return severity.compareTo(level) >= 0;
+    }
+
+    /**
+     * Logs a command handled in a game.
+     *
+     * @param game The game ID.
+     * @param color The player's color.
+     * @param command The command.
+     * @param message The message.
+     */
+    public static void debug(long game, StoneColor color, String command, String message) {
+        if (isEnabled(Level.DEBUG)) {
+            publish(Level.DEBUG, game, color, command, message, null);
+        }
+    }
+
+    /**
+     * Logs a verbose message.
+     *
+     * @param message The message.
+     * @param detail Additional value, or null.
+     */
+    public static void debug(String message, Object detail) {
+        if (isEnabled(Level.DEBUG)) {
+            publish(Level.DEBUG, 0, null, null, message, detail);
+        }
+    }
+
+    /**
+     * Logs an informational message.
+     *
+     * @param message The message.
+     * @param detail Additional value, or null.
+     */
+    public static void info(String message, Object detail) {
+        if (isEnabled(Level.INFO)) {
+            publish(Level.INFO, 0, null, null, message, detail);
+        }
+    }
+
+    /**
+     * Logs an event of a game.
+     *
+     * @param game The game ID.
+     * @param message The message.
+     * @param detail Additional value, or null.
+     */
+    public static void info(long game, String message, Object detail) {
+        if (isEnabled(Level.INFO)) {
+            publish(Level.INFO, game, null, null, message, detail);
+        }
+    }
+
+    /**
+     * Logs a problem with one player.
+     *
+     * @param color The player's color.
+     * @param message The message.
+     * @param detail Additional value, or null.
+     */
+    public static void warn(StoneColor color, String message, Object detail) {
+        if (isEnabled(Level.WARN)) {
+            publish(Level.WARN, 0, color, null, message, detail);
+        }
+    }
+
+    /**
+     * Logs a problem.
+     *
+     * @param message The message.
+     * @param detail Additional value, or null.
+     */
+    public static void warn(String message, Object detail) {
+        if (isEnabled(Level.WARN)) {
+            publish(Level.WARN, 0, null, null, message, detail);
+        }
+    }
+
+    /**
+     * Logs a failure.
+     *
+     * @param message The message.
+     * @param error The exception, printed with its stack trace.
+     */
+    public static void error(String message, Throwable error) {
+        if (isEnabled(Level.ERROR)) {
+            publish(Level.ERROR, 0, null, null, message, error);
+        }
+    }
+
+    /**
+     * Waits until the entries logged so far have been written, or the timeout passes.
+     *
+     * @param timeoutMillis The longest time to wait.
+     * @return true if everything was written.
+     */
+    public static boolean flush(long timeoutMillis) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (consumed.get() < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    /**
+     * Claims a slot, fills it and publishes it, or counts the entry as dropped if the ring is full.
+     */
+    private static void publish(Level severity, long game, StoneColor color, String command, String message, Object detail) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = RING[(int) sequence & (CAPACITY - 1)];
+        slot.time = System.currentTimeMillis();
+        slot.level = severity;
+        slot.game = game;
+        slot.color = color;
+        slot.command = command;
+        slot.message = message;
+        slot.detail = detail;
+        slot.sequence = sequence; //Publikacja: pola wyżej są widoczne dla wątku logującego po odczycie sequence
+        if (sleeping) {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    /**
+     * Takes the entries off the ring in order and writes them. Runs on the logging thread.
+     */
+    private static void drain() {
+        long next = 0;
+        long reportedDrops = 0;
+        while (true) {
+            Slot slot = RING[(int) next & (CAPACITY - 1)];
+            if (slot.sequence != next) {
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    write(new Entry(System.currentTimeMillis(), Level.WARN, 0, null, null,
+                            "Log ring full, entries dropped", drops - reportedDrops));
+                    reportedDrops = drops;
+                }
+                //Zasypiamy dopiero po ponownym sprawdzeniu, żeby nie przegapić wpisu opublikowanego w międzyczasie
+                sleeping = true;
+                if (slot.sequence != next) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            Entry entry = new Entry(slot.time, slot.level, slot.game, slot.color, slot.command, slot.message, slot.detail);
+            slot.command = null; //Nie przetrzymujemy obiektów wywołującego do następnego okrążenia
+            slot.message = null;
+            slot.detail = null;
+            write(entry);
+            consumed.set(++next);
+        }
+    }
+
+    /**
+     * Passes an entry to the sink, keeping the logging thread alive if the sink fails.
+     *
+     * @param entry The entry.
+     */
+    private static void write(Entry entry) {
+        try {
+            sink.write(entry);
+        } catch (RuntimeException e) {
+            System.err.println("Log sink failed: " + e);
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package org.example.gogame;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Board for simulations, where millions of random moves are played and thrown away every second.
+ * <p>
+ * It uses the padded grid and the point indices of {@link Board}, so points can be passed between the two,
+ * but unlike {@link Board} it knows the rules: {@link #isLegal} tells in constant time whether a move is
+ * suicide or retakes a ko, without trying it, and {@link #play} captures. Every chain keeps, at its head,
+ * the number, sum and sum of squares of its pseudo-liberties (stone/empty adjacencies, counted once per
+ * adjacent stone); a chain is in atari exactly when all of them are the same point, which is when
+ * {@code count * sumOfSquares == sum * sum}. The empty points are kept in a list, so a random move is drawn
+ * without scanning the board, and {@link #isEye} keeps random players from filling their own eyes.
+ * <p>
+ * There is no hash and no superko check. {@link #copyFrom(PlayoutBoard)} copies a few flat arrays and
+ * allocates nothing, so a search can reset a board to its starting position before every simulation.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class PlayoutBoard {
+    /** Returned by {@link #playRandom} for a pass. */
+    public static final int PASS = -1;
+
+    private final int size;
+    private final int stride;
+    private final byte[] grid;
+    private final int[] head; //Głowa łańcucha każdego kamienia
+    private final int[] next; //Cykliczna lista kamieni łańcucha
+    private final int[] stones; //Poniższe tablice są ważne tylko w głowach łańcuchów
+    private final int[] libs;
+    private final int[] libSum;
+    private final long[] libSumOfSquares;
+    private final int[] empties;
+    private final int[] emptyIndex;
+    private int emptyCount;
+    private int koPoint = -1;
+    private int blackStones;
+    private int whiteStones;
+
+    /**
+     * Creates an empty board.
+     *
+     * @param size The dimension of the board.
+     */
+    public PlayoutBoard(int size) {
+        this.size = size;
+        this.stride = size + 2;
+        int capacity = stride * stride;
+        this.grid = new byte[capacity];
+        this.head = new int[capacity];
+        this.next = new int[capacity];
+        this.stones = new int[capacity];
+        this.libs = new int[capacity];
+        this.libSum = new int[capacity];
+        this.libSumOfSquares = new long[capacity];
+        this.empties = new int[size * size];
+        this.emptyIndex = new int[capacity];
+        clear();
+    }
+
+    /**
+     * Removes all stones and the ko.
+     */
+    public void clear() {
+        Arrays.fill(grid, Board.OFF_BOARD);
+        emptyCount = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int point = point(x, y);
+                grid[point] = Board.EMPTY;
+                emptyIndex[point] = emptyCount;
+                empties[emptyCount++] = point;
+            }
+        }
+        koPoint = -1;
+        blackStones = 0;
+        whiteStones = 0;
+    }
+
+    /**
+     * Sets up the position of a game board.
+     *
+     * @param board The board, of the same size; its chains must all have liberties, as after any legal move.
+     * @param koPoint The point the ko rule forbids to the player to move, or -1.
+     * @throws IllegalArgumentException If the boards differ in size.
+     */
+    public void copyFrom(Board board, int koPoint) {
+        if (board.getSize() != size) {
+            throw new IllegalArgumentException("Cannot copy a " + board.getSize() + "x" + board.getSize() + " board");
+        }
+        clear();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int point = point(x, y);
+                byte code = board.get(point);
+                if (code != Board.EMPTY) {
+                    place(point, code);
+                }
+            }
+        }
+        this.koPoint = koPoint;
+    }
+
+    /**
+     * Makes this board a copy of another one of the same size. Allocates nothing.
+     *
+     * @param other The board to copy.
+     */
+    public void copyFrom(PlayoutBoard other) {
+        System.arraycopy(other.grid, 0, grid, 0, grid.length);
+        System.arraycopy(other.head, 0, head, 0, head.length);
+        System.arraycopy(other.next, 0, next, 0, next.length);
+        System.arraycopy(other.stones, 0, stones, 0, stones.length);
+        System.arraycopy(other.libs, 0, libs, 0, libs.length);
+        System.arraycopy(other.libSum, 0, libSum, 0, libSum.length);
+        System.arraycopy(other.libSumOfSquares, 0, libSumOfSquares, 0, libSumOfSquares.length);
+        System.arraycopy(other.empties, 0, empties, 0, other.emptyCount);
+        System.arraycopy(other.emptyIndex, 0, emptyIndex, 0, emptyIndex.length);
+        emptyCount = other.emptyCount;
+        koPoint = other.koPoint;
+        blackStones = other.blackStones;
+        whiteStones = other.whiteStones;
+    }
+
+    /**
+     * Returns the dimension of the board.
+     *
+     * @return The board size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Converts board coordinates to a point index, the same as {@link Board#point}.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return The point index.
+     */
+    public int point(int x, int y) {
+        return (x + 1) * stride + y + 1;
+    }
+
+    /**
+     * Returns the x-coordinate of a point index.
+     *
+     * @param point The point index.
+     * @return The x-coordinate.
+     */
+    public int getX(int point) {
+        return point / stride - 1;
+    }
+
+    /**
+     * Returns the y-coordinate of a point index.
+     *
+     * @param point The point index.
+     * @return The y-coordinate.
+     */
+    public int getY(int point) {
+        return point % stride - 1;
+    }
+
+    /**
+     * Returns the number of cells in the padded grid, border included.
+     *
+     * @return The length of the padded grid.
+     */
+    public int getCapacity() {
+        return grid.length;
+    }
+
+    /**
+     * Returns the cell code at a point index.
+     *
+     * @param point The point index.
+     * @return One of {@link Board#EMPTY}, {@link Board#BLACK}, {@link Board#WHITE} or {@link Board#OFF_BOARD}.
+     */
+    public byte get(int point) {
+        return grid[point];
+    }
+
+    /**
+     * Returns the number of empty points.
+     *
+     * @return The length of the empty point list.
+     */
+    public int getEmptyCount() {
+        return emptyCount;
+    }
+
+    /**
+     * Returns an empty point. The order of the list changes with every move.
+     *
+     * @param index The index in the list, below {@link #getEmptyCount()}.
+     * @return The point index.
+     */
+    public int getEmpty(int index) {
+        return empties[index];
+    }
+
+    /**
+     * Returns the point the ko rule forbids to the player to move.
+     *
+     * @return The point index, or -1.
+     */
+    public int getKoPoint() {
+        return koPoint;
+    }
+
+    /**
+     * Checks whether a player may play on a point: it is empty, not forbidden by the ko, and the stone
+     * either gets a liberty, joins a chain that keeps one, or captures.
+     *
+     * @param point The point index, inside the board.
+     * @param color The cell code of the player.
+     * @return true if the move is legal, superko aside.
+     */
+    public boolean isLegal(int point, byte color) {
+        if (grid[point] != Board.EMPTY || point == koPoint) {
+            return false;
+        }
+        return freeSide(grid[point + 1], point + 1, color) || freeSide(grid[point - 1], point - 1, color)
+                || freeSide(grid[point + stride], point + stride, color) || freeSide(grid[point - stride], point - stride, color);
+    }
+
+    /**
+     * Checks whether one neighbour makes a move legal: it is empty, a friendly chain with another liberty,
+     * or an enemy chain with no other liberty.
+     */
+    private boolean freeSide(byte code, int neighbour, byte color) {
+        if (code == Board.EMPTY) {
+            return true;
+        }
+        if (code == Board.OFF_BOARD) {
+            return false;
+        }
+        return (code == color) != inAtari(head[neighbour]);
+    }
+
+    /**
+     * Checks whether an empty point is a single-point eye of a color that the color should not fill:
+     * all its neighbours are the color's stones or the edge, and at most one diagonal is an opponent's
+     * stone, none if the point is on the edge.
+     *
+     * @param point The point index of an empty point.
+     * @param color The cell code of the color.
+     * @return true if the point is an eye of the color.
+     */
+    public boolean isEye(int point, byte color) {
+        if (!own(grid[point + 1], color) || !own(grid[point - 1], color)
+                || !own(grid[point + stride], color) || !own(grid[point - stride], color)) {
+            return false;
+        }
+        byte enemy = Board.opponent(color);
+        byte a = grid[point + stride + 1];
+        byte b = grid[point + stride - 1];
+        byte c = grid[point - stride + 1];
+        byte d = grid[point - stride - 1];
+        int bad = (a == enemy ? 1 : 0) + (b == enemy ? 1 : 0) + (c == enemy ? 1 : 0) + (d == enemy ? 1 : 0);
+        if (a == Board.OFF_BOARD || b == Board.OFF_BOARD || c == Board.OFF_BOARD || d == Board.OFF_BOARD) {
+            bad++; //Na krawędzi wystarczy jeden przeciwnik po przekątnej, żeby oko było fałszywe
+        }
+        return bad < 2;
+    }
+
+    private static boolean own(byte code, byte color) {
+        return code == color || code == Board.OFF_BOARD;
+    }
+
+    /**
+     * Plays a legal move: places the stone, captures the enemy chains left without liberties and sets the ko.
+     *
+     * @param point The point index; {@link #isLegal} must have accepted it.
+     * @param color The cell code of the player.
+     * @return The number of captured stones.
+     */
+    public int play(int point, byte color) {
+        place(point, color);
+        byte enemy = Board.opponent(color);
+        int captured = 0;
+        int lastCaptured = -1;
+        for (int i = 0; i < 4; i++) {
+            int n = neighbour(point, i);
+            if (grid[n] == enemy && libs[head[n]] == 0) {
+                captured += capture(head[n]);
+                lastCaptured = n;
+            }
+        }
+        int chain = head[point];
+        koPoint = captured == 1 && stones[chain] == 1 && inAtari(chain) ? lastCaptured : -1;
+        return captured;
+    }
+
+    /**
+     * Records a pass, which lifts the ko.
+     */
+    public void pass() {
+        koPoint = -1;
+    }
+
+    /**
+     * Plays a uniformly random legal move that does not fill the player's own eye, or passes if there is none.
+     *
+     * @param color The cell code of the player.
+     * @param random The source of randomness.
+     * @return The point played, or {@link #PASS}.
+     */
+    public int playRandom(byte color, SplittableRandom random) {
+        int left = emptyCount;
+        while (left > 0) {
+            int i = random.nextInt(left);
+            int point = empties[i];
+            if (isLegal(point, color) && !isEye(point, color)) {
+                play(point, color);
+                return point;
+            }
+            swapEmpty(i, --left); //Odrzucony punkt poza zakresem losowania, ale nadal na liście
+        }
+        pass();
+        return PASS;
+    }
+
+    /**
+     * Counts the board by area: stones, and empty points whose neighbours are all of one color.
+     * Exact once random play has filled everything but eyes.
+     *
+     * @param komi The points given to White.
+     * @return Black's lead.
+     */
+    public double score(double komi) {
+        int lead = blackStones - whiteStones;
+        for (int i = 0; i < emptyCount; i++) {
+            int owner = emptyOwner(empties[i]);
+            if (owner == Board.BLACK) {
+                lead++;
+            } else if (owner == Board.WHITE) {
+                lead--;
+            }
+        }
+        return lead - komi;
+    }
+
+    /**
+     * Returns the player a point counts for in {@link #score}, once no player has a move left but filling its eyes.
+     *
+     * @param point The point index of a point on the board.
+     * @return The stone on the point, or for an empty point the color of all its neighbouring stones;
+     *         {@link Board#EMPTY} if they are of both colors.
+     */
+    public byte owner(int point) {
+        byte code = grid[point];
+        return code == Board.EMPTY ? emptyOwner(point) : code;
+    }
+
+    private byte emptyOwner(int point) {
+        int neighbours = stone(grid[point + 1]) | stone(grid[point - 1]) | stone(grid[point + stride]) | stone(grid[point - stride]);
+        return neighbours == Board.BLACK || neighbours == Board.WHITE ? (byte) neighbours : Board.EMPTY;
+    }
+
+    private static int stone(byte code) {
+        return code == Board.OFF_BOARD ? Board.EMPTY : code;
+    }
+
+    /**
+     * Places a stone on an empty point, joining it with its neighbours and taking its point from their
+     * liberties, without capturing.
+     */
+    private void place(int point, byte color) {
+        removeEmpty(point);
+        grid[point] = color;
+        if (color == Board.BLACK) {
+            blackStones++;
+        } else {
+            whiteStones++;
+        }
+        head[point] = point;
+        next[point] = point;
+        stones[point] = 1;
+        libs[point] = 0;
+        libSum[point] = 0;
+        libSumOfSquares[point] = 0;
+        for (int i = 0; i < 4; i++) {
+            int n = neighbour(point, i);
+            byte code = grid[n];
+            if (code == Board.EMPTY) {
+                addLiberty(point, n);
+            } else if (code != Board.OFF_BOARD) {
+                removeLiberty(head[n], point);
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            int n = neighbour(point, i);
+            if (grid[n] == color && head[n] != head[point]) {
+                merge(head[point], head[n]);
+            }
+        }
+    }
+
+    /**
+     * Removes a chain from the board and gives its points to the neighbouring chains as liberties.
+     *
+     * @param chain The head of the chain.
+     * @return The number of stones removed.
+     */
+    private int capture(int chain) {
+        byte color = grid[chain];
+        int count = 0;
+        int p = chain;
+        do {
+            grid[p] = Board.EMPTY;
+            emptyIndex[p] = emptyCount;
+            empties[emptyCount++] = p;
+            count++;
+            p = next[p];
+        } while (p != chain);
+        if (color == Board.BLACK) {
+            blackStones -= count;
+        } else {
+            whiteStones -= count;
+        }
+        p = chain;
+        do {
+            for (int i = 0; i < 4; i++) {
+                int n = neighbour(p, i);
+                byte code = grid[n];
+                if (code == Board.BLACK || code == Board.WHITE) {
+                    addLiberty(head[n], p);
+                }
+            }
+            p = next[p];
+        } while (p != chain);
+        return count;
+    }
+
+    /**
+     * Joins two chains, relabelling the smaller one.
+     */
+    private void merge(int a, int b) {
+        if (stones[a] < stones[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int p = b;
+        do {
+            head[p] = a;
+            p = next[p];
+        } while (p != b);
+        int t = next[a];
+        next[a] = next[b];
+        next[b] = t;
+        stones[a] += stones[b];
+        libs[a] += libs[b];
+        libSum[a] += libSum[b];
+        libSumOfSquares[a] += libSumOfSquares[b];
+    }
+
+    private boolean inAtari(int chain) {
+        long sum = libSum[chain];
+        return libs[chain] * libSumOfSquares[chain] == sum * sum;
+    }
+
+    private void addLiberty(int chain, int point) {
+        libs[chain]++;
+        libSum[chain] += point;
+        libSumOfSquares[chain] += (long) point * point;
+    }
+
+    private void removeLiberty(int chain, int point) {
+        libs[chain]--;
+        libSum[chain] -= point;
+        libSumOfSquares[chain] -= (long) point * point;
+    }
+
+    private void removeEmpty(int point) {
+        swapEmpty(emptyIndex[point], --emptyCount);
+    }
+
+    private void swapEmpty(int i, int j) {
+        int a = empties[i];
+        int b = empties[j];
+        empties[i] = b;
+        empties[j] = a;
+        emptyIndex[b] = i;
+        emptyIndex[a] = j;
+    }
+
+    private int neighbour(int point, int direction) {
+        switch (direction) {
+            case 0: return point + 1;
+            case 1: return point - 1;
+            case 2: return point + stride;
+            default: return point - stride;
+        }
+    }
+}
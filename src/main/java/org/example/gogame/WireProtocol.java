@@ -0,0 +1,465 @@
+package org.example.gogame;
+
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encoding shared by the server and the client for the compact binary protocol.
+ * <p>
+ * Connections start in the text protocol, where every message is a line such as {@code MOVE 3 4 BLACK}.
+ * Either side may send the line {@link #HANDSHAKE}; the server answers with the same line and
+ * from then on both directions carry binary frames. A frame is a one byte opcode followed by:
+ * <ul>
+ *   <li>{@link #TEXT}: a varint length and that many bytes of UTF-8, any message of the text protocol;</li>
+ *   <li>{@link #MOVE}: the point as one big-endian short, {@code x << 8 | y}, a color byte and the
+ *   board version after the move as a varint (see {@link BoardSnapshot}; clients send 0);</li>
+ *   <li>{@link #CAPTURES}: a varint count followed by that many points, each a varint;</li>
+ *   <li>{@link #TURN} and {@link #PASS}: a color byte.</li>
+ * </ul>
+ * Colors are the cell codes of {@link Board}. Messages without an opcode of their own travel as {@link #TEXT}.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class WireProtocol {
+    /** Line that switches a connection to binary frames. */
+    public static final String HANDSHAKE = "PROTOCOL BINARY";
+
+    /** Opcode of a message of the text protocol. */
+    public static final byte TEXT = 0;
+    /** Opcode of a placed (or, with {@link Board#EMPTY}, removed) stone. */
+    public static final byte MOVE = 1;
+    /** Opcode of a list of captured stones. */
+    public static final byte CAPTURES = 2;
+    /** Opcode announcing whose turn it is. */
+    public static final byte TURN = 3;
+    /** Opcode of a pass. */
+    public static final byte PASS = 4;
+
+    /** Longest accepted text line or text frame, in bytes. */
+    public static final int MAX_TEXT = 8 * 1024;
+    /** Largest accepted capture list. */
+    public static final int MAX_POINTS = 4096;
+    /** Largest size of a move frame. */
+    public static final int MAX_MOVE_FRAME = 9;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Returns the largest number of bytes a text frame of the given number of characters can take.
+     *
+     * @param chars The length of the text.
+     * @return An upper bound of the frame size.
+     */
+    public static int maxTextFrame(int chars) {
+        return 6 + 3 * chars;
+    }
+
+    /**
+     * Returns the largest number of bytes a capture frame with the given number of points can take.
+     *
+     * @param count The number of points.
+     * @return An upper bound of the frame size.
+     */
+    public static int maxCapturesFrame(int count) {
+        return 6 + 3 * count;
+    }
+
+    /**
+     * Writes a text frame.
+     *
+     * @param buf The destination, with room for {@link #maxTextFrame(int)} bytes.
+     * @param pos The position to write at.
+     * @param text The message.
+     * @return The position after the frame.
+     */
+    public static int encodeText(byte[] buf, int pos, CharSequence text) {
+        buf[pos++] = TEXT;
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        pos = writeVarint(buf, pos, length);
+        return writeUtf8(buf, pos, text);
+    }
+
+    /**
+     * Writes a move frame without a board version, as clients send it.
+     *
+     * @param buf The destination, with room for 5 bytes.
+     * @param pos The position to write at.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The cell code of the stone.
+     * @return The position after the frame.
+     */
+    public static int encodeMove(byte[] buf, int pos, int x, int y, byte color) {
+        return encodeMove(buf, pos, x, y, color, 0);
+    }
+
+    /**
+     * Writes a move frame.
+     *
+     * @param buf The destination, with room for {@link #MAX_MOVE_FRAME} bytes.
+     * @param pos The position to write at.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The cell code of the stone.
+     * @param version The board version after the move.
+     * @return The position after the frame.
+     */
+    public static int encodeMove(byte[] buf, int pos, int x, int y, byte color, int version) {
+        buf[pos++] = MOVE;
+        buf[pos++] = (byte) x;
+        buf[pos++] = (byte) y;
+        buf[pos++] = color;
+        return writeVarint(buf, pos, version);
+    }
+
+    /**
+     * Writes a capture frame for points given as indices of a board.
+     *
+     * @param buf The destination, with room for {@link #maxCapturesFrame(int)} bytes.
+     * @param pos The position to write at.
+     * @param board The board the indices refer to.
+     * @param points The captured point indices.
+     * @param count The number of points used.
+     * @return The position after the frame.
+     */
+    public static int encodeCaptures(byte[] buf, int pos, Board board, int[] points, int count) {
+        buf[pos++] = CAPTURES;
+        pos = writeVarint(buf, pos, count);
+        for (int i = 0; i < count; i++) {
+            pos = writeVarint(buf, pos, board.getX(points[i]) << 8 | board.getY(points[i]));
+        }
+        return pos;
+    }
+
+    /**
+     * Writes a frame carrying only a color, {@link #TURN} or {@link #PASS}.
+     *
+     * @param buf The destination, with room for 2 bytes.
+     * @param pos The position to write at.
+     * @param opcode The opcode.
+     * @param color The cell code of the color.
+     * @return The position after the frame.
+     */
+    public static int encodeColor(byte[] buf, int pos, byte opcode, byte color) {
+        buf[pos++] = opcode;
+        buf[pos++] = color;
+        return pos;
+    }
+
+    /**
+     * Writes an unsigned varint, seven bits per byte, low bits first.
+     *
+     * @param buf The destination.
+     * @param pos The position to write at.
+     * @param value The non-negative value.
+     * @return The position after the value.
+     */
+    private static int writeVarint(byte[] buf, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf[pos++] = (byte) (0x80 | (value & 0x7F));
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Writes characters as UTF-8.
+     *
+     * @param buf The destination.
+     * @param pos The position to write at.
+     * @param text The characters.
+     * @return The position after the bytes.
+     */
+    private static int writeUtf8(byte[] buf, int pos, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Incremental decoder fed one byte at a time, so it works on blocking streams and
+     * non-blocking buffers alike. In text mode every line is reported as a {@link #TEXT} frame;
+     * after {@link #setBinary()} the bytes are read as binary frames.
+     * The accessors describe the last complete frame and are valid until the next call to {@link #feed(byte)}.
+     */
+    public static final class Decoder {
+        private static final int OPCODE = 0;
+        private static final int FIXED = 1;
+        private static final int LENGTH = 2;
+        private static final int BYTES = 3;
+        private static final int POINTS = 4;
+        private static final int VERSION = 5;
+
+        private boolean binary = false;
+        private int state = OPCODE;
+        private byte opcode = TEXT;
+        private int need = 0;
+        private int have = 0;
+        private int varint = 0;
+        private int shift = 0;
+        private int version = 0;
+        private byte[] bytes = new byte[128];
+        private int[] points = new int[16];
+
+        /**
+         * Switches to binary frames, starting with the next byte.
+         */
+        public void setBinary() {
+            binary = true;
+            state = OPCODE;
+            have = 0;
+        }
+
+        /**
+         * Checks whether binary frames are being decoded.
+         *
+         * @return true after {@link #setBinary()}.
+         */
+        public boolean isBinary() {
+            return binary;
+        }
+
+        /**
+         * Consumes one byte.
+         *
+         * @param b The byte.
+         * @return true if the byte completed a frame.
+         * @throws ProtocolException If the input is malformed or a frame is too large.
+         */
+        public boolean feed(byte b) throws ProtocolException {
+            if (!binary) {
+                return feedText(b);
+            }
+            switch (state) {
+                case OPCODE:
+                    opcode = b;
+                    have = 0;
+                    varint = 0;
+                    shift = 0;
+                    switch (b) {
+                        case MOVE:
+                            need = 3;
+                            state = FIXED;
+                            return false;
+                        case TURN:
+                        case PASS:
+                            need = 1;
+                            state = FIXED;
+                            return false;
+                        case TEXT:
+                        case CAPTURES:
+                            state = LENGTH;
+                            return false;
+                        default:
+                            throw new ProtocolException("Unknown opcode " + b);
+                    }
+                case FIXED:
+                    bytes[have++] = b;
+                    if (have < need) {
+                        return false;
+                    }
+                    if (getColor() > Board.WHITE || getColor() < Board.EMPTY) {
+                        throw new ProtocolException("Unknown color " + getColor());
+                    }
+                    if (opcode == MOVE) {
+                        state = VERSION;
+                        return false;
+                    }
+                    return complete();
+                case VERSION:
+                    if (!readVarint(b)) {
+                        return false;
+                    }
+                    version = varint;
+                    return complete();
+                case LENGTH:
+                    if (!readVarint(b)) {
+                        return false;
+                    }
+                    need = varint;
+                    varint = 0;
+                    shift = 0;
+                    if (opcode == TEXT) {
+                        if (need > MAX_TEXT) {
+                            throw new ProtocolException("Text frame too long");
+                        }
+                        if (bytes.length < need) {
+                            bytes = new byte[need];
+                        }
+                        state = BYTES;
+                    } else {
+                        if (need > MAX_POINTS) {
+                            throw new ProtocolException("Capture list too long");
+                        }
+                        if (points.length < need) {
+                            points = new int[need];
+                        }
+                        state = POINTS;
+                    }
+                    return need == 0 && complete();
+                case BYTES:
+                    bytes[have++] = b;
+                    return have == need && complete();
+                default:
+                    if (!readVarint(b)) {
+                        return false;
+                    }
+                    points[have++] = varint;
+                    varint = 0;
+                    shift = 0;
+                    return have == need && complete();
+            }
+        }
+
+        /**
+         * Returns the opcode of the last frame.
+         *
+         * @return One of the opcodes of {@link WireProtocol}.
+         */
+        public byte getOpcode() {
+            return opcode;
+        }
+
+        /**
+         * Returns the x-coordinate of a {@link #MOVE} frame.
+         *
+         * @return The x-coordinate.
+         */
+        public int getX() {
+            return bytes[0] & 0xFF;
+        }
+
+        /**
+         * Returns the y-coordinate of a {@link #MOVE} frame.
+         *
+         * @return The y-coordinate.
+         */
+        public int getY() {
+            return bytes[1] & 0xFF;
+        }
+
+        /**
+         * Returns the color of a {@link #MOVE}, {@link #TURN} or {@link #PASS} frame.
+         *
+         * @return The cell code of the color.
+         */
+        public byte getColor() {
+            return opcode == MOVE ? bytes[2] : bytes[0];
+        }
+
+        /**
+         * Returns the board version of a {@link #MOVE} frame.
+         *
+         * @return The version after the move, 0 if the sender has none.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the number of points of a {@link #CAPTURES} frame.
+         *
+         * @return The number of captured stones.
+         */
+        public int getCount() {
+            return need;
+        }
+
+        /**
+         * Returns the x-coordinate of a captured stone.
+         *
+         * @param i The index in the capture list.
+         * @return The x-coordinate.
+         */
+        public int getX(int i) {
+            return points[i] >>> 8;
+        }
+
+        /**
+         * Returns the y-coordinate of a captured stone.
+         *
+         * @param i The index in the capture list.
+         * @return The y-coordinate.
+         */
+        public int getY(int i) {
+            return points[i] & 0xFF;
+        }
+
+        /**
+         * Returns the message of a {@link #TEXT} frame or line.
+         *
+         * @return The decoded text.
+         */
+        public String getText() {
+            return new String(bytes, 0, need, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Collects a line of the text protocol.
+         *
+         * @param b The next byte.
+         * @return true at the end of a line.
+         * @throws ProtocolException If the line is too long.
+         */
+        private boolean feedText(byte b) throws ProtocolException {
+            if (b == '\n') {
+                opcode = TEXT;
+                need = have > 0 && bytes[have - 1] == '\r' ? have - 1 : have;
+                have = 0;
+                return true;
+            }
+            if (have == bytes.length) {
+                if (bytes.length >= MAX_TEXT) {
+                    throw new ProtocolException("Command line too long");
+                }
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[have++] = b;
+            return false;
+        }
+
+        /**
+         * Adds a byte to the varint being read.
+         *
+         * @param b The next byte.
+         * @return true if the varint is complete.
+         * @throws ProtocolException If the varint does not fit in a non-negative int.
+         */
+        private boolean readVarint(byte b) throws ProtocolException {
+            if (shift == 28 && (b & 0xF8) != 0) {
+                throw new ProtocolException("Varint too long"); //Piąty bajt niesie tylko trzy bity, inaczej długość byłaby ujemna
+            }
+            varint |= (b & 0x7F) << shift;
+            shift += 7;
+            return (b & 0x80) == 0;
+        }
+
+        /**
+         * Resets the state for the next frame.
+         *
+         * @return true.
+         */
+        private boolean complete() {
+            state = OPCODE;
+            return true;
+        }
+    }
+}
@@ -1,23 +1,54 @@
 package org.example.gogame.client;
 
+import org.example.gogame.Board;
+import org.example.gogame.BoardSnapshot;
+import org.example.gogame.GameConfig;
+import org.example.gogame.Log;
 import org.example.gogame.StoneColor;
+import org.example.gogame.WireProtocol;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controls the client-side game flow.
  * Bridges communication between the network (ServerListener) and the UI (GuiView).
+ * Speaks the text protocol, or the binary one of {@link WireProtocol} if asked to.
+ * When the connection drops during a game, it reconnects with the session token the server issued
+ * and takes its seat back.
+ * <p>
+ * Every board change from the server carries the board version. A change that skips a version means
+ * something was missed; the client then ignores further changes and asks for a {@link BoardSnapshot}
+ * with {@code SYNC}, which it applies to the view in one go.
+ * <p>
+ * The client may ask for a board size, komi, rules and clock with {@link #join}; the view is sized
+ * from the settings in {@code GAME_START}.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
 public class ClientGameController {
-    private Socket socket;
-    private PrintWriter out;
+    /** How many times a lost connection is retried before giving up. */
+    static final int RECONNECT_ATTEMPTS = 10;
+
+    private volatile Socket socket;
+    private volatile OutputStream out;
+    private final InetAddress host;
+    private final int port;
+    private volatile String session = null;
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private int version = 0;
+    private boolean syncing = false;
+    private boolean lastMoveApplied = false;
     private GuiView view;
     private StoneColor myColor = StoneColor.EMPTY;
     private boolean isGameRunning = true;
+    private final boolean binaryRequested;
+    private volatile boolean binary = false;
+    private final byte[] frame = new byte[WireProtocol.maxTextFrame(WireProtocol.MAX_TEXT)];
 
     /**
      * Constructs the controller.
@@ -27,9 +58,24 @@ public class ClientGameController {
      * @throws Exception If socket stream creation fails.
      */
     public ClientGameController(Socket socket, GuiView view) throws Exception {
+        this(socket, view, false);
+    }
+
+    /**
+     * Constructs the controller, optionally switching to the binary protocol.
+     *
+     * @param socket The socket connected to the server.
+     * @param view The UI view to update.
+     * @param binary Whether to ask the server for binary frames.
+     * @throws Exception If socket stream creation fails.
+     */
+    public ClientGameController(Socket socket, GuiView view, boolean binary) throws Exception {
         this.socket = socket;
         this.view = view;
-        this.out = new PrintWriter(socket.getOutputStream(), true);
+        this.out = socket.getOutputStream();
+        this.host = socket.getInetAddress();
+        this.port = socket.getPort();
+        this.binaryRequested = binary;
     }
 
     /**
@@ -46,11 +92,35 @@ public class ClientGameController {
         Thread listenerThread = new Thread(listener);
         listenerThread.setDaemon(true);
         listenerThread.start();
+        if (binaryRequested) {
+            send(WireProtocol.HANDSHAKE);
+            binary = true;
+        }
+    }
+
+    /**
+     * Asks the server for a game with the given settings instead of the default 19x19 one.
+     * Must be called right after {@link #startListener()}.
+     *
+     * @param config The requested settings.
+     */
+    public void join(GameConfig config) {
+        send("JOIN " + config.format());
+    }
+
+    /**
+     * Asks the server for a game with the given settings against its bot instead of another player.
+     * Must be called right after {@link #startListener()}.
+     *
+     * @param config The requested settings.
+     */
+    public void playBot(GameConfig config) {
+        send("BOT " + config.format());
     }
 
     /**
      * Handles input received from the user via the view.
-     * Sends appropriate commands (QUIT, PASS, MOVE) to the server.
+     * Sends appropriate commands (QUIT, PASS, UNDO, MOVE) to the server.
      *
      * @param input The user input string.
      */
@@ -58,21 +128,71 @@ public class ClientGameController {
         if (!isGameRunning || input == null) return;
 
         if (input.equalsIgnoreCase("quit")) {
-            out.println("QUIT");
+            send("QUIT");
             isGameRunning = false;
             closeConnection();
             System.exit(0);
         } else if (input.equalsIgnoreCase("pass")) {
-            out.println("PASS");
+            if (binary) {
+                sendFrame(WireProtocol.encodeColor(frame, 0, WireProtocol.PASS, Board.code(myColor)));
+            } else {
+                send("PASS");
+            }
         } else if (input.equalsIgnoreCase("resume")) {
-            out.println("RESUME");
+            send("RESUME");
+        } else if (input.equalsIgnoreCase("undo")) {
+            send("UNDO");
         } else if (input.equalsIgnoreCase("agree")) {
-            out.println("AGREE");
+            send("AGREE");
         } else if (input.equalsIgnoreCase("negotiation")) {
-            out.println("NEGOTIATION");
+            send("NEGOTIATION");
+        } else if (binary) {
+            String[] parts = input.trim().split("\\s+");
+            try {
+                int x = Integer.parseInt(parts[0]);
+                int y = Integer.parseInt(parts[1]);
+                if (x < 0 || x > 255 || y < 0 || y > 255) {
+                    throw new NumberFormatException();
+                }
+                sendFrame(WireProtocol.encodeMove(frame, 0, x, y, Board.code(myColor)));
+            } catch (RuntimeException e) {
+                view.setErr("ERROR Wrong move");
+            }
         } else {
             // Zakładamy format "x y"
-            out.println("MOVE " + input);
+            send("MOVE " + input);
+        }
+    }
+
+    /**
+     * Sends a command, as a line or as a text frame depending on the protocol in use.
+     *
+     * @param command The command.
+     */
+    private synchronized void send(String command) {
+        try {
+            if (binary) {
+                sendFrame(WireProtocol.encodeText(frame, 0, command));
+            } else {
+                out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            handleConnectionError();
+        }
+    }
+
+    /**
+     * Sends the first bytes of the frame buffer.
+     *
+     * @param length The frame length.
+     */
+    private synchronized void sendFrame(int length) {
+        try {
+            out.write(frame, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            handleConnectionError();
         }
     }
 
@@ -83,29 +203,60 @@ public class ClientGameController {
      * @param message The raw message string from the server.
      */
     public synchronized void handleServerMessage(String message) {
-        System.out.println("Server: " + message);
+        Log.debug("Received from server", message);
 
         if (message.startsWith("MESSAGE")) {
             view.setMessage(message.substring(8));
         }
+        else if (message.startsWith("SESSION")) {
+            session = message.substring(8);
+        }
+        else if (message.startsWith("GAME_START")) {
+            try {
+                GameConfig config = GameConfig.parse(message.substring(11));
+                view.setBoardSize(config.size());
+                view.setMessage("Game started: " + config.describe());
+                version = 0;
+            } catch (RuntimeException e) {
+                view.setErr("ERROR Malformed game settings from server");
+            }
+        }
+        else if (message.startsWith("CLOCK")) {
+            String[] parts = message.split(" ");
+            view.setClock(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        }
+        else if (message.startsWith("BOARD")) {
+            String[] parts = message.split(" ");
+            try {
+                int size = Integer.parseInt(parts[2]);
+                view.setBoard(BoardSnapshot.decode(parts[3], size), size);
+                version = Integer.parseInt(parts[1]);
+                syncing = false;
+            } catch (RuntimeException e) {
+                view.setErr("ERROR Malformed board from server");
+            }
+        }
         else if (message.startsWith("COLOR")) {
             String color = message.split(" ")[1];
             this.myColor = StoneColor.valueOf(color);
             view.setColor(color);
         }
         else if (message.startsWith("TURN")) {
-            boolean turn = StoneColor.valueOf(message.substring(5)) == myColor;
-            view.setTurn(turn);
-            view.setMessage(turn ? "Your Turn!" : "Opponent's Turn...");
+            updateTurn(StoneColor.valueOf(message.substring(5)));
         }
         else if (message.startsWith("MOVE")) {
             String[] parts = message.split(" ");
             int x = Integer.parseInt(parts[1]);
             int y = Integer.parseInt(parts[2]);
             String color = parts[3];
-            view.updateBoard(x, y, StoneColor.valueOf(color));
+            if (acceptChange(parts.length > 4 ? Integer.parseInt(parts[4]) : 0)) {
+                view.updateBoard(x, y, StoneColor.valueOf(color));
+            }
         }
         else if (message.startsWith("CAPTURES")) {
+            if (!lastMoveApplied) {
+                return;
+            }
             String[] parts = message.split(" ");
             for (int i = 1; i + 1 < parts.length; i += 2) {
                 int x = Integer.parseInt(parts[i]);
@@ -125,9 +276,122 @@ public class ClientGameController {
     }
 
     /**
-     * Handles connection errors by stopping the game and notifying the user.
+     * Processes a binary frame received from the server.
+     * Frames without their own opcode arrive as text and are passed to {@link #handleServerMessage(String)}.
+     *
+     * @param frame The decoder holding the frame.
+     */
+    public synchronized void handleServerFrame(WireProtocol.Decoder frame) {
+        switch (frame.getOpcode()) {
+            case WireProtocol.MOVE:
+                if (acceptChange(frame.getVersion())) {
+                    view.updateBoard(frame.getX(), frame.getY(), Board.color(frame.getColor()));
+                }
+                break;
+            case WireProtocol.CAPTURES:
+                for (int i = 0; lastMoveApplied && i < frame.getCount(); i++) {
+                    view.updateBoard(frame.getX(i), frame.getY(i), StoneColor.EMPTY);
+                }
+                break;
+            case WireProtocol.TURN:
+                updateTurn(Board.color(frame.getColor()));
+                break;
+            case WireProtocol.PASS:
+                break;
+            default:
+                handleServerMessage(frame.getText());
+        }
+    }
+
+    /**
+     * Checks a board change against the board version, asking for a snapshot if one was missed.
+     * Captures that follow a move are applied only if the move was.
+     *
+     * @param next The version after the change, 0 if the server sent none.
+     * @return true if the change should be applied.
+     */
+    private boolean acceptChange(int next) {
+        if (next == 0) {
+            lastMoveApplied = true;
+        } else if (syncing || next <= version) {
+            lastMoveApplied = false; //Już zawarte w migawce albo czekamy na nową
+        } else if (next != version + 1) {
+            lastMoveApplied = false;
+            syncing = true;
+            send("SYNC");
+        } else {
+            version = next;
+            lastMoveApplied = true;
+        }
+        return lastMoveApplied;
+    }
+
+    /**
+     * Shows whose turn it is.
+     *
+     * @param color The color to move.
+     */
+    private void updateTurn(StoneColor color) {
+        boolean turn = color == myColor;
+        view.setTurn(turn);
+        view.setMessage(turn ? "Your Turn!" : "Opponent's Turn...");
+    }
+
+    /**
+     * Handles connection errors. During a game with a session token the client tries to reconnect,
+     * otherwise the game is stopped and the user notified.
      */
     public void handleConnectionError() {
+        if (isGameRunning && session != null && reconnecting.compareAndSet(false, true)) {
+            view.setMessage("Connection lost, reconnecting...");
+            Thread thread = new Thread(this::reconnect, "reconnect");
+            thread.setDaemon(true);
+            thread.start();
+            return;
+        }
+        if (reconnecting.get()) {
+            return; //Zajmuje się tym wątek ponownego łączenia
+        }
+        isGameRunning = false;
+        view.setMessage("Disconnected from server.");
+        view.setErr("Disconnected from server.");
+    }
+
+    /**
+     * Opens a new connection to the server, waiting longer after every failed attempt,
+     * and asks for the seat of the session.
+     */
+    private void reconnect() {
+        long delay = 500;
+        for (int attempt = 0; attempt < RECONNECT_ATTEMPTS && isGameRunning; attempt++) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                break;
+            }
+            delay = Math.min(2 * delay, 8000);
+            Socket fresh;
+            try {
+                fresh = new Socket(host, port);
+            } catch (IOException e) {
+                continue;
+            }
+            synchronized (this) {
+                closeConnection();
+                try {
+                    out = fresh.getOutputStream();
+                } catch (IOException e) {
+                    continue;
+                }
+                socket = fresh;
+                binary = false;
+            }
+            reconnecting.set(false);
+            startListener();
+            send("RECONNECT " + session);
+            return;
+        }
+        reconnecting.set(false);
         isGameRunning = false;
         view.setMessage("Disconnected from server.");
         view.setErr("Disconnected from server.");
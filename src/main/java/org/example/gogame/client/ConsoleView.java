@@ -1,6 +1,7 @@
 package org.example.gogame.client;
 
 import org.example.gogame.Board;
+import org.example.gogame.GameConfig;
 import org.example.gogame.StoneColor;
 import java.util.Scanner;
 
@@ -21,7 +22,7 @@ public class ConsoleView {
     /**
      * Constructs the console view.
      *
-     * @param size The size of the game board.
+     * @param size The size of the game board until the server announces one.
      */
     public ConsoleView(int size) {
         this.board = new Board(size);
@@ -41,6 +42,42 @@ public class ConsoleView {
         board.setStone(x, y, color);
     }
 
+    /**
+     * Starts over with an empty board of the size announced by the server.
+     *
+     * @param size The new size of the board.
+     */
+    public void setBoardSize(int size) {
+        if (size != board.getSize()) {
+            board = new Board(size);
+        }
+        board.clear();
+    }
+
+    /**
+     * Replaces the whole local board with a snapshot received from the server,
+     * switching to the size of the snapshot if it differs.
+     *
+     * @param cells The cell codes of {@link Board}, at index {@code x * size + y}.
+     */
+    public void setBoard(byte[] cells) {
+        int size = (int) Math.sqrt(cells.length);
+        if (size != board.getSize()) {
+            board = new Board(size);
+        }
+        board.load(cells);
+    }
+
+    /**
+     * Shows the time both players have left with the next message.
+     *
+     * @param blackMillis Black's time in milliseconds.
+     * @param whiteMillis White's time in milliseconds.
+     */
+    public void setClock(long blackMillis, long whiteMillis) {
+        this.msg = "BLACK " + GameConfig.formatClock(blackMillis) + "  WHITE " + GameConfig.formatClock(whiteMillis);
+    }
+
     /**
      * Clears the console and redraws the current state of the board and messages.
      */
@@ -5,8 +5,10 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.TextInputDialog;
 import javafx.stage.Stage;
+import org.example.gogame.GameConfig;
 
 import java.net.Socket;
+import java.util.Map;
 import java.util.Optional;
 /**
  * The main entry point for the Go Game Client application.
@@ -21,6 +23,10 @@ public class GoClient extends Application {
     /**
      * Starts the JavaFX application stage.
      * Connects to the server, initializes the View and Controller, and displays the main window.
+     * The binary protocol is used when the application is started with {@code --protocol=binary}.
+     * A game other than the default 19x19 one is asked for with {@code --size=9}, {@code --komi=6.5},
+     * {@code --rules=chinese} and {@code --time=300+5}; the board is sized from the game the server starts.
+     * With {@code --opponent=bot} the server's bot plays white instead of another player.
      *
      * @param primaryStage The primary stage for this application, onto which
      * the application scene can be set.
@@ -39,12 +45,16 @@ public class GoClient extends Application {
 
             Socket socket = new Socket(host, port);
 
-            GuiView view = new GuiView(19);
-            ClientGameController controller = new ClientGameController(socket, view);
+            Map<String, String> named = getParameters().getNamed();
+            GameConfig config = requestedConfig(named);
+            boolean bot = "bot".equalsIgnoreCase(named.get("opponent"));
+            GuiView view = new GuiView(config == null ? 19 : config.size());
+            boolean binary = "binary".equalsIgnoreCase(named.get("protocol"));
+            ClientGameController controller = new ClientGameController(socket, view, binary);
 
             view.setController(controller);
 
-            Scene scene = new Scene(view.getRoot(), 600, 700);
+            Scene scene = new Scene(view.getRoot());
             primaryStage.setTitle("Go Game Client - JavaFX");
             primaryStage.setScene(scene);
             primaryStage.setResizable(false);
@@ -54,12 +64,37 @@ public class GoClient extends Application {
             primaryStage.show();
 
             controller.startListener();
+            if (bot) {
+                controller.playBot(config == null ? GameConfig.of(19) : config);
+            } else if (config != null) {
+                controller.join(config);
+            }
 
         } catch (Exception e) {
             showError("Connection Error", "Could not connect to server: " + e.getMessage());
         }
     }
 
+    /**
+     * Builds the game settings asked for on the command line.
+     *
+     * @param named The named parameters of the application.
+     * @return The settings, or null if none were given.
+     * @throws IllegalArgumentException If a setting is malformed.
+     */
+    private GameConfig requestedConfig(Map<String, String> named) {
+        if (!named.containsKey("size") && !named.containsKey("komi") && !named.containsKey("rules") && !named.containsKey("time")) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(named.getOrDefault("size", "19"));
+        for (String setting : new String[]{"komi", "rules", "time"}) {
+            if (named.containsKey(setting)) {
+                text.append(' ').append(setting).append('=').append(named.get(setting));
+            }
+        }
+        return GameConfig.parse(text.toString());
+    }
+
     /**
      * Displays a dialog prompt asking the user for the server address.
      * Defaults to "localhost:1111".
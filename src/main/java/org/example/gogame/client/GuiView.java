@@ -14,6 +14,8 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
+import org.example.gogame.Board;
+import org.example.gogame.GameConfig;
 import org.example.gogame.StoneColor;
 
 import java.util.Optional;
@@ -21,15 +23,17 @@ import java.util.Optional;
 /**
  * Represents the Graphical User Interface (GUI) for the Go game.
  * Handles the display of the board, stones, and status messages using JavaFX.
+ * The board is redrawn for the size the server announces, so one window serves games of any size.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
 public class GuiView {
-    private final int size;
+    private int size;
     private final BorderPane root;
     private final Pane boardPane;
     private final Label statusLabel,
-                        colorLabel;
+                        colorLabel,
+                        clockLabel;
     private ClientGameController controller;
 
     private Circle[][] stones;
@@ -41,7 +45,7 @@ public class GuiView {
      * Constructs the GUI View.
      * Initializes the board array and sets up the initial UI layout.
      *
-     * @param size The size of the game board (e.g., 19 for a 19x19 board).
+     * @param size The size of the game board until the server announces one (e.g., 19 for a 19x19 board).
      */
     public GuiView(int size) {
         this.size = size;
@@ -49,7 +53,7 @@ public class GuiView {
         this.boardPane = new Pane();
         this.statusLabel = new Label("Connecting...");
         this.colorLabel = new Label("");
-        this.stones = new Circle[size][size];
+        this.clockLabel = new Label("");
 
         setupUI();
     }
@@ -74,12 +78,48 @@ public class GuiView {
 
     /**
      * Configures the visual components of the user interface.
-     * Draws the grid lines, background, and initializes invisible stone shapes
-     * for interaction.
      */
     private void setupUI() {
+        drawBoard();
+        root.setCenter(boardPane);
+
+        HBox bottomPanel = new HBox(10);
+        bottomPanel.setAlignment(Pos.CENTER);
+        bottomPanel.setStyle("-fx-padding: 10; -fx-background-color: #EEE;");
+        statusLabel.setStyle("-fx-font-weight: bold;");
+        bottomPanel.getChildren().add(statusLabel);
+        root.setBottom(bottomPanel);
+
+        HBox topPanel = new HBox(10);
+        topPanel.setStyle("-fx-padding: 10;");
+        colorLabel.setStyle("-fx-font-weight: bold;");
+
+        Button passBtn = new Button("PASS");
+        passBtn.setOnAction(e -> {
+            if (controller != null) controller.handleUserInput("pass");
+        });
+        Button undoBtn = new Button("UNDO");
+        undoBtn.setOnAction(e -> {
+            if (controller != null) controller.handleUserInput("undo");
+        });
+        Button negoBtn = new Button("NEGOTIATE");
+        negoBtn.setOnAction(e -> {
+            if (controller != null) controller.handleUserInput("negotiation");
+        });
+
+        topPanel.getChildren().addAll(colorLabel, passBtn, undoBtn, negoBtn, clockLabel);
+        root.setTop(topPanel);
+    }
+
+    /**
+     * Draws the grid lines, background, and initializes invisible stone shapes
+     * for interaction, for the current size.
+     */
+    private void drawBoard() {
         int boardPixelSize = (size - 1) * CELL_SIZE + 2 * PADDING;
+        boardPane.getChildren().clear();
         boardPane.setPrefSize(boardPixelSize, boardPixelSize);
+        stones = new Circle[size][size];
 
         Rectangle background = new Rectangle(boardPixelSize, boardPixelSize);
         background.setFill(Color.web("#DCB35C"));
@@ -112,31 +152,30 @@ public class GuiView {
                 boardPane.getChildren().addAll(stone, clickArea);
             }
         }
+    }
 
-        root.setCenter(boardPane);
-
-        HBox bottomPanel = new HBox(10);
-        bottomPanel.setAlignment(Pos.CENTER);
-        bottomPanel.setStyle("-fx-padding: 10; -fx-background-color: #EEE;");
-        statusLabel.setStyle("-fx-font-weight: bold;");
-        bottomPanel.getChildren().add(statusLabel);
-        root.setBottom(bottomPanel);
-
-        HBox topPanel = new HBox(10);
-        topPanel.setStyle("-fx-padding: 10;");
-        colorLabel.setStyle("-fx-font-weight: bold;");
-
-        Button passBtn = new Button("PASS");
-        passBtn.setOnAction(e -> {
-            if (controller != null) controller.handleUserInput("pass");
-        });
-        Button negoBtn = new Button("NEGOTIATE");
-        negoBtn.setOnAction(e -> {
-            if (controller != null) controller.handleUserInput("negotiation");
-        });
+    /**
+     * Redraws an empty board of another size, e.g. the one announced in {@code GAME_START},
+     * and fits the window to it.
+     *
+     * @param size The new size of the board.
+     */
+    public void setBoardSize(int size) {
+        Platform.runLater(() -> resize(size));
+    }
 
-        topPanel.getChildren().addAll(colorLabel, passBtn, negoBtn);
-        root.setTop(topPanel);
+    /**
+     * Redraws the board for a size if it differs from the current one. Runs on the JavaFX Application Thread.
+     */
+    private void resize(int size) {
+        if (size == this.size) {
+            return;
+        }
+        this.size = size;
+        drawBoard();
+        if (root.getScene() != null && root.getScene().getWindow() != null) {
+            root.getScene().getWindow().sizeToScene();
+        }
     }
 
     /**
@@ -175,6 +214,31 @@ public class GuiView {
         });
     }
 
+    /**
+     * Replaces every stone on the board at once, in a single task on the JavaFX Application Thread.
+     * The board is redrawn first if the snapshot is of another size.
+     *
+     * @param cells The cell codes of {@link Board}, at index {@code x * size + y}.
+     * @param size The size of the board the cells describe.
+     */
+    public void setBoard(byte[] cells, int size) {
+        Platform.runLater(() -> {
+            resize(size);
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    byte cell = cells[x * size + y];
+                    Circle stone = stones[x][y];
+                    stone.setVisible(cell != Board.EMPTY);
+                    if (cell != Board.EMPTY) {
+                        Color color = cell == Board.BLACK ? Color.BLACK : Color.WHITE;
+                        stone.setFill(color);
+                        stone.setStroke(color);
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Updates the status message displayed at the top of the window.
      *
@@ -196,6 +260,17 @@ public class GuiView {
         });
     }
 
+    /**
+     * Shows the time both players have left.
+     *
+     * @param blackMillis Black's time in milliseconds.
+     * @param whiteMillis White's time in milliseconds.
+     */
+    public void setClock(long blackMillis, long whiteMillis) {
+        Platform.runLater(() -> clockLabel.setText("BLACK " + GameConfig.formatClock(blackMillis)
+                + "  WHITE " + GameConfig.formatClock(whiteMillis)));
+    }
+
     /**
      * Visually indicates whether it is currently this player's turn.
      * Changes the border color of the board to green if true.
@@ -1,19 +1,23 @@
 package org.example.gogame.client;
 
-import java.io.BufferedReader;
+import org.example.gogame.Log;
+import org.example.gogame.WireProtocol;
+
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 
 /**
  * Listens for incoming messages from the server on a separate thread.
- * Forwards received messages to the ClientGameController.
+ * Forwards received messages to the ClientGameController: text lines as they are,
+ * and, once the server confirmed {@link WireProtocol#HANDSHAKE}, binary frames.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
 public class ServerListener implements Runnable {
-    private BufferedReader in;
+    private InputStream in;
     private ClientGameController controller;
+    private final WireProtocol.Decoder decoder = new WireProtocol.Decoder();
 
     /**
      * Constructs a ServerListener.
@@ -22,23 +26,34 @@ public class ServerListener implements Runnable {
      * @param controller The controller to handle messages.
      */
     public ServerListener(InputStream inputStream, ClientGameController controller) {
-        this.in = new BufferedReader(new InputStreamReader(inputStream));
+        this.in = new BufferedInputStream(inputStream);
         this.controller = controller;
     }
 
     /**
-     * The run loop constantly reads lines from the input stream.
+     * The run loop constantly reads lines or frames from the input stream.
      */
     @Override
     public void run() {
         try {
-            String response;
-            while ((response = in.readLine()) != null) {
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (!decoder.feed((byte) b)) {
+                    continue;
+                }
+                if (decoder.getOpcode() != WireProtocol.TEXT) {
+                    controller.handleServerFrame(decoder);
+                    continue;
+                }
+                String response = decoder.getText();
+                if (!decoder.isBinary() && response.equals(WireProtocol.HANDSHAKE)) {
+                    decoder.setBinary();
+                }
                 controller.handleServerMessage(response);
             }
         } catch (IOException e) {
-            System.out.println("Connection closed.");
+            Log.info("Connection closed", e.getMessage());
             controller.handleConnectionError();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,362 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Replays a directory of SGF records through {@link GameLogic} and checks their results, to validate game
+ * data and to regression-test changes of the rules engine.
+ * <p>
+ * Every game is replayed by {@link SgfReplay}, so captures, ko, suicide and superko are checked move by move.
+ * The final position of a game that lists its territory is counted and compared with the recorded result,
+ * by territory and prisoners, or by area for Chinese and AGA rules, minus the komi.
+ * <p>
+ * The files are spread over a {@link ForkJoinPool} by halving the list until one file is left per task.
+ * Nothing is shared between the workers while they replay: each worker thread keeps its own replay with
+ * its own board and scorer, and each task its own {@link Report}, which are merged as the tasks join.
+ * The games of one file are replayed in order, so an archive is only spread over the cores when it is
+ * split into several files.
+ * <p>
+ * Usage: {@code java -cp go-server.jar org.example.gogame.server.BatchReplay DIR [--threads=N]}.
+ * The exit status is 1 if any game diverged.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class BatchReplay {
+    /** Most divergences described in a report; the others are only counted. */
+    static final int MAX_DESCRIBED = 100;
+
+    private static final ThreadLocal<SgfReplay> REPLAY = ThreadLocal.withInitial(SgfReplay::new);
+
+    private BatchReplay() {
+    }
+
+    /**
+     * Counts of a batch replay.
+     */
+    public static final class Report {
+        private int files;
+        private int games;
+        private long moves;
+        private long bytes;
+        private int illegal;
+        private int checked;
+        private int mismatched;
+        private int unreadable;
+        private long nanos;
+        private final List<String> divergences = new ArrayList<>();
+
+        /**
+         * Adds the counts of another part of the batch.
+         */
+        private Report merge(Report other) {
+            files += other.files;
+            games += other.games;
+            moves += other.moves;
+            bytes += other.bytes;
+            illegal += other.illegal;
+            checked += other.checked;
+            mismatched += other.mismatched;
+            unreadable += other.unreadable;
+            for (String divergence : other.divergences) {
+                describe(divergence);
+            }
+            return this;
+        }
+
+        /**
+         * Keeps the description of a divergence while there is room for it.
+         */
+        private void describe(String divergence) {
+            if (divergences.size() < MAX_DESCRIBED) {
+                divergences.add(divergence);
+            }
+        }
+
+        /** @return The number of SGF files found. */
+        public int getFiles() {
+            return files;
+        }
+
+        /** @return The number of games replayed. */
+        public int getGames() {
+            return games;
+        }
+
+        /** @return The number of moves and passes replayed. */
+        public long getMoves() {
+            return moves;
+        }
+
+        /** @return The number of games stopped by a rule violation or a malformed property. */
+        public int getIllegal() {
+            return illegal;
+        }
+
+        /** @return The number of games whose result could be compared with their final position. */
+        public int getChecked() {
+            return checked;
+        }
+
+        /** @return The number of compared games whose result differs from the counted one. */
+        public int getMismatched() {
+            return mismatched;
+        }
+
+        /** @return The number of files that could not be read. */
+        public int getUnreadable() {
+            return unreadable;
+        }
+
+        /** @return The number of games that were illegal or mismatched, or files that could not be read. */
+        public int getDivergent() {
+            return illegal + mismatched + unreadable;
+        }
+
+        /** @return The first {@link #MAX_DESCRIBED} divergences, as {@code file#game: reason}. */
+        public List<String> getDivergences() {
+            return divergences;
+        }
+
+        /** @return The wall-clock time of the whole batch in seconds. */
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        /** @return The throughput of the batch. */
+        public double getGamesPerSecond() {
+            return nanos == 0 ? 0 : games / getSeconds();
+        }
+
+        /**
+         * Summarizes the batch in one line.
+         *
+         * @return The summary.
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d games (%d moves, %d files, %.1f MB) in %.2f s: %.0f games/s; %d scored and checked, %d mismatched, %d illegal, %d unreadable",
+                    games, moves, files, bytes / 1e6, getSeconds(), getGamesPerSecond(), checked, mismatched, illegal, unreadable);
+        }
+    }
+
+    /**
+     * Replays every {@code .sgf} file below a directory.
+     *
+     * @param directory The directory, searched recursively.
+     * @param threads The parallelism of the pool.
+     * @return The counts of the batch.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static Report run(Path directory, int threads) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".sgf"))
+                    .sorted(Comparator.comparing(Path::toString))
+                    .toList();
+        }
+        long started = System.nanoTime();
+        Report report;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            report = files.isEmpty() ? new Report() : pool.invoke(new ReplayTask(files, 0, files.size()));
+        } finally {
+            pool.shutdown();
+        }
+        report.nanos = System.nanoTime() - started;
+        return report;
+    }
+
+    /**
+     * Replays the files from {@code from} to {@code to}, forking one half and computing the other.
+     */
+    private static final class ReplayTask extends RecursiveTask<Report> {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+
+        ReplayTask(List<Path> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from == 1) {
+                return replay(files.get(from));
+            }
+            int middle = (from + to) >>> 1;
+            ReplayTask left = new ReplayTask(files, from, middle);
+            left.fork();
+            Report right = new ReplayTask(files, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Replays all games of one file with the replay of the current thread.
+     *
+     * @param file The file.
+     * @return The counts of the file.
+     */
+    static Report replay(Path file) {
+        Report report = new Report();
+        report.files = 1;
+        SgfReplay replay = REPLAY.get();
+        try (SgfReader reader = SgfReader.open(file)) {
+            int index = 0;
+            while (reader.next(replay)) {
+                check(replay, file, ++index, report);
+            }
+            report.bytes = reader.getPosition();
+        } catch (IOException e) {
+            report.unreadable++;
+            report.describe(file + ": " + e.getMessage());
+        }
+        return report;
+    }
+
+    /**
+     * Counts a replayed game and compares its result with its final position.
+     */
+    private static void check(SgfReplay replay, Path file, int index, Report report) {
+        report.games++;
+        report.moves += replay.getMoveCount();
+        if (replay.getError() != null) {
+            report.illegal++;
+            report.describe(file + "#" + index + ": " + replay.getError());
+            return;
+        }
+        double recorded = parseMargin(replay.getResult());
+        if (!replay.isScored() || Double.isNaN(recorded)) {
+            return; //Poddane, przekroczony czas albo brak wyniku - nie ma czego liczyć
+        }
+        report.checked++;
+        double counted = countMargin(replay);
+        if (counted != recorded) {
+            report.mismatched++;
+            report.describe(file + "#" + index + ": recorded " + replay.getResult() + ", counted " + formatMargin(counted));
+        }
+    }
+
+    /**
+     * Counts Black's lead in the final position of a replayed game.
+     *
+     * @param replay The replay, after the end of a game listing its territory.
+     * @return Black's points minus White's points and the komi.
+     */
+    static double countMargin(SgfReplay replay) {
+        int[] territory = replay.countTerritory();
+        int black = territory[0];
+        int white = territory[1];
+        String rules = replay.getRules();
+        if (rules != null && (rules.startsWith("Chinese") || rules.startsWith("AGA"))) {
+            Board board = replay.getBoard();
+            int size = board.getSize();
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    byte stone = board.get(board.point(x, y));
+                    if (stone == Board.BLACK) {
+                        black++;
+                    } else if (stone == Board.WHITE) {
+                        white++;
+                    }
+                }
+            }
+        } else {
+            black += replay.getBlackPrisoners();
+            white += replay.getWhitePrisoners();
+        }
+        return black - white - replay.getKomi();
+    }
+
+    /**
+     * Parses Black's lead from a result like {@code B+5}, {@code W+0.5} or {@code 0}.
+     *
+     * @param result The value of {@code RE}.
+     * @return The lead, or NaN if the result is missing or not a score, e.g. {@code W+R}.
+     */
+    static double parseMargin(String result) {
+        if (result == null) {
+            return Double.NaN;
+        }
+        String text = result.trim();
+        if (text.equals("0") || text.equalsIgnoreCase("Draw") || text.equalsIgnoreCase("Jigo")) {
+            return 0;
+        }
+        if (text.length() > 2 && text.charAt(1) == '+' && (text.charAt(0) == 'B' || text.charAt(0) == 'W')) {
+            try {
+                double margin = Double.parseDouble(text.substring(2));
+                return text.charAt(0) == 'B' ? margin : -margin;
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Writes Black's lead the way {@code RE} does.
+     */
+    private static String formatMargin(double margin) {
+        if (margin == 0) {
+            return "0";
+        }
+        double points = Math.abs(margin);
+        return (margin > 0 ? "B+" : "W+") + (points == Math.rint(points) ? String.valueOf((long) points) : String.valueOf(points));
+    }
+
+    /**
+     * Replays a directory given on the command line and prints the report.
+     *
+     * @param args The directory, optionally followed by {@code --threads=N}.
+     */
+    public static void main(String[] args) {
+        Path directory = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring(10));
+                } else {
+                    directory = Path.of(arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            directory = null;
+        }
+        if (directory == null || threads < 1) {
+            System.err.println("Usage: BatchReplay DIR [--threads=N]");
+            System.exit(2);
+        }
+        Report report;
+        try {
+            report = run(directory, threads);
+        } catch (IOException e) {
+            System.err.println("Cannot list " + directory + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.println(report + " on " + threads + " threads");
+        for (String divergence : report.getDivergences()) {
+            System.out.println("  " + divergence);
+        }
+        if (report.getDivergent() > MAX_DESCRIBED) {
+            System.out.println("  ... and " + (report.getDivergent() - MAX_DESCRIBED) + " more");
+        }
+        System.exit(report.getDivergent() > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.Log;
+import org.example.gogame.PlayoutBoard;
+import org.example.gogame.StoneColor;
+
+import java.net.Socket;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A computer player seated in a {@link Game} like a connected one, playing the moves of a {@link MonteCarloSearch}.
+ * <p>
+ * The bot has no connection: it reads the messages the game sends it instead. When it is told that it is
+ * its turn, still under the game lock, it sets up a {@link PlayoutBoard} from the board and the ko point
+ * and hands the search to a virtual thread, which waits for the search pool and then plays the chosen move through
+ * {@link Game#processMove} or {@link Game#processPass}, like a player's listening thread would.
+ * A move the game rejects, which can only be a superko the search does not check, is replaced by a pass.
+ * <p>
+ * The bot thinks for its move budget, or for a thirtieth of the time left on its clock if that is less.
+ * It only passes when its opponent has just passed and the search expects to win the count,
+ * or when it has no move left but filling its own eyes. It agrees to the suggested score at once,
+ * along with any dead stones its opponent removes afterwards.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public class BotPlayer extends PlayerHandler {
+    /** Shortest time the bot thinks about a move, however little time it has left. */
+    static final long MIN_MOVE_MS = 10;
+    /** The number of moves the time left on the bot's clock is shared among. */
+    static final int CLOCK_MOVES = 30;
+
+    private static final Executor MOVES = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bot-", 0).factory());
+
+    private final MonteCarloSearch search;
+    private final long moveMillis;
+    private final AtomicBoolean thinking = new AtomicBoolean();
+    private volatile boolean over = false;
+    private volatile boolean rejected = false;
+    private volatile long clockMillis = Long.MAX_VALUE;
+
+    /**
+     * Creates a bot.
+     *
+     * @param color The assigned color.
+     * @param search The engine choosing the moves, shared with other bots.
+     * @param moveMillis The time the bot thinks about a move.
+     */
+    public BotPlayer(StoneColor color, MonteCarloSearch search, long moveMillis) {
+        super((Socket) null, color);
+        this.search = search;
+        this.moveMillis = moveMillis;
+    }
+
+    /**
+     * Starts thinking if it is the bot's turn. Called with the game lock held.
+     *
+     * @param color The color to move.
+     */
+    @Override
+    public void sendTurn(StoneColor color) {
+        Game game = getGame();
+        if (color != getColor() || game == null || over || !thinking.compareAndSet(false, true)) {
+            return;
+        }
+        PlayoutBoard position = new PlayoutBoard(game.getConfig().size());
+        position.copyFrom(game.getBoard(), game.getKoPoint());
+        boolean opponentPassed = game.getConsecutivePasses() > 0;
+        long millis = Math.min(moveMillis, Math.max(MIN_MOVE_MS, clockMillis / CLOCK_MOVES));
+        MOVES.execute(() -> think(game, position, opponentPassed, millis * 1_000_000L));
+    }
+
+    /**
+     * Searches the copied position and plays the chosen move.
+     */
+    private void think(Game game, PlayoutBoard position, boolean opponentPassed, long budgetNanos) {
+        MonteCarloSearch.Result result = null;
+        try {
+            result = search.search(position, Board.code(getColor()), opponentPassed, game.getConfig().komi(), budgetNanos);
+            ServerMetrics.BOT_PLAYOUTS.add(result.playouts());
+            ServerMetrics.BOT_SEARCH_NANOS.add(result.nanos() * result.workers());
+            if (Log.isEnabled(Log.Level.DEBUG)) {
+                Log.debug(game.getId(), getColor(), "search", String.format(Locale.ROOT,
+                        "%d playouts in %d ms, %.0f playouts/s per core, win rate %.2f",
+                        result.playouts(), result.nanos() / 1_000_000, result.playoutsPerSecondPerCore(), result.winRate()));
+            }
+        } catch (RuntimeException e) {
+            Log.error("Bot search failed in game " + game.getId(), e);
+        } finally {
+            thinking.set(false); //Przed ruchem, bo następna tura może przyjść zanim processMove wróci
+        }
+        if (over) {
+            return;
+        }
+        if (result == null || result.point() == MonteCarloSearch.PASS) {
+            game.processPass(this);
+        } else {
+            rejected = false;
+            game.processMove(position.getX(result.point()), position.getY(result.point()), this);
+            if (rejected && !over) {
+                game.processPass(this);
+            }
+        }
+        game.flush();
+    }
+
+    /**
+     * Reads the messages the game sends to the bot's seat.
+     *
+     * @param message The message.
+     */
+    @Override
+    public void sendMessage(CharSequence message) {
+        String text = message.toString();
+        if (text.startsWith("GAME_OVER")) {
+            over = true;
+        } else if (text.startsWith("ERROR")) {
+            rejected = true;
+        } else if (text.startsWith("CLOCK ")) {
+            String[] parts = text.split(" ");
+            clockMillis = Long.parseLong(parts[getColor() == StoneColor.BLACK ? 1 : 2]);
+        } else if (text.startsWith("MESSAGE Suggested Score")) {
+            Game game = getGame();
+            MOVES.execute(() -> {
+                game.processAgree(this);
+                game.flush();
+            });
+        }
+    }
+
+    /**
+     * Ignores a placed or removed stone; the bot reads the board when it is its turn.
+     */
+    @Override
+    public void sendMove(int x, int y, StoneColor color, int version) {
+    }
+
+    /**
+     * Ignores captured stones.
+     */
+    @Override
+    public void sendCaptures(Board board, int[] points, int count) {
+    }
+
+    /**
+     * Ignores a pass; the game tells the bot about passes when it is its turn.
+     */
+    @Override
+    public void sendPass(StoneColor color) {
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.gogame.server;
+
+/**
+ * How the server runs the network side of player connections.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public enum ExecutionMode {
+    /** One blocking platform thread per player. */
+    THREADS,
+    /** One blocking virtual thread per player. */
+    VIRTUAL,
+    /** A few selector based event loops shared by all players. */
+    NIO,
+}
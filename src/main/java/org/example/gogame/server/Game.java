@@ -1,32 +1,93 @@
 package org.example.gogame.server;
 
 import org.example.gogame.Board;
+import org.example.gogame.BoardSnapshot;
+import org.example.gogame.GameConfig;
+import org.example.gogame.Log;
+import org.example.gogame.PlayoutBoard;
 import org.example.gogame.StoneColor;
+import org.example.gogame.WireProtocol;
 
+import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages the state and flow of a single Go game session.
  * Handles turns, move processing, scoring, and communication between two players.
+ * Every accepted position is recorded in a {@link PositionHistory}, so moves that
+ * repeat an earlier position (superko) are rejected.
+ * <p>
+ * All state changes happen under a {@link ReentrantLock} rather than the object monitor,
+ * so player handlers running on virtual threads are not pinned while messages are written.
+ * <p>
+ * Any number of {@link Spectator}s may {@link #subscribe} to the game; broadcast events are
+ * encoded once and delivered to them asynchronously by a {@link SpectatorFeed}.
+ * <p>
+ * Every change of the board raises its version, which is sent with each {@code MOVE}. Clients that join
+ * late, reconnect or notice a missed version get the whole board in one {@link BoardSnapshot} instead.
+ * <p>
+ * A game registered in a {@link Lobby} records its accepted actions in a {@link GameJournal},
+ * from which {@link #restore} rebuilds it after a restart, and can be exported with {@link #toSgf}.
+ * <p>
+ * The time each {@code MOVE}, {@code PASS} and {@code AGREE} takes, waiting for the lock included,
+ * is recorded in the {@link ServerMetrics} histograms.
+ * <p>
+ * A {@link GameConfig} sets the board size, the komi added to White's score, whether the score counts
+ * prisoners (Japanese rules) or stones on the board (Chinese rules), and the clock. On a clock, every move
+ * or pass is charged to the player who made it, the increment is added and both times are sent with
+ * {@code CLOCK}; a player whose time runs out loses, noticed at its next action or by {@link #checkClock()}.
+ * The clocks stop while the players negotiate.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
 public class Game {
-    private PlayerHandler blackPlayer;
-    private PlayerHandler whitePlayer;
+    private static final Executor ESTIMATES = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("estimate-apply-", 0).factory());
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long id;
+    private final GameConfig config;
+    private volatile PlayerHandler blackPlayer; //Volatile, bo flush() czyta graczy bez blokady
+    private volatile PlayerHandler whitePlayer;
     private PlayerHandler currentPlayer;
     private Board board;
     private GameLogic gameLogic;
+    private TerritoryScorer scorer;
+    private boolean scorerStale = false; //Wynik wzięty z GameLogic.TERRITORY, mapa właścicieli nieaktualna
+    private int blackTerritory = 0;
+    private int whiteTerritory = 0;
     private boolean gameOver = false;
     private boolean isUnderNegotiation = false;
     private boolean[] playerAgreed = {false, false};
     private int consecutivePasses = 0;
-    private int[] lastMove = {-2,0};
+    private int koPoint = -1;
     private int blackPrisoners = 0;
     private int whitePrisoners = 0;
-    private ArrayList<String> removed = new ArrayList<>();
+    private final MoveStack moveStack;
+    private int negotiationStart = 0; //Wysokość stosu ruchów na początku negocjacji
     private int removedWhite = 0;
     private int removedBlack = 0;
+    private OwnershipEstimator estimator = null;
+    private int negotiations = 0; //Numer fazy negocjacji, do odrzucania spóźnionych szacunków
+    private final int[] captured; //Bufor na zbite kamienie, współdzielony przez wszystkie ruchy
+    private final PositionHistory history = new PositionHistory(512);
+    private SuperkoRule superkoRule = SuperkoRule.POSITIONAL;
+    private boolean finished = false;
+    private Runnable onFinished = null;
+    private final SpectatorFeed spectators = new SpectatorFeed();
+    private GameJournal journal;
+    private int version = 0;
+    private int[] moves; //Ruchy i pasy do eksportu SGF, spakowane przez Sgf.move i Sgf.pass
+    private int moveCount = 0;
+    private String result = null;
+    private long blackTime; //Pozostały czas w nanosekundach, gdy gra ma zegar
+    private long whiteTime;
+    private long turnStarted;
+    private final StringBuilder clock = new StringBuilder(32);
 
     /**
      * Initializes a new game with two players and a board size.
@@ -36,133 +97,180 @@ public class Game {
      * @param size The size of the board.
      */
     public Game(PlayerHandler p1, PlayerHandler p2, int size) {
+        this(0, p1, p2, size);
+    }
+
+    /**
+     * Initializes a new game registered under an ID.
+     *
+     * @param id The ID of the game in the {@link Lobby}, 0 for an unregistered game.
+     * @param p1 The handler for the black player.
+     * @param p2 The handler for the white player.
+     * @param size The size of the board.
+     */
+    public Game(long id, PlayerHandler p1, PlayerHandler p2, int size) {
+        this(id, p1, p2, size, null);
+    }
+
+    /**
+     * Initializes a new game registered under an ID, recording its actions in a journal.
+     *
+     * @param id The ID of the game in the {@link Lobby}.
+     * @param p1 The handler for the black player.
+     * @param p2 The handler for the white player.
+     * @param size The size of the board.
+     * @param journal The journal, or null if the game is not recorded.
+     */
+    public Game(long id, PlayerHandler p1, PlayerHandler p2, int size, GameJournal journal) {
+        this(id, p1, p2, GameConfig.of(size), journal);
+    }
+
+    /**
+     * Initializes a new game with the given settings.
+     *
+     * @param p1 The handler for the black player.
+     * @param p2 The handler for the white player.
+     * @param config The board size, komi, rules and clock.
+     */
+    public Game(PlayerHandler p1, PlayerHandler p2, GameConfig config) {
+        this(0, p1, p2, config, null);
+    }
+
+    /**
+     * Initializes a new game with the given settings, registered under an ID and recording its actions in a journal.
+     *
+     * @param id The ID of the game in the {@link Lobby}, 0 for an unregistered game.
+     * @param p1 The handler for the black player.
+     * @param p2 The handler for the white player.
+     * @param config The board size, komi, rules and clock.
+     * @param journal The journal, or null if the game is not recorded.
+     */
+    public Game(long id, PlayerHandler p1, PlayerHandler p2, GameConfig config, GameJournal journal) {
+        int size = config.size();
+        this.id = id;
+        this.config = config;
+        this.journal = journal;
         this.blackPlayer = p1;
         this.whitePlayer = p2;
         this.currentPlayer = blackPlayer;
         this.board = new Board(size);
         this.gameLogic = new GameLogic();
+        this.scorer = new TerritoryScorer(size);
+        this.captured = new int[board.getCapacity()];
+        this.moves = new int[2 * size * size];
+        this.moveStack = new MoveStack(2 * size * size, board.getCapacity());
+        history.add(gameLogic.positionHash(board, StoneColor.BLACK, superkoRule));
+        if (journal != null) {
+            journal.start(id, config);
+            if (whitePlayer instanceof BotPlayer) {
+                journal.append(id, GameJournal.BOT, 0, 0, Board.WHITE); //Po restarcie ten sam gracz wraca jako bot
+            }
+        }
+        blackTime = config.mainTime() * 1_000_000_000L;
+        whiteTime = blackTime;
 
         blackPlayer.setGame(this);
         whitePlayer.setGame(this);
 
-        new Thread(blackPlayer).start();
-        new Thread(whitePlayer).start();
-
-        try {
-            Thread.sleep(100);
-        } catch (Exception e) {}
+        blackPlayer.start(); //Po powrocie z start() strumienie gracza są gotowe do wysyłania
+        whitePlayer.start();
 
         blackPlayer.sendMessage("COLOR BLACK");
         whitePlayer.sendMessage("COLOR WHITE");
+        if (blackPlayer.getSession() != null) {
+            blackPlayer.sendMessage("SESSION " + blackPlayer.getSession());
+        }
+        if (whitePlayer.getSession() != null) {
+            whitePlayer.sendMessage("SESSION " + whitePlayer.getSession());
+        }
 
-        BroadcastMessage("GAME_START " + size);
-        BroadcastMessage("TURN BLACK");
+        BroadcastMessage("GAME_START " + config.format());
+        turnStarted = System.nanoTime();
+        broadcastTurn();
+        flush();
     }
 
     /**
      * Processes a move attempt by a player.
      * Validates the move, updates board state, handles captures, checks for Ko/Suicide,
      * and broadcasts the result or error.
+     * A regular move allocates nothing: captures go to a per-game point buffer
+     * and each player encodes the outgoing messages into its own reusable buffers.
      *
      * @param x The x-coordinate.
      * @param y The y-coordinate.
      * @param player The player attempting the move.
      */
-    public synchronized void processMove(int x, int y, PlayerHandler player) {
-        if (gameOver) {
-            player.sendMessage("ERROR Game is over");
-            return;
-        }
-        if (isUnderNegotiation) {
-            if (board.getStone(x,y)==StoneColor.BLACK){
-                whitePrisoners++;
-                removedBlack++;
-            }else if (board.getStone(x,y) == StoneColor.WHITE){
-                blackPrisoners++;
-                removedWhite++;
-            }else {return;}
-            StringBuilder remove = new StringBuilder();
-            remove.append("MOVE ").append(x).append(" ").append(y).append(" ").append(board.getStone(x,y).name());
-            removed.add(remove.toString());
-            board.setStone(x,y,StoneColor.EMPTY);
-            StringBuilder moveMessage = new StringBuilder();
-            moveMessage.append("MOVE ")
-                    .append(x).append(" ")
-                    .append(y).append(" ")
-                    .append(StoneColor.EMPTY.name());
-            BroadcastMessage(moveMessage.toString());
-            int[] territory = gameLogic.countTerritory(board);
-            int currentBlack = territory[0] + blackPrisoners;
-            int currentWhite = territory[1] + whitePrisoners;
-
-            BroadcastMessage("MESSAGE New score -> BLACK: " + currentBlack + ", WHITE: " + currentWhite);
+    public void processMove(int x, int y, PlayerHandler player) {
+        long started = System.nanoTime();
+        lock.lock();
+        try {
+            if (gameOver) {
+                player.sendMessage("ERROR Game is over");
+                return;
+            }
+            if (isUnderNegotiation) {
+                if (!removeDeadStone(x, y)) {
+                    return;
+                }
+                if (scorerStale) {
+                    scorer.score(board);
+                } else {
+                    scorer.update(board, board.point(x, y)); //Przelicza tylko region wokół usuniętego kamienia
+                }
+                rememberTerritory();
 
-            return;
-        }
-        consecutivePasses = 0;
-        ArrayList<int[]> captures;
-        StoneColor finalform;
-        if (currentPlayer == player) {
-            if (gameLogic.validateMove(board, x, y)) { //Sprawdzenie czy ruch jest w granicach i na pustym miejscu
-                if (!gameLogic.isKo(board,lastMove,x,y)){ //Sprawdzenie czy ruch jest Ko
-                    board.setStone(x, y, player.getColor()); //Ustawia kamień na planszy
-
-                    captures = gameLogic.checkCaptures(board, x, y, player.getColor()); //Ustawia zbite kamienie
-                    for (int[] capture : captures) {
-                        board.removeStone(capture[0], capture[1]);
-                    }
-                    if (!captures.isEmpty()) {
-                        if (player.getColor() == StoneColor.BLACK) {
-                            blackPrisoners += captures.size();
-                        } else {
-                            whitePrisoners += captures.size();
-                        }
-                    }
-                    if (captures.size()==1 && gameLogic.countChainLiberties(board,x,y,player.getColor()) == 1){
-                        lastMove = new int[]{captures.get(0)[0],captures.get(0)[1]};
-                    } else {
-                        lastMove = new int[]{-2,0};
-                    }
+                BroadcastMessage("MESSAGE New score -> BLACK: " + GameConfig.formatPoints(blackScore())
+                        + ", WHITE: " + GameConfig.formatPoints(whiteScore()));
 
-                    finalform = gameLogic.finalCheck(board, x, y, player.getColor()); //Sprawdza oddechy łańcucha z dodanym kamieniem po sprawdzeniu czy ruch zbija przeciwnika
-                    if (finalform == StoneColor.EMPTY){
-                        board.removeStone(x,y);
-                        StoneColor enemy = (player.getColor() == StoneColor.BLACK ? StoneColor.WHITE : StoneColor.BLACK);
-                        for (int[] capture : captures) {
-                            board.setStone(capture[0], capture[1], enemy);
-                        }
-                        player.sendMessage("ERROR Suicide move - put valid move");
+                return;
+            }
+            if (currentPlayer == player && outOfTime()) {
+                return;
+            }
+            int passesBefore = consecutivePasses;
+            consecutivePasses = 0;
+            if (currentPlayer == player) {
+                byte color = Board.code(player.getColor());
+                int captureCount = gameLogic.play(board, x, y, color, koPoint, history, superkoRule, captured);
+                if (captureCount == GameLogic.INVALID) {
+                    player.sendMessage("ERROR Invalid move - put valid move");
+                } else if (captureCount == GameLogic.SUICIDE) {
+                    player.sendMessage("ERROR Suicide move - put valid move");
+                } else if (captureCount < 0) { //Ko albo powtórzona pozycja (superko)
+                    player.sendMessage("ERROR This move leads to Ko - put valid move");
+                } else {
+                    if (player.getColor() == StoneColor.BLACK) {
+                        blackPrisoners += captureCount;
                     } else {
-                        board.setStone(x, y, finalform);
-                        StringBuilder moveMessage = new StringBuilder();
-                        moveMessage.append("MOVE ")
-                                .append(x).append(" ")
-                                .append(y).append(" ")
-                                .append(player.getColor().name());
-
-                        BroadcastMessage(moveMessage.toString());
-
-                        moveMessage = new StringBuilder();
-                        moveMessage.append("CAPTURES");
-                        if (!captures.isEmpty()) {
-                            for (int[] point : captures) {
-                                moveMessage.append(" ").append(point[0])
-                                        .append(" ").append(point[1]);
-                            }
-                        }
-                        BroadcastMessage(moveMessage.toString());
-                        switchTurn();
-                        BroadcastMessage("TURN " + currentPlayer.getColor().name());
+                        whitePrisoners += captureCount;
                     }
-                } else {
-                    player.sendMessage("ERROR This move leads to Ko - put valid move");
+                    moveStack.pushMove(board.point(x, y), color, captured, captureCount, koPoint, passesBefore);
+                    koPoint = gameLogic.koPointAfter(board, board.point(x, y), captured, captureCount);
+
+                    record(GameJournal.MOVE, x, y, color);
+                    chargeClock();
+                    switchTurn();
+                    version++;
+                    StoneColor moved = player.getColor();
+                    StoneColor turn = currentPlayer.getColor();
+                    whitePlayer.sendMove(x, y, moved, version);
+                    whitePlayer.sendCaptures(board, captured, captureCount);
+                    whitePlayer.sendTurn(turn);
+                    blackPlayer.sendMove(x, y, moved, version);
+                    blackPlayer.sendCaptures(board, captured, captureCount);
+                    blackPlayer.sendTurn(turn);
+                    spectators.move(x, y, moved, version);
+                    spectators.captures(board, captured, captureCount);
+                    spectators.turn(turn);
+                    broadcastClock();
                 }
             } else {
-                player.sendMessage("ERROR Invalid move - put valid move");
+                player.sendMessage("ERROR Wait for your turn");
             }
-
-        } else {
-            player.sendMessage("ERROR Wait for your turn");
+        } finally {
+            lock.unlock();
+            ServerMetrics.MOVE.record(System.nanoTime() - started);
         }
     }
 
@@ -172,22 +280,43 @@ public class Game {
      *
      * @param player The player passing.
      */
-    public synchronized void processPass(PlayerHandler player) {
-        if (currentPlayer != player) {
-            player.sendMessage("ERROR Not your turn");
-            return;
-        }
-        if (isUnderNegotiation) {
-            player.sendMessage("ERROR Game stopped.");
-        }
+    public void processPass(PlayerHandler player) {
+        long started = System.nanoTime();
+        lock.lock();
+        try {
+            if (finished) {
+                player.sendMessage("ERROR Game is over");
+                return;
+            }
+            if (currentPlayer != player) {
+                player.sendMessage("ERROR Not your turn");
+                return;
+            }
+            if (isUnderNegotiation) {
+                player.sendMessage("ERROR Game stopped.");
+            }
+            if (outOfTime()) {
+                return;
+            }
 
-        BroadcastMessage("PASS " + player.getColor().name());
-        consecutivePasses++;
-        if (consecutivePasses >= 2) {
-            startNegotiationPhase();
-        }else {
-            switchTurn();
-            BroadcastMessage("TURN " + currentPlayer.getColor().name());
+            record(GameJournal.PASS, 0, 0, Board.code(player.getColor()));
+            moveStack.pushPass(Board.code(player.getColor()), koPoint, consecutivePasses);
+            koPoint = -1; //Po pasie przeciwnik może odbić ko
+            blackPlayer.sendPass(player.getColor());
+            whitePlayer.sendPass(player.getColor());
+            spectators.pass(player.getColor());
+            consecutivePasses++;
+            chargeClock();
+            if (consecutivePasses >= 2) {
+                startNegotiationPhase();
+            }else {
+                switchTurn();
+                broadcastTurn();
+            }
+            broadcastClock();
+        } finally {
+            lock.unlock();
+            ServerMetrics.PASS.record(System.nanoTime() - started);
         }
     }
 
@@ -195,20 +324,101 @@ public class Game {
      * Initiates the negotiation phase after two consecutive passes.
      * Calculates the current territory (including prisoners) and suggests a score to both players.
      * Players are prompted to either AGREE to the score or RESUME play.
+     * With an {@link OwnershipEstimator}, the suggestion waits for the estimate, which runs without
+     * the lock and removes the stones it finds dead, see {@link #applyEstimate}.
      */
     private void startNegotiationPhase() {
         removedWhite = 0;
         removedBlack = 0;
-        removed.clear();
+        negotiationStart = moveStack.size();
         isUnderNegotiation = true;
         playerAgreed[0] = false; // Black
         playerAgreed[1] = false; // White
+        negotiations++;
+
+        scoreTerritory();
+        if (estimator != null) {
+            PlayoutBoard position = new PlayoutBoard(config.size());
+            position.copyFrom(board, -1); //Po dwóch pasach nie ma ko
+            int negotiation = negotiations;
+            int estimated = version;
+            estimator.estimateAsync(position).whenCompleteAsync(
+                    (estimate, error) -> applyEstimate(estimate, error, negotiation, estimated), ESTIMATES);
+            return;
+        }
+        suggestScore();
+    }
 
-        int[] territory = gameLogic.countTerritory(board);
-        int currentBlack = territory[0] + blackPrisoners;
-        int currentWhite = territory[1] + whitePrisoners;
+    /**
+     * Removes the stones an estimate found dead and suggests the score, unless the players have resumed
+     * the game or changed the board since the estimate started; they have seen the score of their changes then.
+     *
+     * @param estimate The estimate, or null if it failed.
+     * @param error The reason the estimate failed, or null.
+     * @param negotiation The negotiation phase the estimate was started in.
+     * @param estimated The version of the board the estimate was started from.
+     */
+    private void applyEstimate(OwnershipEstimator.Estimate estimate, Throwable error, int negotiation, int estimated) {
+        lock.lock();
+        try {
+            if (gameOver || !isUnderNegotiation || negotiation != negotiations || version != estimated) {
+                return;
+            }
+            if (error != null) {
+                Log.error("Dead stone estimate failed in game " + id, error);
+            } else {
+                ServerMetrics.ESTIMATE.record(estimate.nanos());
+                int dead = 0;
+                for (int x = 0; x < config.size(); x++) {
+                    for (int y = 0; y < config.size(); y++) {
+                        if (estimate.isDead(board, board.point(x, y)) && removeDeadStone(x, y)) {
+                            dead++;
+                        }
+                    }
+                }
+                if (dead > 0) {
+                    scoreTerritory();
+                    BroadcastMessage("MESSAGE Removed " + dead + " dead stones");
+                }
+            }
+            suggestScore();
+        } finally {
+            lock.unlock();
+        }
+        flush();
+    }
 
-        BroadcastMessage("MESSAGE Suggested Score -> BLACK: " + currentBlack + ", WHITE: " + currentWhite);
+    /**
+     * Sends both players the score of the board as it stands. Called with the lock held.
+     */
+    private void suggestScore() {
+        BroadcastMessage("MESSAGE Suggested Score -> BLACK: " + GameConfig.formatPoints(blackScore())
+                + ", WHITE: " + GameConfig.formatPoints(whiteScore()));
+    }
+
+    /**
+     * Takes a dead stone off the board during the negotiation phase and gives it to the opponent as a prisoner.
+     * Called with the lock held; the caller rescores the board.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return false if the point is empty.
+     */
+    private boolean removeDeadStone(int x, int y) {
+        if (board.getStone(x,y)==StoneColor.BLACK){
+            whitePrisoners++;
+            removedBlack++;
+        }else if (board.getStone(x,y) == StoneColor.WHITE){
+            blackPrisoners++;
+            removedWhite++;
+        }else {return false;}
+        int point = board.point(x, y);
+        moveStack.pushRemoval(point, board.get(point));
+        record(GameJournal.REMOVE, x, y, 0);
+        board.setStone(x,y,StoneColor.EMPTY);
+        version++;
+        broadcastMove(x, y, StoneColor.EMPTY);
+        return true;
     }
 
     /**
@@ -217,15 +427,18 @@ public class Game {
      *
      * @param player Player requesting to negotiate
      */
-    public synchronized void processNegotiation(PlayerHandler player){
-        if (!isUnderNegotiation){
-            player.sendMessage("ERROR Game is not paused");
-            return;
+    public void processNegotiation(PlayerHandler player) {
+        lock.lock();
+        try {
+            if (!isUnderNegotiation){
+                player.sendMessage("ERROR Game is not paused");
+                return;
+            }
+            BroadcastMessage("NEGOTIATION Score after negotiation -> BLACK: " + GameConfig.formatPoints(blackScore())
+                    + "| WHITE: " + GameConfig.formatPoints(whiteScore()));
+        } finally {
+            lock.unlock();
         }
-        int[] territory = gameLogic.countTerritory(board);
-        int currentBlack = territory[0] + blackPrisoners;
-        int currentWhite = territory[1] + whitePrisoners;
-        BroadcastMessage("NEGOTIATION Score after negotiation -> BLACK: " + currentBlack + "| WHITE: " + currentWhite);
     }
 
     /**
@@ -234,35 +447,86 @@ public class Game {
      *
      * @param player The player requesting to resume.
      */
-    public synchronized void processResume(PlayerHandler player) {
-        if (!isUnderNegotiation) {
-            player.sendMessage("ERROR Game is not paused.");
-            return;
-        }
-        isUnderNegotiation = false;
-        consecutivePasses = 0;
-        playerAgreed[0] = false;
-        playerAgreed[1] = false;
-        blackPrisoners -= removedWhite;
-        whitePrisoners -= removedBlack;
-        for (String move : removed) {
-            BroadcastMessage(move);
-            String[] parts = move.split(" ");
-            int x = Integer.parseInt(parts[1]);
-            int y = Integer.parseInt(parts[2]);
-            String color = parts[3];
-            board.setStone(x,y,StoneColor.valueOf(color));
-        }
-
-        BroadcastMessage("MESSAGE Game Resumed by " + player.getColor());
-
-        if (player == blackPlayer) {
-            currentPlayer = whitePlayer;
-        } else {
-            currentPlayer = blackPlayer;
+    public void processResume(PlayerHandler player) {
+        lock.lock();
+        try {
+            if (!isUnderNegotiation) {
+                player.sendMessage("ERROR Game is not paused.");
+                return;
+            }
+            record(GameJournal.RESUME, 0, 0, Board.code(player.getColor()));
+            isUnderNegotiation = false;
+            consecutivePasses = 0;
+            playerAgreed[0] = false;
+            playerAgreed[1] = false;
+            blackPrisoners -= removedWhite;
+            whitePrisoners -= removedBlack;
+            if (moveStack.size() > negotiationStart) {
+                while (moveStack.size() > negotiationStart) {
+                    moveStack.undo(board); //Przywraca usunięte kamienie
+                }
+                version++;
+                BroadcastMessage(snapshot()); //Jedna wiadomość zamiast osobnej dla każdego przywróconego kamienia
+            }
+
+            BroadcastMessage("MESSAGE Game Resumed by " + player.getColor());
+
+            if (player == blackPlayer) {
+                currentPlayer = whitePlayer;
+            } else {
+                currentPlayer = blackPlayer;
+            }
+
+            turnStarted = System.nanoTime(); //Zegary stały podczas negocjacji
+            broadcastTurn();
+        } finally {
+            lock.unlock();
         }
+    }
 
-        BroadcastMessage("TURN " + currentPlayer.getColor().name());
+    /**
+     * Takes back the player's last move or pass, as long as the opponent has not answered it.
+     * The board, ko point, prisoners, superko history and game record return to what they were before it,
+     * in time proportional to the stones it captured. The time the player spent on it stays spent.
+     *
+     * @param player The player taking back a move.
+     */
+    public void processUndo(PlayerHandler player) {
+        lock.lock();
+        try {
+            if (gameOver || isUnderNegotiation) {
+                player.sendMessage("ERROR Cannot undo now");
+                return;
+            }
+            int last = moveStack.size() - 1;
+            if (currentPlayer == player || last < 0 || moveStack.getKind(last) == MoveStack.REMOVED
+                    || moveStack.getColor(last) != Board.code(player.getColor())) {
+                player.sendMessage("ERROR Nothing to undo");
+                return;
+            }
+            if (moveStack.getKind(last) == MoveStack.PLAYED) {
+                history.remove(gameLogic.positionHash(board, currentPlayer.getColor(), superkoRule));
+                if (player == blackPlayer) {
+                    blackPrisoners -= moveStack.getCaptureCount(last);
+                } else {
+                    whitePrisoners -= moveStack.getCaptureCount(last);
+                }
+            }
+            moveStack.undo(board);
+            koPoint = moveStack.getKoPointBefore(last);
+            consecutivePasses = moveStack.getPassesBefore(last);
+            moveCount--;
+            record(GameJournal.UNDO, 0, 0, Board.code(player.getColor()));
+            currentPlayer = player;
+            turnStarted = System.nanoTime();
+            version++;
+            BroadcastMessage(snapshot());
+            BroadcastMessage("MESSAGE Move undone by " + player.getColor());
+            broadcastTurn();
+            broadcastClock();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -271,33 +535,530 @@ public class Game {
      *
      * @param player The player sending the agreement.
      */
-    public synchronized void processAgree(PlayerHandler player) {
-        if (!isUnderNegotiation) {
-            player.sendMessage("ERROR Game is still running. Pass to stop.");
+    public void processAgree(PlayerHandler player) {
+        long started = System.nanoTime();
+        lock.lock();
+        try {
+            if (!isUnderNegotiation) {
+                player.sendMessage("ERROR Game is still running. Pass to stop.");
+                return;
+            }
+
+            int index = (player.getColor() == StoneColor.BLACK) ? 0 : 1;
+            if (!playerAgreed[index]) {
+                playerAgreed[index] = true;
+                BroadcastMessage("MESSAGE " + player.getColor() + " agreed to end.");
+            }
+
+            if (playerAgreed[0] && playerAgreed[1]) {
+                endGame();
+            }
+        } finally {
+            lock.unlock();
+            ServerMetrics.AGREE.record(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Handles a player quitting the game.
+     *
+     * @param player The player quitting.
+     */
+    public void processQuit(PlayerHandler player) {
+        lock.lock();
+        try {
+            if (result == null) {
+                result = player.getColor() == StoneColor.BLACK ? "W+R" : "B+R";
+            }
+            BroadcastMessage("PLAYER_QUIT " + player.getColor().name());
+            BroadcastMessage("GAME_OVER " +
+                    (player.getColor() == StoneColor.BLACK ? "WHITE" : "BLACK") +
+                    "_WINS");
+            finish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells the opponent and the spectators that a player lost its connection.
+     *
+     * @param player The player whose connection was closed.
+     * @return false if the player no longer holds a seat or the game has ended, so nothing is awaited.
+     */
+    public boolean playerDisconnected(PlayerHandler player) {
+        lock.lock();
+        try {
+            if (finished || gameOver || (player != blackPlayer && player != whitePlayer)) {
+                return false;
+            }
+            PlayerHandler other = player == blackPlayer ? whitePlayer : blackPlayer;
+            String message = "MESSAGE " + player.getColor() + " disconnected, waiting for reconnect...";
+            other.sendMessage(message);
+            spectators.text(message);
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        return true;
+    }
+
+    /**
+     * Gives a player's seat to a new connection, which then receives the whole board in one message.
+     * Only a seat whose connection has been lost can be taken over; the previous handler of the seat is closed.
+     *
+     * @param replacement The new connection.
+     * @param color The color of the seat.
+     * @return false if the game has ended or the seat's player is still connected.
+     */
+    public boolean reattach(PlayerHandler replacement, StoneColor color) {
+        PlayerHandler previous;
+        lock.lock();
+        try {
+            if (finished || gameOver) {
+                return false;
+            }
+            previous = color == StoneColor.BLACK ? blackPlayer : whitePlayer;
+            if (previous.isConnected()) {
+                return false; //Stary token nie może odebrać miejsca grającemu
+            }
+            if (color == StoneColor.BLACK) {
+                blackPlayer = replacement;
+            } else {
+                whitePlayer = replacement;
+            }
+            if (currentPlayer == previous) {
+                currentPlayer = replacement;
+            }
+            replacement.setColor(color);
+            replacement.setSession(previous.getSession());
+            replacement.setGame(this);
+
+            replacement.sendMessage("COLOR " + color.name());
+            replacement.sendMessage(snapshot());
+            replacement.sendTurn(currentPlayer.getColor());
+            PlayerHandler other = replacement == blackPlayer ? whitePlayer : blackPlayer;
+            other.sendMessage("MESSAGE " + color + " reconnected");
+        } finally {
+            lock.unlock();
+        }
+        previous.closeConnection(); //Już bez miejsca w grze, więc nie czeka na powrót
+        flush();
+        return true;
+    }
+
+    /**
+     * Ends the game in favour of the opponent if a disconnected player has not come back.
+     *
+     * @param player The player who disconnected.
+     */
+    public void forfeit(PlayerHandler player) {
+        lock.lock();
+        try {
+            if (!finished && !gameOver && (player == blackPlayer || player == whitePlayer)) {
+                processQuit(player);
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+    }
+
+    /**
+     * Returns the player holding a seat.
+     *
+     * @param color The color of the seat.
+     * @return The player.
+     */
+    PlayerHandler getPlayer(StoneColor color) {
+        lock.lock();
+        try {
+            return color == StoneColor.BLACK ? blackPlayer : whitePlayer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encodes the whole board as a {@code BOARD} message of {@link BoardSnapshot}. Called with the lock held.
+     *
+     * @return The message.
+     */
+    private String snapshot() {
+        StringBuilder message = new StringBuilder(64);
+        BoardSnapshot.encode(message, version, board);
+        return message.toString();
+    }
+
+    /**
+     * Sends the messages queued for both players.
+     * Player handlers call it after handling their commands, without holding the game lock. It never waits
+     * for a socket: blocking connections are written by their own writer threads and event loop connections
+     * write what the socket takes at once, so a slow client never delays the other player's moves,
+     * and the lobby's clock thread may call it too.
+     */
+    public void flush() {
+        blackPlayer.flush();
+        whitePlayer.flush();
+    }
+
+    /**
+     * Returns the board of the game. Callers other than the game must hold no references
+     * across moves and must not modify it.
+     *
+     * @return The board.
+     */
+    Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the point the ko rule forbids to the player to move. Called with the lock held, e.g. from {@link PlayerHandler#sendTurn}.
+     *
+     * @return The point index, or -1.
+     */
+    int getKoPoint() {
+        return koPoint;
+    }
+
+    /**
+     * Returns the number of passes in a row just played. Called with the lock held, e.g. from {@link PlayerHandler#sendTurn}.
+     *
+     * @return 1 if the last move was a pass, 0 otherwise.
+     */
+    int getConsecutivePasses() {
+        return consecutivePasses;
+    }
+
+    /**
+     * Lets a spectator watch the game. It first receives the board size, a snapshot of the board
+     * and whose turn it is, then every event broadcast to the players.
+     *
+     * @param spectator The spectator.
+     */
+    public void subscribe(Spectator spectator) {
+        lock.lock();
+        try {
+            List<SpectatorFrame> catchUp = new ArrayList<>();
+            catchUp.add(SpectatorFrame.ofText("GAME_START " + config.format()));
+            catchUp.add(SpectatorFrame.ofText(snapshot()));
+            if (!gameOver && !finished) {
+                catchUp.add(SpectatorFeed.colorFrame(WireProtocol.TURN, "TURN ", currentPlayer.getColor()));
+            }
+            spectators.add(spectator, catchUp);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the whole board to a player who missed a change.
+     *
+     * @param player The player.
+     */
+    public void resync(PlayerHandler player) {
+        lock.lock();
+        try {
+            player.sendMessage(snapshot());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the whole board to a spectator who missed a change, after the events already queued for it.
+     *
+     * @param spectator The spectator.
+     */
+    public void resyncSpectator(Spectator spectator) {
+        lock.lock();
+        try {
+            spectators.send(spectator, SpectatorFrame.ofText(snapshot()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops sending events to a spectator.
+     *
+     * @param spectator The spectator.
+     */
+    public void unsubscribe(Spectator spectator) {
+        spectators.remove(spectator);
+    }
+
+    /**
+     * Returns the number of spectators watching the game.
+     *
+     * @return The number of spectators.
+     */
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered to the spectators.
+     *
+     * @return The total depth of the spectator queues.
+     */
+    public int getSpectatorBacklog() {
+        return spectators.queued();
+    }
+
+    /**
+     * Exports the game so far in SGF: its moves and passes, the result once it is known and, for a game
+     * ended by agreement, the territory of both players including the points of the stones removed as dead.
+     *
+     * @return The SGF text.
+     */
+    public String toSgf() {
+        lock.lock();
+        try {
+            return Sgf.write(config, moves, moveCount, result, board, gameOver ? scorer : null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the settings of the game.
+     *
+     * @return The board size, komi, rules and clock.
+     */
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Ends the game if the player to move has run out of time. Called periodically by the {@link Lobby},
+     * so a player who stops moving loses even without acting again.
+     */
+    public void checkClock() {
+        if (!config.isTimed()) {
             return;
         }
+        lock.lock();
+        try {
+            if (!finished && !gameOver && !isUnderNegotiation) {
+                outOfTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+    }
 
-        int index = (player.getColor() == StoneColor.BLACK) ? 0 : 1;
-        if (!playerAgreed[index]) {
-            playerAgreed[index] = true;
-            BroadcastMessage("MESSAGE " + player.getColor() + " agreed to end.");
+    /**
+     * Ends the game if the player to move has used up its time. Called with the lock held.
+     *
+     * @return true if the game ended on time.
+     */
+    private boolean outOfTime() {
+        if (!config.isTimed() || finished) {
+            return false;
         }
+        long left = (currentPlayer == blackPlayer ? blackTime : whiteTime) - (System.nanoTime() - turnStarted);
+        if (left >= 0) {
+            return false;
+        }
+        StoneColor loser = currentPlayer.getColor();
+        result = loser == StoneColor.BLACK ? "W+T" : "B+T";
+        BroadcastMessage("MESSAGE " + loser + " ran out of time");
+        BroadcastMessage("GAME_OVER " + (loser == StoneColor.BLACK ? "WHITE" : "BLACK") + "_WINS");
+        gameOver = true;
+        finish();
+        return true;
+    }
 
-        if (playerAgreed[0] && playerAgreed[1]) {
-            endGame();
+    /**
+     * Charges the time since the turn started to the player to move and adds the increment. Called with the lock held.
+     */
+    private void chargeClock() {
+        long now = System.nanoTime();
+        if (config.isTimed()) {
+            long spent = now - turnStarted - config.increment() * 1_000_000_000L;
+            if (currentPlayer == blackPlayer) {
+                blackTime -= spent;
+            } else {
+                whiteTime -= spent;
+            }
         }
+        turnStarted = now;
     }
 
     /**
-     * Handles a player quitting the game.
+     * Sends both players' time left in milliseconds as {@code CLOCK <black> <white>}, if the game has a clock.
+     */
+    private void broadcastClock() {
+        if (config.isTimed()) {
+            clock.setLength(0);
+            clock.append("CLOCK ").append(blackTime / 1_000_000).append(' ').append(whiteTime / 1_000_000);
+            BroadcastMessage(clock);
+        }
+    }
+
+    /**
+     * Counts the territory of the whole board, or takes it from {@link GameLogic#TERRITORY} if any game
+     * counted the position before. A cached count leaves the scorer behind the board until a stone is
+     * removed or the game ends, when it scores the board in full.
+     */
+    private void scoreTerritory() {
+        int cached = GameLogic.TERRITORY.get(GameLogic.territoryKey(board), TranspositionTable.EXACT);
+        if (cached == TranspositionTable.MISS) {
+            scorer.score(board);
+            rememberTerritory();
+        } else {
+            blackTerritory = cached >>> 16;
+            whiteTerritory = cached & 0xFFFF;
+            scorerStale = true;
+        }
+    }
+
+    /**
+     * Takes the territory from the scorer, which has counted the board, and stores it in {@link GameLogic#TERRITORY}.
+     */
+    private void rememberTerritory() {
+        blackTerritory = scorer.getBlackTerritory();
+        whiteTerritory = scorer.getWhiteTerritory();
+        scorerStale = false;
+        GameLogic.TERRITORY.put(GameLogic.territoryKey(board), GameLogic.packTerritory(blackTerritory, whiteTerritory),
+                TranspositionTable.EXACT);
+    }
+
+    /**
+     * Counts Black's points in the position as last scored: territory and prisoners, or territory and stones.
      *
-     * @param player The player quitting.
+     * @return The points.
+     */
+    private double blackScore() {
+        return blackTerritory + (config.rules() == GameConfig.Rules.CHINESE ? countStones(Board.BLACK) : blackPrisoners);
+    }
+
+    /**
+     * Counts White's points in the position as last scored, komi included.
+     *
+     * @return The points.
+     */
+    private double whiteScore() {
+        return whiteTerritory + (config.rules() == GameConfig.Rules.CHINESE ? countStones(Board.WHITE) : whitePrisoners)
+                + config.komi();
+    }
+
+    /**
+     * Counts the stones of a color on the board.
+     */
+    private int countStones(byte color) {
+        int count = 0;
+        for (int p = 0; p < board.getCapacity(); p++) {
+            if (board.get(p) == color) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the ID of the game.
+     *
+     * @return The ID, or 0 for a game not started by a {@link Lobby}.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Lets an estimator propose the dead stones when the players pass twice, from then on.
+     * A game without one leaves all removals to the players.
+     *
+     * @param estimator The estimator, or null.
+     */
+    void setEstimator(OwnershipEstimator estimator) {
+        lock.lock();
+        try {
+            this.estimator = estimator;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets a callback run once when the game ends, e.g. to remove it from a registry.
+     * Runs immediately if the game has already ended.
+     *
+     * @param onFinished The callback.
+     */
+    public void setOnFinished(Runnable onFinished) {
+        lock.lock();
+        try {
+            if (finished) {
+                onFinished.run();
+            } else {
+                this.onFinished = onFinished;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the game as finished and runs the finish callback, if any. Called with the lock held.
      */
-    public synchronized void processQuit(PlayerHandler player) {
-        BroadcastMessage("PLAYER_QUIT " + player.getColor().name());
-        BroadcastMessage("GAME_OVER " +
-                (player.getColor() == StoneColor.BLACK ? "WHITE" : "BLACK") +
-                "_WINS");
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        record(GameJournal.END, 0, 0, 0);
+        if (onFinished != null) {
+            onFinished.run();
+        }
+    }
+
+    /**
+     * Rebuilds a game from its journal by replaying the recorded actions, then keeps recording to the journal.
+     * Both players are stand-ins without a connection until they come back.
+     *
+     * @param recorded The recorded game.
+     * @param journal The journal to record further actions in.
+     * @return The game, in the state after its last recorded action.
+     */
+    static Game restore(GameJournal.RecordedGame recorded, GameJournal journal) {
+        PlayerHandler black = new PlayerHandler((Socket) null, StoneColor.BLACK);
+        PlayerHandler white = new PlayerHandler((Socket) null, StoneColor.WHITE);
+        Game game = new Game(recorded.id(), black, white, recorded.config(), null);
+        for (GameJournal.Event event : recorded.events()) {
+            PlayerHandler player = event.arg() == Board.WHITE ? white : black;
+            switch (event.type()) {
+                case GameJournal.MOVE, GameJournal.REMOVE -> game.processMove(event.x(), event.y(), player);
+                case GameJournal.PASS -> game.processPass(player);
+                case GameJournal.RESUME -> game.processResume(player);
+                case GameJournal.UNDO -> game.processUndo(player);
+                default -> { }
+            }
+        }
+        game.journal = journal; //Dopiero teraz, żeby odtwarzane akcje nie zostały zapisane ponownie
+        return game;
+    }
+
+    /**
+     * Appends an action to the journal, if the game has one. Called with the lock held.
+     *
+     * @param type The event type.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param arg The stone color code or board size.
+     */
+    private void record(byte type, int x, int y, int arg) {
+        if (type == GameJournal.MOVE || type == GameJournal.PASS) {
+            if (moveCount == moves.length) {
+                moves = Arrays.copyOf(moves, 2 * moves.length);
+            }
+            moves[moveCount++] = type == GameJournal.MOVE ? Sgf.move((byte) arg, x, y) : Sgf.pass((byte) arg);
+        }
+        if (journal != null) {
+            journal.append(id, type, x, y, arg);
+        }
     }
 
     /**
@@ -307,14 +1068,55 @@ public class Game {
         currentPlayer = (currentPlayer == blackPlayer ? whitePlayer : blackPlayer);
     }
 
+    /**
+     * Sets the superko variant used to reject repeated positions.
+     * Must be called before the first move.
+     *
+     * @param rule The superko variant.
+     */
+    public void setSuperkoRule(SuperkoRule rule) {
+        lock.lock();
+        try {
+            this.superkoRule = rule;
+            history.clear();
+            history.add(gameLogic.positionHash(board, StoneColor.BLACK, rule));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells both players whose turn it is.
+     */
+    private void broadcastTurn(){
+        whitePlayer.sendTurn(currentPlayer.getColor());
+        blackPlayer.sendTurn(currentPlayer.getColor());
+        spectators.turn(currentPlayer.getColor());
+    }
+
+    /**
+     * Tells both players and the spectators about a stone placed or removed outside of a regular move.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The color of the stone, {@link StoneColor#EMPTY} if it was removed.
+     */
+    private void broadcastMove(int x, int y, StoneColor color){
+        whitePlayer.sendMove(x, y, color, version);
+        blackPlayer.sendMove(x, y, color, version);
+        spectators.move(x, y, color, version);
+    }
+
     /**
      * Sends a message to both players.
+     * The message is copied out before returning, so a reused buffer may be passed.
      *
      * @param message The message to send.
      */
-    private void BroadcastMessage(String message){
+    private void BroadcastMessage(CharSequence message){
         whitePlayer.sendMessage(message);
         blackPlayer.sendMessage(message);
+        spectators.text(message);
     }
 
     /**
@@ -323,12 +1125,20 @@ public class Game {
     private void endGame() {
         gameOver = true;
 
-        int[] territory = gameLogic.countTerritory(board);
-        int blackTotal = territory[0] + blackPrisoners;
-        int whiteTotal = territory[1] + whitePrisoners;
+        if (scorerStale) {
+            scorer.score(board); //Zapis SGF potrzebuje właścicieli punktów
+            scorerStale = false;
+        }
+        double blackTotal = blackScore();
+        double whiteTotal = whiteScore();
 
-        String resultMessage = "GAME_OVER SCORE BLACK:" + blackTotal +
-                " WHITE:" + whiteTotal + " ";
+        if (blackTotal != whiteTotal) {
+            result = (blackTotal > whiteTotal ? "B+" : "W+") + GameConfig.formatPoints(Math.abs(blackTotal - whiteTotal));
+        } else {
+            result = "0";
+        }
+        String resultMessage = "GAME_OVER SCORE BLACK:" + GameConfig.formatPoints(blackTotal) +
+                " WHITE:" + GameConfig.formatPoints(whiteTotal) + " ";
 
         if (blackTotal > whiteTotal) {
             resultMessage += "BLACK_WINS";
@@ -339,6 +1149,7 @@ public class Game {
         }
 
         BroadcastMessage(resultMessage);
+        finish();
     }
 
 }
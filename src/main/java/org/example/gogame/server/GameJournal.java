@@ -0,0 +1,397 @@
+package org.example.gogame.server;
+
+import org.example.gogame.GameConfig;
+import org.example.gogame.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only journal of the events of all running games, kept in a memory-mapped file.
+ * <p>
+ * Every accepted move, pass, stone removal and resume is written as one fixed-width record of
+ * {@link #RECORD_SIZE} bytes: the game ID, the event type, two coordinates, a color or board size and a
+ * checksum. The start of a game also records its {@link GameConfig}, the clock settings and a seat played by a bot
+ * in records of their own. Appending only copies the record into the mapping, so it never waits for the disk. A background
+ * thread forces the written records to disk in groups, at most {@link #COMMIT_INTERVAL_MS} after they were
+ * appended (group commit); a crash of the server process alone loses nothing, as the records are already
+ * in the page cache, while a crash of the machine loses at most the last interval.
+ * <p>
+ * On {@link #open} the journal is read up to the first incomplete record, finished games are dropped
+ * and the file is rewritten with the events of the games still running, which a {@link Lobby} can then
+ * replay with {@link Lobby#restoreGames()}. The journal also keeps the key session tokens are derived from,
+ * so players can reconnect to their games after a restart, and the lowest game ID never used, so the tokens
+ * of finished games never fit a new one.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class GameJournal implements Closeable {
+    /** Size of one record in bytes. */
+    static final int RECORD_SIZE = 16;
+    /** Longest time an appended record waits to be forced to disk. */
+    static final long COMMIT_INTERVAL_MS = 5;
+
+    /** A game started; the argument is the board size, x the komi in half points and y the rules. */
+    static final byte START = 1;
+    /** An accepted move; the argument is the stone color. */
+    static final byte MOVE = 2;
+    /** A pass; the argument is the color that passed. */
+    static final byte PASS = 3;
+    /** A stone removed as dead during negotiation. */
+    static final byte REMOVE = 4;
+    /** Play resumed after negotiation; the argument is the color that resumed. */
+    static final byte RESUME = 5;
+    /** The game ended. */
+    static final byte END = 6;
+    /** Half of the session key, in place of the game ID; x tells which half. */
+    static final byte KEY = 7;
+    /** The clock of a game started right before; x and y are the main time in seconds, the argument the increment. */
+    static final byte TIME = 8;
+    /** A move or pass taken back; the argument is the color that took it back. */
+    static final byte UNDO = 9;
+    /** A seat of a game started right before is played by a {@link BotPlayer}; the argument is the bot's color. */
+    static final byte BOT = 10;
+    /** The lowest game ID never used, in place of the game ID; written when the journal is compacted. */
+    static final byte NEXT_ID = 11;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024 * RECORD_SIZE;
+    private static final int CHECK_SEED = 0x60D0_5EED;
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final Thread committer;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int durable;
+    private boolean closed = false;
+    private List<RecordedGame> activeGames = Collections.emptyList();
+    private final long[] sessionKey = new long[2];
+    private long nextGameId = 1;
+
+    /**
+     * One recorded event of a game.
+     *
+     * @param type The event type, e.g. {@link #MOVE}.
+     * @param x The x-coordinate, 0 if the event has none.
+     * @param y The y-coordinate, 0 if the event has none.
+     * @param arg The stone color code or board size, 0 if the event has none.
+     */
+    public record Event(byte type, int x, int y, int arg) {
+    }
+
+    /**
+     * The events of a game that had not ended when the journal was opened.
+     *
+     * @param id The game ID.
+     * @param config The settings of the game.
+     * @param events The events after the start, in order.
+     */
+    public record RecordedGame(long id, GameConfig config, List<Event> events) {
+    }
+
+    /**
+     * Maps a journal file and starts the committing thread.
+     *
+     * @param file The file.
+     * @param position The length of the valid records at the start of the file.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private GameJournal(Path file, int position) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, 2 * position));
+        this.position = position;
+        this.durable = position;
+        this.committer = Thread.ofPlatform().daemon().name("journal-commit").start(this::commitLoop);
+    }
+
+    /**
+     * Opens a journal, reading the games that were still running when it was last written.
+     * The file is created if it does not exist, and compacted to the running games otherwise.
+     *
+     * @param file The journal file.
+     * @return The journal, ready for appending.
+     * @throws IOException If the file cannot be read or written.
+     */
+    public static GameJournal open(Path file) throws IOException {
+        long[] key = new long[3];
+        key[2] = 1;
+        List<RecordedGame> games = Files.exists(file) ? read(file, key) : Collections.emptyList();
+        if (key[0] == 0 && key[1] == 0) {
+            SecureRandom random = new SecureRandom();
+            key[0] = random.nextLong();
+            key[1] = random.nextLong();
+        }
+
+        //Przepisujemy do pliku tymczasowego tylko trwające gry i podmieniamy plik atomowo
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(compacted);
+        int length;
+        try (GameJournal journal = new GameJournal(compacted, 0)) {
+            journal.append(key[0], KEY, 0, 0, 0);
+            journal.append(key[1], KEY, 1, 0, 0);
+            journal.append(key[2], NEXT_ID, 0, 0, 0); //Zakończone gry znikają, a ich ID nie mogą wrócić z tymi samymi tokenami
+            for (RecordedGame game : games) {
+                journal.start(game.id(), game.config());
+                for (Event event : game.events()) {
+                    journal.append(game.id(), event.type(), event.x(), event.y(), event.arg());
+                }
+            }
+            length = journal.position;
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        GameJournal journal = new GameJournal(file, length);
+        journal.activeGames = games;
+        journal.sessionKey[0] = key[0];
+        journal.sessionKey[1] = key[1];
+        journal.nextGameId = key[2];
+        return journal;
+    }
+
+    /**
+     * Reads the records of a journal file up to the first incomplete one.
+     *
+     * @param file The journal file.
+     * @param key Receives the two halves of the session key, left zero if the file has none,
+     *            and the lowest game ID never used, which must be set to 1 by the caller.
+     * @return The games without an {@link #END} record, in the order they were started.
+     * @throws IOException If the file cannot be read.
+     */
+    private static List<RecordedGame> read(Path file, long[] key) throws IOException {
+        LinkedHashMap<Long, RecordedGame> games = new LinkedHashMap<>();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer records = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            for (int at = 0; at + RECORD_SIZE <= records.limit(); at += RECORD_SIZE) {
+                long id = records.getLong(at);
+                byte type = records.get(at + 8);
+                int x = records.get(at + 9) & 0xFF;
+                int y = records.get(at + 10) & 0xFF;
+                int arg = records.get(at + 11) & 0xFF;
+                if (type < START || type > NEXT_ID || records.getInt(at + 12) != check(id, type, x, y, arg)) {
+                    break; //Koniec zapisanych danych albo rekord przerwany awarią
+                }
+                if (type == KEY) {
+                    key[x & 1] = id;
+                } else if (type == NEXT_ID) {
+                    key[2] = Math.max(key[2], id);
+                } else if (type == START) {
+                    key[2] = Math.max(key[2], id + 1);
+                    GameConfig.Rules rules = GameConfig.Rules.values()[y % GameConfig.Rules.values().length];
+                    games.put(id, new RecordedGame(id, new GameConfig(arg, (byte) x / 2.0, rules, 0, 0), new ArrayList<>()));
+                } else if (type == TIME && games.containsKey(id)) {
+                    RecordedGame game = games.get(id);
+                    GameConfig config = game.config();
+                    config = new GameConfig(config.size(), config.komi(), config.rules(), x << 8 | y, arg);
+                    games.put(id, new RecordedGame(id, config, game.events()));
+                } else if (type == END) {
+                    games.remove(id);
+                } else if (games.containsKey(id)) {
+                    games.get(id).events().add(new Event(type, x, y, arg));
+                }
+            }
+        }
+        return new ArrayList<>(games.values());
+    }
+
+    /**
+     * Returns the games that were still running when the journal was opened.
+     *
+     * @return The recorded games, in the order they were started.
+     */
+    public List<RecordedGame> getActiveGames() {
+        return activeGames;
+    }
+
+    /**
+     * Returns the lowest game ID that no game recorded in the journal has ever had, finished games included.
+     * New games must start from it, or the session tokens of old games would be valid for them.
+     *
+     * @return The next game ID, at least 1.
+     */
+    public long getNextGameId() {
+        return nextGameId;
+    }
+
+    /**
+     * Returns the key session tokens are derived from, the same every time the journal is opened.
+     *
+     * @return The 16 bytes of the key.
+     */
+    public byte[] getSessionKey() {
+        return ByteBuffer.allocate(16).putLong(sessionKey[0]).putLong(sessionKey[1]).array();
+    }
+
+    /**
+     * Records the start of a game with its settings.
+     *
+     * @param game The game ID.
+     * @param config The settings of the game.
+     */
+    void start(long game, GameConfig config) {
+        append(game, START, (int) (config.komi() * 2), config.rules().ordinal(), config.size());
+        if (config.isTimed()) {
+            append(game, TIME, config.mainTime() >> 8, config.mainTime(), config.increment());
+        }
+    }
+
+    /**
+     * Appends a record. Never waits for the disk and allocates nothing unless the file has to grow.
+     *
+     * @param game The game ID.
+     * @param type The event type.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param arg The stone color code or board size.
+     */
+    void append(long game, byte type, int x, int y, int arg) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (position + RECORD_SIZE > buffer.capacity()) {
+                grow();
+            }
+            buffer.putLong(position, game);
+            buffer.put(position + 8, type);
+            buffer.put(position + 9, (byte) x);
+            buffer.put(position + 10, (byte) y);
+            buffer.put(position + 11, (byte) arg);
+            buffer.putInt(position + 12, check(game, type, x & 0xFF, y & 0xFF, arg & 0xFF));
+            position += RECORD_SIZE;
+            appended.signal();
+        } catch (IOException e) {
+            Log.error("Journal error, no longer recording", e);
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far has been forced to disk.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void sync() throws InterruptedException {
+        lock.lock();
+        try {
+            int target = position;
+            while (durable < target && !closed) {
+                appended.signal();
+                committed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the remaining records to disk and closes the file.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        buffer.force(0, position);
+        channel.close();
+    }
+
+    /**
+     * Maps a region twice as large. Called with the lock held.
+     *
+     * @throws IOException If the file cannot be extended.
+     */
+    private void grow() throws IOException {
+        buffer.force(durable, position - durable); //Stare odwzorowanie nie będzie już widoczne dla wątku zapisującego
+        durable = position;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * buffer.capacity());
+    }
+
+    /**
+     * Forces appended records to disk, once per {@link #COMMIT_INTERVAL_MS} at most,
+     * until the journal is closed.
+     */
+    private void commitLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            int from;
+            int to;
+            lock.lock();
+            try {
+                while (durable == position && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (closed) {
+                    committed.signalAll();
+                    return;
+                }
+                target = buffer;
+                from = durable;
+                to = position;
+            } finally {
+                lock.unlock();
+            }
+
+            target.force(from, to - from);
+
+            lock.lock();
+            try {
+                if (durable < to) {
+                    durable = to;
+                }
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                Thread.sleep(COMMIT_INTERVAL_MS); //Kolejne rekordy zbierają się w jedną grupę
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Computes the checksum of a record, which tells a complete record from zeros or a torn write.
+     */
+    private static int check(long game, byte type, int x, int y, int arg) {
+        int h = CHECK_SEED ^ Long.hashCode(game);
+        h = h * 31 + type;
+        h = h * 31 + x;
+        h = h * 31 + y;
+        h = h * 31 + arg;
+        return h ^ (h >>> 16);
+    }
+}
@@ -4,17 +4,29 @@ import org.example.gogame.Board;
 import org.example.gogame.StoneColor;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Contains the rules and mechanics of the game of Go.
  * Handles validation, liberty counting, capture logic, and Ko rule detection.
+ * {@link #play} applies all of them to a move, superko included, against a {@link PositionHistory}
+ * keyed by {@link #positionHash}; live games and replays both go through it.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
 public class GameLogic {
-    private int regionSize = 0; //Variable used while calculating points for territory
+    /** Returned by {@link #play} for a move off the board or on an occupied point. */
+    public static final int INVALID = -1;
+    /** Returned by {@link #play} for a move retaking a ko at once. */
+    public static final int KO = -2;
+    /** Returned by {@link #play} for a move leaving its own chain without liberties. */
+    public static final int SUICIDE = -3;
+    /** Returned by {@link #play} for a move repeating an earlier position. */
+    public static final int SUPERKO = -4;
+    /** Number of positions {@link #TERRITORY} holds, 16 bytes each. */
+    static final int TERRITORY_ENTRIES = 1 << 15;
+    /** Territory counts of positions scored by any game, keyed by {@link #territoryKey}. */
+    static final TranspositionTable TERRITORY = new TranspositionTable(TERRITORY_ENTRIES);
+
     /**
      * Checks if the given coordinates are within the board boundaries.
      *
@@ -42,95 +54,40 @@ public class GameLogic {
 
     /**
      * Counts the liberties of a connected chain of stones starting at (startX, startY).
-     * Uses a Breadth-First Search (BFS) approach.
+     * Uses the chain structure maintained by the board, so no flood fill is needed.
      *
      * @param board The game board.
      * @param startX The x-coordinate of a stone in the chain.
      * @param startY The y-coordinate of a stone in the chain.
      * @param color The color of the chain.
-     * @return The number of unique liberties (empty adjacent points) for the chain.
+     * @return The number of unique liberties (empty adjacent points) for the chain,
+     *         or 0 if the point does not hold a stone of the given color.
      */
     public int countChainLiberties(Board board, int startX, int startY, StoneColor color) {
-        Set<String> visited = new HashSet<>(); //HashSet punktów które zostały odwiedzone, aby uniknąć duplikacji
-        Set<String> liberties = new HashSet<>(); //HashSet z unikalnymi oddechami aby uniknąć dodania dwa razy tego samego oddechu
-        ArrayList<int[]> stack = new ArrayList<>(); //Stos dla algorytmu Flood Fill
-
-        stack.add(new int[]{startX, startY});
-        visited.add(startX + "," + startY);
-
-        int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
-
-        //Wykonujemy do momentu aż na stosie skończą się elementy
-        while (!stack.isEmpty()) {
-            int[] current = stack.remove(stack.size() - 1); //Usuwamy pierwszy element ze stostu i sprawdzamy punkty obok tego elementu
-            int cx = current[0];
-            int cy = current[1];
-
-            for (int[] dir : directions) {
-                int nx = cx + dir[0];
-                int ny = cy + dir[1];
-
-                if (inBounds(board, nx, ny)) {
-                    StoneColor neighborColor = board.getStone(nx, ny);
-                    String key = nx + "," + ny;
-                    //jeżeli jest pusty punkt to dodajemy oddech
-                    if (neighborColor == StoneColor.EMPTY) {
-                        liberties.add(key);
-                    } else if (neighborColor == color && !visited.contains(key)) {
-                        //jeżeli znajdujemy kamień tego samego koloru to dodajemy go do stosu
-                        visited.add(key);
-                        stack.add(new int[]{nx, ny});
-                    }
-                }
-            }
+        //Na pustym punkcie lub kamieniu przeciwnika nie ma łańcucha tego koloru
+        if (color == StoneColor.EMPTY || board.getStone(startX, startY) != color) {
+            return 0;
         }
-        return liberties.size();
+        return board.countLiberties(board.point(startX, startY));
     }
 
     /**
-     * Retrieves all stones belonging to the chain connected to (startX, startY).
+     * Writes all stones belonging to the chain connected to the given point into a buffer
+     * by following the board's chain links.
      *
      * @param board The game board.
-     * @param startX The x-coordinate.
-     * @param startY The y-coordinate.
-     * @param color The color of the chain.
-     * @return A list of coordinates representing the stones in the chain.
+     * @param start The point index of a stone of the chain.
+     * @param out The buffer receiving point indices.
+     * @param offset The index in {@code out} at which to start writing.
+     * @return The index in {@code out} just after the last written point.
      */
-    private ArrayList<int[]> getChain(Board board, int startX, int startY, StoneColor color) {
-        Set<String> visited = new HashSet<>(); //HashSet punktów które zostały odwiedzone, aby uniknąć duplikacji
-        ArrayList<int[]> chain = new ArrayList<>(); //Punkty należące do łańcucha
-        ArrayList<int[]> stack = new ArrayList<>(); //Stos dla algorytmu Flood Fill
-
-        stack.add(new int[]{startX, startY});
-        visited.add(startX + "," + startY);
-        chain.add(new int[]{startX, startY});
-
-        int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
-
-        while (!stack.isEmpty()) {
-            int[] current = stack.remove(stack.size() - 1);
-            int cx = current[0];
-            int cy = current[1];
-
-            // Sprawdzamy wszystkie punkty obok
-            for (int[] dir : directions) {
-                int nx = cx + dir[0];
-                int ny = cy + dir[1];
-                String key = nx + "," + ny;
-
-                //jeżeli w granicach i kolor się zgadza to dodajemy do stosu, visited i łańcucha
-                if (inBounds(board, nx, ny) &&
-                        board.getStone(nx, ny) == color &&
-                        !visited.contains(key)) {
-
-                    visited.add(key);
-                    int[] stone = new int[]{nx, ny};
-                    stack.add(stone);
-                    chain.add(stone);
-                }
-            }
-        }
-        return chain;
+    private int getChain(Board board, int start, int[] out, int offset) {
+        int p = start;
+        do {
+            out[offset++] = p;
+            p = board.getNextInChain(p);
+        } while (p != start);
+        return offset;
     }
 
     /**
@@ -141,37 +98,84 @@ public class GameLogic {
      * @param y The y-coordinate of the placed stone.
      * @param color The color of the placed stone.
      * @return A list of coordinates of captured stones.
+     * @see #collectCaptures(Board, int, byte, int[])
      */
     public ArrayList<int[]> checkCaptures(Board board, int x, int y, StoneColor color) {
-        ArrayList<int[]> capturedStones = new ArrayList<>(); //Punkty które zostaną zbite
-        StoneColor enemyColor = (color == StoneColor.BLACK ? StoneColor.WHITE : StoneColor.BLACK);
-        int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
-
-        Set<String> visitedEnemies = new HashSet<>(); //HashSet napotkanych wrogów aby uniknąć duplikatów przy sprawdzaniu
-
-        for (int[] dir : directions) {
-            int nx = x + dir[0];
-            int ny = y + dir[1];
-            String key = nx + "," + ny;
+        int[] points = new int[board.getCapacity()];
+        int count = collectCaptures(board, board.point(x, y), Board.code(color), points);
 
-            //Sprawdzamy każdy kamień dookoła, jeżeli znajdujemy kamień przeciwnika
-            if (inBounds(board, nx, ny) && board.getStone(nx, ny) == enemyColor) {
-                if (!visitedEnemies.contains(key)) {
-
-                    int libs = countChainLiberties(board, nx, ny, enemyColor);//liczymy jego oddechy
+        ArrayList<int[]> capturedStones = new ArrayList<>(count); //Punkty które zostaną zbite
+        for (int i = 0; i < count; i++) {
+            capturedStones.add(new int[]{board.getX(points[i]), board.getY(points[i])});
+        }
+        return capturedStones;
+    }
 
-                    ArrayList<int[]> enemyChain = getChain(board, nx, ny, enemyColor); //znajdujemy punkty łańcucha przeciwnika
-                    for(int[] stone : enemyChain) {
-                        visitedEnemies.add(stone[0] + "," + stone[1]);
-                    }
+    /**
+     * Finds the enemy chains captured by a stone that has just been placed and writes their
+     * stones into a caller supplied buffer, stones of one chain being stored next to each other.
+     * Only the (at most four) enemy chains adjacent to the stone are inspected,
+     * each with a constant time liberty check. Allocates nothing.
+     *
+     * @param board The game board.
+     * @param point The point index of the placed stone.
+     * @param color The cell code of the placed stone.
+     * @param out The buffer receiving the captured points; {@link Board#getCapacity()} entries always suffice.
+     * @return The number of captured points written to {@code out}.
+     */
+    public int collectCaptures(Board board, int point, byte color, int[] out) {
+        byte enemy = Board.opponent(color);
+        int stride = board.getStride();
+        int count = 0;
+
+        for (int i = 0; i < 4; i++) {
+            int n = neighbour(point, stride, i);
+            //Sprawdzamy każdy kamień dookoła, jeżeli znajdujemy kamień przeciwnika bez oddechów
+            if (board.get(n) == enemy && !board.hasLiberties(n)
+                    && !seenBefore(board, point, i, enemy)) {
+                count = getChain(board, n, out, count);
+            }
+        }
+        return count;
+    }
 
-                    if (libs == 0) { //jeżeli oddechy tego łańcucha są równe 0 dodajemy cały łańcuch do zdobytych kamieni przeciwnika
-                        capturedStones.addAll(enemyChain);
-                    }
-                }
+    /**
+     * Checks whether the chain of the {@code index}-th neighbour of a point was already met
+     * at a lower neighbour index.
+     *
+     * @param board The game board.
+     * @param point The point index of the placed stone.
+     * @param index Index of the neighbour being inspected.
+     * @param enemy Cell code of the enemy color.
+     * @return true if an earlier neighbour belongs to the same chain.
+     */
+    private boolean seenBefore(Board board, int point, int index, byte enemy) {
+        int stride = board.getStride();
+        int head = board.getChainHead(neighbour(point, stride, index));
+        for (int i = 0; i < index; i++) {
+            int n = neighbour(point, stride, i);
+            if (board.get(n) == enemy && board.getChainHead(n) == head) {
+                return true;
             }
         }
-        return capturedStones;
+        return false;
+    }
+
+    /**
+     * Returns one of the four neighbours of a point.
+     *
+     * @param point The point index.
+     * @param stride The row stride of the board.
+     * @param direction 0 to 3.
+     * @return The neighbouring point index.
+     */
+    private static int neighbour(int point, int stride, int direction) {
+        switch (direction) {
+            case 0: return point + 1;
+            case 1: return point - 1;
+            case 2: return point + stride;
+            default: return point - stride;
+        }
     }
 
     /**
@@ -185,8 +189,7 @@ public class GameLogic {
      * @return The color if valid, or {@link StoneColor#EMPTY} if it's a suicide move.
      */
     public StoneColor finalCheck(Board board, int x, int y, StoneColor color) {
-        int libs = countChainLiberties(board, x, y, color);
-        if (libs == 0) {
+        if (!board.hasLiberties(board.point(x, y))) {
             return StoneColor.EMPTY;
         }
         return color;
@@ -207,78 +210,146 @@ public class GameLogic {
         return false;
 
     }
+
     /**
-     * Calculates the territory score for both Black and White players.
-     * Iterates over the entire board to find empty regions and assigns them to a player
-     * if the region is completely enclosed by that player's stones.
+     * Checks if the move violates the Ko rule using a point index instead of a coordinate pair.
      *
-     * @param board The current state of the game board.
-     * @return An integer array where index 0 is Black's territory and index 1 is White's territory.
+     * @param board The game board.
+     * @param koPoint The point index of the last single stone captured in a Ko, or -1 if there is none.
+     * @param x The x-coordinate of the current move.
+     * @param y The y-coordinate of the current move.
+     * @return true if the move is Ko, false otherwise.
      */
-    public int[] countTerritory(Board board) {
-        int blackTerritory = 0;
-        int whiteTerritory = 0;
-        int size = board.getSize();
-        boolean[][] visited = new boolean[size][size];
+    public boolean isKo(Board board, int koPoint, int x, int y){
+        return koPoint == board.point(x, y);
+    }
 
-        //iteruje po całej planszy
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                if (board.getStone(x, y) == StoneColor.EMPTY && !visited[x][y]) {
-                    StoneColor owner = checkRegionOwner(board, x, y, visited); //Sprawdza właściciela terytorium
-                    if (owner == StoneColor.BLACK) blackTerritory += regionSize;
-                    if (owner == StoneColor.WHITE) whiteTerritory += regionSize;
-                }
+    /**
+     * Computes the key under which a position is stored for superko detection.
+     * Under {@link SuperkoRule#SITUATIONAL} the player to move is part of the key.
+     *
+     * @param board The game board.
+     * @param toMove The color of the player to move next.
+     * @param rule The superko variant in force.
+     * @return The 64-bit position key.
+     */
+    public long positionHash(Board board, StoneColor toMove, SuperkoRule rule){
+        if (rule == SuperkoRule.SITUATIONAL) {
+            return board.getHash() ^ Board.sideKey(Board.code(toMove));
+        }
+        return board.getHash();
+    }
+    /**
+     * Plays a stone with all rules applied: the point must be on the board and empty, must not retake
+     * a ko, must not be suicide and must not repeat a position in the history. A legal move stays on the
+     * board with its captures removed and its position added to the history; an illegal one leaves the
+     * board as it was. This is the single place both live games and replays apply the rules. Allocates nothing.
+     *
+     * @param board The game board.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The cell code of the stone.
+     * @param koPoint The point a ko forbids, or -1.
+     * @param history The positions seen so far, or null to skip the superko check, e.g. in simulations.
+     * @param rule The superko variant in force, unused without a history.
+     * @param captured The buffer receiving the captured points; {@link Board#getCapacity()} entries always suffice.
+     * @return The number of captured stones, or {@link #INVALID}, {@link #KO}, {@link #SUICIDE} or {@link #SUPERKO}.
+     */
+    public int play(Board board, int x, int y, byte color, int koPoint, PositionHistory history, SuperkoRule rule, int[] captured) {
+        if (!validateMove(board, x, y)) { //Sprawdzenie czy ruch jest w granicach i na pustym miejscu
+            return INVALID;
+        }
+        if (isKo(board, koPoint, x, y)) {
+            return KO;
+        }
+        int point = board.point(x, y);
+        board.set(point, color);
+        int captureCount = collectCaptures(board, point, color, captured);
+        for (int i = 0; i < captureCount; i++) {
+            if (board.get(captured[i]) != Board.EMPTY) {
+                board.removeChain(captured[i]);
             }
         }
-        return new int[]{blackTerritory, whiteTerritory};
+        StoneColor placed = Board.color(color);
+        if (finalCheck(board, x, y, placed) == StoneColor.EMPTY) { //Oddechy łańcucha z dodanym kamieniem po zbiciu przeciwnika
+            undo(board, point, color, captured, captureCount);
+            return SUICIDE;
+        }
+        if (history != null && !history.add(positionHash(board, Board.color(Board.opponent(color)), rule))) {
+            undo(board, point, color, captured, captureCount);
+            return SUPERKO;
+        }
+        return captureCount;
     }
 
     /**
-     * Determines the owner of a contiguous region of empty intersections using BFS.
-     * A region is owned by a color if it only touches stones of that color.
-     * If it touches both colors, it is neutral (Dame).
+     * Returns the point a ko forbids after a legal move: the stone it captured, if it captured
+     * exactly one and is itself a lone stone left with a single liberty. A larger chain in atari
+     * could be taken back at once, but that capture takes more than one stone, so it is no ko.
      *
-     * @param board   The game board.
-     * @param startX  The starting x-coordinate of the empty region.
-     * @param startY  The starting y-coordinate of the empty region.
-     * @param visited A matrix to keep track of visited nodes during territory counting.
-     * @return StoneColor.BLACK if owned by black, StoneColor.WHITE if owned by white, or StoneColor.EMPTY if neutral.
+     * @param board The game board.
+     * @param point The point index of the placed stone.
+     * @param captured The captured points.
+     * @param captureCount The number of captured stones.
+     * @return The forbidden point, or -1.
      */
-    private StoneColor checkRegionOwner(Board board, int startX, int startY, boolean[][] visited) {
-        ArrayList<int[]> queue = new ArrayList<>(); //Stos dla algorytmu Flood Fill
-        queue.add(new int[]{startX, startY});
-        visited[startX][startY] = true;
-        regionSize = 0;
-
-        //Flagi czy region dotyka danego koloru
-        boolean touchesBlack = false;
-        boolean touchesWhite = false;
+    public int koPointAfter(Board board, int point, int[] captured, int captureCount) {
+        if (captureCount == 1 && board.getChainSize(point) == 1 && board.countLiberties(point) == 1) {
+            return captured[0];
+        }
+        return -1;
+    }
 
-        while(!queue.isEmpty()) {
-            int[] curr = queue.remove(0);
-            regionSize++;
+    /**
+     * Takes back a placed stone and puts its captures back.
+     */
+    private void undo(Board board, int point, byte color, int[] captured, int captureCount) {
+        board.set(point, Board.EMPTY);
+        byte enemy = Board.opponent(color);
+        for (int i = 0; i < captureCount; i++) {
+            board.set(captured[i], enemy);
+        }
+    }
 
-            int[][] dirs = {{1,0}, {-1,0}, {0,1}, {0,-1}};
-            //Sprawdzamy każdy punkt obok
-            for(int[] d : dirs) {
-                int nx = curr[0] + d[0];
-                int ny = curr[1] + d[1];
-                if(nx >= 0 && nx < board.getSize() && ny >= 0 && ny < board.getSize()) {
-                    StoneColor stone = board.getStone(nx, ny);
-                    //Sprawdzenie z kim sąsiaduje, jeżeli z pustym to dodaje go do stosu aby był sprawdzony w następnym kroku
-                    if(stone == StoneColor.EMPTY && !visited[nx][ny]) {
-                        visited[nx][ny] = true;
-                        queue.add(new int[]{nx, ny});
-                    } else if(stone == StoneColor.BLACK) touchesBlack = true;
-                    else if(stone == StoneColor.WHITE) touchesWhite = true;
-                }
-            }
+    /**
+     * Calculates the territory score for both Black and White players.
+     * An empty region belongs to a player if it is completely enclosed by that player's stones.
+     * A position counted before, in any game, is answered from {@link #TERRITORY}; otherwise a fresh
+     * {@link TerritoryScorer} counts it, so concurrent calls do not interfere.
+     *
+     * @param board The current state of the game board.
+     * @return An integer array where index 0 is Black's territory and index 1 is White's territory.
+     */
+    public int[] countTerritory(Board board) {
+        long key = territoryKey(board);
+        int cached = TERRITORY.get(key, TranspositionTable.EXACT);
+        if (cached != TranspositionTable.MISS) {
+            return new int[]{cached >>> 16, cached & 0xFFFF};
         }
+        int[] territory = new TerritoryScorer(board.getSize()).score(board);
+        TERRITORY.put(key, packTerritory(territory[0], territory[1]), TranspositionTable.EXACT);
+        return territory;
+    }
 
-        if(touchesBlack && !touchesWhite) return StoneColor.BLACK;
-        if(!touchesBlack && touchesWhite) return StoneColor.WHITE;
-        return StoneColor.EMPTY;
+    /**
+     * Returns the key of a position in {@link #TERRITORY}: the board hash, told apart by the board size,
+     * since the empty boards of all sizes hash to 0.
+     *
+     * @param board The board.
+     * @return The key.
+     */
+    static long territoryKey(Board board) {
+        return board.getHash() + board.getSize() * 0x9E3779B97F4A7C15L;
     }
 
+    /**
+     * Packs the territory of both players into one value of {@link #TERRITORY}.
+     *
+     * @param black Black's territory.
+     * @param white White's territory.
+     * @return Black's territory in the high 16 bits, White's in the low ones.
+     */
+    static int packTerritory(int black, int white) {
+        return black << 16 | white;
+    }
 }
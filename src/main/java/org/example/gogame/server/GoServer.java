@@ -1,64 +1,225 @@
 package org.example.gogame.server;
 
+import org.example.gogame.Log;
 import org.example.gogame.StoneColor;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Main entry point for the Go Game Server.
- * Listens for client connections and starts a new Game instance when two players connect.
+ * Listens for client connections and hands every player to the {@link Lobby},
+ * which pairs players asking for the same board size and starts their games.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
 public class GoServer {
 
     private static int port = 1111;
+    /** Journal file used unless another one is given. */
+    public static final String DEFAULT_JOURNAL = "games.journal";
+    /** Port of the metrics endpoint used unless another one is given. */
+    public static final int DEFAULT_METRICS_PORT = 9464;
+
+    private final ExecutionMode mode;
+    private final int eventLoops;
+    private final Lobby lobby;
+
+    /**
+     * Creates a server using one thread per player.
+     */
+    public GoServer() {
+        this(ExecutionMode.THREADS, 1);
+    }
+
+    /**
+     * Creates a server with the given execution mode.
+     *
+     * @param mode How player connections are served.
+     * @param eventLoops Number of event loop threads, used in {@link ExecutionMode#NIO} mode.
+     */
+    public GoServer(ExecutionMode mode, int eventLoops) {
+        this(mode, eventLoops, null);
+    }
+
+    /**
+     * Creates a server recording its games in a journal and restores the games that were running
+     * when the journal was last written.
+     *
+     * @param mode How player connections are served.
+     * @param eventLoops Number of event loop threads, used in {@link ExecutionMode#NIO} mode.
+     * @param journal The journal, or null if games are not recorded.
+     */
+    public GoServer(ExecutionMode mode, int eventLoops, GameJournal journal) {
+        this.mode = mode;
+        this.eventLoops = eventLoops;
+        this.lobby = new Lobby(Executors.newVirtualThreadPerTaskExecutor(), journal);
+        int restored = lobby.restoreGames();
+        if (restored > 0) {
+            Log.info("Restored games from the journal", restored);
+        }
+    }
 
     /**
      * Starts the server.
+     * Accepted arguments are an optional port number, {@code --mode=threads|virtual|nio},
+     * {@code --event-loops=N}, {@code --journal=FILE} (default {@value #DEFAULT_JOURNAL},
+     * {@code --journal=none} to disable it), {@code --metrics-port=N} (default {@value #DEFAULT_METRICS_PORT},
+     * 0 to disable the metrics endpoint), {@code --log-level=debug|info|warn|error|off} and
+     * {@code --sgf-dir=DIR} to save every finished game as an SGF file. {@code --bot-threads=N} and
+     * {@code --bot-move-ms=N} set the search threads shared by all bots and the time a bot thinks about a move.
+     * {@code --estimate-playouts=N} sets the playouts of the dead stone estimate made when a game is passed out
+     * (default {@value OwnershipEstimator#DEFAULT_PLAYOUTS}, 0 to leave all removals to the players).
      *
-     * @param args Command line arguments (optional port number).
+     * @param args Command line arguments.
      */
     public static void main(String[] args) {
-        if (args.length == 1) {
+        ExecutionMode mode = ExecutionMode.THREADS;
+        int eventLoops = Runtime.getRuntime().availableProcessors();
+        String journalFile = DEFAULT_JOURNAL;
+        int metricsPort = DEFAULT_METRICS_PORT;
+        Path sgfDirectory = null;
+        int botThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        long botMoveMillis = Lobby.DEFAULT_BOT_MOVE_MS;
+        int estimatePlayouts = OwnershipEstimator.DEFAULT_PLAYOUTS;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--mode=")) {
+                    mode = ExecutionMode.valueOf(arg.substring(7).toUpperCase());
+                } else if (arg.startsWith("--event-loops=")) {
+                    eventLoops = Integer.parseInt(arg.substring(14));
+                } else if (arg.startsWith("--journal=")) {
+                    journalFile = arg.substring(10);
+                } else if (arg.startsWith("--metrics-port=")) {
+                    metricsPort = Integer.parseInt(arg.substring(15));
+                } else if (arg.startsWith("--sgf-dir=")) {
+                    sgfDirectory = Path.of(arg.substring(10));
+                } else if (arg.startsWith("--bot-threads=")) {
+                    botThreads = Integer.parseInt(arg.substring(14));
+                } else if (arg.startsWith("--bot-move-ms=")) {
+                    botMoveMillis = Long.parseLong(arg.substring(14));
+                } else if (arg.startsWith("--estimate-playouts=")) {
+                    estimatePlayouts = Integer.parseInt(arg.substring(20));
+                } else if (arg.startsWith("--log-level=")) {
+                    Log.setLevel(Log.Level.valueOf(arg.substring(12).toUpperCase()));
+                } else {
+                    port = Integer.parseInt(arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Malformed arguments. Exiting...");
+            return;
+        }
+        GameJournal journal = null;
+        if (!journalFile.equals("none")) {
             try {
-                port = Integer.parseInt(args[1]);
-            } catch (NumberFormatException e) {
-                System.err.println("Not a port number: " + args[1]);
+                journal = GameJournal.open(Path.of(journalFile));
+            } catch (IOException e) {
+                System.err.println("Cannot open journal " + journalFile + ": " + e.getMessage() + ". Exiting...");
+                return;
             }
-        } else if (args.length == 0) {
-            new GoServer().start();
-        } else {
+        }
+        if (botThreads < 1 || botMoveMillis < 1) {
             System.err.println("Malformed arguments. Exiting...");
+            return;
+        }
+        GoServer server = new GoServer(mode, eventLoops, journal);
+        server.getLobby().configureBots(botThreads, botMoveMillis);
+        server.getLobby().configureEstimates(estimatePlayouts);
+        if (sgfDirectory != null) {
+            try {
+                Files.createDirectories(sgfDirectory);
+                server.getLobby().setArchive(sgfDirectory);
+            } catch (IOException e) {
+                Log.warn("Cannot create SGF directory " + sgfDirectory, e.getMessage());
+            }
+        }
+        if (metricsPort > 0) {
+            try {
+                new MetricsServer(metricsPort, server.getLobby());
+                Log.info("Metrics available", "http://localhost:" + metricsPort + "/metrics");
+            } catch (IOException e) {
+                Log.warn("Cannot serve metrics on port " + metricsPort, e.getMessage());
+            }
         }
+        server.start();
     }
 
     /**
      * Runs the server loop, accepting connections and pairing players.
      */
     public void start() {
-        System.out.println("Go Server is running on port " + port);
+        Log.info("Go Server is running on port " + port, mode);
+        if (mode == ExecutionMode.NIO) {
+            startNio();
+            return;
+        }
 
         try (ServerSocket listener = new ServerSocket(port)) {
-            while (true) {
-                System.out.println("Waiting for Player 1 (BLACK)...");
-                Socket socket1 = listener.accept();
-                PlayerHandler player1 = new PlayerHandler(socket1, StoneColor.BLACK);
-                player1.sendMessage("MESSAGE Connected as BLACK. Waiting for opponent...");
+            serve(listener);
+        } catch (IOException e) {
+            Log.error("Server error", e);
+        }
+    }
 
-                System.out.println("Player 1 connected. Waiting for Player 2 (WHITE)...");
-                Socket socket2 = listener.accept();
-                PlayerHandler player2 = new PlayerHandler(socket2, StoneColor.WHITE);
-                player2.sendMessage("MESSAGE Connected as WHITE. Game starting...");
+    /**
+     * Accepts blocking connections, each served by its own platform or virtual thread, and admits them to the lobby.
+     * Every handler starts listening as soon as it is accepted, so it can send {@code JOIN} and is
+     * answered while waiting for an opponent; the accept loop itself never waits for a client.
+     *
+     * @param listener The bound server socket.
+     * @throws IOException If accepting fails.
+     */
+    void serve(ServerSocket listener) throws IOException {
+        ThreadFactory threads = mode == ExecutionMode.VIRTUAL
+                ? Thread.ofVirtual().name("player-", 0).factory()
+                : Thread.ofPlatform().name("player-", 0).factory();
+        while (!listener.isClosed()) {
+            Socket socket = listener.accept();
+            PlayerHandler player = new PlayerHandler(socket, StoneColor.EMPTY, threads);
+            player.start();
+            player.sendMessage("MESSAGE Connected. Waiting for opponent...");
+            player.flush();
+            lobby.admit(player);
+        }
+    }
 
-                System.out.println("Both players connected. Starting game.");
-                Game game = new Game(player1, player2, 19);
-            }
+    /**
+     * Returns the lobby pairing the players of this server.
+     *
+     * @return The lobby.
+     */
+    public Lobby getLobby() {
+        return lobby;
+    }
+
+    /**
+     * Serves players from selector based event loops and admits them to the lobby as they connect.
+     */
+    private void startNio() {
+        try {
+            NioServer server = new NioServer(port, eventLoops, this::admitNio);
+            server.acceptLoop();
         } catch (IOException e) {
-            System.err.println("Server error: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("Server error", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Admits a newly accepted non-blocking connection to the lobby.
+     * Runs on the acceptor thread.
+     *
+     * @param connection The new connection.
+     */
+    private void admitNio(NioConnection connection) {
+        PlayerHandler player = new PlayerHandler(connection, StoneColor.EMPTY);
+        player.sendMessage("MESSAGE Connected. Waiting for opponent...");
+        player.flush();
+        lobby.admit(player);
+    }
+}
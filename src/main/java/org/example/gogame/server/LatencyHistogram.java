@@ -0,0 +1,144 @@
+package org.example.gogame.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with a relative error of about 3%, in the spirit of HdrHistogram.
+ * <p>
+ * Values below 64 have a bucket each; above that, every power of two is split into 32 buckets of equal width,
+ * so the bucket index is computed with one leading-zero count and a shift. Recording is a single atomic
+ * increment of the bucket plus updates of the count and the sum: lock-free, allocation-free and safe from
+ * any number of threads. Values above {@link #MAX_VALUE} land in the last bucket.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class LatencyHistogram {
+    /** Largest value told apart from larger ones, about 18 minutes in nanoseconds. */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Upper bounds of the buckets exported to Prometheus, in nanoseconds, and their labels in seconds. */
+    private static final long[] EXPORTED_BOUNDS = {
+            1_000, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000,
+            10_000_000, 25_000_000, 50_000_000, 100_000_000, 250_000_000, 500_000_000, 1_000_000_000,
+            2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+    private static final String[] EXPORTED_LABELS = {
+            "0.000001", "0.000005", "0.00001", "0.000025", "0.00005", "0.0001", "0.00025", "0.0005", "0.001",
+            "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"};
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Records one value.
+     *
+     * @param nanos The latency in nanoseconds; negative values count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return The sum in nanoseconds.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns a value that the given share of the recorded values does not exceed.
+     * Values recorded during the call may or may not be taken into account.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket holding the percentile, 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target && total > 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Appends the histogram in the Prometheus text format, in seconds, with a fixed set of buckets.
+     * An exported bucket counts the internal buckets whose values are all within its bound, so it never
+     * counts a value above the bound, but may leave out values up to about 3% below it.
+     *
+     * @param out The destination.
+     * @param name The metric name, ending in {@code _seconds}.
+     * @param labels Labels without braces, e.g. {@code command="MOVE"}, or an empty string.
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        int bucket = 0;
+        for (int i = 0; i < EXPORTED_BOUNDS.length; i++) {
+            //Tylko kubełki leżące w całości poniżej granicy, bo le nie może liczyć większych wartości;
+            //wartości do ~3% poniżej granicy trafiają przez to do następnej
+            while (bucket < counts.length() && upperBound(bucket) <= EXPORTED_BOUNDS[i]) {
+                cumulative += counts.get(bucket++);
+            }
+            out.append(name).append("_bucket{").append(labels).append(separator)
+                    .append("le=\"").append(EXPORTED_LABELS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        while (bucket < counts.length()) {
+            cumulative += counts.get(bucket++);
+        }
+        out.append(name).append("_bucket{").append(labels).append(separator)
+                .append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(getSum() / 1e9).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value A value from 0 to {@link #MAX_VALUE}.
+     * @return The bucket index.
+     */
+    static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value of a bucket.
+     *
+     * @param index The bucket index.
+     * @return The upper bound, inclusive.
+     */
+    static long upperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long first = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return first + (1L << shift) - 1;
+    }
+}
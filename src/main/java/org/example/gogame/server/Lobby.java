@@ -0,0 +1,578 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.GameConfig;
+import org.example.gogame.Log;
+import org.example.gogame.StoneColor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Matchmaking lobby and registry of running games.
+ * <p>
+ * Waiting players are kept in one lock-free queue per {@link GameConfig}, so only players asking for the
+ * same board size, komi, rules and clock are paired. A newly connected player may ask for a configuration
+ * with {@code JOIN <size> [komi=K] [rules=R] [time=MAIN+INCREMENT]}; a player who has not asked within
+ * {@link #HANDSHAKE_TIMEOUT_MS} is queued for the defaults of {@link #DEFAULT_SIZE}, so older clients keep working.
+ * Pairing is serialized per queue with a work-in-progress counter instead of a lock: whichever thread
+ * raises the counter from zero drains the queue, the others only record that more work arrived.
+ * Games are started on a separate executor, so a slow client cannot hold up pairing of others.
+ * With a {@link GameJournal}, every game records its actions and the games that were running when
+ * the server stopped can be brought back with {@link #restoreGames()}.
+ * <p>
+ * Each player of a game gets a session token, which lets a new connection take over its seat with
+ * {@code RECONNECT <token>}. Tokens are not stored: a token names its game and carries a MAC of the game
+ * ID and color under the session key, so it can be checked without a table and, with a journal, stays
+ * valid across restarts; the journal also keeps game IDs from being used twice, so a token never fits a later game.
+ * A seat can only be taken over once its connection has been lost, and a player who does not come back
+ * within {@link #RECONNECT_TIMEOUT_MS} forfeits.
+ * <p>
+ * A player may play against a {@link BotPlayer} instead with {@code BOT <size> [settings]}. All bots of the
+ * lobby share one {@link MonteCarloSearch}, whose thread pool is only started by the first bot game.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public class Lobby {
+    /** Board sizes players can ask for. */
+    public static final int[] BOARD_SIZES = {9, 13, 19};
+    /** Board size used for players that do not ask for one. */
+    public static final int DEFAULT_SIZE = 19;
+    /** How long a new player has to send {@code JOIN} before getting the default size. */
+    public static final long HANDSHAKE_TIMEOUT_MS = 500;
+    /** How long a disconnected player's seat is kept before the game is forfeited. */
+    public static final long RECONNECT_TIMEOUT_MS = 60_000;
+    /** Most different configurations players can wait for at once; a configuration stops counting once nobody waits for it. */
+    public static final int MAX_CONFIGS = 256;
+    /** How often the clocks of timed games are checked for a player who ran out of time. */
+    public static final long CLOCK_CHECK_MS = 200;
+    /** Time a bot thinks about a move unless configured otherwise. */
+    public static final long DEFAULT_BOT_MOVE_MS = 1000;
+    /** Queued configuration of a connection that watches or rejoins games instead of waiting for one. */
+    static final GameConfig SPECTATING = GameConfig.of(2);
+
+    private static final StoneColor[] SEATS = {StoneColor.BLACK, StoneColor.WHITE};
+
+    private final ConcurrentHashMap<GameConfig, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Game> games = new ConcurrentHashMap<>();
+    private final AtomicLong nextGameId = new AtomicLong(1);
+    private final Executor gameStarter;
+    private final ScheduledExecutorService timer;
+    private final GameJournal journal;
+    private final SecretKeySpec sessionKey;
+    private volatile Path archive = null;
+    private int botThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private long botMoveMillis = DEFAULT_BOT_MOVE_MS;
+    private MonteCarloSearch botSearch = null; //Tworzony przy pierwszej grze z botem
+    private int estimatePlayouts = OwnershipEstimator.DEFAULT_PLAYOUTS;
+    private OwnershipEstimator estimator = null; //Tworzony przy pierwszej grze
+
+    /**
+     * Creates a lobby that starts games on virtual threads.
+     */
+    public Lobby() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Creates a lobby that starts games on the given executor.
+     *
+     * @param gameStarter Executor running game construction (which greets both players).
+     */
+    public Lobby(Executor gameStarter) {
+        this(gameStarter, null);
+    }
+
+    /**
+     * Creates a lobby that starts games on the given executor and records them in a journal.
+     *
+     * @param gameStarter Executor running game construction (which greets both players).
+     * @param journal The journal, or null if games are not recorded.
+     */
+    public Lobby(Executor gameStarter, GameJournal journal) {
+        this.gameStarter = gameStarter;
+        this.journal = journal;
+        byte[] key;
+        if (journal != null) {
+            key = journal.getSessionKey();
+            nextGameId.set(journal.getNextGameId()); //Klucz się nie zmienia, więc ID nie mogą się powtórzyć
+        } else {
+            key = new byte[16];
+            new SecureRandom().nextBytes(key);
+        }
+        this.sessionKey = new SecretKeySpec(key, "HmacSHA256");
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lobby-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::checkClocks, CLOCK_CHECK_MS, CLOCK_CHECK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a newly connected player, who is queued for the default size
+     * unless it sends {@code JOIN} first.
+     *
+     * @param player The connected player.
+     */
+    public void admit(PlayerHandler player) {
+        player.setLobby(this);
+        timer.schedule(() -> {
+            GameConfig config = GameConfig.of(DEFAULT_SIZE);
+            if (player.isConnected() && player.getGame() == null && player.compareAndSetQueued(null, config)) {
+                enqueue(player, config);
+            }
+        }, HANDSHAKE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a player for a game of the given size with the default settings.
+     *
+     * @param player The waiting player.
+     * @param size The requested board size.
+     * @return false if the size is not offered or the player is already in a game.
+     */
+    public boolean join(PlayerHandler player, int size) {
+        return size >= 2 && size <= 52 && join(player, GameConfig.of(size));
+    }
+
+    /**
+     * Queues a player for a game with the given settings, moving it from another queue if necessary.
+     * Ignored if the player was already queued for the same settings.
+     *
+     * @param player The waiting player.
+     * @param config The requested settings.
+     * @return false if the board size is not offered, too many other configurations are waiting
+     *         or the player is already in a game.
+     */
+    public boolean join(PlayerHandler player, GameConfig config) {
+        if (!offered(config.size()) || player.getGame() != null) {
+            return false;
+        }
+        GameConfig previous = player.getQueued();
+        if (config.equals(previous)) {
+            return true;
+        }
+        if (!buckets.containsKey(config) && buckets.size() >= MAX_CONFIGS) {
+            return false; //Równoległe JOIN mogą nieznacznie przekroczyć limit
+        }
+        if (!player.compareAndSetQueued(previous, config)) {
+            return false; //Równoległe JOIN tego samego gracza
+        }
+        if (previous != null && previous != SPECTATING && !dequeue(player, previous)) {
+            return false; //Gracz został już sparowany
+        }
+        enqueue(player, config);
+        return true;
+    }
+
+    /**
+     * Starts a game against a bot, which plays white, instead of waiting for an opponent.
+     *
+     * @param player The player, who plays black.
+     * @param config The settings of the game.
+     * @return false if the board size is not offered or the player has already been paired.
+     */
+    public boolean playBot(PlayerHandler player, GameConfig config) {
+        if (!offered(config.size()) || !withdraw(player)) {
+            return false;
+        }
+        startGame(player, bot(StoneColor.WHITE), config);
+        return true;
+    }
+
+    /**
+     * Creates a bot sharing the lobby's search, starting the search pool with the first bot.
+     *
+     * @param color The color the bot plays.
+     * @return The bot.
+     */
+    private synchronized BotPlayer bot(StoneColor color) {
+        if (botSearch == null) {
+            botSearch = new MonteCarloSearch(botThreads);
+        }
+        return new BotPlayer(color, botSearch, botMoveMillis);
+    }
+
+    /**
+     * Sets up the bots of later games.
+     *
+     * @param threads The number of threads searching for all bots together, used once the first bot game starts.
+     * @param moveMillis The time a bot thinks about a move.
+     */
+    public synchronized void configureBots(int threads, long moveMillis) {
+        this.botThreads = threads;
+        this.botMoveMillis = moveMillis;
+    }
+
+    /**
+     * Sets up the dead stone estimates of games started later.
+     *
+     * @param playouts The playouts of an estimate, used once the first game starts; 0 leaves all removals to the players.
+     */
+    public synchronized void configureEstimates(int playouts) {
+        this.estimatePlayouts = playouts;
+    }
+
+    /**
+     * Returns the estimator shared by all games, creating it with a thread per core on first use.
+     *
+     * @return The estimator, or null if estimates are disabled.
+     */
+    private synchronized OwnershipEstimator estimator() {
+        if (estimator == null && estimatePlayouts > 0) {
+            estimator = new OwnershipEstimator(Runtime.getRuntime().availableProcessors(), estimatePlayouts);
+        }
+        return estimator;
+    }
+
+    /**
+     * Takes a connection out of matchmaking so that it can watch games.
+     *
+     * @param player The connection.
+     * @return false if it has already been paired.
+     */
+    public boolean spectate(PlayerHandler player) {
+        return withdraw(player);
+    }
+
+    /**
+     * Gives a new connection the seat of a player who disconnected from a running game.
+     *
+     * @param player The new connection.
+     * @param token The session token issued to the player.
+     * @return false if the token is not valid for a running game or the connection has already been paired.
+     */
+    public boolean reconnect(PlayerHandler player, String token) {
+        int dash = token.indexOf('-');
+        long id;
+        try {
+            id = Long.parseLong(token.substring(0, Math.max(dash, 0)));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        Game game = games.get(id);
+        if (game == null) {
+            return false;
+        }
+        byte[] given = token.getBytes(StandardCharsets.US_ASCII);
+        for (StoneColor color : SEATS) {
+            if (MessageDigest.isEqual(given, sessionToken(id, color).getBytes(StandardCharsets.US_ASCII))) {
+                return withdraw(player) && game.reattach(player, color);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forfeits a game for a player unless someone takes over its seat in time.
+     *
+     * @param game The game.
+     * @param player The player who disconnected.
+     */
+    void awaitReconnect(Game game, PlayerHandler player) {
+        timer.schedule(() -> game.forfeit(player), RECONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Computes the session token of a seat.
+     *
+     * @param id The game ID.
+     * @param color The color of the seat.
+     * @return The token: the game ID, a dash and 32 hexadecimal digits.
+     */
+    String sessionToken(long id, StoneColor color) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(sessionKey);
+            mac.update(ByteBuffer.allocate(9).putLong(id).put(Board.code(color)).array());
+            return id + "-" + HexFormat.of().formatHex(mac.doFinal(), 0, 16);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * Takes a connection out of matchmaking.
+     *
+     * @param player The connection.
+     * @return false if it has already been paired.
+     */
+    private boolean withdraw(PlayerHandler player) {
+        while (player.getGame() == null) {
+            GameConfig previous = player.getQueued();
+            if (previous == SPECTATING) {
+                return true;
+            }
+            if (player.compareAndSetQueued(previous, SPECTATING)) {
+                return previous == null || dequeue(player, previous);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a player from the waiting queues, e.g. after it disconnected.
+     *
+     * @param player The player.
+     */
+    public void leave(PlayerHandler player) {
+        GameConfig queued = player.getQueued();
+        if (queued != null && queued != SPECTATING) {
+            dequeue(player, queued);
+        }
+    }
+
+    /**
+     * Rebuilds the games that were still running when the journal was last written and registers them
+     * under their old IDs. Their players are stand-ins until the real players reconnect,
+     * except that a seat played by a bot gets a new bot at once.
+     *
+     * @return The number of restored games.
+     */
+    public int restoreGames() {
+        if (journal == null) {
+            return 0;
+        }
+        int count = 0;
+        for (GameJournal.RecordedGame recorded : journal.getActiveGames()) {
+            long id = recorded.id();
+            Game game = Game.restore(recorded, journal);
+            game.setEstimator(estimator());
+            games.put(id, game);
+            game.setOnFinished(() -> finished(game));
+            for (StoneColor color : SEATS) {
+                if (recorded.events().contains(new GameJournal.Event(GameJournal.BOT, 0, 0, Board.code(color)))) {
+                    game.reattach(bot(color), color); //Bot nie wróci sam, więc od razu zajmuje swoje miejsce
+                } else {
+                    awaitReconnect(game, game.getPlayer(color));
+                }
+            }
+            nextGameId.accumulateAndGet(id + 1, Math::max);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Saves every game that ends from now on as an SGF file, named after the game ID, in a directory.
+     *
+     * @param directory The directory, or null to stop saving.
+     */
+    public void setArchive(Path directory) {
+        this.archive = directory;
+    }
+
+    /**
+     * Unregisters a game that has ended and archives it. Called with the game lock held,
+     * so the file is written on another thread.
+     *
+     * @param game The game.
+     */
+    private void finished(Game game) {
+        games.remove(game.getId());
+        Path directory = archive;
+        if (directory != null) {
+            gameStarter.execute(() -> {
+                Path file = directory.resolve("game-" + game.getId() + ".sgf");
+                try {
+                    Files.writeString(file, game.toSgf());
+                } catch (IOException e) {
+                    Log.warn("Cannot archive game " + game.getId(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Looks up a running game.
+     *
+     * @param id The game ID.
+     * @return The game, or null if there is no such game.
+     */
+    public Game getGame(long id) {
+        return games.get(id);
+    }
+
+    /**
+     * Returns a live, read-only view of the running games.
+     *
+     * @return The running games.
+     */
+    public Collection<Game> getGames() {
+        return Collections.unmodifiableCollection(games.values());
+    }
+
+    /**
+     * Returns the number of players waiting for an opponent.
+     *
+     * @return The total length of the waiting queues.
+     */
+    public int getWaitingCount() {
+        int count = 0;
+        for (Bucket bucket : buckets.values()) {
+            count += bucket.queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Adds a player to the bucket of a configuration, creating the bucket if nobody waits for it,
+     * and pairs whoever can be paired. The player is added inside the map's update of the bucket,
+     * so it never lands in a bucket that {@link #drain} has just removed.
+     *
+     * @param player The player, whose queued configuration already names the bucket.
+     * @param config The configuration.
+     */
+    private void enqueue(PlayerHandler player, GameConfig config) {
+        Bucket bucket = buckets.compute(config, (key, current) -> {
+            Bucket target = current != null ? current : new Bucket(key);
+            target.queue.offer(player);
+            return target;
+        });
+        drain(bucket);
+    }
+
+    /**
+     * Takes a player out of the bucket of a configuration, removing the bucket if it is left empty.
+     *
+     * @param player The player.
+     * @param config The configuration it was queued for.
+     * @return false if the player was no longer waiting there, e.g. because it has been paired.
+     */
+    private boolean dequeue(PlayerHandler player, GameConfig config) {
+        Bucket bucket = buckets.get(config);
+        if (bucket == null || !bucket.queue.remove(player)) {
+            return false;
+        }
+        drain(bucket); //Tylko wątek opróżniający kubełek może go usunąć
+        return true;
+    }
+
+    /**
+     * Pairs queued players two at a time and removes the bucket once nobody is left waiting in it,
+     * so configurations nobody waits for do not count towards {@link #MAX_CONFIGS}.
+     * Only one thread drains a bucket at any moment.
+     *
+     * @param bucket The bucket that received a player.
+     */
+    private void drain(Bucket bucket) {
+        if (bucket.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                PlayerHandler first = pollConnected(bucket);
+                if (first == null) {
+                    break;
+                }
+                PlayerHandler second = pollConnected(bucket);
+                if (second == null) {
+                    bucket.queue.offer(first);
+                    break;
+                }
+                startGame(first, second, bucket.config);
+            }
+            //Pod blokadą klucza, więc nikt nie doda gracza do kubełka w trakcie usuwania
+            buckets.computeIfPresent(bucket.config, (key, current) -> current == bucket && current.queue.isEmpty() ? null : current);
+            missed = bucket.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Takes the next player that is still connected out of a bucket.
+     *
+     * @param bucket The bucket.
+     * @return A connected player, or null if the bucket is empty.
+     */
+    private PlayerHandler pollConnected(Bucket bucket) {
+        PlayerHandler player;
+        while ((player = bucket.queue.poll()) != null) {
+            if (player.isConnected()) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates and registers a game for two paired players on the game starter executor.
+     *
+     * @param black The player who waited longer, playing black.
+     * @param white The other player.
+     * @param config The settings both asked for.
+     */
+    private void startGame(PlayerHandler black, PlayerHandler white, GameConfig config) {
+        long id = nextGameId.getAndIncrement();
+        black.setColor(StoneColor.BLACK);
+        white.setColor(StoneColor.WHITE);
+        black.setSession(sessionToken(id, StoneColor.BLACK));
+        white.setSession(sessionToken(id, StoneColor.WHITE));
+        gameStarter.execute(() -> {
+            Game game = new Game(id, black, white, config, journal);
+            game.setEstimator(estimator());
+            games.put(id, game);
+            game.setOnFinished(() -> finished(game));
+            Log.info(id, "Started game", config.describe());
+        });
+    }
+
+    /**
+     * Checks whether players can ask for a board size.
+     */
+    private static boolean offered(int size) {
+        for (int offered : BOARD_SIZES) {
+            if (offered == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ends the timed games whose player to move has run out of time.
+     */
+    private void checkClocks() {
+        for (Game game : games.values()) {
+            try {
+                game.checkClock();
+            } catch (RuntimeException e) {
+                Log.error("Clock check failed for game " + game.getId(), e); //Wyjątek zatrzymałby dalsze sprawdzanie
+            }
+        }
+    }
+
+    /**
+     * Waiting queue for one configuration, which exists while somebody waits for it.
+     */
+    private static final class Bucket {
+        final GameConfig config;
+        final ConcurrentLinkedQueue<PlayerHandler> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger wip = new AtomicInteger();
+
+        Bucket(GameConfig config) {
+            this.config = config;
+        }
+    }
+}
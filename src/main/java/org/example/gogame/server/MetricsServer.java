@@ -0,0 +1,76 @@
+package org.example.gogame.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@link ServerMetrics} over HTTP at {@code /metrics}, for Prometheus to scrape.
+ * Listens on the loopback interface only; the metrics are meant for an agent on the same machine.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class MetricsServer implements Closeable {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final Lobby lobby;
+
+    /**
+     * Binds the endpoint and starts serving it on a background thread.
+     *
+     * @param port The port, 0 for any free one.
+     * @param lobby The lobby whose games are reported.
+     * @throws IOException If the port cannot be bound.
+     */
+    public MetricsServer(int port, Lobby lobby) throws IOException {
+        this.lobby = lobby;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns the port the endpoint listens on.
+     *
+     * @return The bound port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers a scrape.
+     *
+     * @param exchange The request.
+     * @throws IOException If the response cannot be written.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = ServerMetrics.scrape(lobby).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Stops serving the endpoint.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,319 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.PlayoutBoard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo tree search engine of the {@link BotPlayer}.
+ * <p>
+ * The search runs on its own bounded {@link ForkJoinPool}, so thinking bots never hold up the threads
+ * serving the players' connections. It is root-parallel: every worker of the pool grows its own UCT tree
+ * from the same position until the time budget is spent, and the visits of the first moves are added up
+ * at the end, so the workers share nothing while they search.
+ * <p>
+ * The position to search is a {@link PlayoutBoard} the caller set up from its game and does not change while
+ * the workers read it. Each worker keeps one scratch board and resets it with {@link PlayoutBoard#copyFrom}
+ * before every simulation, then plays the moves of its tree and a random playout on it, without the superko
+ * check. Playouts never fill a player's own single-point eye and end after two passes; the final position is
+ * counted by area, stones and eyes, minus the komi.
+ * <p>
+ * The speed of the engine is measured in playouts per second per core, reported by every {@link Result}.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class MonteCarloSearch {
+    /** The point of a pass in a {@link Result}. */
+    public static final int PASS = PlayoutBoard.PASS;
+    /** Weight of the exploration term of UCT. */
+    static final double EXPLORATION = 0.7;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an engine with its own pool of search threads.
+     *
+     * @param threads The number of search threads, which is also the number of trees grown per search.
+     */
+    public MonteCarloSearch(int threads) {
+        this.pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("bot-search-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Outcome of one search.
+     *
+     * @param point The point index of the chosen move, or {@link #PASS}.
+     * @param winRate The share of the chosen move's simulations won by the player to move.
+     * @param playouts The number of simulations of all workers.
+     * @param nanos The wall-clock time of the search.
+     * @param workers The number of workers that searched in parallel.
+     */
+    public record Result(int point, double winRate, long playouts, long nanos, int workers) {
+        /**
+         * Returns the speed of the search.
+         *
+         * @return The playouts per second of one worker.
+         */
+        public double playoutsPerSecondPerCore() {
+            return nanos == 0 ? 0 : playouts * 1e9 / nanos / workers;
+        }
+    }
+
+    /**
+     * Searches for the best move in a position.
+     * Every worker completes at least one simulation, however short the budget.
+     *
+     * @param position The position, with the ko of the player to move; must not change until the search returns.
+     * @param toMove The cell code of the player to move.
+     * @param opponentPassed Whether the last move was a pass, so that passing ends the game; only then is passing considered.
+     * @param komi The points given to White.
+     * @param budgetNanos The time to search.
+     * @return The chosen move; a pass if the player has no move left but filling its own eyes.
+     */
+    public Result search(PlayoutBoard position, byte toMove, boolean opponentPassed, double komi, long budgetNanos) {
+        long started = System.nanoTime();
+        long deadline = started + budgetNanos;
+        int workers = pool.getParallelism();
+        List<SearchTask> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            SearchTask task = new SearchTask(position, toMove, opponentPassed ? 1 : 0, komi, deadline);
+            tasks.add(task);
+            pool.execute(task);
+        }
+        int capacity = position.getCapacity();
+        int[] visits = new int[capacity + 1]; //Ostatnie pole to pas
+        int[] wins = new int[capacity + 1];
+        long playouts = 0;
+        for (SearchTask task : tasks) {
+            Node root = task.join();
+            playouts += root.visits;
+            for (int i = 0; i < root.childCount; i++) {
+                Node child = root.children[i];
+                int slot = child.point == PASS ? capacity : child.point;
+                visits[slot] += child.visits;
+                wins[slot] += child.wins;
+            }
+        }
+        int best = capacity;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (visits[slot] > visits[best]) {
+                best = slot;
+            }
+        }
+        double winRate = visits[best] == 0 ? 0 : (double) wins[best] / visits[best];
+        return new Result(best == capacity ? PASS : best, winRate, playouts, System.nanoTime() - started, workers);
+    }
+
+    /**
+     * Returns the number of search threads.
+     *
+     * @return The parallelism of the pool.
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the search threads once the searches in progress are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * A move in a search tree and the simulations that went through it.
+     */
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        final int point;
+        final byte color; //Kolor, który zagrał ten ruch
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        int[] untried; //Ruchy jeszcze nie rozwinięte, wyznaczane przy drugiej wizycie
+        int untriedCount;
+        int visits;
+        int wins;
+
+        Node(int point, byte color) {
+            this.point = point;
+            this.color = color;
+        }
+
+        Node add(int point, byte color) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(4, 2 * childCount));
+            }
+            Node child = new Node(point, color);
+            children[childCount++] = child;
+            return child;
+        }
+
+        /**
+         * Picks the child with the highest UCT value.
+         */
+        Node select() {
+            double logVisits = Math.log(visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < childCount; i++) {
+                Node child = children[i];
+                double value = (double) child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * One worker of a search: grows a tree on its own board until the deadline.
+     */
+    private static final class SearchTask extends RecursiveTask<Node> {
+        private final PlayoutBoard position;
+        private final byte toMove;
+        private final int rootPasses;
+        private final double komi;
+        private final long deadline;
+        private final int maxMoves;
+        private PlayoutBoard board;
+        private Node[] path;
+        private final SplittableRandom random = new SplittableRandom();
+        private int passes;
+
+        SearchTask(PlayoutBoard position, byte toMove, int passes, double komi, long deadline) {
+            this.position = position;
+            this.toMove = toMove;
+            this.rootPasses = passes;
+            this.komi = komi;
+            this.deadline = deadline;
+            this.maxMoves = 3 * position.getSize() * position.getSize();
+        }
+
+        @Override
+        protected Node compute() {
+            board = new PlayoutBoard(position.getSize());
+            path = new Node[64];
+            Node root = new Node(PASS, Board.opponent(toMove));
+            do {
+                simulate(root);
+            } while (System.nanoTime() < deadline);
+            return root;
+        }
+
+        /**
+         * Runs one simulation: descends the tree, adds a move to it, plays the rest at random and counts the result.
+         */
+        private void simulate(Node root) {
+            board.copyFrom(position);
+            passes = rootPasses;
+            byte color = toMove;
+            Node node = root;
+            int depth = 0;
+            path[depth++] = root;
+            while (passes < 2) {
+                if (node.untried == null) {
+                    if (node.visits == 0 && node != root) {
+                        break; //Nowy liść: od razu rozgrywka losowa
+                    }
+                    candidates(node, color, node == root && rootPasses > 0);
+                }
+                Node child = null;
+                if (node.untriedCount > 0) {
+                    int i = random.nextInt(node.untriedCount);
+                    int point = node.untried[i];
+                    node.untried[i] = node.untried[--node.untriedCount];
+                    move(point, color);
+                    child = node.add(point, color);
+                } else if (node.childCount > 0) {
+                    child = node.select();
+                    move(child.point, color);
+                } else {
+                    break; //Brak legalnych ruchów
+                }
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, 2 * depth);
+                }
+                path[depth++] = child;
+                node = child;
+                color = Board.opponent(color);
+                if (node.visits == 0) {
+                    break;
+                }
+            }
+            byte winner = playout(color);
+            for (int i = 0; i < depth; i++) {
+                Node visited = path[i];
+                visited.visits++;
+                if (visited.color == winner) {
+                    visited.wins++;
+                }
+            }
+        }
+
+        /**
+         * Lists the moves of a node: every legal point but the mover's own eyes, and a pass if it ends the game.
+         * A node's position is the same on every visit, so the moves stay legal.
+         */
+        private void candidates(Node node, byte color, boolean pass) {
+            int count = board.getEmptyCount();
+            int[] moves = new int[count + 1];
+            int legal = 0;
+            if (pass) {
+                moves[legal++] = PASS;
+            }
+            for (int i = 0; i < count; i++) {
+                int point = board.getEmpty(i);
+                if (board.isLegal(point, color) && !board.isEye(point, color)) {
+                    moves[legal++] = point;
+                }
+            }
+            node.untried = moves;
+            node.untriedCount = legal;
+        }
+
+        /**
+         * Plays a move of the tree on the scratch board.
+         */
+        private void move(int point, byte color) {
+            if (point == PASS) {
+                board.pass();
+                passes++;
+            } else {
+                board.play(point, color);
+                passes = 0;
+            }
+        }
+
+        /**
+         * Plays random moves until both players pass, then counts the board.
+         *
+         * @param color The player to move.
+         * @return The cell code of the winner.
+         */
+        private byte playout(byte color) {
+            for (int moves = 0; passes < 2 && moves < maxMoves; moves++) {
+                if (board.playRandom(color, random) == PlayoutBoard.PASS) {
+                    passes++;
+                } else {
+                    passes = 0;
+                }
+                color = Board.opponent(color);
+            }
+            return board.score(komi) > 0 ? Board.BLACK : Board.WHITE;
+        }
+    }
+}
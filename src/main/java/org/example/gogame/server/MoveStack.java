@@ -0,0 +1,218 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+
+import java.util.Arrays;
+
+/**
+ * History of the moves, passes and dead stone removals of a game, which can be taken back
+ * on the {@link Board} without replaying the game from the start.
+ * <p>
+ * Every entry is a handful of primitives in parallel arrays: its kind, point and color, the ko point
+ * and passes in a row from before it, and the end of its captured points in one array shared by all entries.
+ * Taking back a move empties its point and puts its captures back, so {@link #undo} touches only those points,
+ * although the board still rebuilds the chain structure around each of them, which costs time proportional
+ * to the size of the affected chains. Nothing is allocated once the arrays have grown to the length of the game.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class MoveStack {
+    /** Kind of an entry that placed a stone and captured the stones it lists. */
+    public static final byte PLAYED = 1;
+    /** Kind of an entry that passed. */
+    public static final byte PASSED = 2;
+    /** Kind of an entry that took a dead stone off the board during negotiation. */
+    public static final byte REMOVED = 3;
+
+    private byte[] kinds;
+    private int[] points;
+    private byte[] colors; //Kolor zagranego albo usuniętego kamienia, kolor pasującego
+    private int[] kos;
+    private byte[] passes;
+    private int[] captureEnds;
+    private int[] captures;
+    private int size = 0;
+
+    /**
+     * Creates an empty stack.
+     *
+     * @param entries The number of entries to hold before growing.
+     * @param captured The number of captured stones to hold before growing.
+     */
+    public MoveStack(int entries, int captured) {
+        entries = Math.max(1, entries);
+        this.kinds = new byte[entries];
+        this.points = new int[entries];
+        this.colors = new byte[entries];
+        this.kos = new int[entries];
+        this.passes = new byte[entries];
+        this.captureEnds = new int[entries];
+        this.captures = new int[Math.max(1, captured)];
+    }
+
+    /**
+     * Pushes a stone that was placed.
+     *
+     * @param point The point index of the stone.
+     * @param color The cell code of the stone.
+     * @param captured The point indices of the captured stones.
+     * @param count The number of captured stones.
+     * @param koPoint The ko point before the move, or -1.
+     * @param passesBefore The passes in a row before the move.
+     */
+    public void pushMove(int point, byte color, int[] captured, int count, int koPoint, int passesBefore) {
+        int start = push(PLAYED, point, color, koPoint, passesBefore);
+        if (start + count > captures.length) {
+            captures = Arrays.copyOf(captures, Math.max(2 * captures.length, start + count));
+        }
+        System.arraycopy(captured, 0, captures, start, count);
+        captureEnds[size - 1] = start + count;
+    }
+
+    /**
+     * Pushes a pass.
+     *
+     * @param color The cell code of the player who passed.
+     * @param koPoint The ko point before the pass, or -1.
+     * @param passesBefore The passes in a row before this one.
+     */
+    public void pushPass(byte color, int koPoint, int passesBefore) {
+        push(PASSED, -1, color, koPoint, passesBefore);
+    }
+
+    /**
+     * Pushes a dead stone taken off the board.
+     *
+     * @param point The point index of the stone.
+     * @param color The cell code of the stone.
+     */
+    public void pushRemoval(int point, byte color) {
+        push(REMOVED, point, color, -1, 0);
+    }
+
+    private int push(byte kind, int point, byte color, int koPoint, int passesBefore) {
+        if (size == kinds.length) {
+            int length = 2 * size;
+            kinds = Arrays.copyOf(kinds, length);
+            points = Arrays.copyOf(points, length);
+            colors = Arrays.copyOf(colors, length);
+            kos = Arrays.copyOf(kos, length);
+            passes = Arrays.copyOf(passes, length);
+            captureEnds = Arrays.copyOf(captureEnds, length);
+        }
+        int start = captureStart(size);
+        kinds[size] = kind;
+        points[size] = point;
+        colors[size] = color;
+        kos[size] = koPoint;
+        passes[size] = (byte) passesBefore;
+        captureEnds[size] = start;
+        size++;
+        return start;
+    }
+
+    /**
+     * Takes back the last entry: empties the point of a placed stone and puts back its captures,
+     * or puts back a removed stone.
+     *
+     * @param board The board the entry was played on, in the position right after it.
+     * @return The index of the undone entry, whose ko point and passes tell the state to restore.
+     * @throws IllegalStateException If the stack is empty.
+     */
+    public int undo(Board board) {
+        if (size == 0) {
+            throw new IllegalStateException("Nothing to undo");
+        }
+        int entry = --size;
+        if (kinds[entry] == PLAYED) {
+            board.set(points[entry], Board.EMPTY);
+            byte captured = Board.opponent(colors[entry]);
+            for (int i = captureStart(entry); i < captureEnds[entry]; i++) {
+                board.set(captures[i], captured);
+            }
+        } else if (kinds[entry] == REMOVED) {
+            board.set(points[entry], colors[entry]);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes all entries, keeping the allocated arrays.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private int captureStart(int entry) {
+        return entry == 0 ? 0 : captureEnds[entry - 1];
+    }
+
+    /**
+     * Returns the number of entries played and not undone.
+     *
+     * @return The height of the stack.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the kind of an entry.
+     *
+     * @param entry The index of the entry.
+     * @return {@link #PLAYED}, {@link #PASSED} or {@link #REMOVED}.
+     */
+    public byte getKind(int entry) {
+        return kinds[entry];
+    }
+
+    /**
+     * Returns the point of an entry.
+     *
+     * @param entry The index of the entry.
+     * @return The point index, or -1 for a pass.
+     */
+    public int getPoint(int entry) {
+        return points[entry];
+    }
+
+    /**
+     * Returns the color of an entry.
+     *
+     * @param entry The index of the entry.
+     * @return The cell code of the placed or removed stone, or of the player who passed.
+     */
+    public byte getColor(int entry) {
+        return colors[entry];
+    }
+
+    /**
+     * Returns the ko point from before an entry.
+     *
+     * @param entry The index of the entry.
+     * @return The point index, or -1.
+     */
+    public int getKoPointBefore(int entry) {
+        return kos[entry];
+    }
+
+    /**
+     * Returns the passes in a row from before an entry.
+     *
+     * @param entry The index of the entry.
+     * @return The number of passes.
+     */
+    public int getPassesBefore(int entry) {
+        return passes[entry];
+    }
+
+    /**
+     * Returns the number of stones a placed stone captured.
+     *
+     * @param entry The index of the entry.
+     * @return The number of captured stones, 0 for other entries.
+     */
+    public int getCaptureCount(int entry) {
+        return captureEnds[entry] - captureStart(entry);
+    }
+}
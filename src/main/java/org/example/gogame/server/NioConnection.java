@@ -0,0 +1,340 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Log;
+import org.example.gogame.WireProtocol;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A non-blocking client connection served by one {@link NioServer.EventLoop}.
+ * Splits incoming bytes into lines of the text protocol, or frames of the binary one once negotiated,
+ * and hands each to the {@link PlayerHandler}; buffers outgoing data and writes it as the socket accepts it.
+ * Output is only collected by {@link #write(CharSequence)}; they go out together on the next
+ * {@link #flush()}, which the handler calls once per batch of handled commands.
+ * <p>
+ * Outgoing data is backpressured: once more than {@link #HIGH_WATER} bytes are waiting, the
+ * connection stops reading commands from the client until the backlog is written, and a client
+ * that lets more than {@link #MAX_PENDING} bytes pile up is disconnected.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+final class NioConnection {
+    /** Pending output above which reading from the client is paused. */
+    static final int HIGH_WATER = 64 * 1024;
+    /** Pending output above which the client is considered stuck and disconnected. */
+    static final int MAX_PENDING = 1024 * 1024;
+    private final SocketChannel channel;
+    private final NioServer.EventLoop loop;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+    private final WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(1024); //W trybie zapisu: position = liczba oczekujących bajtów
+    private SelectionKey key;
+    private PlayerHandler handler;
+    private boolean readPaused = false;
+    private boolean closed = false;
+    private volatile long bytesReceived = 0; //Zapisywane tylko przez wątek pętli zdarzeń
+    private volatile long bytesSent = 0; //Zapisywane pod monitorem połączenia
+
+    /**
+     * Wraps an accepted channel.
+     *
+     * @param channel The accepted socket channel, already in non-blocking mode.
+     * @param loop The event loop that will serve the channel.
+     */
+    NioConnection(SocketChannel channel, NioServer.EventLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+    }
+
+    /**
+     * Sets the handler that receives the commands read from this connection.
+     *
+     * @param handler The player handler.
+     */
+    void setHandler(PlayerHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Reads binary frames instead of text lines from the next received byte on.
+     * Called on the event loop thread while a command is being handled.
+     */
+    void setBinary() {
+        decoder.setBinary();
+    }
+
+    /**
+     * Returns the underlying channel.
+     *
+     * @return The socket channel.
+     */
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Called by the event loop once the channel is registered with its selector.
+     *
+     * @param key The selection key of the channel.
+     */
+    synchronized void registered(SelectionKey key) {
+        this.key = key;
+        if (closed) {
+            key.cancel();
+        } else {
+            updateInterest();
+        }
+    }
+
+    /**
+     * Queues a line for sending with the next {@link #flush()}.
+     * May be called from any thread.
+     *
+     * @param message The line to send, without the line terminator.
+     */
+    synchronized void write(CharSequence message) {
+        if (closed) {
+            return;
+        }
+        int length = message.length();
+        ensureWritable(3 * length + 1);
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c < 0x80) {
+                writeBuffer.put((byte) c);
+            } else if (c < 0x800) {
+                writeBuffer.put((byte) (0xC0 | (c >> 6)));
+                writeBuffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                writeBuffer.put((byte) (0xE0 | (c >> 12)));
+                writeBuffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                writeBuffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        writeBuffer.put((byte) '\n');
+
+        if (writeBuffer.position() > MAX_PENDING) {
+            Log.warn("Client too slow, disconnecting", describe());
+            close();
+        }
+    }
+
+    /**
+     * Queues encoded bytes, e.g. a binary frame, for sending with the next {@link #flush()}.
+     * May be called from any thread.
+     *
+     * @param bytes The buffer holding the data.
+     * @param length The number of bytes to send from the start of the buffer.
+     */
+    synchronized void write(byte[] bytes, int length) {
+        if (closed) {
+            return;
+        }
+        ensureWritable(length);
+        writeBuffer.put(bytes, 0, length);
+        if (writeBuffer.position() > MAX_PENDING) {
+            Log.warn("Client too slow, disconnecting", describe());
+            close();
+        }
+    }
+
+    /**
+     * Writes as much queued output as the socket accepts now and leaves the rest to the event loop.
+     * May be called from any thread.
+     */
+    synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        writePending();
+        updateInterest();
+    }
+
+    /**
+     * Reads available bytes and dispatches every complete line or frame. Event loop thread only.
+     */
+    void onReadable() {
+        int n;
+        try {
+            n = channel.read(readBuffer);
+        } catch (IOException e) {
+            Log.warn("Player disconnected", e.getMessage());
+            close();
+            return;
+        }
+        if (n < 0) {
+            close();
+            return;
+        }
+        bytesReceived += n;
+        ServerMetrics.BYTES_RECEIVED.add(n);
+        readBuffer.flip();
+        try {
+            while (readBuffer.hasRemaining()) {
+                if (decoder.feed(readBuffer.get()) && handler != null) {
+                    handler.handleFrame(decoder);
+                    if (closed) {
+                        return;
+                    }
+                }
+            }
+        } catch (ProtocolException e) {
+            Log.warn("Protocol error, disconnecting " + describe(), e.getMessage());
+            close();
+            return;
+        }
+        readBuffer.clear();
+        if (handler != null) {
+            handler.flushAfterBatch(); //Jeden zapis na wszystkie odpowiedzi z tego odczytu
+        }
+    }
+
+    /**
+     * Writes pending output once the socket can take more. Event loop thread only.
+     */
+    synchronized void onWritable() {
+        writePending();
+        updateInterest();
+    }
+
+    /**
+     * Closes the channel and lets the handler know, so a player in a game keeps its seat for a reconnect.
+     * Safe to call more than once and from any thread. The handler is told without holding this
+     * connection's monitor, since it takes the game lock, under which other threads write here.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.error("Closing channel failed", e);
+            }
+        }
+        if (handler == null) {
+            return;
+        }
+        if (Thread.holdsLock(this)) {
+            Thread.startVirtualThread(handler::closeConnection); //Wywołane z write() albo flush()
+        } else {
+            handler.closeConnection();
+        }
+    }
+
+    /**
+     * Checks whether the connection has been closed.
+     *
+     * @return true once closed.
+     */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of bytes waiting to be written.
+     *
+     * @return The pending output size.
+     */
+    synchronized int pendingBytes() {
+        return writeBuffer.position();
+    }
+
+    /**
+     * Returns the number of bytes read from the client so far.
+     *
+     * @return The received byte count.
+     */
+    long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the number of bytes written to the client so far.
+     *
+     * @return The sent byte count.
+     */
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Writes as much pending output as the socket accepts without blocking.
+     */
+    private void writePending() {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        try {
+            int written = channel.write(writeBuffer);
+            bytesSent += written;
+            ServerMetrics.BYTES_SENT.add(written);
+        } catch (IOException e) {
+            writeBuffer.clear();
+            close();
+            return;
+        }
+        writeBuffer.compact();
+    }
+
+    /**
+     * Adjusts the selector interest to the amount of pending output.
+     */
+    private void updateInterest() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int pending = writeBuffer.position();
+        if (pending > HIGH_WATER) {
+            readPaused = true;
+        } else if (pending == 0) {
+            readPaused = false;
+        }
+        int ops = (readPaused ? 0 : SelectionKey.OP_READ) | (pending > 0 ? SelectionKey.OP_WRITE : 0);
+        if (key.interestOps() != ops) {
+            key.interestOps(ops);
+            loop.wakeup();
+        }
+    }
+
+    /**
+     * Grows the write buffer so that at least the given number of bytes fit.
+     *
+     * @param bytes The number of bytes about to be written.
+     */
+    private void ensureWritable(int bytes) {
+        if (writeBuffer.remaining() < bytes) {
+            int capacity = writeBuffer.capacity();
+            while (capacity - writeBuffer.position() < bytes) {
+                capacity *= 2;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            writeBuffer.flip();
+            bigger.put(writeBuffer);
+            writeBuffer = bigger;
+        }
+    }
+
+    /**
+     * Describes the remote end for log messages.
+     *
+     * @return The remote address, or a placeholder.
+     */
+    String describe() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "unknown client";
+        }
+    }
+}
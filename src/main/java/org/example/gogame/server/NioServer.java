@@ -0,0 +1,195 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking transport for the text protocol.
+ * One acceptor thread hands accepted connections round-robin to a small, fixed number of
+ * selector-based event loops, which read commands and write responses for all their connections,
+ * so idle players cost a few buffers instead of a thread each.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public class NioServer {
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final Consumer<NioConnection> onAccept;
+    private int nextLoop = 0;
+
+    /**
+     * Binds the server socket and starts the event loop threads.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @param loopCount The number of event loop threads.
+     * @param onAccept Called on the acceptor thread for every new connection, before it is read from.
+     * @throws IOException If the socket cannot be bound or a selector cannot be opened.
+     */
+    NioServer(int port, int loopCount, Consumer<NioConnection> onAccept) throws IOException {
+        this.onAccept = onAccept;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        this.loops = new EventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop();
+            Thread thread = new Thread(loops[i], "nio-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return The local port.
+     * @throws IOException If the address cannot be read.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Accepts connections on the calling thread until the server is closed.
+     */
+    public void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+
+                NioConnection connection = new NioConnection(channel, loop);
+                onAccept.accept(connection);
+                loop.register(connection);
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    Log.warn("Accept failed", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and shuts the event loops down.
+     */
+    public void close() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            Log.error("Closing server channel failed", e);
+        }
+        for (EventLoop loop : loops) {
+            loop.close();
+        }
+    }
+
+    /**
+     * A single selector thread serving many connections.
+     */
+    static final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<NioConnection> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Opens the selector of the loop.
+         *
+         * @throws IOException If the selector cannot be opened.
+         */
+        EventLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        /**
+         * Queues a connection for registration with this loop's selector.
+         *
+         * @param connection The new connection.
+         */
+        void register(NioConnection connection) {
+            pending.add(connection);
+            selector.wakeup();
+        }
+
+        /**
+         * Interrupts a blocking select so that interest changes take effect.
+         */
+        void wakeup() {
+            selector.wakeup();
+        }
+
+        /**
+         * Closes the selector, which ends the loop.
+         */
+        void close() {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Log.error("Closing selector failed", e);
+            }
+        }
+
+        /**
+         * Selects ready channels and dispatches read and write events until the selector is closed.
+         */
+        @Override
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select();
+                    registerPending();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                        } catch (RuntimeException e) {
+                            //Błąd jednego połączenia nie może zatrzymać pętli obsługującej pozostałe
+                            Log.error("Handling " + connection.describe() + " failed, disconnecting", e);
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                // zamknięty przez close()
+            } catch (IOException e) {
+                Log.error("Event loop error", e);
+            }
+        }
+
+        /**
+         * Registers the connections queued by the acceptor.
+         */
+        private void registerPending() {
+            NioConnection connection;
+            while ((connection = pending.poll()) != null) {
+                try {
+                    SelectionKey key = connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+                    connection.registered(key);
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.PlayoutBoard;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Estimates who owns each point of a finished game, so the server can propose the dead stones
+ * instead of the players removing them one by one.
+ * <p>
+ * The estimate plays many random games on from the final position, as {@link MonteCarloSearch} does, and
+ * counts for every point how often it ends up Black's or White's. A stone whose point goes to the opponent
+ * in clearly more playouts than to its owner cannot be saved, so it is dead; random play leaves even safe
+ * groups captured in a playout or two out of ten, so ownership rarely goes beyond 0.8.
+ * Half of the playouts start with Black, half with White.
+ * <p>
+ * The playouts run on the estimator's own bounded {@link ForkJoinPool}: the range of playouts is halved
+ * until a task has at most {@link #CHUNK} of them, so idle threads steal the rest. Each task keeps one board
+ * and its own counts, which are added up as the tasks join. With {@link #DEFAULT_PLAYOUTS} playouts the final
+ * position of a 19x19 game takes a few milliseconds on one core, see {@code OwnershipBenchmark}.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class OwnershipEstimator {
+    /** Playouts of an estimate unless configured otherwise. */
+    public static final int DEFAULT_PLAYOUTS = 1024;
+    /** Most playouts run by one task without splitting. */
+    static final int CHUNK = 64;
+    /** Ownership of its point by the opponent, from 0 to 1, beyond which a stone is dead: about two playouts in three. */
+    static final float DEAD = 0.3f;
+
+    private final ForkJoinPool pool;
+    private final int playouts;
+
+    /**
+     * Creates an estimator with its own pool of threads.
+     *
+     * @param threads The number of threads playing out positions.
+     * @param playouts The number of playouts of an estimate.
+     */
+    public OwnershipEstimator(int threads, int playouts) {
+        this.playouts = playouts;
+        this.pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("estimate-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Outcome of one estimate.
+     *
+     * @param ownership For every point index, the share of playouts Black owned it in minus the share White owned it in.
+     * @param playouts The number of playouts.
+     * @param nanos The wall-clock time of the estimate.
+     */
+    public record Estimate(float[] ownership, int playouts, long nanos) {
+        /**
+         * Tells whether the stone on a point is dead.
+         *
+         * @param board The estimated position.
+         * @param point The point index.
+         * @return true if the point holds a stone whose opponent owns it by at least {@link #DEAD}.
+         */
+        public boolean isDead(Board board, int point) {
+            byte code = board.get(point);
+            return code == Board.BLACK ? ownership[point] <= -DEAD : code == Board.WHITE && ownership[point] >= DEAD;
+        }
+    }
+
+    /**
+     * Estimates the ownership of a position, waiting for the pool.
+     *
+     * @param position The position; must not change until the estimate returns.
+     * @return The estimate.
+     */
+    public Estimate estimate(PlayoutBoard position) {
+        long started = System.nanoTime();
+        int[] owned = pool.invoke(new PlayoutTask(position, 0, playouts));
+        float[] ownership = new float[owned.length];
+        for (int point = 0; point < owned.length; point++) {
+            ownership[point] = (float) owned[point] / playouts;
+        }
+        return new Estimate(ownership, playouts, System.nanoTime() - started);
+    }
+
+    /**
+     * Estimates the ownership of a position on the pool, without waiting.
+     *
+     * @param position The position; must not change until the estimate completes.
+     * @return The estimate, completed by a thread of the pool.
+     */
+    public CompletableFuture<Estimate> estimateAsync(PlayoutBoard position) {
+        return CompletableFuture.supplyAsync(() -> estimate(position), pool);
+    }
+
+    /**
+     * Returns the number of playouts of an estimate.
+     *
+     * @return The playouts.
+     */
+    public int getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * Stops the threads once the estimates in progress are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Plays a range of playouts and counts, for every point, the playouts Black owned it in minus those White did.
+     */
+    private static final class PlayoutTask extends RecursiveTask<int[]> {
+        private final PlayoutBoard position;
+        private final int from;
+        private final int to;
+
+        PlayoutTask(PlayoutBoard position, int from, int to) {
+            this.position = position;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from > CHUNK) {
+                int middle = (from + to) >>> 1;
+                PlayoutTask right = new PlayoutTask(position, middle, to);
+                right.fork();
+                int[] owned = new PlayoutTask(position, from, middle).compute();
+                int[] other = right.join();
+                for (int point = 0; point < owned.length; point++) {
+                    owned[point] += other[point];
+                }
+                return owned;
+            }
+            int size = position.getSize();
+            int maxMoves = 3 * size * size;
+            int[] owned = new int[position.getCapacity()];
+            PlayoutBoard board = new PlayoutBoard(size);
+            SplittableRandom random = new SplittableRandom();
+            for (int i = from; i < to; i++) {
+                board.copyFrom(position);
+                byte color = (i & 1) == 0 ? Board.BLACK : Board.WHITE;
+                int passes = 0;
+                for (int moves = 0; passes < 2 && moves < maxMoves; moves++) {
+                    passes = board.playRandom(color, random) == PlayoutBoard.PASS ? passes + 1 : 0;
+                    color = Board.opponent(color);
+                }
+                for (int x = 0; x < size; x++) {
+                    for (int y = 0; y < size; y++) {
+                        int point = board.point(x, y);
+                        byte owner = board.owner(point);
+                        if (owner == Board.BLACK) {
+                            owned[point]++;
+                        } else if (owner == Board.WHITE) {
+                            owned[point]--;
+                        }
+                    }
+                }
+            }
+            return owned;
+        }
+    }
+}
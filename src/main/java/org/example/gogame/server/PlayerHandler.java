@@ -1,25 +1,70 @@
 package org.example.gogame.server;
 
+import org.example.gogame.Board;
+import org.example.gogame.GameConfig;
+import org.example.gogame.Log;
 import org.example.gogame.StoneColor;
-import java.io.BufferedReader;
+import org.example.gogame.WireProtocol;
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Handles the network communication for a single player on the server side.
- * Runs in a separate thread to listen for incoming commands.
+ * With a blocking {@link Socket} it runs in a separate thread (a platform or a virtual one,
+ * depending on the thread factory) to listen for incoming commands;
+ * with a {@link NioConnection} the commands are delivered by the connection's event loop instead.
+ * <p>
+ * Outgoing messages are collected in a per-connection buffer and written together by {@link #flush()},
+ * which the transport calls once it has handled all commands it has read so far, outside the game lock.
+ * A move therefore costs one write per player instead of one per message. With a blocking socket the
+ * writes are made by a virtual thread of the connection's own, so no caller ever waits for a client, and a
+ * client that stops reading is disconnected once {@link #MAX_PENDING} bytes are waiting for it, instead of
+ * blocking the game.
+ * <p>
+ * Clients speak the text protocol unless they send {@link WireProtocol#HANDSHAKE}, after which
+ * both directions use binary frames. The game reports moves, captures and turns through
+ * {@link #sendMove}, {@link #sendCaptures} and {@link #sendTurn}, so each player gets them in its own protocol.
  *
  * @author Piotr Zieniewicz, Jan Langier
  */
-public class PlayerHandler implements Runnable {
+public class PlayerHandler implements Runnable, Spectator {
+    /** Pending output above which the client is considered stuck and disconnected. */
+    static final int MAX_PENDING = 1024 * 1024;
 
     private final Socket socket;
-    private PrintWriter output;
-    private BufferedReader input;
+    private final NioConnection connection;
+    private final ThreadFactory threads;
+    private final ReentrantLock sendLock = new ReentrantLock(); //Chroni bufor pending
+    private final Condition flushed = sendLock.newCondition(); //Budzi wątek piszący do gniazda
+    private boolean flushRequested = false;
+    private OutputStream output;
+    private InputStream input;
+    private final WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+    private byte[] pending = new byte[1024];
+    private int pendingLength = 0;
+    private byte[] writing = new byte[1024]; //Używany tylko przez wątek piszący
+    private byte[] frame = new byte[256]; //Bufor na kodowanie ramek i komunikatów, chroniony przez sendLock
+    private final StringBuilder text = new StringBuilder(64);
+    private volatile boolean binary = false;
+    private boolean started = false;
 
-    private Game game = null;
+    private volatile Game game = null;
+    private volatile Lobby lobby = null;
+    private volatile Game watching = null;
+    private volatile String session = null;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicReference<GameConfig> queued = new AtomicReference<>();
+    private volatile long bytesReceived = 0; //Zapisywane tylko przez wątek nasłuchujący
+    private volatile long bytesSent = 0; //Zapisywane tylko przez wątek piszący
 
     private StoneColor color;
 
@@ -30,8 +75,79 @@ public class PlayerHandler implements Runnable {
      * @param color The assigned color for this player.
      */
     public PlayerHandler(Socket socket, StoneColor color) {
+        this(socket, color, Thread.ofPlatform().factory());
+    }
+
+    /**
+     * Constructs a PlayerHandler whose listening thread is created by the given factory.
+     *
+     * @param socket The client socket.
+     * @param color The assigned color for this player.
+     * @param threads The factory for the listening thread, e.g. one creating virtual threads.
+     */
+    public PlayerHandler(Socket socket, StoneColor color, ThreadFactory threads) {
         this.socket = socket;
+        this.connection = null;
+        this.threads = threads;
         this.color = color;
+        if (socket != null) {
+            ServerMetrics.CONNECTIONS.incrementAndGet();
+        }
+    }
+
+    /**
+     * Constructs a PlayerHandler served by a non-blocking event loop.
+     *
+     * @param connection The client connection.
+     * @param color The assigned color for this player.
+     */
+    PlayerHandler(NioConnection connection, StoneColor color) {
+        this.socket = null;
+        this.connection = connection;
+        this.threads = null;
+        this.color = color;
+        connection.setHandler(this);
+        ServerMetrics.CONNECTIONS.incrementAndGet();
+    }
+
+    /**
+     * Constructs a PlayerHandler without a connection that still encodes every message into its buffer,
+     * as for a socket, and drops the buffer on {@link #flush()}, since there is no writer thread.
+     * Lets tests measure the cost of sending messages.
+     *
+     * @param color The assigned color for this player.
+     */
+    PlayerHandler(StoneColor color) {
+        this((Socket) null, color);
+        this.output = OutputStream.nullOutputStream();
+    }
+
+    /**
+     * Starts listening for commands and the thread writing to the socket. Calling it again has no effect.
+     * The socket streams are opened before the threads are started, so messages can be
+     * sent as soon as this method returns. An event loop based handler is already being served,
+     * and a handler without a connection, standing in for a player of a restored game, has nothing to start.
+     */
+    public void start() {
+        if (connection != null || socket == null) {
+            return;
+        }
+        sendLock.lock();
+        try {
+            if (started) {
+                return;
+            }
+            started = true;
+            setupStreams();
+        } catch (IOException e) {
+            Log.warn(color, "Player disconnected", e.getMessage());
+            closeConnection();
+            return;
+        } finally {
+            sendLock.unlock();
+        }
+        threads.newThread(this).start();
+        Thread.ofVirtual().name("writer-" + socket.getPort()).start(this::writeLoop);
     }
 
     /**
@@ -39,15 +155,25 @@ public class PlayerHandler implements Runnable {
      */
     @Override
     public void run() {
+        if (input == null) {
+            return;
+        }
         try {
-            setupStreams();
-
-            String command;
-            while ((command = input.readLine()) != null) {
-                handleCommand(command);
+            int b;
+            long received = 0;
+            while ((b = input.read()) >= 0) {
+                received++;
+                if (decoder.feed((byte) b)) {
+                    ServerMetrics.BYTES_RECEIVED.add(received - bytesReceived);
+                    bytesReceived = received;
+                    handleFrame(decoder);
+                    if (input.available() == 0) {
+                        flushAfterBatch();
+                    }
+                }
             }
         } catch (IOException e) {
-            System.err.println("Player disconnected: " + e.getMessage());
+            Log.warn(color, "Player disconnected", e.getMessage());
         } finally {
             closeConnection();
         }
@@ -59,8 +185,36 @@ public class PlayerHandler implements Runnable {
      * @throws IOException If stream creation fails.
      */
     private void setupStreams() throws IOException {
-        output = new PrintWriter(socket.getOutputStream(), true);
-        input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        output = socket.getOutputStream();
+        input = new BufferedInputStream(socket.getInputStream());
+    }
+
+    /**
+     * Handles a decoded line or frame received from the client.
+     *
+     * @param frame The decoder holding the frame.
+     */
+    void handleFrame(WireProtocol.Decoder frame) {
+        switch (frame.getOpcode()) {
+            case WireProtocol.TEXT:
+                handleCommand(frame.getText());
+                break;
+            case WireProtocol.MOVE:
+                Game current = game;
+                if (current == null) {
+                    sendMessage("MESSAGE Waiting for opponent...");
+                } else if (frame.getX() >= current.getConfig().size() || frame.getY() >= current.getConfig().size()) {
+                    sendMessage("ERROR Wrong move"); //Ramka niesie 0-255, poza planszą usuwanie kamieni wyrzuciłoby wyjątek
+                } else {
+                    current.processMove(frame.getX(), frame.getY(), this);
+                }
+                break;
+            case WireProtocol.PASS:
+                handleCommand("PASS");
+                break;
+            default:
+                sendMessage("ERROR Unknown command");
+        }
     }
 
     /**
@@ -68,13 +222,64 @@ public class PlayerHandler implements Runnable {
      *
      * @param command The command string.
      */
-    private void handleCommand(String command) {
+    void handleCommand(String command) {
+        if (command.equals(WireProtocol.HANDSHAKE)) {
+            enableBinary();
+            return;
+        }
         if (game == null) {
+            if (command.startsWith("JOIN") && lobby != null) {
+                try {
+                    GameConfig config = GameConfig.parse(command.substring(4));
+                    if (lobby.join(this, config)) {
+                        stopWatching();
+                        sendMessage("MESSAGE Waiting for opponent on " + config.describe() + "...");
+                    } else {
+                        sendMessage("ERROR Unsupported board size");
+                    }
+                } catch (IllegalArgumentException e) {
+                    sendMessage("ERROR " + e.getMessage());
+                }
+                return;
+            }
+            if (command.startsWith("BOT") && lobby != null) {
+                try {
+                    String settings = command.substring(3).trim();
+                    GameConfig config = settings.isEmpty() ? GameConfig.of(Lobby.DEFAULT_SIZE) : GameConfig.parse(settings);
+                    if (lobby.playBot(this, config)) {
+                        stopWatching();
+                    } else {
+                        sendMessage("ERROR Unsupported board size");
+                    }
+                } catch (IllegalArgumentException e) {
+                    sendMessage("ERROR " + e.getMessage());
+                }
+                return;
+            }
+            if (command.startsWith("WATCH") && lobby != null) {
+                watch(command.substring(5).trim());
+                return;
+            }
+            if (command.startsWith("RECONNECT") && lobby != null) {
+                if (!lobby.reconnect(this, command.substring(9).trim())) {
+                    sendMessage("ERROR Unknown session");
+                }
+                return;
+            }
+            if (command.equals("SYNC") && watching != null) {
+                watching.resyncSpectator(this);
+                return;
+            }
+            if (command.equals("UNWATCH")) {
+                stopWatching();
+                sendMessage("MESSAGE Stopped watching");
+                return;
+            }
             sendMessage("MESSAGE Waiting for opponent...");
             return;
         }
 
-        System.out.println("Received from " + color + ": " + command);
+        Log.debug(game.getId(), color, command, "Received");
 
         if (command.startsWith("MOVE")) {
             String[] parts = command.split(" ");
@@ -93,36 +298,468 @@ public class PlayerHandler implements Runnable {
             game.processQuit(this);
         } else if (command.equals("RESUME")) {
             game.processResume(this);
+        } else if (command.equals("UNDO")) {
+            game.processUndo(this);
         } else if (command.equals("AGREE")) {
             game.processAgree(this);
         } else if (command.equals("NEGOTIATION")){
             game.processNegotiation(this);
+        } else if (command.equals("SYNC")) {
+            game.resync(this);
         } else {
             sendMessage("ERROR Unknown command");
     }
     }
 
     /**
-     * Sends a message to the client.
+     * Queues a message for the client; it is sent by the next {@link #flush()}.
+     * The characters are encoded into a reusable buffer, so callers may pass
+     * a {@link StringBuilder} they keep reusing and no intermediate {@link String} is created.
+     * Never blocks on the socket, so it is safe to call while holding the game lock.
      *
-     * @param message The message string to send.
+     * @param message The message to send.
      */
-    public void sendMessage(String message) {
-        if (output != null) {
-            output.println(message);
+    public void sendMessage(CharSequence message) {
+        if (binary) {
+            sendLock.lock();
+            try {
+                int length = WireProtocol.encodeText(frame(WireProtocol.maxTextFrame(message.length())), 0, message);
+                sendBytes(length);
+            } finally {
+                sendLock.unlock();
+            }
+            return;
+        }
+        if (connection != null) {
+            connection.write(message);
+            return;
+        }
+        boolean overflow = false;
+        sendLock.lock();
+        try {
+            if (output == null) {
+                return;
+            }
+            int length = message.length();
+            if (pending.length - pendingLength < 3 * length + 1) {
+                pending = Arrays.copyOf(pending, Math.max(pendingLength + 3 * length + 1, 2 * pending.length));
+            }
+            for (int i = 0; i < length; i++) {
+                char c = message.charAt(i);
+                if (c < 0x80) {
+                    pending[pendingLength++] = (byte) c;
+                } else if (c < 0x800) {
+                    pending[pendingLength++] = (byte) (0xC0 | (c >> 6));
+                    pending[pendingLength++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    pending[pendingLength++] = (byte) (0xE0 | (c >> 12));
+                    pending[pendingLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    pending[pendingLength++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            pending[pendingLength++] = '\n';
+            if (pendingLength > MAX_PENDING) {
+                overflow = true;
+                pendingLength = 0;
+                output = null;
+            }
+        } finally {
+            sendLock.unlock();
+        }
+        if (overflow) {
+            Log.warn(color, "Client too slow, disconnecting", null);
+            closeConnection();
+        }
+    }
+
+    /**
+     * Sends a placed or removed stone.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The color of the stone, {@link StoneColor#EMPTY} if it was removed.
+     * @param version The board version after the change.
+     */
+    public void sendMove(int x, int y, StoneColor color, int version) {
+        sendLock.lock();
+        try {
+            if (binary) {
+                sendBytes(WireProtocol.encodeMove(frame(WireProtocol.MAX_MOVE_FRAME), 0, x, y, Board.code(color), version));
+            } else {
+                text.setLength(0);
+                formatMove(text, x, y, color, version);
+                sendMessage(text);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Sends the stones captured by the last move, possibly none.
+     *
+     * @param board The board the point indices refer to.
+     * @param points The captured point indices.
+     * @param count The number of captured stones.
+     */
+    public void sendCaptures(Board board, int[] points, int count) {
+        sendLock.lock();
+        try {
+            if (binary) {
+                sendBytes(WireProtocol.encodeCaptures(frame(WireProtocol.maxCapturesFrame(count)), 0, board, points, count));
+            } else {
+                text.setLength(0);
+                formatCaptures(text, board, points, count);
+                sendMessage(text);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Sends whose turn it is.
+     *
+     * @param color The color to move.
+     */
+    public void sendTurn(StoneColor color) {
+        sendLock.lock();
+        try {
+            if (binary) {
+                sendBytes(WireProtocol.encodeColor(frame(2), 0, WireProtocol.TURN, Board.code(color)));
+            } else {
+                sendMessage(color == StoneColor.BLACK ? "TURN BLACK" : "TURN WHITE");
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a pass.
+     *
+     * @param color The color that passed.
+     */
+    public void sendPass(StoneColor color) {
+        sendLock.lock();
+        try {
+            if (binary) {
+                sendBytes(WireProtocol.encodeColor(frame(2), 0, WireProtocol.PASS, Board.code(color)));
+            } else {
+                sendMessage(color == StoneColor.BLACK ? "PASS BLACK" : "PASS WHITE");
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the text protocol form of a placed or removed stone.
+     *
+     * @param out The builder to append to.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The color of the stone.
+     * @param version The board version after the change.
+     */
+    static void formatMove(StringBuilder out, int x, int y, StoneColor color, int version) {
+        out.append("MOVE ").append(x).append(' ').append(y).append(' ').append(color.name()).append(' ').append(version);
+    }
+
+    /**
+     * Writes the text protocol form of a capture list.
+     *
+     * @param out The builder to append to.
+     * @param board The board the point indices refer to.
+     * @param points The captured point indices.
+     * @param count The number of captured stones.
+     */
+    static void formatCaptures(StringBuilder out, Board board, int[] points, int count) {
+        out.append("CAPTURES");
+        for (int i = 0; i < count; i++) {
+            out.append(' ').append(board.getX(points[i]))
+                    .append(' ').append(board.getY(points[i]));
         }
     }
 
     /**
-     * Closes the socket connection.
+     * Confirms the protocol switch in text and uses binary frames in both directions from then on.
      */
-    private void closeConnection() {
+    private void enableBinary() {
+        sendLock.lock();
+        try {
+            sendMessage(WireProtocol.HANDSHAKE);
+            binary = true;
+        } finally {
+            sendLock.unlock();
+        }
+        if (connection != null) {
+            connection.setBinary();
+        } else {
+            decoder.setBinary();
+        }
+    }
+
+    /**
+     * Returns the frame buffer, grown to hold at least the given number of bytes. Called with sendLock held.
+     *
+     * @param bytes The number of bytes about to be encoded.
+     * @return The frame buffer.
+     */
+    private byte[] frame(int bytes) {
+        if (frame.length < bytes) {
+            frame = new byte[Math.max(bytes, 2 * frame.length)];
+        }
+        return frame;
+    }
+
+    /**
+     * Queues the first bytes of the frame buffer for sending. Called with sendLock held.
+     *
+     * @param length The number of bytes.
+     */
+    private void sendBytes(int length) {
+        sendBytes(frame, length);
+    }
+
+    /**
+     * Queues encoded bytes for sending. Called with sendLock held.
+     *
+     * @param bytes The buffer holding the data.
+     * @param length The number of bytes from the start of the buffer.
+     */
+    private void sendBytes(byte[] bytes, int length) {
+        if (connection != null) {
+            connection.write(bytes, length);
+            return;
+        }
+        if (output == null) {
+            return;
+        }
+        if (pending.length - pendingLength < length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingLength + length, 2 * pending.length));
+        }
+        System.arraycopy(bytes, 0, pending, pendingLength, length);
+        pendingLength += length;
+        if (pendingLength > MAX_PENDING) {
+            Log.warn(color, "Client too slow, disconnecting", null);
+            pendingLength = 0;
+            output = null;
+            closeConnection();
+        }
+    }
+
+    /**
+     * Sends all queued messages to the client. Never blocks on the socket: with a blocking socket
+     * the messages are written by the connection's writer thread, see {@link #writeLoop()}.
+     */
+    public void flush() {
+        if (connection != null) {
+            connection.flush();
+            return;
+        }
+        sendLock.lock();
+        try {
+            if (socket == null) {
+                pendingLength = 0; //Bez gniazda nie ma wątku piszącego
+            } else if (pendingLength > 0) {
+                flushRequested = true;
+                flushed.signal();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the flushed messages to the blocking socket until the connection is closed.
+     * Runs on the connection's own virtual thread, so only this thread waits for a client that reads slowly,
+     * while new messages keep collecting in the other buffer until {@link #MAX_PENDING} is reached.
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                OutputStream out;
+                int length;
+                sendLock.lock();
+                try {
+                    while (output != null && !flushRequested) {
+                        flushed.await();
+                    }
+                    out = output;
+                    if (out == null) {
+                        return;
+                    }
+                    flushRequested = false;
+                    byte[] batch = pending;
+                    pending = writing;
+                    writing = batch;
+                    length = pendingLength;
+                    pendingLength = 0;
+                } finally {
+                    sendLock.unlock();
+                }
+                out.write(writing, 0, length);
+                out.flush();
+                bytesSent += length;
+                ServerMetrics.BYTES_SENT.add(length);
+            }
+        } catch (IOException | InterruptedException e) {
+            Log.warn(color, "Player disconnected", e.getMessage());
+            closeConnection();
+        }
+    }
+
+    /**
+     * Flushes the output of everyone who may have been sent messages by the commands just handled:
+     * both players of the game, or only this player while it waits for one.
+     */
+    void flushAfterBatch() {
+        Game current = game;
+        if (current != null) {
+            current.flush();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Checks whether the client is still connected.
+     *
+     * @return false once the connection has been closed.
+     */
+    public boolean isConnected() {
+        if (closed.get()) {
+            return false; //Gra dowiaduje się o rozłączeniu, zanim gniazdo zostanie zamknięte
+        }
+        if (connection != null) {
+            return !connection.isClosed();
+        }
+        return socket != null && !socket.isClosed();
+    }
+
+    /**
+     * Returns the number of bytes received from the client so far.
+     *
+     * @return The received byte count.
+     */
+    public long getBytesReceived() {
+        return connection != null ? connection.getBytesReceived() : bytesReceived;
+    }
+
+    /**
+     * Returns the number of bytes written to the client so far.
+     *
+     * @return The sent byte count.
+     */
+    public long getBytesSent() {
+        return connection != null ? connection.getBytesSent() : bytesSent;
+    }
+
+    /**
+     * Starts watching a game of the lobby instead of waiting for an opponent.
+     *
+     * @param id The game ID as sent by the client.
+     */
+    private void watch(String id) {
+        Game target;
+        try {
+            target = lobby.getGame(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            sendMessage("ERROR Wrong game ID");
+            return;
+        }
+        if (target == null) {
+            sendMessage("ERROR No such game");
+            return;
+        }
+        if (!lobby.spectate(this)) {
+            sendMessage("ERROR Already paired");
+            return;
+        }
+        stopWatching();
+        sendMessage("MESSAGE Watching game " + id);
+        flush(); //Przed ramkami nadrobienia, które wyśle inny wątek
+        watching = target;
+        target.subscribe(this);
+    }
+
+    /**
+     * Stops watching the current game, if any.
+     */
+    private void stopWatching() {
+        Game previous = watching;
+        if (previous != null) {
+            watching = null;
+            previous.unsubscribe(this);
+        }
+    }
+
+    /**
+     * Sends an event of the watched game and writes it out at once.
+     *
+     * @param event The encoded event.
+     * @return false once the connection has been closed.
+     */
+    @Override
+    public boolean deliver(SpectatorFrame event) {
+        byte[] bytes = event.bytes(binary);
+        sendLock.lock();
+        try {
+            sendBytes(bytes, bytes.length);
+        } finally {
+            sendLock.unlock();
+        }
+        flush();
+        return isConnected();
+    }
+
+    /**
+     * Tells the client that it fell too far behind the watched game.
+     */
+    @Override
+    public void dropped() {
+        watching = null;
+        sendMessage("ERROR Too slow, stopped watching");
+        flush();
+    }
+
+    /**
+     * Closes the socket connection and leaves the lobby if still waiting for an opponent.
+     * A player of a running game keeps its seat for a while, so it can come back with its session token.
+     * Only the first call has any effect.
+     */
+    void closeConnection() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (socket != null || connection != null) {
+            ServerMetrics.CONNECTIONS.decrementAndGet();
+        }
+        stopWatching();
+        Game current = game;
+        if (current == null && lobby != null) {
+            lobby.leave(this);
+        } else if (current != null && current.playerDisconnected(this) && lobby != null) {
+            lobby.awaitReconnect(current, this);
+        }
+        if (connection != null) {
+            connection.close();
+            return;
+        }
+        sendLock.lock();
+        try {
+            output = null; //Kończy wątek piszący
+            flushed.signal();
+        } finally {
+            sendLock.unlock();
+        }
         try {
             if (socket != null && !socket.isClosed()) {
                 socket.close();
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Closing socket failed", e);
         }
     }
 
@@ -135,6 +772,62 @@ public class PlayerHandler implements Runnable {
         this.game = game;
     }
 
+    /**
+     * Returns the game this handler plays in.
+     *
+     * @return The game, or null while waiting for an opponent.
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Sets the session token the player can reconnect with.
+     *
+     * @param session The token.
+     */
+    void setSession(String session) {
+        this.session = session;
+    }
+
+    /**
+     * Returns the session token the player can reconnect with.
+     *
+     * @return The token, or null if the player has none.
+     */
+    String getSession() {
+        return session;
+    }
+
+    /**
+     * Sets the lobby that handles this player's {@code JOIN} requests.
+     *
+     * @param lobby The lobby.
+     */
+    void setLobby(Lobby lobby) {
+        this.lobby = lobby;
+    }
+
+    /**
+     * Returns the game settings this player is queued for.
+     *
+     * @return The settings, or null if not queued.
+     */
+    GameConfig getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Atomically changes the game settings this player is queued for. Settings are compared by identity.
+     *
+     * @param expected The settings the caller saw.
+     * @param config The new settings.
+     * @return false if the settings were changed concurrently.
+     */
+    boolean compareAndSetQueued(GameConfig expected, GameConfig config) {
+        return queued.compareAndSet(expected, config);
+    }
+
     /**
      * Sets the player's stone color.
      *
@@ -0,0 +1,151 @@
+package org.example.gogame.server;
+
+import java.util.Arrays;
+
+/**
+ * Set of position hashes seen during a game, used for superko detection.
+ * Implemented as an open-addressing hash table of primitive longs with linear probing,
+ * so lookups and insertions take constant time and allocate nothing until the table grows.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public class PositionHistory {
+    private long[] table;
+    private int mask;
+    private int count = 0;
+    private boolean containsZero = false; //0 oznacza wolne miejsce w tablicy, więc przechowujemy go osobno
+
+    /**
+     * Creates a history able to hold the given number of positions before growing.
+     *
+     * @param expected The expected number of positions.
+     */
+    public PositionHistory(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) * 2;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds a position hash.
+     *
+     * @param hash The position hash.
+     * @return true if the hash was not present before.
+     */
+    public boolean add(long hash) {
+        if (hash == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        int i = slot(hash);
+        while (table[i] != 0) {
+            if (table[i] == hash) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = hash;
+        if (++count * 2 > table.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Removes a position hash, e.g. of a position whose move was taken back.
+     * Later hashes of its probe run are shifted back, so no tombstones are left.
+     *
+     * @param hash The position hash.
+     * @return true if the hash was present.
+     */
+    public boolean remove(long hash) {
+        if (hash == 0) {
+            boolean removed = containsZero;
+            containsZero = false;
+            return removed;
+        }
+        int gap = slot(hash);
+        while (table[gap] != hash) {
+            if (table[gap] == 0) {
+                return false;
+            }
+            gap = (gap + 1) & mask;
+        }
+        for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (((i - slot(table[i])) & mask) >= ((i - gap) & mask)) { //Wpis może zająć lukę bez przeskoczenia swojego slotu
+                table[gap] = table[i];
+                gap = i;
+            }
+        }
+        table[gap] = 0;
+        count--;
+        return true;
+    }
+
+    /**
+     * Checks whether a position hash has been seen.
+     *
+     * @param hash The position hash.
+     * @return true if the hash is present.
+     */
+    public boolean contains(long hash) {
+        if (hash == 0) {
+            return containsZero;
+        }
+        int i = slot(hash);
+        while (table[i] != 0) {
+            if (table[i] == hash) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of stored positions.
+     *
+     * @return The number of distinct hashes added.
+     */
+    public int size() {
+        return count + (containsZero ? 1 : 0);
+    }
+
+    /**
+     * Removes all positions, keeping the allocated table.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        count = 0;
+        containsZero = false;
+    }
+
+    /**
+     * Returns the home slot of a hash.
+     *
+     * @param hash The position hash.
+     * @return The table index to start probing at.
+     */
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Doubles the table and reinserts every stored hash.
+     */
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        mask = table.length - 1;
+        for (long hash : old) {
+            if (hash != 0) {
+                int i = slot(hash);
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = hash;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.gogame.server;
+
+import org.example.gogame.StoneColor;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the server, rendered in the Prometheus text format by {@link #scrape}.
+ * <p>
+ * The hot paths only touch atomics: {@link Game} records how long each {@code MOVE}, {@code PASS} and
+ * {@code AGREE} took, and the transports add the bytes they read and wrote. Everything else, such as
+ * the number of running games, the bytes of each seated player and the JVM's garbage collection and
+ * allocation counters, is read when the metrics are scraped. Bots add the playouts of their searches and the
+ * time the search threads spent on them, so the two counters give the playouts per second per core.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class ServerMetrics {
+    /** Time taken by {@link Game#processMove}. */
+    public static final LatencyHistogram MOVE = new LatencyHistogram();
+    /** Time taken by {@link Game#processPass}. */
+    public static final LatencyHistogram PASS = new LatencyHistogram();
+    /** Time taken by {@link Game#processAgree}. */
+    public static final LatencyHistogram AGREE = new LatencyHistogram();
+    /** Time taken by the dead stone estimates of {@link OwnershipEstimator}. */
+    public static final LatencyHistogram ESTIMATE = new LatencyHistogram();
+    /** Open client connections. */
+    static final AtomicInteger CONNECTIONS = new AtomicInteger();
+    /** Bytes read from all clients. */
+    static final LongAdder BYTES_RECEIVED = new LongAdder();
+    /** Bytes written to all clients. */
+    static final LongAdder BYTES_SENT = new LongAdder();
+    /** Playouts of all bot searches. */
+    static final LongAdder BOT_PLAYOUTS = new LongAdder();
+    /** Time of all bot searches in nanoseconds, multiplied by the number of threads searching. */
+    static final LongAdder BOT_SEARCH_NANOS = new LongAdder();
+
+    private static final StoneColor[] SEATS = {StoneColor.BLACK, StoneColor.WHITE};
+
+    private ServerMetrics() {
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format, version 0.0.4.
+     *
+     * @param lobby The lobby whose games and queues are reported.
+     * @return The metrics.
+     */
+    public static String scrape(Lobby lobby) {
+        StringBuilder out = new StringBuilder(16 * 1024);
+
+        header(out, "gogame_command_duration_seconds", "histogram", "Time taken to process a game command, waiting for the game lock included.");
+        MOVE.writePrometheus(out, "gogame_command_duration_seconds", "command=\"MOVE\"");
+        PASS.writePrometheus(out, "gogame_command_duration_seconds", "command=\"PASS\"");
+        AGREE.writePrometheus(out, "gogame_command_duration_seconds", "command=\"AGREE\"");
+        header(out, "gogame_dead_stone_estimate_seconds", "histogram", "Time taken to estimate the dead stones when a game is passed out.");
+        ESTIMATE.writePrometheus(out, "gogame_dead_stone_estimate_seconds", "");
+
+        int spectators = 0;
+        int backlog = 0;
+        int games = 0;
+        StringBuilder received = new StringBuilder();
+        StringBuilder sent = new StringBuilder();
+        for (Game game : lobby.getGames()) {
+            games++;
+            spectators += game.getSpectatorCount();
+            backlog += game.getSpectatorBacklog();
+            for (StoneColor seat : SEATS) {
+                PlayerHandler player = game.getPlayer(seat);
+                if (player == null || !player.isConnected()) {
+                    continue;
+                }
+                String labels = "{game=\"" + game.getId() + "\",color=\"" + seat + "\"} ";
+                received.append("gogame_player_received_bytes").append(labels).append(player.getBytesReceived()).append('\n');
+                sent.append("gogame_player_sent_bytes").append(labels).append(player.getBytesSent()).append('\n');
+            }
+        }
+
+        gauge(out, "gogame_active_games", "Games in progress.", games);
+        gauge(out, "gogame_connected_players", "Open client connections.", CONNECTIONS.get());
+        gauge(out, "gogame_waiting_players", "Players queued for an opponent.", lobby.getWaitingCount());
+        gauge(out, "gogame_spectators", "Spectators watching a game.", spectators);
+        gauge(out, "gogame_spectator_queue_depth", "Events waiting to be delivered to spectators.", backlog);
+        counter(out, "gogame_received_bytes_total", "Bytes read from all clients.", BYTES_RECEIVED.sum());
+        counter(out, "gogame_sent_bytes_total", "Bytes written to all clients.", BYTES_SENT.sum());
+        counter(out, "gogame_bot_playouts_total", "Random playouts of all bot searches.", BOT_PLAYOUTS.sum());
+        header(out, "gogame_bot_search_core_seconds_total", "counter", "Time the search threads spent on bot searches.");
+        out.append("gogame_bot_search_core_seconds_total ").append(BOT_SEARCH_NANOS.sum() / 1e9).append('\n');
+        header(out, "gogame_territory_cache_lookups_total", "counter", "Lookups of counted positions in the territory cache.");
+        out.append("gogame_territory_cache_lookups_total{result=\"hit\"} ").append(GameLogic.TERRITORY.getHits()).append('\n');
+        out.append("gogame_territory_cache_lookups_total{result=\"miss\"} ").append(GameLogic.TERRITORY.getMisses()).append('\n');
+        gauge(out, "gogame_territory_cache_bytes", "Memory taken by the territory cache.", GameLogic.TERRITORY.getMemoryBytes());
+        header(out, "gogame_player_received_bytes", "gauge", "Bytes read from a seated player's current connection.");
+        out.append(received);
+        header(out, "gogame_player_sent_bytes", "gauge", "Bytes written to a seated player's current connection.");
+        out.append(sent);
+
+        writeJvm(out);
+        return out.toString();
+    }
+
+    /**
+     * Appends the garbage collection, heap and allocation counters of the JVM.
+     *
+     * @param out The destination.
+     */
+    private static void writeJvm(StringBuilder out) {
+        header(out, "jvm_gc_collections_total", "counter", "Garbage collections by collector.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("jvm_gc_collections_total{gc=\"").append(gc.getName()).append("\"} ")
+                    .append(Math.max(0, gc.getCollectionCount())).append('\n');
+        }
+        header(out, "jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection by collector.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("jvm_gc_collection_seconds_total{gc=\"").append(gc.getName()).append("\"} ")
+                    .append(Math.max(0, gc.getCollectionTime()) / 1000.0).append('\n');
+        }
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge(out, "jvm_heap_used_bytes", "Heap in use.", memory.getHeapMemoryUsage().getUsed());
+        //Dostępne tylko w HotSpot; liczy wszystkie wątki, także zakończone i wirtualne
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            counter(out, "jvm_allocated_bytes_total", "Bytes allocated on the heap since the JVM started.",
+                    threads.getTotalThreadAllocatedBytes());
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.GameConfig;
+
+/**
+ * Writes games in the Smart Game Format (SGF, FF[4]), the usual exchange format for Go records.
+ * <p>
+ * A game is one main line: a root node with the board size, the rules, the komi, the clock and the result, followed by one
+ * node per move or pass. When a game ended by agreement, its last node lists the territory of both
+ * players in {@code TB} and {@code TW}; the points of stones removed as dead are part of that territory,
+ * as the format prescribes. {@link SgfReader} reads the format back.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class Sgf {
+    /** Largest board size a point can be written for: letters {@code a}-{@code z} and {@code A}-{@code Z}. */
+    public static final int MAX_SIZE = 52;
+
+    private Sgf() {
+    }
+
+    /**
+     * Packs a move for {@link #write}.
+     *
+     * @param color The cell code of the stone.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return The packed move.
+     */
+    static int move(byte color, int x, int y) {
+        return color << 16 | x << 8 | y;
+    }
+
+    /**
+     * Packs a pass for {@link #write}.
+     *
+     * @param color The cell code of the color that passed.
+     * @return The packed pass.
+     */
+    static int pass(byte color) {
+        return color << 16 | 0xFFFF;
+    }
+
+    /**
+     * Writes a game.
+     *
+     * @param config The settings of the game.
+     * @param moves The moves and passes, packed by {@link #move} and {@link #pass}.
+     * @param count The number of moves and passes.
+     * @param result The result as written in the {@code RE} property, e.g. {@code B+5} or {@code W+R}, or null if unknown.
+     * @param board The final position, with dead stones removed.
+     * @param territory The scorer that scored the final position, or null if the game was not scored.
+     * @return The SGF text.
+     */
+    static String write(GameConfig config, int[] moves, int count, String result, Board board, TerritoryScorer territory) {
+        StringBuilder out = new StringBuilder(64 + 6 * count);
+        out.append("(;FF[4]GM[1]CA[UTF-8]AP[gogame]RU[").append(config.rules().sgfName())
+                .append("]SZ[").append(config.size()).append(']');
+        if (config.komi() != 0) {
+            out.append("KM[").append(GameConfig.formatPoints(config.komi())).append(']');
+        }
+        if (config.isTimed()) {
+            out.append("TM[").append(config.mainTime()).append("]OT[Fischer ").append(config.increment()).append(']');
+        }
+        if (result != null) {
+            out.append("RE[").append(result).append(']');
+        }
+        for (int i = 0; i < count; i++) {
+            if (i % 16 == 0) {
+                out.append('\n'); //Krótkie wiersze dla czytelności, SGF ignoruje białe znaki między węzłami
+            }
+            int move = moves[i];
+            out.append(';').append((move >> 16) == Board.BLACK ? 'B' : 'W').append('[');
+            if ((move & 0xFFFF) != 0xFFFF) {
+                out.append(letter((move >> 8) & 0xFF)).append(letter(move & 0xFF));
+            }
+            out.append(']');
+        }
+        if (territory != null) {
+            appendTerritory(out, "TB", Board.BLACK, board, territory);
+            appendTerritory(out, "TW", Board.WHITE, board, territory);
+        }
+        return out.append(")\n").toString();
+    }
+
+    /**
+     * Returns the letter of a coordinate.
+     *
+     * @param coordinate The coordinate, from 0 to {@link #MAX_SIZE} - 1.
+     * @return {@code a}-{@code z} for 0-25, {@code A}-{@code Z} for 26-51.
+     */
+    static char letter(int coordinate) {
+        return (char) (coordinate < 26 ? 'a' + coordinate : 'A' + coordinate - 26);
+    }
+
+    /**
+     * Returns the coordinate of a letter.
+     *
+     * @param letter The letter.
+     * @return The coordinate, or -1 if the character is not a coordinate letter.
+     */
+    static int coordinate(int letter) {
+        if (letter >= 'a' && letter <= 'z') {
+            return letter - 'a';
+        }
+        if (letter >= 'A' && letter <= 'Z') {
+            return letter - 'A' + 26;
+        }
+        return -1;
+    }
+
+    /**
+     * Appends a territory property listing the empty points a color owns, if there are any.
+     */
+    private static void appendTerritory(StringBuilder out, String property, byte owner, Board board, TerritoryScorer territory) {
+        int size = board.getSize();
+        boolean any = false;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int point = board.point(x, y);
+                if (board.get(point) == Board.EMPTY && territory.getOwner(point) == owner) {
+                    if (!any) {
+                        out.append('\n').append(property);
+                        any = true;
+                    }
+                    out.append('[').append(letter(x)).append(letter(y)).append(']');
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader of SGF files, which may hold any number of games one after another.
+ * <p>
+ * The file is memory-mapped in windows of {@link #WINDOW} bytes, so archives of many gigabytes are read
+ * without loading them. Nothing of a game is kept beyond the property being read: every property is
+ * passed to a {@link Handler} as soon as it is complete, moves as coordinates. Only the main line of
+ * each game is reported; other variations are skipped. Property values longer than {@link #MAX_VALUE}
+ * characters, such as long comments, are cut short, so memory use per game is constant.
+ * <p>
+ * Values are read byte per character, which is exact for everything but free text in other encodings than Latin-1.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class SgfReader implements Closeable {
+    /** Size of the mapped windows of the file. */
+    static final int WINDOW = 64 * 1024 * 1024;
+    /** Longest property value passed on in full. */
+    static final int MAX_VALUE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long length;
+    private long base = 0;
+    private ByteBuffer window;
+    private final StringBuilder value = new StringBuilder(64);
+    private final char[] name = new char[8];
+    private int size;
+
+    /**
+     * Receives the main line of each game.
+     */
+    public interface Handler {
+        /**
+         * Called when a game starts.
+         */
+        void startGame();
+
+        /**
+         * Called for every value of every property other than a move, e.g. {@code SZ}, {@code RE} or
+         * {@code AB}; a property with several values is reported once per value.
+         *
+         * @param name The property identifier.
+         * @param value The value, valid only during the call.
+         */
+        void property(String name, CharSequence value);
+
+        /**
+         * Called for a move or a pass.
+         *
+         * @param color {@link Board#BLACK} or {@link Board#WHITE}.
+         * @param x The x-coordinate, -1 for a pass.
+         * @param y The y-coordinate, -1 for a pass.
+         */
+        void move(byte color, int x, int y);
+
+        /**
+         * Called when the game ends, also if the file is cut off in the middle of it.
+         */
+        void endGame();
+    }
+
+    /**
+     * Reads from a mapped file.
+     *
+     * @param channel The open file.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private SgfReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.length = channel.size();
+        this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(length, WINDOW));
+    }
+
+    /**
+     * Reads from memory.
+     *
+     * @param bytes The SGF data.
+     */
+    private SgfReader(byte[] bytes) {
+        this.channel = null;
+        this.length = bytes.length;
+        this.window = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Opens an SGF file.
+     *
+     * @param file The file.
+     * @return The reader, positioned before the first game.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static SgfReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new SgfReader(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads SGF text held in memory, e.g. the output of {@link Game#toSgf()}.
+     *
+     * @param sgf The SGF text.
+     * @return The reader, positioned before the first game.
+     */
+    public static SgfReader of(String sgf) {
+        return new SgfReader(sgf.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Reads the next game and reports its main line to a handler.
+     *
+     * @param handler The handler.
+     * @return false if there are no more games.
+     * @throws IOException If the file cannot be read.
+     */
+    public boolean next(Handler handler) throws IOException {
+        int c;
+        do {
+            c = read();
+            if (c < 0) {
+                return false;
+            }
+        } while (c != '(');
+
+        handler.startGame();
+        size = 19;
+        int depth = 1;
+        boolean mainLineDone = false;
+        while (depth > 0) {
+            c = read();
+            if (c < 0) {
+                break;
+            }
+            if (c == '(') {
+                if (mainLineDone) {
+                    skipTree(); //Główna linia to zawsze pierwsza gałąź, pozostałe pomijamy
+                } else {
+                    depth++;
+                }
+            } else if (c == ')') {
+                mainLineDone = true;
+                depth--;
+            } else if (c >= 'A' && c <= 'Z') {
+                readProperty(c, handler);
+            }
+        }
+        handler.endGame();
+        return true;
+    }
+
+    /**
+     * Returns how far the file has been read.
+     *
+     * @return The number of bytes consumed.
+     */
+    public long getPosition() {
+        return base + window.position();
+    }
+
+    /**
+     * Releases the file.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads a property identifier starting with the given letter and all of its values.
+     * Lower case letters are ignored, as in identifiers like {@code AddBlack} of old versions of the format.
+     */
+    private void readProperty(int first, Handler handler) throws IOException {
+        int nameLength = 0;
+        name[nameLength++] = (char) first;
+        int c = read();
+        while (c >= 0 && c != '[' && (Character.isLetter(c) || Character.isWhitespace(c))) {
+            if (c >= 'A' && c <= 'Z' && nameLength < name.length) {
+                name[nameLength++] = (char) c;
+            }
+            c = read();
+        }
+        boolean isMove = nameLength == 1 && (first == 'B' || first == 'W');
+        String identifier = isMove ? null : new String(name, 0, nameLength);
+        while (c == '[') {
+            readValue();
+            if (isMove) {
+                reportMove(first == 'B' ? Board.BLACK : Board.WHITE, handler);
+            } else {
+                if (identifier.equals("SZ")) {
+                    size = parseSize(value);
+                }
+                handler.property(identifier, value);
+            }
+            c = skipWhitespace();
+        }
+        if (c >= 0) {
+            unread();
+        }
+    }
+
+    /**
+     * Parses the value of an {@code SZ} property, which may also be written as {@code columns:rows}.
+     *
+     * @param value The value.
+     * @return The board size, or -1 if the value is not a number.
+     */
+    static int parseSize(CharSequence value) {
+        String text = value.toString().trim();
+        int colon = text.indexOf(':');
+        try {
+            return Integer.parseInt(colon < 0 ? text : text.substring(0, colon).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reports a move value, which is empty, or {@code tt} on boards up to 19x19, for a pass.
+     */
+    private void reportMove(byte color, Handler handler) {
+        boolean tt = value.length() == 2 && value.charAt(0) == 't' && value.charAt(1) == 't';
+        if (value.length() == 2 && !(tt && size <= 19)) {
+            int x = Sgf.coordinate(value.charAt(0));
+            int y = Sgf.coordinate(value.charAt(1));
+            if (x >= 0 && y >= 0) {
+                handler.move(color, x, y);
+                return;
+            }
+        }
+        handler.move(color, -1, -1);
+    }
+
+    /**
+     * Reads a value after its opening bracket into {@link #value}, resolving escapes.
+     */
+    private void readValue() throws IOException {
+        value.setLength(0);
+        int c;
+        while ((c = read()) >= 0 && c != ']') {
+            if (c == '\\') {
+                c = read();
+                if (c < 0) {
+                    return;
+                }
+                if (c == '\n' || c == '\r') {
+                    continue; //Miękkie złamanie wiersza
+                }
+            }
+            if (value.length() < MAX_VALUE) {
+                value.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Skips a variation after its opening parenthesis, including any nested ones.
+     */
+    private void skipTree() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = read()) >= 0) {
+            if (c == '[') {
+                while ((c = read()) >= 0 && c != ']') {
+                    if (c == '\\') {
+                        read();
+                    }
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads up to the next character that is not whitespace.
+     *
+     * @return The character, or -1 at the end of the file.
+     */
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && Character.isWhitespace(c));
+        return c;
+    }
+
+    /**
+     * Reads the next byte, mapping the next window of the file when the current one is used up.
+     *
+     * @return The byte, or -1 at the end of the file.
+     */
+    private int read() throws IOException {
+        if (!window.hasRemaining()) {
+            long next = base + window.limit();
+            if (channel == null || next >= length) {
+                return -1;
+            }
+            base = next;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(length - base, WINDOW));
+        }
+        return window.get() & 0xFF;
+    }
+
+    /**
+     * Steps back over the byte just read. Only called right after {@link #read()} returned a byte.
+     */
+    private void unread() {
+        window.position(window.position() - 1);
+    }
+}
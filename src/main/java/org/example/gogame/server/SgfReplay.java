@@ -0,0 +1,342 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.StoneColor;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Replays the games read by a {@link SgfReader} onto a {@link Board} with the rules of {@link GameLogic},
+ * the way a live {@link Game} would play them.
+ * <p>
+ * Every move goes through {@link GameLogic#play}, so captures, ko, suicide and superko are checked; the first
+ * move the rules reject ends the replay of that game and is reported by {@link #getError()}. Setup stones
+ * ({@code AB}, {@code AW}, {@code AE}) are placed directly. Points listed as territory ({@code TB}, {@code TW})
+ * are remembered, and once the game ends the stones standing in the other color's territory are removed as
+ * dead and counted as prisoners, as the negotiation phase of a live game does.
+ * <p>
+ * One instance replays any number of games one after another, reusing its board while the size stays the same.
+ * It is not thread-safe; give every thread its own.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public class SgfReplay implements SgfReader.Handler {
+    private final GameLogic logic = new GameLogic();
+    private final PositionHistory history = new PositionHistory(512);
+    private SuperkoRule superkoRule = SuperkoRule.POSITIONAL;
+    private Board board;
+    private int[] captured;
+    private byte[] marked; //Właściciel punktu według TB/TW, indeksowany numerem punktu planszy
+    private TerritoryScorer scorer;
+    private int size;
+    private int koPoint;
+    private int moveCount;
+    private int blackPrisoners;
+    private int whitePrisoners;
+    private int deadStones;
+    private boolean prepared;
+    private boolean scored;
+    private double komi;
+    private String rules;
+    private String result;
+    private String error;
+
+    /**
+     * Sets the superko variant moves are checked with, {@link SuperkoRule#POSITIONAL} by default.
+     *
+     * @param rule The superko variant.
+     */
+    public void setSuperkoRule(SuperkoRule rule) {
+        this.superkoRule = rule;
+    }
+
+    @Override
+    public void startGame() {
+        size = 19;
+        prepared = false;
+        koPoint = -1;
+        moveCount = 0;
+        blackPrisoners = 0;
+        whitePrisoners = 0;
+        deadStones = 0;
+        scored = false;
+        komi = 0;
+        rules = null;
+        result = null;
+        error = null;
+    }
+
+    @Override
+    public void property(String name, CharSequence value) {
+        switch (name) {
+            case "SZ" -> {
+                int parsed = SgfReader.parseSize(value);
+                if (prepared) {
+                    fail("Board size given after the first stone");
+                } else if (parsed < 2 || parsed > Sgf.MAX_SIZE) {
+                    fail("Unsupported board size " + value);
+                } else {
+                    size = parsed;
+                }
+            }
+            case "RE" -> result = value.toString();
+            case "RU" -> rules = value.toString();
+            case "KM" -> {
+                try {
+                    komi = Double.parseDouble(value.toString().trim());
+                } catch (NumberFormatException e) {
+                    fail("Malformed komi " + value);
+                }
+            }
+            case "AB" -> setup(value, Board.BLACK);
+            case "AW" -> setup(value, Board.WHITE);
+            case "AE" -> setup(value, Board.EMPTY);
+            case "TB" -> mark(value, Board.BLACK);
+            case "TW" -> mark(value, Board.WHITE);
+            default -> { }
+        }
+    }
+
+    @Override
+    public void move(byte color, int x, int y) {
+        if (!prepare()) {
+            return;
+        }
+        if (x < 0) {
+            koPoint = -1; //Po pasie ko można odbić
+            moveCount++;
+            return;
+        }
+        int captureCount = logic.play(board, x, y, color, koPoint, history, superkoRule, captured);
+        if (captureCount < 0) {
+            fail(describe(captureCount) + " at move " + (moveCount + 1) + " (" + Sgf.letter(x) + Sgf.letter(y) + ")");
+            return;
+        }
+        if (color == Board.BLACK) {
+            blackPrisoners += captureCount;
+        } else {
+            whitePrisoners += captureCount;
+        }
+        koPoint = logic.koPointAfter(board, board.point(x, y), captured, captureCount);
+        moveCount++;
+    }
+
+    @Override
+    public void endGame() {
+        if (!prepare()) {
+            return;
+        }
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int point = board.point(x, y);
+                byte stone = board.get(point);
+                if (stone != Board.EMPTY && marked[point] == Board.opponent(stone)) { //Martwy kamień na terytorium przeciwnika
+                    board.set(point, Board.EMPTY);
+                    deadStones++;
+                    if (stone == Board.BLACK) {
+                        whitePrisoners++;
+                    } else {
+                        blackPrisoners++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the board of the last game, after its dead stones were removed.
+     * If the replay failed, the board is left as it was at the failing move.
+     *
+     * @return The board, or null if no board could be set up yet.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the number of moves and passes replayed.
+     *
+     * @return The count.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the stones captured by Black, dead white stones included.
+     *
+     * @return The count.
+     */
+    public int getBlackPrisoners() {
+        return blackPrisoners;
+    }
+
+    /**
+     * Returns the stones captured by White, dead black stones included.
+     *
+     * @return The count.
+     */
+    public int getWhitePrisoners() {
+        return whitePrisoners;
+    }
+
+    /**
+     * Returns the number of stones removed as dead at the end of the game.
+     *
+     * @return The count.
+     */
+    public int getDeadStones() {
+        return deadStones;
+    }
+
+    /**
+     * Checks whether the game lists territory, so its final position can be scored.
+     *
+     * @return true if {@code TB} or {@code TW} was given.
+     */
+    public boolean isScored() {
+        return scored;
+    }
+
+    /**
+     * Returns the komi of the game.
+     *
+     * @return The value of {@code KM}, or 0 if the game has none.
+     */
+    public double getKomi() {
+        return komi;
+    }
+
+    /**
+     * Returns the rules the game was played under.
+     *
+     * @return The value of {@code RU}, or null if the game has none.
+     */
+    public String getRules() {
+        return rules;
+    }
+
+    /**
+     * Counts the territory of the final position, like {@link GameLogic#countTerritory} but with a scorer
+     * kept for as long as the board size stays the same.
+     *
+     * @return An integer array where index 0 is Black's territory and index 1 is White's territory.
+     * @throws IllegalStateException If no board has been set up yet.
+     */
+    public int[] countTerritory() {
+        if (board == null) {
+            throw new IllegalStateException("No game replayed");
+        }
+        return scorer.score(board);
+    }
+
+    /**
+     * Returns the recorded result.
+     *
+     * @return The value of {@code RE}, or null if the game has none.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Returns why the replay stopped early.
+     *
+     * @return The first rule violation or malformed property, or null if the whole game was replayed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Creates or clears the board on the first stone, once the size is known.
+     *
+     * @return false if the replay has already failed.
+     */
+    private boolean prepare() {
+        if (error != null) {
+            return false;
+        }
+        if (!prepared) {
+            prepared = true;
+            if (board == null || board.getSize() != size) {
+                board = new Board(size);
+                captured = new int[board.getCapacity()];
+                marked = new byte[board.getCapacity()];
+                scorer = new TerritoryScorer(size);
+            } else {
+                board.clear();
+                Arrays.fill(marked, Board.EMPTY);
+            }
+            history.clear();
+            history.add(logic.positionHash(board, StoneColor.BLACK, superkoRule));
+        }
+        return true;
+    }
+
+    /**
+     * Places setup stones, or removes stones for {@code AE}, on a point or a compressed rectangle of points.
+     */
+    private void setup(CharSequence value, byte code) {
+        if (!prepare()) {
+            return;
+        }
+        forEachPoint(value, point -> board.set(point, code));
+    }
+
+    /**
+     * Remembers territory points.
+     */
+    private void mark(CharSequence value, byte owner) {
+        if (!prepare()) {
+            return;
+        }
+        scored = true;
+        forEachPoint(value, point -> marked[point] = owner);
+    }
+
+    /**
+     * Calls an action for the point of a value, or for every point of a compressed {@code ab:cd} rectangle.
+     */
+    private void forEachPoint(CharSequence value, IntConsumer action) {
+        if (value.length() != 2 && !(value.length() == 5 && value.charAt(2) == ':')) {
+            fail("Malformed point " + value);
+            return;
+        }
+        int x1 = Sgf.coordinate(value.charAt(0));
+        int y1 = Sgf.coordinate(value.charAt(1));
+        int x2 = value.length() == 5 ? Sgf.coordinate(value.charAt(3)) : x1;
+        int y2 = value.length() == 5 ? Sgf.coordinate(value.charAt(4)) : y1;
+        if (Math.min(Math.min(x1, y1), Math.min(x2, y2)) < 0 || Math.max(Math.max(x1, y1), Math.max(x2, y2)) >= size) {
+            fail("Point off the board " + value);
+            return;
+        }
+        for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+            for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
+                action.accept(board.point(x, y));
+            }
+        }
+    }
+
+    /**
+     * Stops the replay of the current game, keeping the first reason given.
+     */
+    private void fail(String reason) {
+        if (error == null) {
+            error = reason;
+        }
+    }
+
+    /**
+     * Names a rule violation returned by {@link GameLogic#play}.
+     */
+    private static String describe(int code) {
+        return switch (code) {
+            case GameLogic.INVALID -> "Occupied or off-board point";
+            case GameLogic.KO -> "Ko violation";
+            case GameLogic.SUICIDE -> "Suicide";
+            default -> "Superko violation";
+        };
+    }
+}
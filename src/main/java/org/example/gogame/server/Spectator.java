@@ -0,0 +1,23 @@
+package org.example.gogame.server;
+
+/**
+ * Receives the events of a watched {@link Game}.
+ * Events are delivered in order on a background thread, never while the game is locked.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public interface Spectator {
+
+    /**
+     * Delivers one event.
+     *
+     * @param frame The encoded event, shared with all other spectators.
+     * @return false if the spectator has gone away and should be unsubscribed.
+     */
+    boolean deliver(SpectatorFrame frame);
+
+    /**
+     * Called once, on a background thread, when the spectator is unsubscribed because it fell too far behind.
+     */
+    void dropped();
+}
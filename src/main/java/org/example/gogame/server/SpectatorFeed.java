@@ -0,0 +1,284 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.StoneColor;
+import org.example.gogame.WireProtocol;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans the events of one game out to its spectators.
+ * <p>
+ * The game publishes every event while holding its lock. The event is encoded once into a
+ * {@link SpectatorFrame} and offered to a bounded queue per spectator, which never blocks;
+ * each queue is drained on a shared executor, one task per spectator at a time.
+ * A spectator whose queue is full is dropped, so a slow watcher can never hold up the players.
+ * Without spectators, publishing does nothing and allocates nothing.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+final class SpectatorFeed {
+    /** Events a spectator may fall behind before it is dropped. */
+    static final int QUEUE_LIMIT = 1024;
+
+    private static final Executor DELIVERY = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Executor delivery;
+
+    /**
+     * Creates a feed delivering on virtual threads.
+     */
+    SpectatorFeed() {
+        this(DELIVERY);
+    }
+
+    /**
+     * Creates a feed delivering on the given executor.
+     *
+     * @param delivery The executor draining the spectator queues.
+     */
+    SpectatorFeed(Executor delivery) {
+        this.delivery = delivery;
+    }
+
+    /**
+     * Adds a spectator, which first receives the given frames.
+     *
+     * @param spectator The spectator.
+     * @param catchUp Frames describing the current state of the game.
+     */
+    void add(Spectator spectator, List<SpectatorFrame> catchUp) {
+        Subscription subscription = new Subscription(spectator);
+        for (SpectatorFrame frame : catchUp) {
+            subscription.offer(frame);
+        }
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * Queues a frame for one spectator only, after the frames already queued for it.
+     *
+     * @param spectator The spectator.
+     * @param frame The frame.
+     */
+    void send(Spectator spectator, SpectatorFrame frame) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.spectator == spectator && !subscription.offer(frame)) {
+                subscription.cancel();
+                delivery.execute(spectator::dropped);
+            }
+        }
+    }
+
+    /**
+     * Removes a spectator. Frames already queued for it are discarded.
+     *
+     * @param spectator The spectator.
+     */
+    void remove(Spectator spectator) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.spectator == spectator) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of spectators.
+     *
+     * @return The number of subscriptions.
+     */
+    int size() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Returns the number of frames waiting to be delivered, summed over all spectators.
+     *
+     * @return The total queue depth.
+     */
+    int queued() {
+        int total = 0;
+        for (Subscription subscription : subscriptions) {
+            total += subscription.queue.size();
+        }
+        return total;
+    }
+
+    /**
+     * Publishes a message of the text protocol.
+     *
+     * @param message The message.
+     */
+    void text(CharSequence message) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        publish(SpectatorFrame.ofText(message));
+    }
+
+    /**
+     * Publishes a placed or removed stone.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The color of the stone, {@link StoneColor#EMPTY} if it was removed.
+     * @param version The board version after the change.
+     */
+    void move(int x, int y, StoneColor color, int version) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        publish(moveFrame(x, y, color, version));
+    }
+
+    /**
+     * Publishes the stones captured by a move.
+     *
+     * @param board The board the point indices refer to.
+     * @param points The captured point indices.
+     * @param count The number of captured stones.
+     */
+    void captures(Board board, int[] points, int count) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        PlayerHandler.formatCaptures(text, board, points, count);
+        byte[] frame = new byte[WireProtocol.maxCapturesFrame(count)];
+        int length = WireProtocol.encodeCaptures(frame, 0, board, points, count);
+        publish(new SpectatorFrame(SpectatorFrame.line(text), Arrays.copyOf(frame, length)));
+    }
+
+    /**
+     * Publishes whose turn it is.
+     *
+     * @param color The color to move.
+     */
+    void turn(StoneColor color) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        publish(colorFrame(WireProtocol.TURN, "TURN ", color));
+    }
+
+    /**
+     * Publishes a pass.
+     *
+     * @param color The color that passed.
+     */
+    void pass(StoneColor color) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        publish(colorFrame(WireProtocol.PASS, "PASS ", color));
+    }
+
+    /**
+     * Encodes a placed or removed stone.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param color The color of the stone.
+     * @param version The board version after the change.
+     * @return The frame.
+     */
+    static SpectatorFrame moveFrame(int x, int y, StoneColor color, int version) {
+        StringBuilder text = new StringBuilder();
+        PlayerHandler.formatMove(text, x, y, color, version);
+        byte[] frame = new byte[WireProtocol.MAX_MOVE_FRAME];
+        int length = WireProtocol.encodeMove(frame, 0, x, y, Board.code(color), version);
+        return new SpectatorFrame(SpectatorFrame.line(text), Arrays.copyOf(frame, length));
+    }
+
+    /**
+     * Encodes a frame carrying only a color.
+     *
+     * @param opcode {@link WireProtocol#TURN} or {@link WireProtocol#PASS}.
+     * @param prefix The text command with its trailing space.
+     * @param color The color.
+     * @return The frame.
+     */
+    static SpectatorFrame colorFrame(byte opcode, String prefix, StoneColor color) {
+        byte[] frame = new byte[2];
+        WireProtocol.encodeColor(frame, 0, opcode, Board.code(color));
+        return new SpectatorFrame(SpectatorFrame.line(prefix + color.name()), frame);
+    }
+
+    /**
+     * Offers a frame to every spectator and drops those that cannot take it.
+     *
+     * @param frame The frame.
+     */
+    private void publish(SpectatorFrame frame) {
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.offer(frame)) {
+                subscription.cancel();
+                delivery.execute(subscription.spectator::dropped); //Nie pod blokadą gry
+            }
+        }
+    }
+
+    /**
+     * The queue of one spectator and the state of its delivery task.
+     */
+    private final class Subscription implements Runnable {
+        final Spectator spectator;
+        final ArrayBlockingQueue<SpectatorFrame> queue = new ArrayBlockingQueue<>(QUEUE_LIMIT);
+        final AtomicInteger wip = new AtomicInteger();
+        volatile boolean cancelled = false;
+
+        Subscription(Spectator spectator) {
+            this.spectator = spectator;
+        }
+
+        /**
+         * Queues a frame and makes sure a delivery task is running.
+         *
+         * @param frame The frame.
+         * @return false if the queue is full.
+         */
+        boolean offer(SpectatorFrame frame) {
+            if (!queue.offer(frame)) {
+                return false;
+            }
+            if (wip.getAndIncrement() == 0) {
+                delivery.execute(this);
+            }
+            return true;
+        }
+
+        /**
+         * Stops delivery and forgets the queued frames.
+         */
+        void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            queue.clear();
+        }
+
+        /**
+         * Delivers queued frames until none are left.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                SpectatorFrame frame;
+                while (!cancelled && (frame = queue.poll()) != null) {
+                    if (!spectator.deliver(frame)) {
+                        cancel();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.gogame.server;
+
+import org.example.gogame.WireProtocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One game event encoded for spectators, once as a line of the text protocol and once as a
+ * binary frame of {@link WireProtocol}, so fanning it out costs no encoding per spectator.
+ * Frames are shared by all spectators and must be treated as immutable.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class SpectatorFrame {
+    private final byte[] text;
+    private final byte[] binary;
+
+    /**
+     * Creates a frame from its two encodings.
+     *
+     * @param text The text line, including the line terminator.
+     * @param binary The binary frame.
+     */
+    SpectatorFrame(byte[] text, byte[] binary) {
+        this.text = text;
+        this.binary = binary;
+    }
+
+    /**
+     * Creates a frame for a message of the text protocol without an opcode of its own.
+     *
+     * @param message The message.
+     * @return The frame.
+     */
+    static SpectatorFrame ofText(CharSequence message) {
+        byte[] frame = new byte[WireProtocol.maxTextFrame(message.length())];
+        int length = WireProtocol.encodeText(frame, 0, message);
+        return new SpectatorFrame(line(message), Arrays.copyOf(frame, length));
+    }
+
+    /**
+     * Encodes a text line.
+     *
+     * @param message The message.
+     * @return The UTF-8 bytes of the message followed by a line feed.
+     */
+    static byte[] line(CharSequence message) {
+        return (message + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the encoded event. The array is shared and must not be modified.
+     *
+     * @param binary Whether the binary encoding is wanted.
+     * @return The bytes to send.
+     */
+    public byte[] bytes(boolean binary) {
+        return binary ? this.binary : text;
+    }
+}
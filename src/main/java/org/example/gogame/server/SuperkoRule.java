@@ -0,0 +1,13 @@
+package org.example.gogame.server;
+
+/**
+ * Variants of the superko rule, which forbids repeating an earlier board position.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public enum SuperkoRule {
+    /** A move may not recreate any earlier arrangement of stones. */
+    POSITIONAL,
+    /** A move may not recreate an earlier arrangement of stones with the same player to move. */
+    SITUATIONAL,
+}
@@ -0,0 +1,350 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+
+import java.util.Arrays;
+
+/**
+ * Counts territory with bitboards over the padded point indices of a {@link Board}.
+ * <p>
+ * Empty points reachable from black stones through empty points are found by repeatedly
+ * dilating a bit mask (shifting it by {@code ±1} and {@code ±stride}) and masking it with the
+ * empty points until it stops growing; the same is done for white. Empty points reached by
+ * only one color are that color's territory, so both scores come out of one pass.
+ * The sentinel border is never part of the empty mask, which makes the shifts safe at the edges.
+ * <p>
+ * After a full {@link #score(Board)}, {@link #update(Board, int)} rescores only the region
+ * around a single point that changed, which is what removing dead stones during negotiation needs.
+ * An instance holds working state and must be confined to one thread; separate instances share nothing.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public class TerritoryScorer {
+    private final int stride;
+    private final int capacity;
+    private final long[] black;
+    private final long[] white;
+    private final long[] empty;
+    private final long[] reachBlack;
+    private final long[] reachWhite;
+    private final long[] region;
+    private final long[] next;
+    private final long[] tmp;
+
+    /**
+     * Creates a scorer for boards of the given size.
+     *
+     * @param size The dimension of the board, at most 61 so that a row shift fits in one word.
+     * @throws IllegalArgumentException If the board is too large.
+     */
+    public TerritoryScorer(int size) {
+        if (size + 2 >= 64) {
+            throw new IllegalArgumentException("Board size " + size + " is too large for bitboard scoring");
+        }
+        this.stride = size + 2;
+        this.capacity = stride * stride;
+        int words = (capacity + 63) >>> 6;
+        this.black = new long[words];
+        this.white = new long[words];
+        this.empty = new long[words];
+        this.reachBlack = new long[words];
+        this.reachWhite = new long[words];
+        this.region = new long[words];
+        this.next = new long[words];
+        this.tmp = new long[words];
+    }
+
+    /**
+     * Scores the whole board from scratch.
+     *
+     * @param board The board to score; must have the size this scorer was created for.
+     * @return An integer array where index 0 is Black's territory and index 1 is White's territory.
+     */
+    public int[] score(Board board) {
+        clear(black);
+        clear(white);
+        clear(empty);
+        for (int p = 0; p < capacity; p++) {
+            byte code = board.get(p);
+            if (code == Board.EMPTY) {
+                setBit(empty, p);
+            } else if (code == Board.BLACK) {
+                setBit(black, p);
+            } else if (code == Board.WHITE) {
+                setBit(white, p);
+            }
+        }
+
+        dilate(black, region);
+        and(region, empty);
+        fill(region, reachBlack);
+
+        dilate(white, region);
+        and(region, empty);
+        fill(region, reachWhite);
+
+        return new int[]{getBlackTerritory(), getWhiteTerritory()};
+    }
+
+    /**
+     * Rescores after a single point of the board changed between a stone and empty
+     * since the last call to {@link #score(Board)} or this method.
+     * Only the empty region(s) around the point are flood filled again.
+     *
+     * @param board The board, already containing the change.
+     * @param point The point index that changed.
+     */
+    public void update(Board board, int point) {
+        byte code = board.get(point);
+        if (code == Board.EMPTY) {
+            clearBit(black, point);
+            clearBit(white, point);
+            setBit(empty, point);
+            seed(point);
+            fill(region, region);
+            andNot(reachBlack, region);
+            andNot(reachWhite, region);
+            classify();
+            return;
+        }
+
+        //Kamień postawiony na pustym polu: usuwamy stary region i klasyfikujemy jego części od nowa
+        seed(point);
+        fill(region, region);
+        andNot(reachBlack, region);
+        andNot(reachWhite, region);
+        clearBit(empty, point);
+        setBit(code == Board.BLACK ? black : white, point);
+
+        for (int d = 0; d < 4; d++) {
+            int n = neighbour(point, d);
+            if (testBit(empty, n) && !testBit(reachBlack, n) && !testBit(reachWhite, n)) {
+                seed(n);
+                fill(region, region);
+                classify();
+            }
+        }
+    }
+
+    /**
+     * Returns Black's territory from the last scoring.
+     *
+     * @return The number of empty points owned by Black.
+     */
+    public int getBlackTerritory() {
+        int count = 0;
+        for (int i = 0; i < reachBlack.length; i++) {
+            count += Long.bitCount(reachBlack[i] & ~reachWhite[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns White's territory from the last scoring.
+     *
+     * @return The number of empty points owned by White.
+     */
+    public int getWhiteTerritory() {
+        int count = 0;
+        for (int i = 0; i < reachWhite.length; i++) {
+            count += Long.bitCount(reachWhite[i] & ~reachBlack[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Checks who owns an empty point according to the last scoring.
+     *
+     * @param point The point index.
+     * @return {@link Board#BLACK}, {@link Board#WHITE} or {@link Board#EMPTY} for dame and stones.
+     */
+    public byte getOwner(int point) {
+        boolean b = testBit(reachBlack, point);
+        boolean w = testBit(reachWhite, point);
+        if (b && !w) return Board.BLACK;
+        if (w && !b) return Board.WHITE;
+        return Board.EMPTY;
+    }
+
+    /**
+     * Adds the region held in {@code region} to the reach sets of the colors it touches.
+     */
+    private void classify() {
+        dilate(region, tmp);
+        boolean touchesBlack = intersects(tmp, black);
+        boolean touchesWhite = intersects(tmp, white);
+        if (touchesBlack) {
+            or(reachBlack, region);
+        }
+        if (touchesWhite) {
+            or(reachWhite, region);
+        }
+    }
+
+    private int neighbour(int point, int direction) {
+        switch (direction) {
+            case 0: return point + 1;
+            case 1: return point - 1;
+            case 2: return point + stride;
+            default: return point - stride;
+        }
+    }
+
+    /**
+     * Sets {@code region} to the single point given.
+     *
+     * @param point The point index.
+     */
+    private void seed(int point) {
+        clear(region);
+        setBit(region, point);
+    }
+
+    /**
+     * Grows a seed through empty points until it stops changing.
+     * {@code seed} and {@code out} may be the same array.
+     *
+     * @param seed The starting points; only those that are empty are kept.
+     * @param out Receives every empty point connected to the seed.
+     */
+    private void fill(long[] seed, long[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = seed[i] & empty[i];
+        }
+        while (true) {
+            dilate(out, next);
+            boolean changed = false;
+            for (int i = 0; i < out.length; i++) {
+                long grown = next[i] & empty[i];
+                if (grown != out[i]) {
+                    out[i] = grown;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes {@code src} together with its four shifted copies to {@code dst}.
+     *
+     * @param src The mask to dilate.
+     * @param dst Receives the dilated mask; must differ from {@code src}.
+     */
+    private void dilate(long[] src, long[] dst) {
+        System.arraycopy(src, 0, dst, 0, src.length);
+        orShifted(src, dst, 1);
+        orShifted(src, dst, -1);
+        orShifted(src, dst, stride);
+        orShifted(src, dst, -stride);
+    }
+
+    /**
+     * ORs {@code src} shifted towards higher indices by {@code shift} bits (lower if negative) into {@code dst}.
+     *
+     * @param src The source mask.
+     * @param dst The destination mask.
+     * @param shift The shift in bits, less than 64 in absolute value.
+     */
+    private static void orShifted(long[] src, long[] dst, int shift) {
+        int n = src.length;
+        if (shift > 0) {
+            for (int i = n - 1; i >= 0; i--) {
+                long low = i > 0 ? src[i - 1] >>> (64 - shift) : 0;
+                dst[i] |= (src[i] << shift) | low;
+            }
+        } else {
+            int s = -shift;
+            for (int i = 0; i < n; i++) {
+                long high = i + 1 < n ? src[i + 1] << (64 - s) : 0;
+                dst[i] |= (src[i] >>> s) | high;
+            }
+        }
+    }
+
+    /**
+     * Clears every bit of a mask.
+     *
+     * @param a The mask.
+     */
+    private static void clear(long[] a) {
+        Arrays.fill(a, 0);
+    }
+
+    /**
+     * Intersects {@code a} with {@code b} in place.
+     *
+     * @param a The mask to modify.
+     * @param b The other mask.
+     */
+    private static void and(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) a[i] &= b[i];
+    }
+
+    /**
+     * Removes the bits of {@code b} from {@code a} in place.
+     *
+     * @param a The mask to modify.
+     * @param b The bits to remove.
+     */
+    private static void andNot(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) a[i] &= ~b[i];
+    }
+
+    /**
+     * Adds the bits of {@code b} to {@code a} in place.
+     *
+     * @param a The mask to modify.
+     * @param b The bits to add.
+     */
+    private static void or(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) a[i] |= b[i];
+    }
+
+    /**
+     * Checks whether two masks share a bit.
+     *
+     * @param a The first mask.
+     * @param b The second mask.
+     * @return true if some bit is set in both.
+     */
+    private static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if ((a[i] & b[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets one bit of a mask.
+     *
+     * @param a The mask.
+     * @param bit The point index.
+     */
+    private static void setBit(long[] a, int bit) {
+        a[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Clears one bit of a mask.
+     *
+     * @param a The mask.
+     * @param bit The point index.
+     */
+    private static void clearBit(long[] a, int bit) {
+        a[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * Reads one bit of a mask.
+     *
+     * @param a The mask.
+     * @param bit The point index.
+     * @return true if the bit is set.
+     */
+    private static boolean testBit(long[] a, int bit) {
+        return (a[bit >>> 6] & (1L << bit)) != 0;
+    }
+}
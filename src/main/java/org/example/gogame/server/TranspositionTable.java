@@ -0,0 +1,186 @@
+package org.example.gogame.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size cache of position evaluations keyed by a 64-bit position hash, e.g. {@link org.example.gogame.Board#getHash()}.
+ * <p>
+ * The table never grows: it holds {@link #getCapacity()} entries of two longs each, in buckets of {@link #WAYS}
+ * entries picked by the low bits of the key. An entry stores a non-negative 31-bit value, the depth it was
+ * computed to ({@link #EXACT} for a value that cannot be improved) and the age of the table when it was stored.
+ * A new entry replaces the same key, an empty slot, or else the entry of its bucket that is shallowest,
+ * counting every age it is behind as {@link #AGE_WEIGHT} levels of depth. The age advances on its own once
+ * roughly as many entries were stored as the table holds, so entries that are not stored again fade out.
+ * <p>
+ * No locks are taken. Readers and writers of all games access the entries with opaque loads and stores, and
+ * an entry keeps its key XORed with its data, so a reader that sees the two words of different writes gets a
+ * key that does not match and counts a miss instead of a wrong value. Two writers of one bucket may overwrite
+ * each other's entries; that only costs a later miss.
+ *
+ * @author Piotr Zieniewicz, Jan Langier
+ */
+public final class TranspositionTable {
+    /** Returned by {@link #get} when the key is not in the table. */
+    public static final int MISS = -1;
+    /** Depth of a value that is final, e.g. a count of territory. */
+    public static final int EXACT = 255;
+    /** Entries per bucket. */
+    static final int WAYS = 2;
+    /** Depth levels an entry loses for every age it is behind. */
+    static final int AGE_WEIGHT = 8;
+
+    private static final long PRESENT = 1L << 48;
+
+    private final AtomicLongArray slots; //Pary: klucz XOR dane, dane
+    private final int mask;
+    private final int capacity;
+    private volatile int age = 0;
+    private int stored = 0; //Przybliżony licznik, wyścigi tylko opóźniają zmianę wieku
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an empty table.
+     *
+     * @param entries The number of entries, rounded up to a power of two of at least {@link #WAYS}.
+     */
+    public TranspositionTable(int entries) {
+        int buckets = Integer.highestOneBit(Math.max(WAYS, entries) - 1) * 2 / WAYS;
+        this.capacity = Math.max(1, buckets) * WAYS;
+        this.mask = capacity / WAYS - 1;
+        this.slots = new AtomicLongArray(2 * capacity);
+    }
+
+    /**
+     * Looks up the value of a position.
+     *
+     * @param key The position hash.
+     * @param minDepth The least depth the caller can use.
+     * @return The value, or {@link #MISS} if the key is not stored at that depth.
+     */
+    public int get(long key, int minDepth) {
+        int first = ((int) key & mask) * WAYS;
+        for (int i = first; i < first + WAYS; i++) {
+            long data = slots.getOpaque(2 * i + 1);
+            if (data != 0 && (slots.getOpaque(2 * i) ^ data) == key && depth(data) >= minDepth) {
+                hits.increment();
+                return (int) data & Integer.MAX_VALUE;
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    /**
+     * Stores the value of a position, unless the bucket only holds deeper entries of the current age
+     * or the same key at a greater depth.
+     *
+     * @param key The position hash.
+     * @param value The value, at least 0.
+     * @param depth The depth the value was computed to, from 0 to {@link #EXACT}.
+     */
+    public void put(long key, int value, int depth) {
+        int now = age;
+        long data = PRESENT | (long) now << 40 | (long) depth << 32 | value & Integer.MAX_VALUE;
+        int first = ((int) key & mask) * WAYS;
+        int victim = -1;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = first; i < first + WAYS; i++) {
+            long old = slots.getOpaque(2 * i + 1);
+            if (old == 0) {
+                victim = i;
+                lowest = Integer.MIN_VALUE;
+                break;
+            }
+            if ((slots.getOpaque(2 * i) ^ old) == key) {
+                if (depth(old) > depth && age(old) == now) {
+                    return;
+                }
+                victim = i;
+                lowest = Integer.MIN_VALUE;
+                break;
+            }
+            int priority = depth(old) - AGE_WEIGHT * ((now - age(old)) & 0xFF);
+            if (priority < lowest) {
+                lowest = priority;
+                victim = i;
+            }
+        }
+        if (lowest > depth) {
+            return; //Wszystkie wpisy kubełka są głębsze
+        }
+        slots.setOpaque(2 * victim + 1, data);
+        slots.setOpaque(2 * victim, key ^ data);
+        if (++stored >= capacity) {
+            stored = 0;
+            age = (now + 1) & 0xFF;
+        }
+    }
+
+    /**
+     * Removes all entries and resets the counters.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.setOpaque(i, 0);
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private static int depth(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> 40) & 0xFF;
+    }
+
+    /**
+     * Returns the number of entries the table holds.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the memory taken by the entries.
+     *
+     * @return The size of the table in bytes.
+     */
+    public long getMemoryBytes() {
+        return 16L * capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found their key.
+     *
+     * @return The hits since the table was created or cleared.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not find their key.
+     *
+     * @return The misses since the table was created or cleared.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the share of lookups that found their key.
+     *
+     * @return The hit rate, 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long found = getHits();
+        long total = found + getMisses();
+        return total == 0 ? 0 : (double) found / total;
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.gogame;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardSnapshotTest {
+
+    @Test
+    void testRoundTrip() {
+        Board board = new Board(9);
+        board.setStone(0, 0, StoneColor.BLACK);
+        board.setStone(0, 1, StoneColor.BLACK);
+        board.setStone(4, 4, StoneColor.WHITE);
+        board.setStone(8, 8, StoneColor.WHITE);
+
+        StringBuilder message = new StringBuilder();
+        BoardSnapshot.encode(message, 12, board);
+        assertEquals("BOARD 12 9 2B38.W39.W", message.toString());
+
+        Board copy = new Board(9);
+        copy.load(BoardSnapshot.decode("2B38.W39.W", 9));
+        assertEquals(board.getHash(), copy.getHash());
+        assertEquals(StoneColor.WHITE, copy.getStone(4, 4));
+        assertEquals(2, copy.getChainSize(copy.point(0, 0)));
+    }
+
+    @Test
+    void testEmptyBoard() {
+        StringBuilder message = new StringBuilder();
+        BoardSnapshot.encode(message, 0, new Board(19));
+        assertEquals("BOARD 0 19 361.", message.toString());
+    }
+
+    @Test
+    void testMalformedRuns() {
+        assertThrows(IllegalArgumentException.class, () -> BoardSnapshot.decode("80.", 9));
+        assertThrows(IllegalArgumentException.class, () -> BoardSnapshot.decode("82.", 9));
+        assertThrows(IllegalArgumentException.class, () -> BoardSnapshot.decode("80.X", 9));
+        assertThrows(IllegalArgumentException.class, () -> BoardSnapshot.decode("81.5", 9));
+    }
+}
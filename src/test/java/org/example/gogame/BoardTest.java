@@ -42,4 +42,151 @@ class BoardTest {
             board.getStone(-1, 0);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void testPointIndexing() {
+        int p = board.point(4, 7);
+
+        assertEquals(4, board.getX(p));
+        assertEquals(7, board.getY(p));
+        assertEquals(Board.OFF_BOARD, board.get(board.point(-1, 0)));
+        assertEquals(Board.OFF_BOARD, board.get(board.point(0, 19)));
+    }
+
+    @Test
+    void testClear() {
+        board.setStone(0, 0, StoneColor.BLACK);
+        board.setStone(18, 18, StoneColor.WHITE);
+        board.clear();
+
+        assertEquals(StoneColor.EMPTY, board.getStone(0, 0));
+        assertEquals(StoneColor.EMPTY, board.getStone(18, 18));
+        assertEquals(Board.OFF_BOARD, board.get(board.point(19, 18)));
+    }
+
+    @Test
+    void testChainLibertiesAfterMerge() {
+        board.setStone(3, 3, StoneColor.BLACK);
+        board.setStone(3, 5, StoneColor.BLACK);
+        assertEquals(4, board.countLiberties(board.point(3, 3)));
+
+        board.setStone(3, 4, StoneColor.BLACK);
+
+        assertEquals(3, board.getChainSize(board.point(3, 3)));
+        assertEquals(board.getChainHead(board.point(3, 3)), board.getChainHead(board.point(3, 5)));
+        assertEquals(8, board.countLiberties(board.point(3, 5)));
+    }
+
+    @Test
+    void testChainSplitOnRemoval() {
+        board.setStone(3, 3, StoneColor.BLACK);
+        board.setStone(3, 4, StoneColor.BLACK);
+        board.setStone(3, 5, StoneColor.BLACK);
+        board.countLiberties(board.point(3, 3));
+
+        board.removeStone(3, 4);
+
+        assertEquals(1, board.getChainSize(board.point(3, 3)));
+        assertEquals(1, board.getChainSize(board.point(3, 5)));
+        assertEquals(4, board.countLiberties(board.point(3, 3)));
+    }
+
+    @Test
+    void testRemoveChainRestoresLiberties() {
+        board.setStone(0, 0, StoneColor.WHITE);
+        board.setStone(0, 1, StoneColor.WHITE);
+        board.setStone(1, 0, StoneColor.BLACK);
+        board.setStone(1, 1, StoneColor.BLACK);
+        board.setStone(0, 2, StoneColor.BLACK);
+        assertFalse(board.hasLiberties(board.point(0, 0)));
+
+        assertEquals(2, board.removeChain(board.point(0, 1)));
+
+        assertEquals(StoneColor.EMPTY, board.getStone(0, 0));
+        assertTrue(board.hasLiberties(board.point(1, 0)));
+        assertEquals(5, board.countLiberties(board.point(1, 1)));
+    }
+
+    @Test
+    void testIncrementalChainsMatchRebuild() {
+        java.util.Random random = new java.util.Random(42);
+        board.setStone(0, 0, StoneColor.BLACK);
+        board.countLiberties(board.point(0, 0));
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(19);
+            int y = random.nextInt(19);
+            StoneColor color = StoneColor.values()[random.nextInt(3)];
+            board.setStone(x, y, color);
+        }
+
+        Board fresh = new Board(19);
+        for (int x = 0; x < 19; x++) {
+            for (int y = 0; y < 19; y++) {
+                fresh.setStone(x, y, board.getStone(x, y));
+            }
+        }
+        for (int x = 0; x < 19; x++) {
+            for (int y = 0; y < 19; y++) {
+                int p = board.point(x, y);
+                if (board.get(p) != Board.EMPTY) {
+                    assertEquals(fresh.countLiberties(p), board.countLiberties(p));
+                    assertEquals(fresh.getChainSize(p), board.getChainSize(p));
+                    assertEquals(fresh.hasLiberties(p), board.hasLiberties(p));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testHashReturnsToPreviousPosition() {
+        assertEquals(0, board.getHash());
+        board.setStone(3, 3, StoneColor.BLACK);
+        long oneStone = board.getHash();
+        board.setStone(4, 4, StoneColor.WHITE);
+        assertNotEquals(oneStone, board.getHash());
+
+        board.removeStone(4, 4);
+        assertEquals(oneStone, board.getHash());
+        board.setStone(3, 3, StoneColor.WHITE);
+        assertNotEquals(oneStone, board.getHash());
+        board.removeChain(board.point(3, 3));
+        assertEquals(0, board.getHash());
+    }
+
+    @Test
+    void testHashIndependentOfMoveOrder() {
+        Board other = new Board(19);
+        board.setStone(1, 1, StoneColor.BLACK);
+        board.setStone(2, 2, StoneColor.WHITE);
+        other.setStone(2, 2, StoneColor.WHITE);
+        other.setStone(1, 1, StoneColor.BLACK);
+
+        assertEquals(board.getHash(), other.getHash());
+    }
+
+    @Test
+    void testCopyFromKeepsBoardsIndependent() {
+        board.setStone(3, 3, StoneColor.BLACK);
+        board.setStone(3, 4, StoneColor.BLACK);
+        board.setStone(10, 10, StoneColor.WHITE);
+        assertEquals(6, board.countLiberties(board.point(3, 3)));
+        Board copy = new Board(19);
+        copy.setStone(0, 0, StoneColor.WHITE);
+        copy.countLiberties(copy.point(0, 0)); //Kopia ma już własne łańcuchy
+
+        copy.copyFrom(board);
+        assertEquals(board.getHash(), copy.getHash());
+        assertEquals(StoneColor.EMPTY, copy.getStone(0, 0));
+        assertEquals(2, copy.getChainSize(copy.point(3, 4)));
+        copy.setStone(3, 5, StoneColor.WHITE);
+        assertEquals(5, copy.countLiberties(copy.point(3, 3)));
+        assertEquals(6, board.countLiberties(board.point(3, 3)));
+        assertEquals(StoneColor.EMPTY, board.getStone(3, 5));
+
+        Board fresh = new Board(19);
+        fresh.copyFrom(copy);
+        assertEquals(copy.getHash(), fresh.getHash());
+        assertEquals(5, fresh.countLiberties(fresh.point(3, 4)));
+        assertThrows(IllegalArgumentException.class, () -> fresh.copyFrom(new Board(9)));
+    }
+}
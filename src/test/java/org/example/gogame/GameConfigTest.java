@@ -0,0 +1,30 @@
+package org.example.gogame;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameConfigTest {
+
+    @Test
+    void testFormatRoundTrip() {
+        GameConfig config = GameConfig.parse(" 9  rules=CHINESE time=300+5 komi=6.5");
+        assertEquals(new GameConfig(9, 6.5, GameConfig.Rules.CHINESE, 300, 5), config);
+        assertEquals("9 komi=6.5 rules=chinese time=300+5", config.format());
+        assertEquals(config, GameConfig.parse(config.format()));
+        assertEquals("9x9, komi 6.5, Chinese rules, 5:00 + 5 s", config.describe());
+
+        assertEquals("19", GameConfig.of(19).format());
+        assertEquals(GameConfig.of(13), GameConfig.parse("13"));
+    }
+
+    @Test
+    void testRejectsMalformedSettings() {
+        assertThrows(IllegalArgumentException.class, () -> GameConfig.parse("nine"));
+        assertThrows(IllegalArgumentException.class, () -> GameConfig.parse("9 komi=6.3"));
+        assertThrows(IllegalArgumentException.class, () -> GameConfig.parse("9 komi=NaN"));
+        assertThrows(IllegalArgumentException.class, () -> GameConfig.parse("9 rules=ing"));
+        assertThrows(IllegalArgumentException.class, () -> GameConfig.parse("9 time=-5"));
+        assertThrows(IllegalArgumentException.class, () -> GameConfig.parse("9 handicap=2"));
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.gogame;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogTest {
+
+    /**
+     * Collects the entries written by this test, ignoring what other threads of the test run log meanwhile.
+     */
+    private static List<Log.Entry> capture(Log.Level level) {
+        List<Log.Entry> entries = new CopyOnWriteArrayList<>();
+        Log.flush(5000);
+        Log.setSink(entry -> {
+            if (entry.message().startsWith("Test")) {
+                entries.add(entry);
+            }
+        });
+        Log.setLevel(level);
+        return entries;
+    }
+
+    @AfterEach
+    void restore() {
+        Log.setSink(Log.CONSOLE);
+        Log.setLevel(Log.Level.INFO);
+    }
+
+    @Test
+    void testEntriesBelowLevelAreSkipped() {
+        List<Log.Entry> entries = capture(Log.Level.INFO);
+
+        Log.debug(7, StoneColor.BLACK, "MOVE 3 4", "Test received");
+        Log.info(7, "Test started", "9x9");
+        Log.warn(StoneColor.WHITE, "Test too slow", null);
+        assertTrue(Log.flush(5000));
+
+        assertEquals(2, entries.size());
+        assertEquals("Test started", entries.get(0).message());
+        assertEquals(7, entries.get(0).game());
+        assertEquals(Log.Level.WARN, entries.get(1).level());
+        assertEquals(StoneColor.WHITE, entries.get(1).color());
+    }
+
+    @Test
+    void testEntriesFromManyThreadsAreAllWritten() throws InterruptedException {
+        List<Log.Entry> entries = capture(Log.Level.DEBUG);
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long game = t + 1;
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    Log.debug(game, StoneColor.BLACK, "PASS", "Test received");
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(Log.flush(5000));
+
+        //Bufor mieści wszystkie wpisy, więc żaden nie może zginąć
+        assertEquals(2000, entries.size());
+        assertEquals(2000, entries.stream().filter(e -> e.command().equals("PASS")).count());
+        String line = entries.get(0).format();
+        assertTrue(line.endsWith(" DEBUG Test received game=" + entries.get(0).game() + " color=BLACK command=\"PASS\""), line);
+    }
+}
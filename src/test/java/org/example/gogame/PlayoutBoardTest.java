@@ -0,0 +1,82 @@
+package org.example.gogame;
+
+import org.example.gogame.server.GameLogic;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayoutBoardTest {
+
+    @Test
+    void testLegalityMatchesGameLogic() {
+        GameLogic logic = new GameLogic();
+        SplittableRandom random = new SplittableRandom(7);
+        PlayoutBoard playout = new PlayoutBoard(7);
+        Board board = new Board(7);
+        Board trial = new Board(7);
+        int[] captured = new int[board.getCapacity()];
+        for (int game = 0; game < 20; game++) {
+            playout.clear();
+            board.clear();
+            int koPoint = -1;
+            byte color = Board.BLACK;
+            for (int move = 0; move < 150; move++) {
+                for (int x = 0; x < 7; x++) { //Każdy punkt sprawdzony na kopii planszy przez GameLogic
+                    for (int y = 0; y < 7; y++) {
+                        trial.copyFrom(board);
+                        boolean legal = logic.play(trial, x, y, color, koPoint, null, null, captured) >= 0;
+                        assertEquals(legal, playout.isLegal(playout.point(x, y), color), "game " + game + " move " + move + " at " + x + "," + y);
+                    }
+                }
+                int point = playout.playRandom(color, random);
+                if (point == PlayoutBoard.PASS) {
+                    koPoint = -1;
+                } else {
+                    int captures = logic.play(board, playout.getX(point), playout.getY(point), color, koPoint, null, null, captured);
+                    koPoint = logic.koPointAfter(board, point, captured, captures);
+                    assertEquals(koPoint, playout.getKoPoint());
+                }
+                color = Board.opponent(color);
+            }
+            for (int x = 0; x < 7; x++) {
+                for (int y = 0; y < 7; y++) {
+                    assertEquals(board.get(board.point(x, y)), playout.get(playout.point(x, y)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEyesAndScore() {
+        Board board = new Board(3);
+        for (int i = 0; i < 3; i++) { //Krzyż czarnych kamieni z czterema okami w rogach
+            board.setStone(1, i, StoneColor.BLACK);
+            board.setStone(i, 1, StoneColor.BLACK);
+        }
+        PlayoutBoard playout = new PlayoutBoard(3);
+        playout.copyFrom(board, -1);
+
+        assertTrue(playout.isEye(playout.point(0, 0), Board.BLACK));
+        assertFalse(playout.isEye(playout.point(0, 0), Board.WHITE));
+        assertFalse(playout.isLegal(playout.point(0, 0), Board.WHITE));
+        assertEquals(9, playout.score(0));
+        assertEquals(PlayoutBoard.PASS, playout.playRandom(Board.BLACK, new SplittableRandom()));
+        assertEquals(4, playout.getEmptyCount());
+    }
+
+    @Test
+    void testCopyIsIndependent() {
+        PlayoutBoard board = new PlayoutBoard(9);
+        board.play(board.point(4, 4), Board.BLACK);
+        PlayoutBoard copy = new PlayoutBoard(9);
+        copy.copyFrom(board);
+        copy.play(copy.point(4, 5), Board.WHITE);
+
+        assertEquals(Board.EMPTY, board.get(board.point(4, 5)));
+        assertEquals(80, board.getEmptyCount());
+        assertEquals(79, copy.getEmptyCount());
+        assertEquals(-0.5, board.score(5.5)); //Kamień i cztery otoczone przez niego punkty
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.gogame;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireProtocolTest {
+
+    /**
+     * Feeds bytes to a decoder and returns how many frames they completed.
+     */
+    private static int feed(WireProtocol.Decoder decoder, byte[] bytes, int length) throws ProtocolException {
+        int frames = 0;
+        for (int i = 0; i < length; i++) {
+            if (decoder.feed(bytes[i])) {
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    @Test
+    void testTextLines() throws ProtocolException {
+        WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+        byte[] line = "MOVE 3 4\r\n".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(1, feed(decoder, line, line.length));
+        assertEquals(WireProtocol.TEXT, decoder.getOpcode());
+        assertEquals("MOVE 3 4", decoder.getText());
+    }
+
+    @Test
+    void testFramesRoundTrip() throws ProtocolException {
+        Board board = new Board(19);
+        int[] captured = {board.point(0, 0), board.point(18, 17), board.point(5, 6)};
+        byte[] buf = new byte[256];
+        int pos = WireProtocol.encodeMove(buf, 0, 18, 3, Board.WHITE, 300);
+        assertEquals(6, pos);
+        pos = WireProtocol.encodeCaptures(buf, pos, board, captured, captured.length);
+        pos = WireProtocol.encodeColor(buf, pos, WireProtocol.TURN, Board.BLACK);
+        pos = WireProtocol.encodeText(buf, pos, "GAME_OVER DRAW – ok");
+
+        WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+        decoder.setBinary();
+        int at = 0;
+        while (!decoder.feed(buf[at++])) { }
+        assertEquals(WireProtocol.MOVE, decoder.getOpcode());
+        assertEquals(18, decoder.getX());
+        assertEquals(3, decoder.getY());
+        assertEquals(Board.WHITE, decoder.getColor());
+        assertEquals(300, decoder.getVersion());
+
+        while (!decoder.feed(buf[at++])) { }
+        assertEquals(WireProtocol.CAPTURES, decoder.getOpcode());
+        assertEquals(3, decoder.getCount());
+        assertEquals(18, decoder.getX(1));
+        assertEquals(17, decoder.getY(1));
+        assertEquals(5, decoder.getX(2));
+
+        while (!decoder.feed(buf[at++])) { }
+        assertEquals(WireProtocol.TURN, decoder.getOpcode());
+        assertEquals(Board.BLACK, decoder.getColor());
+
+        while (!decoder.feed(buf[at++])) { }
+        assertEquals(WireProtocol.TEXT, decoder.getOpcode());
+        assertEquals("GAME_OVER DRAW – ok", decoder.getText());
+        assertEquals(pos, at);
+    }
+
+    @Test
+    void testEmptyCaptureList() throws ProtocolException {
+        byte[] buf = new byte[8];
+        int length = WireProtocol.encodeCaptures(buf, 0, new Board(9), new int[0], 0);
+        WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+        decoder.setBinary();
+
+        assertEquals(2, length);
+        assertEquals(1, feed(decoder, buf, length));
+        assertEquals(0, decoder.getCount());
+    }
+
+    @Test
+    void testMalformedInput() {
+        WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+        decoder.setBinary();
+        assertThrows(ProtocolException.class, () -> decoder.feed((byte) 42));
+
+        WireProtocol.Decoder text = new WireProtocol.Decoder();
+        byte[] endless = new byte[WireProtocol.MAX_TEXT + 1];
+        assertThrows(ProtocolException.class, () -> feed(text, endless, endless.length));
+    }
+
+    @Test
+    void testNegativeLengthIsRejected() throws ProtocolException {
+        //Pięciobajtowy varint 0xF0000000 przepełniłby int i dał ujemną długość
+        byte[] negative = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x0F};
+        for (byte opcode : new byte[]{WireProtocol.TEXT, WireProtocol.CAPTURES}) {
+            WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+            decoder.setBinary();
+            decoder.feed(opcode);
+            assertThrows(ProtocolException.class, () -> feed(decoder, negative, negative.length));
+        }
+
+        //Największy mieszczący się varint jest wciąż czytany, a za długi odrzucany tylko przez limit ramki
+        WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+        decoder.setBinary();
+        decoder.feed(WireProtocol.TEXT);
+        byte[] largest = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        ProtocolException error = assertThrows(ProtocolException.class, () -> feed(decoder, largest, largest.length));
+        assertEquals("Text frame too long", error.getMessage());
+    }
+}
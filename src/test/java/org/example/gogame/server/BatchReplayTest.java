@@ -0,0 +1,61 @@
+package org.example.gogame.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchReplayTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Two walls splitting a 9x9 board: Black owns 36 points left of column e, White 27 right of column f.
+     */
+    private static String walls(String root) {
+        StringBuilder sgf = new StringBuilder("(;SZ[9]").append(root);
+        for (char y = 'a'; y <= 'i'; y++) {
+            sgf.append(";B[e").append(y).append("];W[f").append(y).append(']');
+        }
+        return sgf.append(";B[];W[]TB[aa:di]TW[ga:ii])\n").toString();
+    }
+
+    @Test
+    void testReportsIllegalAndMismatchedGames() throws IOException {
+        Files.writeString(dir.resolve("good.sgf"), walls("RE[B+9]"));
+        Files.writeString(dir.resolve("komi.sgf"), walls("KM[6.5]RE[B+9]"));
+        Files.writeString(dir.resolve("area.SGF"), walls("RU[Chinese]KM[7]RE[B+2]"));
+        Files.createDirectory(dir.resolve("archive"));
+        Files.writeString(dir.resolve("archive").resolve("two.sgf"),
+                "(;SZ[9]RE[W+R];B[ee];W[cc])(;SZ[9];B[ba];W[ff];B[ab];W[aa])");
+        Files.writeString(dir.resolve("notes.txt"), "(;SZ[9];B[aa];B[aa])");
+
+        BatchReplay.Report report = BatchReplay.run(dir, 2);
+
+        assertEquals(4, report.getFiles());
+        assertEquals(5, report.getGames());
+        assertEquals(3, report.getChecked());
+        assertEquals(1, report.getMismatched());
+        assertEquals(1, report.getIllegal());
+        assertEquals(2, report.getDivergent());
+        assertEquals(2, report.getDivergences().size());
+        assertTrue(report.getDivergences().stream().anyMatch(d -> d.endsWith("komi.sgf#1: recorded B+9, counted B+2.5")),
+                report.getDivergences().toString());
+        assertTrue(report.getDivergences().stream().anyMatch(d -> d.endsWith("two.sgf#2: Suicide at move 4 (aa)")),
+                report.getDivergences().toString());
+    }
+
+    @Test
+    void testParsesRecordedMargins() {
+        assertEquals(5, BatchReplay.parseMargin("B+5"));
+        assertEquals(-0.5, BatchReplay.parseMargin("W+0.5"));
+        assertEquals(0, BatchReplay.parseMargin("Jigo"));
+        assertTrue(Double.isNaN(BatchReplay.parseMargin("W+R")));
+        assertTrue(Double.isNaN(BatchReplay.parseMargin(null)));
+    }
+}
@@ -0,0 +1,187 @@
+package org.example.gogame.server;
+
+import org.example.gogame.GameConfig;
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameJournalTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Player handler that drops all messages.
+     */
+    private static class SilentPlayer extends PlayerHandler {
+        SilentPlayer(StoneColor color) {
+            super((Socket) null, color);
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+        }
+    }
+
+    /**
+     * Plays a capture in the corner, a rejected move and a pass.
+     */
+    private static Game playCapture(long id, GameJournal journal) {
+        PlayerHandler black = new SilentPlayer(StoneColor.BLACK);
+        PlayerHandler white = new SilentPlayer(StoneColor.WHITE);
+        Game game = new Game(id, black, white, 9, journal);
+        game.processMove(1, 0, black);
+        game.processMove(0, 0, white);
+        game.processMove(0, 1, black);
+        game.processMove(0, 1, white);
+        game.processMove(5, 5, white);
+        game.processPass(black);
+        return game;
+    }
+
+    private static void assertSameBoard(Game expected, Game actual) {
+        int size = expected.getBoard().getSize();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                assertEquals(expected.getBoard().getStone(x, y), actual.getBoard().getStone(x, y), x + "," + y);
+            }
+        }
+    }
+
+    private static boolean hasStone(Game game, StoneColor color) {
+        int size = game.getBoard().getSize();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (game.getBoard().getStone(x, y) == color) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testRunningGamesAreRestored() throws Exception {
+        Path file = dir.resolve("games.journal");
+        Game original;
+        try (GameJournal journal = GameJournal.open(file)) {
+            original = playCapture(3, journal);
+            playCapture(4, journal).processQuit(new SilentPlayer(StoneColor.WHITE));
+            journal.sync();
+        }
+
+        try (GameJournal journal = GameJournal.open(file)) {
+            List<GameJournal.RecordedGame> games = journal.getActiveGames();
+            assertEquals(1, games.size());
+            assertEquals(3, games.get(0).id());
+
+            Game restored = Game.restore(games.get(0), journal);
+            assertSameBoard(original, restored);
+            assertEquals(StoneColor.EMPTY, restored.getBoard().getStone(0, 0));
+        }
+    }
+
+    @Test
+    void testSettingsAreRestored() throws Exception {
+        Path file = dir.resolve("games.journal");
+        GameConfig config = GameConfig.parse("13 komi=-3.5 rules=chinese time=5400+30");
+        try (GameJournal journal = GameJournal.open(file)) {
+            new Game(8, new SilentPlayer(StoneColor.BLACK), new SilentPlayer(StoneColor.WHITE), config, journal);
+        }
+        try (GameJournal journal = GameJournal.open(file)) {
+            assertEquals(config, journal.getActiveGames().get(0).config());
+            assertEquals(config, Game.restore(journal.getActiveGames().get(0), journal).getConfig());
+        }
+    }
+
+    @Test
+    void testTornRecordIsIgnored() throws Exception {
+        Path file = dir.resolve("games.journal");
+        try (GameJournal journal = GameJournal.open(file)) {
+            playCapture(1, journal);
+        }
+        int records;
+        try (GameJournal journal = GameJournal.open(file)) {
+            records = 4 + journal.getActiveGames().get(0).events().size(); //Dwa rekordy klucza, następne ID i start gry
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek((long) records * GameJournal.RECORD_SIZE);
+            raw.write(new byte[]{0, 0, 0, 0, 0, 0, 0, 1, GameJournal.MOVE, 4, 4}); //Rekord bez sumy kontrolnej
+        }
+
+        try (GameJournal journal = GameJournal.open(file)) {
+            assertEquals(records - 4, journal.getActiveGames().get(0).events().size());
+        }
+    }
+
+    @Test
+    void testFinishedGameIdsAreNeverReused() throws Exception {
+        Path file = dir.resolve("games.journal");
+        try (GameJournal journal = GameJournal.open(file)) {
+            assertEquals(1, journal.getNextGameId());
+            playCapture(5, journal);
+            journal.append(5, GameJournal.END, 0, 0, 0);
+        }
+        for (int i = 0; i < 2; i++) { //Druga kompakcja nie ma już zapisu gry 5
+            try (GameJournal journal = GameJournal.open(file)) {
+                assertTrue(journal.getActiveGames().isEmpty());
+                assertEquals(6, journal.getNextGameId());
+            }
+        }
+        try (GameJournal journal = GameJournal.open(file)) {
+            Lobby lobby = new Lobby(Runnable::run, journal);
+            lobby.configureBots(1, 20);
+            PlayerHandler human = new SilentPlayer(StoneColor.EMPTY);
+            assertTrue(lobby.playBot(human, GameConfig.of(9)));
+            assertEquals(6, human.getGame().getId(), "Token zakończonej gry 5 nie pasuje do nowej");
+        }
+    }
+
+    @Test
+    void testLobbyContinuesAfterRestoredIds() throws IOException {
+        Path file = dir.resolve("games.journal");
+        try (GameJournal journal = GameJournal.open(file)) {
+            playCapture(41, journal);
+        }
+        try (GameJournal journal = GameJournal.open(file)) {
+            Lobby lobby = new Lobby(Runnable::run, journal);
+            assertEquals(1, lobby.restoreGames());
+            assertNotNull(lobby.getGame(41));
+        }
+    }
+
+    @Test
+    void testBotSeatIsRestored() throws Exception {
+        Path file = dir.resolve("games.journal");
+        try (GameJournal journal = GameJournal.open(file)) {
+            Lobby lobby = new Lobby(Runnable::run, journal);
+            PlayerHandler human = new SilentPlayer(StoneColor.EMPTY);
+            assertTrue(lobby.playBot(human, GameConfig.of(9)));
+            assertInstanceOf(BotPlayer.class, human.getGame().getPlayer(StoneColor.WHITE));
+        }
+        try (GameJournal journal = GameJournal.open(file)) {
+            Lobby lobby = new Lobby(Runnable::run, journal);
+            lobby.configureBots(1, 20);
+            assertEquals(1, lobby.restoreGames());
+            Game game = lobby.getGame(1);
+            assertInstanceOf(BotPlayer.class, game.getPlayer(StoneColor.WHITE), "Bot nie czeka na powrót jak gracz");
+            assertFalse(game.getPlayer(StoneColor.BLACK) instanceof BotPlayer);
+
+            game.processMove(4, 4, game.getPlayer(StoneColor.BLACK));
+            game.flush();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!hasStone(game, StoneColor.WHITE) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(hasStone(game, StoneColor.WHITE), "Odtworzony bot odpowiada na ruch");
+        }
+    }
+}
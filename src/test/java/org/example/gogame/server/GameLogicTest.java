@@ -74,6 +74,59 @@ class GameLogicTest {
         assertTrue(gameLogic.isKo(board,lastMove,captures.getFirst()[0],captures.getFirst()[1]));
     }
 
+    @Test
+    void testNoKoAfterCaptureByLargerChain() {
+        //Czarny łańcuch bije jeden kamień i zostaje w atari, ale odbicie zabrałoby dwa kamienie, więc to nie ko
+        board.setStone(1, 0, StoneColor.BLACK);
+        board.setStone(0, 1, StoneColor.BLACK);
+        board.setStone(2, 1, StoneColor.BLACK);
+        board.setStone(1, 3, StoneColor.BLACK);
+        board.setStone(1, 1, StoneColor.WHITE);
+        board.setStone(0, 2, StoneColor.WHITE);
+        board.setStone(2, 2, StoneColor.WHITE);
+        board.setStone(0, 3, StoneColor.WHITE);
+        board.setStone(2, 3, StoneColor.WHITE);
+        board.setStone(1, 4, StoneColor.WHITE);
+        board.setStone(1, 2, StoneColor.BLACK);
+        board.setStone(1, 1, StoneColor.EMPTY);
+
+        int[] captured = {board.point(1, 1)};
+        assertEquals(1, board.countLiberties(board.point(1, 2)));
+        assertEquals(-1, gameLogic.koPointAfter(board, board.point(1, 2), captured, 1));
+
+        board.setStone(1, 3, StoneColor.EMPTY);
+        board.setStone(1, 3, StoneColor.WHITE); //Teraz bije pojedynczy kamień, więc odbicie jest zabronione
+        assertEquals(board.point(1, 1), gameLogic.koPointAfter(board, board.point(1, 2), captured, 1));
+    }
+
+    @Test
+    void testChainLiberties() {
+        board.setStone(2, 2, StoneColor.BLACK);
+        board.setStone(3, 2, StoneColor.BLACK);
+        board.setStone(2, 1, StoneColor.WHITE);
+
+        assertEquals(5, gameLogic.countChainLiberties(board, 2, 2, StoneColor.BLACK));
+    }
+
+    @Test
+    void testChainLibertiesOfEmptyPoint() {
+        board.setStone(2, 2, StoneColor.BLACK);
+        board.setStone(3, 2, StoneColor.BLACK);
+        board.setStone(3, 2, StoneColor.EMPTY);
+
+        assertEquals(0, gameLogic.countChainLiberties(board, 3, 2, StoneColor.BLACK), "Pusty punkt nie należy do łańcucha");
+        assertEquals(0, gameLogic.countChainLiberties(board, 3, 2, StoneColor.EMPTY), "Pusty punkt nie należy do łańcucha");
+    }
+
+    @Test
+    void testChainLibertiesOfOpponentStone() {
+        board.setStone(2, 2, StoneColor.BLACK);
+        board.setStone(2, 1, StoneColor.WHITE);
+
+        assertEquals(0, gameLogic.countChainLiberties(board, 2, 1, StoneColor.BLACK), "Kamień przeciwnika nie należy do łańcucha");
+        assertEquals(3, gameLogic.countChainLiberties(board, 2, 1, StoneColor.WHITE));
+    }
+
     @Test
     void testSuicide(){
         board.setStone(1,0, StoneColor.BLACK);
@@ -106,4 +159,55 @@ class GameLogicTest {
         assertEquals(1, scores[0], "Czarne terytorium powinno wynosić 1");
         assertEquals(1, scores[1], "Białe terytorium powinno wynosić 1");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testTerritoryOnEmptyBoard() {
+        int[] scores = gameLogic.countTerritory(board);
+
+        assertEquals(0, scores[0]);
+        assertEquals(0, scores[1]);
+    }
+
+    @Test
+    void testIncrementalTerritoryMatchesFullScore() {
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 40; i++) {
+            board.setStone(random.nextInt(9), random.nextInt(9),
+                    random.nextBoolean() ? StoneColor.BLACK : StoneColor.WHITE);
+        }
+        TerritoryScorer scorer = new TerritoryScorer(9);
+        scorer.score(board);
+
+        for (int i = 0; i < 200; i++) {
+            int x = random.nextInt(9);
+            int y = random.nextInt(9);
+            if (board.getStone(x, y) == StoneColor.EMPTY) {
+                board.setStone(x, y, random.nextBoolean() ? StoneColor.BLACK : StoneColor.WHITE);
+            } else {
+                board.removeStone(x, y);
+            }
+            scorer.update(board, board.point(x, y));
+
+            int[] full = gameLogic.countTerritory(board);
+            assertEquals(full[0], scorer.getBlackTerritory());
+            assertEquals(full[1], scorer.getWhiteTerritory());
+        }
+    }
+
+    @Test
+    void testCountedPositionIsServedFromCache() {
+        board.setStone(0, 1, StoneColor.BLACK);
+        board.setStone(1, 0, StoneColor.BLACK);
+        board.setStone(8, 7, StoneColor.WHITE);
+        board.setStone(7, 8, StoneColor.WHITE);
+        board.setStone(4, 4, StoneColor.WHITE);
+        int[] first = gameLogic.countTerritory(board);
+        long hits = GameLogic.TERRITORY.getHits();
+
+        int[] second = gameLogic.countTerritory(board);
+
+        assertArrayEquals(new int[]{1, 1}, first);
+        assertArrayEquals(first, second);
+        assertTrue(GameLogic.TERRITORY.getHits() > hits, "Druga liczba z pamięci podręcznej");
+    }
+}
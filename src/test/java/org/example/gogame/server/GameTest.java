@@ -0,0 +1,264 @@
+package org.example.gogame.server;
+
+import org.example.gogame.GameConfig;
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameTest {
+
+    /**
+     * Player handler that never touches the network and only remembers what it was sent.
+     */
+    private static class RecordingPlayer extends PlayerHandler {
+        private final List<String> received = new ArrayList<>();
+
+        RecordingPlayer(StoneColor color) {
+            super((Socket) null, color);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+            received.add(message.toString());
+        }
+    }
+
+    private static final int[][] BLOCK = {{1, 2}, {2, 2}, {3, 2}, {0, 0}, {2, 1}, {0, 4}, {2, 3}, {2, 2}, {4, 4}};
+
+    /**
+     * Plays a capture, a rejected suicide and filler moves in each of nine separate 6x6 blocks.
+     */
+    private static void playScript(Game game, PlayerHandler black, PlayerHandler white) {
+        int[][] block = BLOCK;
+        for (int ox = 0; ox < 18; ox += 6) {
+            for (int oy = 0; oy < 18; oy += 6) {
+                for (int i = 0; i < block.length; i++) {
+                    PlayerHandler player = (i % 2 == 0 && i != 8) ? black : white;
+                    game.processMove(ox + block[i][0], oy + block[i][1], player);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMoveMessages() {
+        RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+        RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, 19);
+        black.received.clear();
+
+        game.processMove(1, 2, black);
+        game.processMove(2, 2, white);
+        game.processMove(3, 2, black);
+        game.processMove(0, 0, white);
+        game.processMove(2, 1, black);
+        game.processMove(0, 4, white);
+        game.processMove(2, 3, black);
+        game.processMove(2, 2, white);
+
+        assertEquals("MOVE 2 3 BLACK 7", black.received.get(18));
+        assertEquals("CAPTURES 2 2", black.received.get(19));
+        assertEquals("TURN WHITE", black.received.get(20));
+        assertEquals("ERROR Suicide move - put valid move", white.received.get(white.received.size() - 1));
+    }
+
+    @Test
+    void testChineseScoringWithKomi() {
+        RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+        RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, GameConfig.parse("9 komi=6.5 rules=chinese"));
+        for (int y = 0; y < 9; y++) { //Czarni: ściana i 36 punktów, biali: ściana i 27 punktów
+            game.processMove(4, y, black);
+            game.processMove(5, y, white);
+        }
+        game.processPass(black);
+        game.processPass(white);
+        game.processAgree(black);
+        game.processAgree(white);
+
+        assertTrue(black.received.contains("GAME_START 9 komi=6.5 rules=chinese"));
+        assertEquals("GAME_OVER SCORE BLACK:45 WHITE:42.5 BLACK_WINS", black.received.get(black.received.size() - 1));
+        assertTrue(game.toSgf().startsWith("(;FF[4]GM[1]CA[UTF-8]AP[gogame]RU[Chinese]SZ[9]KM[6.5]RE[B+2.5]"), game.toSgf());
+    }
+
+    @Test
+    void testPositionCountedByAnotherGameScoresRemovals() {
+        String expected = null;
+        for (int round = 0; round < 2; round++) { //Druga gra dostaje liczbę z GameLogic.TERRITORY
+            RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+            RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+            Game game = new Game(black, white, GameConfig.parse("9 komi=6.5 rules=chinese"));
+            for (int y = 0; y < 9; y++) {
+                game.processMove(4, y, black);
+                game.processMove(5, y, white);
+            }
+            game.processPass(black);
+            game.processPass(white);
+            assertTrue(black.received.contains("MESSAGE Suggested Score -> BLACK: 45, WHITE: 42.5"));
+            long hits = GameLogic.TERRITORY.getHits();
+
+            game.processMove(5, 0, black); //Usunięcie białego kamienia łączy obszar białych z czarną ścianą
+
+            assertEquals(hits, GameLogic.TERRITORY.getHits(), "Usunięcie liczy planszę, nie czyta pamięci");
+            assertEquals("MESSAGE New score -> BLACK: 45, WHITE: 14.5", black.received.get(black.received.size() - 1));
+            game.processAgree(black);
+            game.processAgree(white);
+            String sgf = game.toSgf();
+            if (expected != null) {
+                assertEquals(expected, sgf);
+            }
+            expected = sgf;
+        }
+    }
+
+    @Test
+    void testResumeRestoresRemovedStones() {
+        RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+        RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, GameConfig.parse("9 komi=6.5"));
+        for (int y = 0; y < 9; y++) {
+            game.processMove(4, y, black);
+            game.processMove(5, y, white);
+        }
+        game.processPass(black);
+        game.processPass(white);
+        String suggested = black.received.get(black.received.size() - 1);
+        game.processMove(5, 0, black);
+        game.processMove(5, 1, white);
+
+        game.processResume(white);
+
+        assertEquals(StoneColor.WHITE, game.getBoard().getStone(5, 0));
+        assertEquals(StoneColor.WHITE, game.getBoard().getStone(5, 1));
+        game.processPass(black);
+        game.processPass(white);
+        assertEquals(suggested, black.received.get(black.received.size() - 1), "Jeńcy też przywróceni");
+    }
+
+    @Test
+    void testEstimateRemovesDeadStonesBeforeSuggestingScore() throws InterruptedException {
+        RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+        RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, GameConfig.parse("9 komi=6.5 rules=chinese"));
+        OwnershipEstimator estimator = new OwnershipEstimator(2, OwnershipEstimator.DEFAULT_PLAYOUTS);
+        game.setEstimator(estimator);
+        for (int y = 0; y < 9; y++) { //Podwójne ściany, neutralna kolumna x=4
+            for (int x : new int[]{2, 3}) {
+                game.processMove(x, y, black);
+                game.processMove(x + 3, y, white);
+            }
+        }
+        game.processMove(8, 4, black); //Martwy kamień na obszarze białych
+        game.processPass(white);
+        game.processPass(black);
+
+        String suggested = "MESSAGE Suggested Score -> BLACK: 36, WHITE: 42.5";
+        for (int i = 0; i < 500 && !black.received.contains(suggested); i++) {
+            Thread.sleep(10);
+        }
+        estimator.shutdown();
+
+        assertTrue(black.received.contains("MESSAGE Removed 1 dead stones"), black.received.toString());
+        assertTrue(black.received.contains(suggested), black.received.toString());
+        assertEquals(StoneColor.EMPTY, game.getBoard().getStone(8, 4));
+    }
+
+    @Test
+    void testUndoRestoresCapturedStone() {
+        RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+        RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, 9);
+        Game replayed = new Game(new RecordingPlayer(StoneColor.BLACK), new RecordingPlayer(StoneColor.WHITE), 9);
+        int[][] moves = {{1, 2}, {2, 2}, {3, 2}, {0, 0}, {2, 1}, {0, 4}, {2, 3}};
+        for (int i = 0; i < moves.length; i++) {
+            game.processMove(moves[i][0], moves[i][1], i % 2 == 0 ? black : white);
+            replayed.processMove(moves[i][0], moves[i][1], i % 2 == 0 ? replayed.getPlayer(StoneColor.BLACK) : replayed.getPlayer(StoneColor.WHITE));
+        }
+        assertEquals(StoneColor.EMPTY, game.getBoard().getStone(2, 2), "Biały kamień zbity");
+
+        game.processUndo(white);
+        assertEquals("ERROR Nothing to undo", white.received.get(white.received.size() - 1));
+        game.processUndo(black);
+
+        assertEquals(StoneColor.WHITE, game.getBoard().getStone(2, 2));
+        assertEquals(StoneColor.EMPTY, game.getBoard().getStone(2, 3));
+        assertEquals("MESSAGE Move undone by BLACK", black.received.get(black.received.size() - 2));
+        assertEquals("TURN BLACK", black.received.get(black.received.size() - 1));
+
+        game.processMove(2, 3, black); //Ta sama pozycja znowu, bez zarzutu superko
+        assertEquals(StoneColor.EMPTY, game.getBoard().getStone(2, 2));
+        assertEquals(replayed.getBoard().getHash(), game.getBoard().getHash());
+        assertEquals(replayed.toSgf(), game.toSgf());
+
+        List<GameJournal.Event> events = new ArrayList<>();
+        for (int i = 0; i < moves.length; i++) {
+            events.add(new GameJournal.Event(GameJournal.MOVE, moves[i][0], moves[i][1], i % 2 == 0 ? 1 : 2));
+        }
+        events.add(new GameJournal.Event(GameJournal.UNDO, 0, 0, 1));
+        Game restored = Game.restore(new GameJournal.RecordedGame(7, GameConfig.of(9), events), null);
+        assertEquals(StoneColor.WHITE, restored.getBoard().getStone(2, 2));
+        restored.processMove(2, 3, restored.getPlayer(StoneColor.BLACK)); //Znowu kolej czarnych
+        assertEquals(StoneColor.EMPTY, restored.getBoard().getStone(2, 2));
+    }
+
+    @Test
+    void testPlayerLosesOnTime() throws InterruptedException {
+        RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+        RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, GameConfig.parse("9 time=1+0"));
+        game.processMove(4, 4, black);
+        assertTrue(white.received.get(white.received.size() - 1).startsWith("CLOCK 9"), white.received.toString());
+
+        Thread.sleep(1100);
+        game.processMove(3, 3, white);
+
+        assertEquals("GAME_OVER BLACK_WINS", white.received.get(white.received.size() - 1));
+        assertTrue(game.toSgf().contains("TM[1]OT[Fischer 0]RE[B+T]"), game.toSgf());
+        game.processMove(3, 3, white);
+        assertEquals("ERROR Game is over", white.received.get(white.received.size() - 1));
+    }
+
+    /**
+     * Plays the script in a fresh game and returns the bytes the moves allocated on this thread.
+     * The players encode every message as for a socket, so the cost of sending is measured too.
+     */
+    private static long allocatedByScript(com.sun.management.ThreadMXBean threads, PlayerHandler black, PlayerHandler white) {
+        Game game = new Game(black, white, 19);
+        game.processMove(18, 18, black); //Pierwszy ruch buduje strukturę łańcuchów planszy
+        game.processMove(18, 16, white);
+        game.flush();
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        playScript(game, black, white);
+        game.flush();
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    @Test
+    void testProcessMoveDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.getCurrentThreadAllocatedBytes();
+        PlayerHandler black = new PlayerHandler(StoneColor.BLACK);
+        PlayerHandler white = new PlayerHandler(StoneColor.WHITE);
+
+        //Rekompilacja C2 może zaalokować w dowolnej grze rozgrzewki, więc liczy się dopiero seria gier bez alokacji
+        int clean = 0;
+        long allocated = 0;
+        for (int i = 0; i < 50 && clean < 5; i++) {
+            allocated = allocatedByScript(threads, black, white);
+            clean = allocated == 0 ? clean + 1 : 0;
+        }
+        assertEquals(5, clean, "processMove should not allocate in steady state, last game allocated " + allocated);
+    }
+}
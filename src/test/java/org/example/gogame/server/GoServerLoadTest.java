@@ -0,0 +1,77 @@
+package org.example.gogame.server;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures how many connections the virtual thread mode holds per GB of heap.
+ * Excluded from the default build; run with {@code mvn test -Pload}.
+ */
+@Tag("load")
+class GoServerLoadTest {
+
+    private static final int CONNECTIONS = 4000;
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    void testConnectionCapacityPerGigabyte() throws Exception {
+        ServerSocket listener = new ServerSocket(0, CONNECTIONS);
+        GoServer server = new GoServer(ExecutionMode.VIRTUAL, 1);
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.serve(listener);
+            } catch (Exception e) {
+                // zamknięcie gniazda kończy pętlę
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        int platformThreadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+
+        List<Socket> clients = new ArrayList<>(CONNECTIONS);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            Socket client = new Socket("localhost", listener.getLocalPort());
+            clients.add(client);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            assertTrue(in.readLine().startsWith("MESSAGE Connected"));
+        }
+
+        long heapAfter = usedHeap();
+        int platformThreadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+        long perConnection = Math.max(1, (heapAfter - heapBefore) / CONNECTIONS);
+        long perGigabyte = (1L << 30) / perConnection;
+
+        System.out.println("Connections: " + CONNECTIONS + ", games: " + CONNECTIONS / 2);
+        System.out.println("Heap per connection (server and test client): " + perConnection + " bytes");
+        System.out.println("Connection capacity per GB of heap: " + perGigabyte);
+        System.out.println("Platform threads: " + platformThreadsBefore + " -> " + platformThreadsAfter);
+
+        for (Socket client : clients) {
+            client.close();
+        }
+        listener.close();
+
+        assertTrue(platformThreadsAfter - platformThreadsBefore < CONNECTIONS / 10,
+                "players should not be served by platform threads");
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.gogame.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverValuesWithSmallError() {
+        for (long value : new long[]{0, 1, 63, 64, 65, 1000, 123_456, 1_000_000_007L, LatencyHistogram.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.upperBound(index) >= value, "value " + value);
+            assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value, "value " + value);
+            assertTrue(LatencyHistogram.upperBound(index) - value <= value / 32, "value " + value);
+        }
+    }
+
+    @Test
+    void testPercentilesAndPrometheusFormat() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000L); //1 µs do 100 µs
+        }
+        assertEquals(100, histogram.getCount());
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 50_000 && median < 52_000, "median " + median);
+        assertTrue(histogram.getValueAtPercentile(100) >= 100_000);
+
+        StringBuilder out = new StringBuilder();
+        histogram.writePrometheus(out, "test_seconds", "command=\"MOVE\"");
+        String text = out.toString();
+        //1 µs, 5 µs i 99 µs leżą w kubełkach sięgających ponad granicę, więc liczą się dopiero w następnej
+        assertTrue(text.contains("test_seconds_bucket{command=\"MOVE\",le=\"0.000001\"} 0\n"), text);
+        assertTrue(text.contains("test_seconds_bucket{command=\"MOVE\",le=\"0.000005\"} 4\n"), text);
+        assertTrue(text.contains("test_seconds_bucket{command=\"MOVE\",le=\"0.0001\"} 98\n"), text);
+        assertTrue(text.contains("test_seconds_bucket{command=\"MOVE\",le=\"0.00025\"} 100\n"), text);
+        assertTrue(text.contains("test_seconds_bucket{command=\"MOVE\",le=\"+Inf\"} 100\n"), text);
+        assertTrue(text.contains("test_seconds_count{command=\"MOVE\"} 100\n"), text);
+    }
+
+    @Test
+    void testExportedBucketsNeverCountValuesAboveTheirBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_001); //Tuż nad granicą 1 µs, w kubełku 992-1007
+        StringBuilder out = new StringBuilder();
+        histogram.writePrometheus(out, "test_seconds", "");
+        String text = out.toString();
+        assertTrue(text.contains("test_seconds_bucket{le=\"0.000001\"} 0\n"), text);
+        assertTrue(text.contains("test_seconds_bucket{le=\"0.000005\"} 1\n"), text);
+    }
+}
@@ -0,0 +1,261 @@
+package org.example.gogame.server;
+
+import org.example.gogame.GameConfig;
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LobbyTest {
+
+    /**
+     * Connected player handler that never touches the network and only remembers what it was sent.
+     */
+    private static class StubPlayer extends PlayerHandler {
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean connected = true;
+
+        StubPlayer() {
+            super((Socket) null, StoneColor.EMPTY);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+            received.add(message.toString());
+        }
+    }
+
+    @Test
+    void testPairsBySize() {
+        Lobby lobby = new Lobby(Runnable::run);
+        StubPlayer a = new StubPlayer();
+        StubPlayer b = new StubPlayer();
+        StubPlayer c = new StubPlayer();
+
+        assertTrue(lobby.join(a, 9));
+        assertTrue(lobby.join(b, 13));
+        assertNull(a.getGame());
+        assertEquals(2, lobby.getWaitingCount());
+
+        assertTrue(lobby.join(c, 9));
+        assertNotNull(a.getGame());
+        assertSame(a.getGame(), c.getGame());
+        assertNull(b.getGame());
+        assertEquals(StoneColor.BLACK, a.getColor());
+        assertEquals(StoneColor.WHITE, c.getColor());
+        assertTrue(a.received.contains("GAME_START 9"));
+        assertSame(a.getGame(), lobby.getGame(a.getGame().getId()));
+        assertEquals(1, lobby.getWaitingCount());
+    }
+
+    @Test
+    void testJoinMovesBetweenSizes() {
+        Lobby lobby = new Lobby(Runnable::run);
+        StubPlayer a = new StubPlayer();
+        StubPlayer b = new StubPlayer();
+
+        lobby.join(a, 19);
+        lobby.join(a, 9);
+        lobby.join(b, 9);
+
+        assertNotNull(a.getGame());
+        assertTrue(a.received.contains("GAME_START 9"));
+        assertFalse(lobby.join(new StubPlayer(), 7));
+        assertFalse(lobby.join(a, 13));
+    }
+
+    @Test
+    void testPairsOnlyEqualSettings() {
+        Lobby lobby = new Lobby(Runnable::run);
+        StubPlayer a = new StubPlayer();
+        StubPlayer b = new StubPlayer();
+        StubPlayer c = new StubPlayer();
+
+        assertTrue(lobby.join(a, GameConfig.parse("9 komi=6.5 time=300+5")));
+        assertTrue(lobby.join(b, 9));
+        assertNull(a.getGame());
+
+        c.setLobby(lobby);
+        c.handleCommand("JOIN 9 time=300+5 komi=6.5");
+        assertSame(a.getGame(), c.getGame());
+        assertNull(b.getGame());
+        assertTrue(c.received.contains("GAME_START 9 komi=6.5 time=300+5"), c.received.toString());
+        assertEquals(6.5, a.getGame().getConfig().komi());
+    }
+
+    @Test
+    void testDrainedConfigurationsFreeTheirSlot() {
+        Lobby lobby = new Lobby(Runnable::run);
+        for (int i = 0; i < 2 * Lobby.MAX_CONFIGS; i++) {
+            GameConfig config = new GameConfig(9, 0, GameConfig.Rules.JAPANESE, 60 + i, 0);
+            StubPlayer a = new StubPlayer();
+            StubPlayer b = new StubPlayer();
+            assertTrue(lobby.join(a, config), "Sparowane ustawienia nie zajmują miejsca");
+            assertTrue(lobby.join(b, config));
+            assertSame(a.getGame(), b.getGame());
+        }
+        assertEquals(0, lobby.getWaitingCount());
+
+        List<StubPlayer> waiting = new ArrayList<>();
+        for (int i = 0; i < Lobby.MAX_CONFIGS; i++) {
+            StubPlayer player = new StubPlayer();
+            assertTrue(lobby.join(player, new GameConfig(9, 0, GameConfig.Rules.JAPANESE, 1000 + i, 0)));
+            waiting.add(player);
+        }
+        StubPlayer late = new StubPlayer();
+        assertFalse(lobby.join(late, 13));
+        lobby.leave(waiting.getFirst());
+        assertTrue(lobby.join(late, 13), "Opuszczona kolejka zwalnia miejsce");
+    }
+
+    @Test
+    void testFinishedGameLeavesRegistry() {
+        Lobby lobby = new Lobby(Runnable::run);
+        StubPlayer a = new StubPlayer();
+        StubPlayer b = new StubPlayer();
+        lobby.join(a, 9);
+        lobby.join(b, 9);
+        assertEquals(1, lobby.getGames().size());
+
+        a.getGame().processQuit(a);
+
+        assertTrue(lobby.getGames().isEmpty());
+    }
+
+    /**
+     * Returns the session token a player was sent.
+     */
+    private static String session(StubPlayer player) {
+        for (String message : player.received) {
+            if (message.startsWith("SESSION ")) {
+                return message.substring(8);
+            }
+        }
+        return null;
+    }
+
+    @Test
+    void testReconnectTakesOverSeat() {
+        Lobby lobby = new Lobby(Runnable::run);
+        StubPlayer a = new StubPlayer();
+        StubPlayer b = new StubPlayer();
+        lobby.join(a, 9);
+        lobby.join(b, 9);
+        Game game = a.getGame();
+        String token = session(a);
+        assertNotNull(token);
+        assertNotEquals(token, session(b));
+
+        StubPlayer c = new StubPlayer();
+        assertFalse(lobby.reconnect(c, game.getId() + "-00000000000000000000000000000000"));
+        assertFalse(lobby.reconnect(c, "garbage"));
+        assertFalse(lobby.reconnect(c, token), "Miejsce połączonego gracza nie może zostać przejęte");
+        assertSame(a, game.getPlayer(StoneColor.BLACK));
+        a.connected = false;
+        assertTrue(lobby.reconnect(c, token));
+
+        assertSame(game, c.getGame());
+        assertEquals(StoneColor.BLACK, c.getColor());
+        assertTrue(c.received.contains("BOARD 0 9 81."));
+        game.processMove(0, 0, c);
+        assertTrue(b.received.contains("MOVE 0 0 BLACK 1"));
+        assertTrue(b.received.contains("MESSAGE BLACK reconnected"));
+    }
+
+    @Test
+    void testAbsentPlayerForfeits() {
+        Lobby lobby = new Lobby(Runnable::run);
+        StubPlayer a = new StubPlayer();
+        StubPlayer b = new StubPlayer();
+        lobby.join(a, 9);
+        lobby.join(b, 9);
+        Game game = a.getGame();
+
+        assertTrue(game.playerDisconnected(a));
+        assertTrue(b.received.contains("MESSAGE BLACK disconnected, waiting for reconnect..."));
+        game.forfeit(a);
+
+        assertTrue(b.received.contains("GAME_OVER WHITE_WINS"));
+        assertTrue(lobby.getGames().isEmpty());
+        assertFalse(lobby.reconnect(new StubPlayer(), session(a)));
+    }
+
+    @Test
+    void testConcurrentJoins() throws InterruptedException {
+        Lobby lobby = new Lobby(Runnable::run);
+        int threads = 6;
+        int perThread = 250;
+        List<StubPlayer> players = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int size = Lobby.BOARD_SIZES[t % Lobby.BOARD_SIZES.length];
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    StubPlayer player = new StubPlayer();
+                    players.add(player);
+                    lobby.join(player, size);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        //Każdy rozmiar ma parzystą liczbę graczy, więc nikt nie powinien czekać
+        assertEquals(0, lobby.getWaitingCount());
+        assertEquals(threads * perThread / 2, lobby.getGames().size());
+        for (StubPlayer player : players) {
+            Game game = player.getGame();
+            assertNotNull(game);
+            assertSame(game, lobby.getGame(game.getId()));
+        }
+    }
+
+    @Test
+    void testBotAnswersMoves() throws InterruptedException {
+        Lobby lobby = new Lobby(Runnable::run);
+        lobby.configureBots(1, 20);
+        StubPlayer human = new StubPlayer();
+        human.setLobby(lobby);
+
+        human.handleCommand("BOT 9 komi=6.5");
+        Game game = human.getGame();
+        assertNotNull(game);
+        assertEquals(StoneColor.BLACK, human.getColor());
+        assertInstanceOf(BotPlayer.class, game.getPlayer(StoneColor.WHITE));
+        assertTrue(human.received.contains("GAME_START 9 komi=6.5"), human.received.toString());
+
+        human.handleCommand("MOVE 4 4");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (human.received.stream().noneMatch(m -> m.startsWith("MOVE ") && m.contains(" WHITE "))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(human.received.stream().anyMatch(m -> m.matches("MOVE \\d+ \\d+ WHITE 2")), human.received.toString());
+        assertEquals("TURN BLACK", human.received.get(human.received.size() - 1));
+    }
+}
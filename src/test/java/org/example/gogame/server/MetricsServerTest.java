@@ -0,0 +1,54 @@
+package org.example.gogame.server;
+
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsServerTest {
+
+    /**
+     * Player handler that drops all messages.
+     */
+    private static class SilentPlayer extends PlayerHandler {
+        SilentPlayer(StoneColor color) {
+            super((Socket) null, color);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+        }
+    }
+
+    @Test
+    void testScrapeReportsMoveLatency() throws Exception {
+        long before = ServerMetrics.MOVE.getCount();
+        PlayerHandler black = new SilentPlayer(StoneColor.BLACK);
+        Game game = new Game(black, new SilentPlayer(StoneColor.WHITE), 9);
+        game.processMove(2, 3, black);
+        assertEquals(before + 1, ServerMetrics.MOVE.getCount());
+
+        try (MetricsServer server = new MetricsServer(0, new Lobby())) {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain; version=0.0.4"));
+            String body = response.body();
+            assertTrue(body.contains("# TYPE gogame_command_duration_seconds histogram"), body);
+            assertTrue(body.contains("gogame_command_duration_seconds_count{command=\"MOVE\"} "), body);
+            assertTrue(body.contains("gogame_active_games 0\n"), body);
+            assertTrue(body.contains("jvm_gc_collections_total{gc="), body);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.PlayoutBoard;
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloSearchTest {
+
+    private final MonteCarloSearch search = new MonteCarloSearch(2);
+
+    @AfterEach
+    void tearDown() {
+        search.shutdown();
+    }
+
+    @Test
+    void testCapturesGroupInAtari() {
+        Board board = new Board(7);
+        board.setStone(3, 2, StoneColor.WHITE); //Trzy białe kamienie z jednym oddechem w (3,5)
+        board.setStone(3, 3, StoneColor.WHITE);
+        board.setStone(3, 4, StoneColor.WHITE);
+        for (int y = 2; y <= 4; y++) {
+            board.setStone(2, y, StoneColor.BLACK);
+            board.setStone(4, y, StoneColor.BLACK);
+        }
+        board.setStone(3, 1, StoneColor.BLACK);
+
+        PlayoutBoard position = new PlayoutBoard(7);
+        position.copyFrom(board, -1);
+
+        MonteCarloSearch.Result result = search.search(position, Board.BLACK, false, 0, 300_000_000L);
+
+        assertEquals(board.point(3, 5), result.point());
+        assertTrue(result.winRate() > 0.5, String.valueOf(result.winRate()));
+        assertTrue(result.playouts() >= 2);
+        assertEquals(2, result.workers());
+        assertTrue(result.playoutsPerSecondPerCore() > 0);
+    }
+
+    @Test
+    void testPassesWithOnlyEyesLeft() {
+        Board board = new Board(3);
+        for (int i = 0; i < 3; i++) { //Krzyż czarnych kamieni z czterema okami w rogach
+            board.setStone(1, i, StoneColor.BLACK);
+            board.setStone(i, 1, StoneColor.BLACK);
+        }
+
+        PlayoutBoard position = new PlayoutBoard(3);
+        position.copyFrom(board, -1);
+
+        assertEquals(MonteCarloSearch.PASS, search.search(position, Board.BLACK, false, 0, 1_000_000L).point());
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveStackTest {
+
+    private final GameLogic logic = new GameLogic();
+    private final Board board = new Board(5);
+    private final MoveStack stack = new MoveStack(2, 1); //Małe tablice, żeby sprawdzić ich powiększanie
+    private final int[] captured = new int[board.getCapacity()];
+
+    private void play(int x, int y, byte color) {
+        int count = logic.play(board, x, y, color, -1, null, SuperkoRule.POSITIONAL, captured);
+        assertTrue(count >= 0);
+        stack.pushMove(board.point(x, y), color, captured, count, -1, 0);
+    }
+
+    @Test
+    void testUndoRestoresCaptures() {
+        play(0, 1, Board.WHITE); //Dwa czarne kamienie w rogu, zbite przez ostatni ruch białych
+        play(0, 0, Board.BLACK);
+        play(2, 0, Board.WHITE);
+        play(1, 0, Board.BLACK);
+        long beforeCapture = board.getHash();
+        play(1, 1, Board.WHITE);
+        assertEquals(Board.EMPTY, board.get(board.point(0, 0)));
+        assertEquals(2, stack.getCaptureCount(4));
+
+        assertEquals(4, stack.undo(board));
+        assertEquals(beforeCapture, board.getHash());
+        assertEquals(Board.BLACK, board.get(board.point(0, 0)));
+        assertEquals(Board.BLACK, board.get(board.point(1, 0)));
+        assertEquals(Board.EMPTY, board.get(board.point(1, 1)));
+        assertEquals(4, stack.size());
+
+        while (stack.size() > 0) {
+            stack.undo(board);
+        }
+        assertEquals(0, board.getHash(), "Pusta plansza");
+        assertThrows(IllegalStateException.class, () -> stack.undo(board));
+    }
+
+    @Test
+    void testUndoPassAndRemoval() {
+        play(2, 2, Board.BLACK);
+        stack.pushPass(Board.WHITE, -1, 0);
+        stack.pushRemoval(board.point(2, 2), Board.BLACK);
+        board.set(board.point(2, 2), Board.EMPTY);
+
+        assertEquals(MoveStack.REMOVED, stack.getKind(stack.undo(board)));
+        assertEquals(Board.BLACK, board.get(board.point(2, 2)));
+        assertEquals(MoveStack.PASSED, stack.getKind(stack.undo(board)));
+        assertEquals(1, stack.size());
+
+        play(3, 3, Board.WHITE);
+        assertEquals(2, stack.size());
+        assertEquals(board.point(3, 3), stack.getPoint(1));
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.gogame.server;
+
+import org.example.gogame.StoneColor;
+import org.example.gogame.WireProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioServerTest {
+
+    private NioServer server;
+    private PlayerHandler waiting;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Reads lines until one starts with the given prefix.
+     */
+    private static String readUntil(BufferedReader in, String prefix) throws Exception {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    void testGameOverEventLoops() throws Exception {
+        server = new NioServer(0, 2, connection -> {
+            if (waiting == null) {
+                waiting = new PlayerHandler(connection, StoneColor.BLACK);
+            } else {
+                new Game(waiting, new PlayerHandler(connection, StoneColor.WHITE), 9);
+            }
+        });
+        Thread acceptor = new Thread(server::acceptLoop);
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        try (Socket black = new Socket("localhost", server.getPort());
+             Socket white = new Socket("localhost", server.getPort())) {
+            BufferedReader blackIn = new BufferedReader(new InputStreamReader(black.getInputStream()));
+            BufferedReader whiteIn = new BufferedReader(new InputStreamReader(white.getInputStream()));
+            PrintWriter blackOut = new PrintWriter(black.getOutputStream(), true);
+
+            assertEquals("COLOR BLACK", readUntil(blackIn, "COLOR"));
+            assertEquals("COLOR WHITE", readUntil(whiteIn, "COLOR"));
+            assertEquals("TURN BLACK", readUntil(whiteIn, "TURN"));
+
+            blackOut.print("MOVE 3 4\r\n");
+            blackOut.flush();
+
+            assertEquals("MOVE 3 4 BLACK 1", readUntil(whiteIn, "MOVE"));
+            assertEquals("TURN WHITE", readUntil(whiteIn, "TURN"));
+            assertEquals("MOVE 3 4 BLACK 1", readUntil(blackIn, "MOVE"));
+        }
+    }
+
+    @Test
+    void testFailingHandlerOnlyClosesItsConnection() throws Exception {
+        server = new NioServer(0, 1, connection -> new PlayerHandler(connection, StoneColor.BLACK) {
+            @Override
+            void handleFrame(WireProtocol.Decoder frame) {
+                if (frame.getText().equals("BOOM")) {
+                    throw new IllegalStateException("BOOM");
+                }
+                super.handleFrame(frame);
+            }
+        });
+        Thread acceptor = new Thread(server::acceptLoop);
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        try (Socket failing = new Socket("localhost", server.getPort());
+             Socket other = new Socket("localhost", server.getPort())) {
+            PrintWriter failingOut = new PrintWriter(failing.getOutputStream(), true);
+            failingOut.println("BOOM");
+            assertEquals(-1, failing.getInputStream().read(), "Połączenie, którego obsługa rzuciła wyjątek, jest zamknięte");
+
+            //Ta sama pętla wciąż obsługuje drugie połączenie
+            BufferedReader otherIn = new BufferedReader(new InputStreamReader(other.getInputStream()));
+            PrintWriter otherOut = new PrintWriter(other.getOutputStream(), true);
+            otherOut.println("PASS");
+            assertEquals("MESSAGE Waiting for opponent...", readUntil(otherIn, "MESSAGE"));
+        }
+    }
+
+    @Test
+    void testDroppedPlayerReconnectsWithSessionToken() throws Exception {
+        Lobby lobby = new Lobby(Runnable::run);
+        server = new NioServer(0, 2, connection -> lobby.admit(new PlayerHandler(connection, StoneColor.EMPTY)));
+        Thread acceptor = new Thread(server::acceptLoop);
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        try (Socket black = new Socket("localhost", server.getPort());
+             Socket white = new Socket("localhost", server.getPort())) {
+            BufferedReader blackIn = new BufferedReader(new InputStreamReader(black.getInputStream()));
+            BufferedReader whiteIn = new BufferedReader(new InputStreamReader(white.getInputStream()));
+            PrintWriter blackOut = new PrintWriter(black.getOutputStream(), true);
+            PrintWriter whiteOut = new PrintWriter(white.getOutputStream(), true);
+            blackOut.println("JOIN 9");
+            assertNotNull(readUntil(blackIn, "MESSAGE Waiting for opponent on"));
+            whiteOut.println("JOIN 9");
+            assertEquals("COLOR BLACK", readUntil(blackIn, "COLOR"));
+            assertEquals("COLOR WHITE", readUntil(whiteIn, "COLOR"));
+            String token = readUntil(blackIn, "SESSION").substring("SESSION ".length());
+
+            blackOut.println("MOVE 3 4");
+            assertEquals("MOVE 3 4 BLACK 1", readUntil(whiteIn, "MOVE"));
+            assertEquals("TURN WHITE", readUntil(whiteIn, "TURN"));
+
+            //Zerwane połączenie; ruch białego pisze do niego, więc zamknięcie może przyjść z write() pod monitorem
+            black.setSoLinger(true, 0);
+            black.close();
+            whiteOut.println("MOVE 5 5");
+            assertEquals("MESSAGE BLACK disconnected, waiting for reconnect...", readUntil(whiteIn, "MESSAGE BLACK"));
+
+            try (Socket back = new Socket("localhost", server.getPort())) {
+                BufferedReader backIn = new BufferedReader(new InputStreamReader(back.getInputStream()));
+                PrintWriter backOut = new PrintWriter(back.getOutputStream(), true);
+                backOut.println("RECONNECT " + token);
+                assertEquals("COLOR BLACK", readUntil(backIn, "COLOR"));
+                assertEquals("TURN BLACK", readUntil(backIn, "TURN"));
+                assertEquals("MESSAGE BLACK reconnected", readUntil(whiteIn, "MESSAGE BLACK"));
+
+                backOut.println("MOVE 6 6");
+                assertEquals("MOVE 6 6 BLACK 3", readUntil(whiteIn, "MOVE 6 6"));
+            }
+        }
+    }
+}
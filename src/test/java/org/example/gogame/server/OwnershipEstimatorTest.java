@@ -0,0 +1,57 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.PlayoutBoard;
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OwnershipEstimatorTest {
+
+    private final OwnershipEstimator estimator = new OwnershipEstimator(2, OwnershipEstimator.DEFAULT_PLAYOUTS);
+
+    @AfterEach
+    void tearDown() {
+        estimator.shutdown();
+    }
+
+    /**
+     * Builds a passed-out 9x9 game: black walls on x=2 and x=3, white walls on x=5 and x=6, dame on x=4
+     * and one lost stone in each player's area.
+     */
+    static Board walls() {
+        Board board = new Board(9);
+        for (int y = 0; y < 9; y++) {
+            board.setStone(2, y, StoneColor.BLACK);
+            board.setStone(3, y, StoneColor.BLACK);
+            board.setStone(5, y, StoneColor.WHITE);
+            board.setStone(6, y, StoneColor.WHITE);
+        }
+        board.setStone(0, 4, StoneColor.WHITE);
+        board.setStone(8, 4, StoneColor.BLACK);
+        return board;
+    }
+
+    @Test
+    void testFindsStonesInOpponentArea() {
+        Board board = walls();
+        PlayoutBoard position = new PlayoutBoard(9);
+        position.copyFrom(board, -1);
+
+        OwnershipEstimator.Estimate estimate = estimator.estimate(position);
+
+        assertEquals(OwnershipEstimator.DEFAULT_PLAYOUTS, estimate.playouts());
+        assertTrue(estimate.isDead(board, board.point(0, 4)));
+        assertTrue(estimate.isDead(board, board.point(8, 4)));
+        for (int y = 0; y < 9; y++) {
+            assertFalse(estimate.isDead(board, board.point(3, y)), "Czarna ściana żyje");
+            assertFalse(estimate.isDead(board, board.point(5, y)), "Biała ściana żyje");
+            assertEquals(0, estimate.ownership()[board.point(4, y)], 0.25f, "Pole neutralne");
+        }
+        assertFalse(estimate.isDead(board, board.point(0, 0)), "Puste pole nie jest martwe");
+        assertTrue(estimate.ownership()[board.point(0, 0)] > 0.5f);
+        assertTrue(estimate.ownership()[board.point(8, 8)] < -0.5f);
+    }
+}
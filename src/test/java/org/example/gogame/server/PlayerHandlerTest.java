@@ -0,0 +1,160 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.StoneColor;
+import org.example.gogame.WireProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerHandlerTest {
+
+    private static class RecordingPlayer extends PlayerHandler {
+        private final List<String> received = new ArrayList<>();
+
+        RecordingPlayer(StoneColor color) {
+            super((Socket) null, color);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+            received.add(message.toString());
+        }
+    }
+
+    private ServerSocket listener;
+    private Socket client;
+    private PlayerHandler handler;
+
+    @BeforeEach
+    void connect() throws Exception {
+        listener = new ServerSocket(0);
+        client = new Socket("localhost", listener.getLocalPort());
+        handler = new PlayerHandler(listener.accept(), StoneColor.BLACK);
+        handler.start();
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        client.close();
+        listener.close();
+    }
+
+    @Test
+    void testMessagesWaitForFlush() throws Exception {
+        handler.sendMessage("MOVE 3 4 BLACK");
+        handler.sendMessage(new StringBuilder("CAPTURES"));
+        handler.sendMessage("TURN WHITE");
+        Thread.sleep(50);
+        assertEquals(0, client.getInputStream().available());
+
+        handler.flush();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+        assertEquals("MOVE 3 4 BLACK", in.readLine());
+        assertEquals("CAPTURES", in.readLine());
+        assertEquals("TURN WHITE", in.readLine());
+    }
+
+    @Test
+    void testOverflowDisconnects() {
+        String line = "MESSAGE " + "x".repeat(1000);
+        for (int i = 0; i <= PlayerHandler.MAX_PENDING / line.length(); i++) {
+            handler.sendMessage(line);
+        }
+
+        assertFalse(handler.isConnected());
+    }
+
+    @Test
+    void testFlushDoesNotWaitForSlowClient() throws Exception {
+        try (Socket slow = new Socket()) {
+            slow.setReceiveBufferSize(4096);
+            slow.connect(listener.getLocalSocketAddress());
+            Socket accepted = listener.accept();
+            accepted.setSendBufferSize(4096);
+            PlayerHandler player = new PlayerHandler(accepted, StoneColor.WHITE);
+            player.start();
+
+            //Klient nic nie czyta, więc gniazdo szybko się zapełnia; flush() ma mimo to wracać od razu
+            String line = "MESSAGE " + "x".repeat(1000);
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < PlayerHandler.MAX_PENDING / 2 / line.length(); i++) {
+                    player.sendMessage(line);
+                    player.flush();
+                }
+            });
+            assertTrue(player.isConnected());
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(slow.getInputStream()));
+            assertEquals(line, in.readLine());
+        }
+    }
+
+    @Test
+    void testBinaryHandshake() throws Exception {
+        client.getOutputStream().write((WireProtocol.HANDSHAKE + "\n").getBytes(StandardCharsets.UTF_8));
+        DataInputStream in = new DataInputStream(client.getInputStream());
+        byte[] reply = new byte[WireProtocol.HANDSHAKE.length() + 1];
+        in.readFully(reply);
+        assertEquals(WireProtocol.HANDSHAKE + "\n", new String(reply, StandardCharsets.UTF_8));
+
+        handler.sendMove(3, 4, StoneColor.BLACK, 5);
+        handler.sendTurn(StoneColor.WHITE);
+        handler.flush();
+
+        byte[] frames = new byte[7];
+        in.readFully(frames);
+        assertArrayEquals(new byte[]{WireProtocol.MOVE, 3, 4, Board.BLACK, 5, WireProtocol.TURN, Board.WHITE}, frames);
+    }
+
+    private static WireProtocol.Decoder moveFrame(int x, int y) throws Exception {
+        byte[] buf = new byte[WireProtocol.MAX_MOVE_FRAME];
+        int length = WireProtocol.encodeMove(buf, 0, x, y, Board.BLACK);
+        WireProtocol.Decoder decoder = new WireProtocol.Decoder();
+        decoder.setBinary();
+        for (int i = 0; i < length; i++) {
+            if (decoder.feed(buf[i])) {
+                return decoder;
+            }
+        }
+        throw new AssertionError("Niepełna ramka");
+    }
+
+    @Test
+    void testOffBoardBinaryMoveIsRejected() throws Exception {
+        RecordingPlayer black = new RecordingPlayer(StoneColor.BLACK);
+        RecordingPlayer white = new RecordingPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, 9);
+        int seen = white.received.size();
+
+        black.handleFrame(moveFrame(200, 3));
+        assertEquals("ERROR Wrong move", black.received.getLast());
+        black.handleFrame(moveFrame(3, 9));
+        assertEquals("ERROR Wrong move", black.received.getLast());
+        assertEquals(seen, white.received.size(), "Przeciwnik nie dostaje odrzuconego ruchu");
+
+        //W negocjacjach ruch usuwa kamień, poza planszą nie może sięgać do tablicy
+        game.processPass(black);
+        game.processPass(white);
+        assertTrue(black.received.stream().anyMatch(line -> line.startsWith("MESSAGE Suggested Score")), black.received.toString());
+        black.handleFrame(moveFrame(255, 255));
+        assertEquals("ERROR Wrong move", black.received.getLast());
+    }
+}
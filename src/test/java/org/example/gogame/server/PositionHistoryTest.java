@@ -0,0 +1,62 @@
+package org.example.gogame.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionHistoryTest {
+
+    @Test
+    void testAddAndContains() {
+        PositionHistory history = new PositionHistory(4);
+
+        assertTrue(history.add(42L));
+        assertFalse(history.add(42L));
+        assertTrue(history.contains(42L));
+        assertFalse(history.contains(43L));
+    }
+
+    @Test
+    void testZeroHashIsStored() {
+        PositionHistory history = new PositionHistory(4);
+
+        assertFalse(history.contains(0L));
+        assertTrue(history.add(0L));
+        assertTrue(history.contains(0L));
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    void testGrowKeepsEntries() {
+        PositionHistory history = new PositionHistory(4);
+        for (long i = 1; i <= 1000; i++) {
+            history.add(i * 0x9E3779B97F4A7C15L);
+        }
+
+        assertEquals(1000, history.size());
+        for (long i = 1; i <= 1000; i++) {
+            assertTrue(history.contains(i * 0x9E3779B97F4A7C15L));
+        }
+        history.clear();
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void testRemoveKeepsProbeRuns() {
+        PositionHistory history = new PositionHistory(4);
+        java.util.Random random = new java.util.Random(3);
+        java.util.Set<Long> expected = new java.util.HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            long hash = random.nextInt(64) * 0x9E3779B97F4A7C15L; //Mało różnych wartości, więc długie ciągi kolizji
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(hash), history.add(hash));
+            } else {
+                assertEquals(expected.remove(hash), history.remove(hash));
+            }
+        }
+        assertEquals(expected.size(), history.size());
+        for (long i = 0; i < 64; i++) {
+            assertEquals(expected.contains(i * 0x9E3779B97F4A7C15L), history.contains(i * 0x9E3779B97F4A7C15L));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.gogame.server;
+
+import org.example.gogame.Board;
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SgfTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Player handler that drops all messages.
+     */
+    private static class SilentPlayer extends PlayerHandler {
+        SilentPlayer(StoneColor color) {
+            super((Socket) null, color);
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+        }
+    }
+
+    /**
+     * Handler that writes down the main line as text.
+     */
+    private static class RecordingHandler implements SgfReader.Handler {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void startGame() {
+            events.add("(");
+        }
+
+        @Override
+        public void property(String name, CharSequence value) {
+            events.add(name + "=" + value);
+        }
+
+        @Override
+        public void move(byte color, int x, int y) {
+            events.add((color == Board.BLACK ? "B " : "W ") + x + "," + y);
+        }
+
+        @Override
+        public void endGame() {
+            events.add(")");
+        }
+    }
+
+    @Test
+    void testExportedGameReplaysToTheSameScore() throws IOException {
+        PlayerHandler black = new SilentPlayer(StoneColor.BLACK);
+        PlayerHandler white = new SilentPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, 9);
+        for (int y = 0; y < 9; y++) { //Dwie ściany dzielące planszę: czarni x 0-3, biali x 6-8
+            game.processMove(4, y, black);
+            game.processMove(5, y, white);
+        }
+        game.processPass(black);
+        game.processMove(1, 1, white); //Martwy kamień na terytorium czarnych
+        game.processPass(black);
+        game.processPass(white);
+        game.processMove(1, 1, black); //Usunięty w negocjacjach
+        game.processAgree(black);
+        game.processAgree(white);
+
+        String sgf = game.toSgf();
+        assertTrue(sgf.startsWith("(;FF[4]GM[1]CA[UTF-8]AP[gogame]RU[Japanese]SZ[9]RE[B+10]\n;B[ea];W[fa];B[eb]"), sgf);
+        assertTrue(sgf.contains(";B[];W[bb];B[];W[]"), sgf);
+        assertTrue(sgf.contains("TB[aa][ab]"), sgf);
+
+        SgfReplay replay = new SgfReplay();
+        try (SgfReader reader = SgfReader.of(sgf)) {
+            assertTrue(reader.next(replay));
+            assertFalse(reader.next(replay));
+        }
+        assertNull(replay.getError());
+        assertEquals(22, replay.getMoveCount());
+        assertEquals(1, replay.getDeadStones());
+        assertEquals(1, replay.getBlackPrisoners());
+        assertEquals("B+10", replay.getResult());
+        int[] territory = new GameLogic().countTerritory(replay.getBoard());
+        assertEquals(37, territory[0] + replay.getBlackPrisoners());
+        assertEquals(27, territory[1] + replay.getWhitePrisoners());
+    }
+
+    @Test
+    void testReaderFollowsMainLineOfEveryGame() throws IOException {
+        Path file = dir.resolve("archive.sgf");
+        Files.writeString(file, "(;SZ[9]C[a \\] (tricky)];B[aa](;W[bb];B[cc](;W[dd])(;W[ee]))(;W[ff]))\n"
+                + "(;SZ[13]AB[cc:cd];B[tt];W[])");
+
+        RecordingHandler handler = new RecordingHandler();
+        try (SgfReader reader = SgfReader.open(file)) {
+            while (reader.next(handler)) {
+            }
+            assertEquals(Files.size(file), reader.getPosition());
+        }
+        assertEquals(List.of("(", "SZ=9", "C=a ] (tricky)", "B 0,0", "W 1,1", "B 2,2", "W 3,3", ")",
+                "(", "SZ=13", "AB=cc:cd", "B -1,-1", "W -1,-1", ")"), handler.events);
+    }
+
+    @Test
+    void testReplayStopsAtIllegalMove() throws IOException {
+        SgfReplay replay = new SgfReplay();
+        try (SgfReader reader = SgfReader.of("(;SZ[9];B[ba];W[ff];B[ab];W[aa];B[gg])")) {
+            assertTrue(reader.next(replay));
+        }
+        assertEquals("Suicide at move 4 (aa)", replay.getError());
+    }
+}
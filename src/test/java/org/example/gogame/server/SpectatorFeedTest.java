@@ -0,0 +1,106 @@
+package org.example.gogame.server;
+
+import org.example.gogame.StoneColor;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectatorFeedTest {
+
+    /**
+     * Player handler that drops all messages.
+     */
+    private static class SilentPlayer extends PlayerHandler {
+        SilentPlayer(StoneColor color) {
+            super((Socket) null, color);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void sendMessage(CharSequence message) {
+        }
+    }
+
+    /**
+     * Spectator that remembers the text lines it was sent, optionally waiting for a latch first.
+     */
+    private static class RecordingSpectator implements Spectator {
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        final CountDownLatch droppedLatch = new CountDownLatch(1);
+        final CountDownLatch blocked;
+
+        RecordingSpectator(CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public boolean deliver(SpectatorFrame frame) {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            lines.add(new String(frame.bytes(false), StandardCharsets.UTF_8).trim());
+            return true;
+        }
+
+        @Override
+        public void dropped() {
+            droppedLatch.countDown();
+        }
+
+        String next() throws InterruptedException {
+            return lines.poll(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testSpectatorCatchesUpAndFollows() throws InterruptedException {
+        PlayerHandler black = new SilentPlayer(StoneColor.BLACK);
+        PlayerHandler white = new SilentPlayer(StoneColor.WHITE);
+        Game game = new Game(black, white, 9);
+        game.processMove(2, 3, black);
+
+        RecordingSpectator spectator = new RecordingSpectator(new CountDownLatch(0));
+        game.subscribe(spectator);
+        game.processMove(4, 4, white);
+
+        assertEquals("GAME_START 9", spectator.next());
+        assertEquals("BOARD 1 9 21.B59.", spectator.next());
+        assertEquals("TURN WHITE", spectator.next());
+        assertEquals("MOVE 4 4 WHITE 2", spectator.next());
+        assertEquals("CAPTURES", spectator.next());
+        assertEquals("TURN BLACK", spectator.next());
+
+        game.unsubscribe(spectator);
+        assertEquals(0, game.getSpectatorCount());
+    }
+
+    @Test
+    void testSlowSpectatorIsDropped() throws InterruptedException {
+        SpectatorFeed feed = new SpectatorFeed();
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingSpectator slow = new RecordingSpectator(blocked);
+        feed.add(slow, List.of());
+
+        //Publikowanie nie może czekać na widza, który nie odbiera
+        for (int i = 0; i < SpectatorFeed.QUEUE_LIMIT + 2; i++) {
+            feed.turn(i % 2 == 0 ? StoneColor.BLACK : StoneColor.WHITE);
+        }
+
+        assertTrue(slow.droppedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, feed.size());
+        blocked.countDown();
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.gogame.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest {
+
+    @Test
+    void testStoresAndCountsLookups() {
+        TranspositionTable table = new TranspositionTable(100);
+        assertEquals(128, table.getCapacity());
+        assertEquals(128 * 16, table.getMemoryBytes());
+
+        assertEquals(TranspositionTable.MISS, table.get(42, 0));
+        table.put(42, 7, 3);
+        assertEquals(7, table.get(42, 3));
+        assertEquals(TranspositionTable.MISS, table.get(42, 4), "Za płytki wpis");
+        table.put(42, 9, 1);
+        assertEquals(7, table.get(42, 0), "Płytszy wynik nie zastępuje głębszego");
+        table.put(42, 11, TranspositionTable.EXACT);
+        assertEquals(11, table.get(42, TranspositionTable.EXACT));
+
+        assertEquals(3, table.getHits());
+        assertEquals(2, table.getMisses());
+        assertEquals(0.6, table.getHitRate(), 1e-9);
+        table.clear();
+        assertEquals(TranspositionTable.MISS, table.get(42, 0));
+    }
+
+    @Test
+    void testReplacesShallowestEntryOfFullBucket() {
+        TranspositionTable table = new TranspositionTable(4); //Dwa kubełki, parzyste klucze trafiają do pierwszego
+        table.put(2, 2, 10);
+        table.put(4, 4, 5);
+        table.put(6, 6, 7);
+        assertEquals(2, table.get(2, 0));
+        assertEquals(TranspositionTable.MISS, table.get(4, 0));
+        assertEquals(6, table.get(6, 0));
+        table.put(8, 8, 2);
+        assertEquals(TranspositionTable.MISS, table.get(8, 0), "Wszystkie wpisy są głębsze");
+
+        //Czwarty zapis postarza tablicę, więc stare wpisy ustępują nowym
+        table.put(1, 1, 0);
+        table.put(8, 8, 2);
+        assertEquals(8, table.get(8, 0));
+        assertEquals(2, table.get(2, 0), "Ustępuje najpłytszy wpis");
+        assertEquals(TranspositionTable.MISS, table.get(6, 0));
+    }
+
+    @Test
+    void testConcurrentWritersNeverMixEntries() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(64);
+        AtomicInteger wrong = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long seed = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < 200_000; i++) {
+                    long key = random.nextLong(1, 1000) * 0x9E3779B97F4A7C15L;
+                    int value = (int) (key >>> 33);
+                    if (random.nextBoolean()) {
+                        table.put(key, value, random.nextInt(10));
+                    } else {
+                        int found = table.get(key, 0);
+                        if (found != TranspositionTable.MISS && found != value) {
+                            wrong.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, wrong.get());
+        assertTrue(table.getHits() > 0);
+    }
+}